@@ -0,0 +1,156 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import org.apache.maven.wagon.repository.Repository;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Compares the latency of the first requests made after connecting, with and without warm-up connections. Each
+ * measurement runs in a fresh JVM so that no connections are left over from an earlier one. After connecting, the
+ * wagon is left idle briefly, as it would be while Maven resolves a project, and then
+ * {@value #PARALLEL_REQUESTS} <code>resourceExists</code> calls are made in parallel, as they would be by a resolver
+ * downloading dependencies in parallel.
+ * <p/>
+ * This benchmark makes requests to S3, so it needs credentials and a repository to make them to:
+ * <code>mvn -Pbenchmark test-compile exec:exec
+ * -Dbenchmark.class=org.springframework.build.aws.maven.FirstRequestBenchmark
+ * -Dbenchmark.repository=s3://bucket/path</code>.
+ * The repository does not need to contain anything.
+ */
+public final class FirstRequestBenchmark {
+
+    private static final String[] TRANSPORTS = {"sdk", "http"};
+
+    private static final int[] WARM_UP_CONNECTIONS = {0, 4};
+
+    private static final int PARALLEL_REQUESTS = 4;
+
+    private static final int ITERATIONS = 5;
+
+    private static final long IDLE_MILLIS = 500;
+
+    private FirstRequestBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 3) {
+            measure(args[0], args[1], Integer.parseInt(args[2]));
+            return;
+        }
+        String url = System.getProperty("benchmark.repository", "");
+        if (url.isEmpty()) {
+            System.err.println("Set benchmark.repository to the URL of a repository, such as s3://bucket/path");
+            System.exit(2);
+        }
+
+        System.out.printf("%-6s %8s %18s %18s%n", "", "warm-up", "first (ms)", "all parallel (ms)");
+        for (String transport : TRANSPORTS) {
+            for (int warmUpConnections : WARM_UP_CONNECTIONS) {
+                List<long[]> samples = new ArrayList<long[]>();
+                for (int i = 0; i < ITERATIONS; i++) {
+                    samples.add(fork(url, transport, warmUpConnections));
+                }
+                System.out.printf("%-6s %8d %18.1f %18.1f%n", transport, warmUpConnections,
+                        median(samples, 0) / 1e6, median(samples, 1) / 1e6);
+            }
+        }
+    }
+
+    private static void measure(String url, String transport, int warmUpConnections) throws Exception {
+        final SimpleStorageServiceWagon wagon = new SimpleStorageServiceWagon();
+        wagon.setTransport(transport);
+        wagon.setWarmUpConnections(warmUpConnections);
+        wagon.connect(new Repository("benchmark", url));
+        Thread.sleep(IDLE_MILLIS);
+
+        ExecutorService executor = Executors.newFixedThreadPool(PARALLEL_REQUESTS);
+        try {
+            final long start = System.nanoTime();
+            List<Future<Long>> futures = new ArrayList<Future<Long>>();
+            for (int i = 0; i < PARALLEL_REQUESTS; i++) {
+                final String resourceName = String.format("benchmark/%d.jar", i);
+                futures.add(executor.submit(new Callable<Long>() {
+
+                    @Override
+                    public Long call() throws Exception {
+                        wagon.resourceExists(resourceName);
+                        return System.nanoTime() - start;
+                    }
+                }));
+            }
+
+            long first = Long.MAX_VALUE;
+            long all = 0;
+            for (Future<Long> future : futures) {
+                first = Math.min(first, future.get());
+                all = Math.max(all, future.get());
+            }
+            System.out.printf("%d %d%n", first, all);
+        } finally {
+            executor.shutdown();
+            wagon.disconnect();
+        }
+    }
+
+    private static long[] fork(String url, String transport, int warmUpConnections) throws IOException,
+            InterruptedException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                FirstRequestBenchmark.class.getName(), url, transport, Integer.toString(warmUpConnections))
+                .redirectErrorStream(true).start();
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), "UTF-8"));
+        try {
+            String line;
+            String last = null;
+            while ((line = reader.readLine()) != null) {
+                last = line;
+            }
+            if (process.waitFor() != 0 || last == null) {
+                throw new IllegalStateException(String.format("Measurement of '%s' failed: %s", transport, last));
+            }
+
+            String[] values = last.trim().split(" ");
+            return new long[]{Long.parseLong(values[0]), Long.parseLong(values[1])};
+        } finally {
+            IoUtils.closeQuietly(reader);
+        }
+    }
+
+    private static long median(List<long[]> samples, int index) {
+        Long[] values = new Long[samples.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = samples.get(i)[index];
+        }
+        List<Long> sorted = Arrays.asList(values);
+        Collections.sort(sorted);
+        return sorted.get(sorted.size() / 2);
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Measures building keys from resource names and extracting resource names from listings of synthetic keys. The
+ * {@code Format} and {@code Regex} benchmarks reproduce the previous implementation for comparison, and the GC
+ * profiler is enabled so that allocation rates are reported alongside the timings.
+ * <p/>
+ * Run with <code>mvn -Pbenchmark test-compile exec:exec
+ * -Dbenchmark.class=org.springframework.build.aws.maven.KeyBenchmark</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KeyBenchmark {
+
+    private static final String BASE_DIRECTORY = "release/";
+
+    private static final String PREFIX = BASE_DIRECTORY + "org/springframework/build/aws-maven/";
+
+    @Param({"1000", "100000"})
+    private int keys;
+
+    private SimpleStorageServiceWagon wagon;
+
+    private List<String> resourceNames;
+
+    private List<ListingPage> listingPages;
+
+    @Setup
+    public void setUp() {
+        this.wagon = new SimpleStorageServiceWagon(new InMemoryTransport(), BASE_DIRECTORY);
+
+        this.resourceNames = new ArrayList<String>(this.keys);
+        this.listingPages = new ArrayList<ListingPage>();
+
+        List<ObjectInfo> objects = new ArrayList<ObjectInfo>();
+        for (int i = 0; i < this.keys; i++) {
+            String name = String.format("5.0.%d/aws-maven-5.0.%d.jar", i / 10, i % 10);
+            this.resourceNames.add("org/springframework/build/aws-maven/" + name);
+
+            objects.add(new ObjectInfo(PREFIX + name, 0, null, null, null));
+            if (objects.size() == ListingPage.MAX_KEYS) {
+                this.listingPages.add(new ListingPage(Collections.<String>emptyList(), objects, null));
+                objects.clear();
+            }
+        }
+        if (!objects.isEmpty()) {
+            this.listingPages.add(new ListingPage(Collections.<String>emptyList(), objects, null));
+        }
+    }
+
+    @Benchmark
+    public void getKey(Blackhole blackhole) {
+        for (String resourceName : this.resourceNames) {
+            blackhole.consume(this.wagon.getKey(resourceName));
+        }
+    }
+
+    @Benchmark
+    public void getKeyFormat(Blackhole blackhole) {
+        for (String resourceName : this.resourceNames) {
+            blackhole.consume(String.format("%s%s", BASE_DIRECTORY, resourceName));
+        }
+    }
+
+    @Benchmark
+    public List<String> resourceNames() {
+        List<String> resourceNames = new ArrayList<String>(this.keys);
+        for (ListingPage listingPage : this.listingPages) {
+            SimpleStorageServiceWagon.addResourceNames(listingPage, PREFIX, resourceNames);
+        }
+        return resourceNames;
+    }
+
+    @Benchmark
+    public List<String> resourceNamesRegex() {
+        Pattern pattern = Pattern.compile(String.format("%s(.*)", PREFIX));
+
+        List<String> resourceNames = new ArrayList<String>(this.keys);
+        for (ListingPage listingPage : this.listingPages) {
+            for (ObjectInfo objectInfo : listingPage.getObjects()) {
+                Matcher matcher = pattern.matcher(objectInfo.getKey());
+                resourceNames.add(matcher.find() ? matcher.group(1) : objectInfo.getKey());
+            }
+        }
+        return resourceNames;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(KeyBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
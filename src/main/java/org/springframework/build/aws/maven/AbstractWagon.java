@@ -32,6 +32,8 @@ import org.apache.maven.wagon.repository.Repository;
 import org.apache.maven.wagon.resource.Resource;
 
 import java.io.File;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
 import java.util.List;
 
 abstract class AbstractWagon implements Wagon {
@@ -50,6 +52,8 @@ abstract class AbstractWagon implements Wagon {
 
     private final TransferListenerSupport transferListenerSupport;
 
+    private volatile TransferScheduler transferScheduler = TransferScheduler.unbounded();
+
     protected AbstractWagon(boolean supportsDirectoryCopy) {
         this.supportsDirectoryCopy = supportsDirectoryCopy;
         this.sessionListenerSupport = new StandardSessionListenerSupport(this);
@@ -170,11 +174,16 @@ abstract class AbstractWagon implements Wagon {
             ResourceDoesNotExistException, AuthorizationException {
         Resource resource = new Resource(resourceName);
         this.transferListenerSupport.fireTransferInitiated(resource, TransferEvent.REQUEST_GET);
-        this.transferListenerSupport.fireTransferStarted(resource, TransferEvent.REQUEST_GET);
 
         try {
-            getResource(resourceName, destination, new StandardTransferProgress(resource, TransferEvent.REQUEST_GET,
-                    this.transferListenerSupport));
+            TransferScheduler.Ticket ticket = schedule(resourceName, getResourceSize(resourceName));
+            try {
+                this.transferListenerSupport.fireTransferStarted(resource, TransferEvent.REQUEST_GET);
+                getResource(resourceName, destination, new StandardTransferProgress(resource,
+                        TransferEvent.REQUEST_GET, this.transferListenerSupport));
+            } finally {
+                ticket.release();
+            }
             this.transferListenerSupport.fireTransferCompleted(resource, TransferEvent.REQUEST_GET);
         } catch (TransferFailedException | ResourceDoesNotExistException | AuthorizationException e) {
             this.transferListenerSupport.fireTransferError(resource, TransferEvent.REQUEST_GET, e);
@@ -199,7 +208,15 @@ abstract class AbstractWagon implements Wagon {
             throws TransferFailedException, ResourceDoesNotExistException, AuthorizationException {
         Resource resource = new Resource(resourceName);
         try {
-            if (isRemoteResourceNewer(resourceName, timestamp)) {
+            boolean newer;
+            TransferScheduler.Ticket ticket = schedule(resourceName, 0);
+            try {
+                newer = isRemoteResourceNewer(resourceName, timestamp);
+            } finally {
+                ticket.release();
+            }
+
+            if (newer) {
                 get(resourceName, destination);
                 return true;
             }
@@ -221,11 +238,16 @@ abstract class AbstractWagon implements Wagon {
             ResourceDoesNotExistException, AuthorizationException {
         Resource resource = new Resource(destination);
         this.transferListenerSupport.fireTransferInitiated(resource, TransferEvent.REQUEST_PUT);
-        this.transferListenerSupport.fireTransferStarted(resource, TransferEvent.REQUEST_PUT);
 
         try {
-            putResource(source, destination, new StandardTransferProgress(resource, TransferEvent.REQUEST_PUT,
-                    this.transferListenerSupport));
+            TransferScheduler.Ticket ticket = schedule(destination, source.length());
+            try {
+                this.transferListenerSupport.fireTransferStarted(resource, TransferEvent.REQUEST_PUT);
+                putResource(source, destination, new StandardTransferProgress(resource, TransferEvent.REQUEST_PUT,
+                        this.transferListenerSupport));
+            } finally {
+                ticket.release();
+            }
             this.transferListenerSupport.fireTransferCompleted(resource, TransferEvent.REQUEST_PUT);
         } catch (TransferFailedException | ResourceDoesNotExistException | AuthorizationException e) {
             this.transferListenerSupport.fireTransferError(resource, TransferEvent.REQUEST_PUT, e);
@@ -236,8 +258,25 @@ abstract class AbstractWagon implements Wagon {
     @Override
     public final void putDirectory(File sourceDirectory, String destinationDirectory) throws TransferFailedException,
             ResourceDoesNotExistException, AuthorizationException {
+        putDirectoryResources(sourceDirectory, destinationDirectory);
+    }
+
+    /**
+     * Puts the contents of a directory. By default each file directly inside {@code sourceDirectory} is
+     * {@link #put(File, String) put} in turn, metadata and small files first (see {@link TransferScheduler#PUT_ORDER});
+     * subclasses can override this to put fewer files.
+     *
+     * @param sourceDirectory      The local directory to put
+     * @param destinationDirectory The directory in the repository to put it to
+     * @throws TransferFailedException       if a file cannot be put
+     * @throws ResourceDoesNotExistException if a file cannot be read
+     * @throws AuthorizationException        if the repository denies access
+     */
+    protected void putDirectoryResources(File sourceDirectory, String destinationDirectory)
+            throws TransferFailedException, ResourceDoesNotExistException, AuthorizationException {
         File[] files = sourceDirectory.listFiles();
         if (files != null) {
+            Arrays.sort(files, TransferScheduler.PUT_ORDER);
             for (File f : files) {
                 put(f, destinationDirectory + "/" + f.getName());
             }
@@ -247,7 +286,12 @@ abstract class AbstractWagon implements Wagon {
     @Override
     public final boolean resourceExists(String resourceName) throws TransferFailedException, AuthorizationException {
         try {
-            return doesRemoteResourceExist(resourceName);
+            TransferScheduler.Ticket ticket = schedule(resourceName, 0);
+            try {
+                return doesRemoteResourceExist(resourceName);
+            } finally {
+                ticket.release();
+            }
         } catch (AuthorizationException | TransferFailedException e) {
             this.transferListenerSupport.fireTransferError(new Resource(resourceName), TransferEvent.REQUEST_GET, e);
             throw e;
@@ -279,6 +323,34 @@ abstract class AbstractWagon implements Wagon {
         this.connectionTimeout = timeout;
     }
 
+    /**
+     * Sets the scheduler that admits gets, puts and lookups. By default every transfer is admitted immediately.
+     *
+     * @param transferScheduler The scheduler
+     */
+    final void setTransferScheduler(TransferScheduler transferScheduler) {
+        this.transferScheduler = transferScheduler;
+    }
+
+    /**
+     * Returns the size of a resource if it is known without a request, so that its get can be scheduled in the right
+     * lane. By default no size is known.
+     *
+     * @param resourceName The name of the resource
+     * @return The size in bytes, or {@code -1} if it is not known
+     */
+    protected long getResourceSize(String resourceName) {
+        return -1;
+    }
+
+    private TransferScheduler.Ticket schedule(String resourceName, long size) throws TransferFailedException {
+        try {
+            return this.transferScheduler.acquire(resourceName, size);
+        } catch (InterruptedIOException e) {
+            throw new TransferFailedException(e.getMessage(), e);
+        }
+    }
+
     protected abstract void connectToRepository(Repository repository, AuthenticationInfo authenticationInfo,
                                                 ProxyInfoProvider proxyInfoProvider) throws ConnectionException,
             AuthenticationException;
@@ -0,0 +1,405 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.Request;
+import com.amazonaws.Response;
+import com.amazonaws.metrics.RequestMetricCollector;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.internal.Mimetypes;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CannedAccessControlList;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CopyObjectRequest;
+import com.amazonaws.services.s3.model.CopyPartRequest;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.MultiObjectDeleteException;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import com.amazonaws.util.AWSRequestMetrics;
+import org.apache.maven.wagon.authentication.AuthenticationInfo;
+import org.apache.maven.wagon.proxy.ProxyInfoProvider;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link Transport} backed by the AWS SDK's {@link AmazonS3} client
+ */
+final class AmazonS3Transport implements Transport {
+
+    private static final int NOT_FOUND = 404;
+
+    private static final int INTERNAL_ERROR = 500;
+
+    private final AmazonS3 amazonS3;
+
+    private final String bucketName;
+
+    AmazonS3Transport(AmazonS3 amazonS3, String bucketName) {
+        this.amazonS3 = amazonS3;
+        this.bucketName = bucketName;
+    }
+
+    static AmazonS3Transport create(String bucketName, AuthenticationInfo authenticationInfo,
+                                    ProxyInfoProvider proxyInfoProvider, ClientSettings clientSettings,
+                                    TraceRecorder traceRecorder) throws IOException {
+        AuthenticationInfoAWSCredentialsProviderChain credentialsProvider =
+                new AuthenticationInfoAWSCredentialsProviderChain(authenticationInfo);
+        ClientConfiguration clientConfiguration = S3Utils.getClientConfiguration(proxyInfoProvider, clientSettings);
+        RequestMetricCollector requestMetricCollector = traceRecorder.isEnabled() ?
+                new RetryCountCollector(traceRecorder) : RequestMetricCollector.NONE;
+
+        try {
+            AmazonS3 amazonS3 = new AmazonS3Client(credentialsProvider, clientConfiguration, requestMetricCollector);
+            Region region = Region.fromLocationConstraint(amazonS3.getBucketLocation(bucketName));
+            amazonS3.setEndpoint(region.getEndpoint());
+
+            return new AmazonS3Transport(amazonS3, bucketName);
+        } catch (AmazonClientException e) {
+            throw translate(String.format("Cannot locate bucket '%s'", bucketName), e);
+        }
+    }
+
+    @Override
+    public ObjectInfo head(String key) throws IOException {
+        try {
+            return toObjectInfo(key, this.amazonS3.getObjectMetadata(this.bucketName, key));
+        } catch (AmazonServiceException e) {
+            if (e.getStatusCode() == NOT_FOUND) {
+                return null;
+            }
+            throw translate(String.format("Cannot read metadata of '%s'", key), e);
+        } catch (AmazonClientException e) {
+            throw translate(String.format("Cannot read metadata of '%s'", key), e);
+        }
+    }
+
+    @Override
+    public ObjectContent get(String key) throws IOException {
+        try {
+            S3Object s3Object = this.amazonS3.getObject(this.bucketName, key);
+            return new S3ObjectContent(toObjectInfo(key, s3Object.getObjectMetadata()), s3Object.getObjectContent());
+        } catch (AmazonClientException e) {
+            throw translate(String.format("Cannot read '%s'", key), e);
+        }
+    }
+
+    @Override
+    public ObjectContent getIfChanged(String key, String eTag) throws IOException {
+        try {
+            // the client returns null when the constraint is not met, which is a 304 for an ETag constraint
+            S3Object s3Object = this.amazonS3.getObject(new GetObjectRequest(this.bucketName, key)
+                    .withNonmatchingETagConstraint(eTag));
+            return s3Object == null ? null : new S3ObjectContent(toObjectInfo(key, s3Object.getObjectMetadata()),
+                    s3Object.getObjectContent());
+        } catch (AmazonClientException e) {
+            throw translate(String.format("Cannot read '%s'", key), e);
+        }
+    }
+
+    @Override
+    public ObjectContent get(String key, long firstByte, long lastByte) throws IOException {
+        try {
+            S3Object s3Object = this.amazonS3.getObject(new GetObjectRequest(this.bucketName, key).withRange(firstByte,
+                    lastByte));
+            return new S3ObjectContent(toObjectInfo(key, s3Object.getObjectMetadata()), s3Object.getObjectContent());
+        } catch (AmazonClientException e) {
+            throw translate(String.format("Cannot read bytes %d-%d of '%s'", firstByte, lastByte, key), e);
+        }
+    }
+
+    @Override
+    public void put(ObjectInfo metadata, InputStream in, boolean publicRead) throws IOException {
+        ObjectMetadata objectMetadata = new ObjectMetadata();
+        objectMetadata.setContentLength(metadata.getContentLength());
+        objectMetadata.setContentType(metadata.getContentType() != null ? metadata.getContentType() :
+                Mimetypes.getInstance().getMimetype(metadata.getKey()));
+        if (metadata.getContentEncoding() != null) {
+            objectMetadata.setContentEncoding(metadata.getContentEncoding());
+        }
+        for (Map.Entry<String, String> entry : metadata.getMetadata().entrySet()) {
+            objectMetadata.addUserMetadata(entry.getKey(), entry.getValue());
+        }
+
+        PutObjectRequest putObjectRequest = new PutObjectRequest(this.bucketName, metadata.getKey(), in,
+                objectMetadata);
+        if (publicRead) {
+            putObjectRequest.setCannedAcl(CannedAccessControlList.PublicRead);
+        }
+
+        try {
+            this.amazonS3.putObject(putObjectRequest);
+        } catch (AmazonClientException e) {
+            throw translate(String.format("Cannot write '%s'", metadata.getKey()), e);
+        }
+    }
+
+    @Override
+    public ListingPage list(String prefix, String delimiter, String marker) throws IOException {
+        ListObjectsRequest listObjectsRequest = new ListObjectsRequest() //
+                .withBucketName(this.bucketName) //
+                .withPrefix(prefix) //
+                .withDelimiter(delimiter) //
+                .withMarker(marker);
+
+        try {
+            ObjectListing objectListing = this.amazonS3.listObjects(listObjectsRequest);
+
+            List<ObjectInfo> objects = new ArrayList<ObjectInfo>();
+            for (S3ObjectSummary s3ObjectSummary : objectListing.getObjectSummaries()) {
+                objects.add(new ObjectInfo(s3ObjectSummary.getKey(), s3ObjectSummary.getSize(),
+                        s3ObjectSummary.getETag(), s3ObjectSummary.getLastModified(), null));
+            }
+
+            return new ListingPage(objectListing.getCommonPrefixes(), objects, getNextMarker(objectListing));
+        } catch (AmazonClientException e) {
+            throw translate(String.format("Cannot list '%s'", prefix), e);
+        }
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        try {
+            this.amazonS3.deleteObject(this.bucketName, key);
+        } catch (AmazonClientException e) {
+            throw translate(String.format("Cannot delete '%s'", key), e);
+        }
+    }
+
+    @Override
+    public void delete(List<String> keys) throws IOException {
+        if (keys.isEmpty()) {
+            return;
+        }
+
+        List<DeleteObjectsRequest.KeyVersion> keyVersions = new ArrayList<DeleteObjectsRequest.KeyVersion>();
+        for (String key : keys) {
+            keyVersions.add(new DeleteObjectsRequest.KeyVersion(key));
+        }
+
+        try {
+            this.amazonS3.deleteObjects(new DeleteObjectsRequest(this.bucketName).withKeys(keyVersions)
+                    .withQuiet(true));
+        } catch (MultiObjectDeleteException e) {
+            throw new TransportException(String.format("Cannot delete %d of %d objects, including '%s'",
+                    e.getErrors().size(), keys.size(), e.getErrors().get(0).getKey()), INTERNAL_ERROR);
+        } catch (AmazonClientException e) {
+            throw translate(String.format("Cannot delete %d objects", keys.size()), e);
+        }
+    }
+
+    @Override
+    public void copy(String sourceBucketName, String sourceKey, String destinationKey, boolean publicRead)
+            throws IOException {
+        CopyObjectRequest copyObjectRequest = new CopyObjectRequest(getBucketName(sourceBucketName), sourceKey,
+                this.bucketName, destinationKey);
+        if (publicRead) {
+            copyObjectRequest.setCannedAccessControlList(CannedAccessControlList.PublicRead);
+        }
+
+        try {
+            this.amazonS3.copyObject(copyObjectRequest);
+        } catch (AmazonClientException e) {
+            throw translate(String.format("Cannot copy '%s' to '%s'", sourceKey, destinationKey), e);
+        }
+    }
+
+    @Override
+    public String initiateMultipartUpload(ObjectInfo metadata, boolean publicRead) throws IOException {
+        ObjectMetadata objectMetadata = new ObjectMetadata();
+        objectMetadata.setContentType(metadata.getContentType() != null ? metadata.getContentType() :
+                Mimetypes.getInstance().getMimetype(metadata.getKey()));
+
+        InitiateMultipartUploadRequest initiateMultipartUploadRequest = new InitiateMultipartUploadRequest(
+                this.bucketName, metadata.getKey(), objectMetadata);
+        if (publicRead) {
+            initiateMultipartUploadRequest.setCannedACL(CannedAccessControlList.PublicRead);
+        }
+
+        try {
+            return this.amazonS3.initiateMultipartUpload(initiateMultipartUploadRequest).getUploadId();
+        } catch (AmazonClientException e) {
+            throw translate(String.format("Cannot start upload of '%s'", metadata.getKey()), e);
+        }
+    }
+
+    @Override
+    public String uploadPart(String key, String uploadId, int partNumber, InputStream in, long length)
+            throws IOException {
+        UploadPartRequest uploadPartRequest = new UploadPartRequest() //
+                .withBucketName(this.bucketName) //
+                .withKey(key) //
+                .withUploadId(uploadId) //
+                .withPartNumber(partNumber) //
+                .withInputStream(in) //
+                .withPartSize(length);
+
+        try {
+            return this.amazonS3.uploadPart(uploadPartRequest).getETag();
+        } catch (AmazonClientException e) {
+            throw translate(String.format("Cannot write part %d of '%s'", partNumber, key), e);
+        }
+    }
+
+    @Override
+    public String copyPart(String destinationKey, String uploadId, int partNumber, String sourceBucketName,
+                           String sourceKey, long firstByte, long lastByte) throws IOException {
+        CopyPartRequest copyPartRequest = new CopyPartRequest() //
+                .withSourceBucketName(getBucketName(sourceBucketName)) //
+                .withSourceKey(sourceKey) //
+                .withDestinationBucketName(this.bucketName) //
+                .withDestinationKey(destinationKey) //
+                .withUploadId(uploadId) //
+                .withPartNumber(partNumber) //
+                .withFirstByte(firstByte) //
+                .withLastByte(lastByte);
+
+        try {
+            return this.amazonS3.copyPart(copyPartRequest).getETag();
+        } catch (AmazonClientException e) {
+            throw translate(String.format("Cannot copy part %d of '%s' to '%s'", partNumber, sourceKey,
+                    destinationKey), e);
+        }
+    }
+
+    @Override
+    public void completeMultipartUpload(String key, String uploadId, List<String> partETags) throws IOException {
+        List<PartETag> parts = new ArrayList<PartETag>(partETags.size());
+        for (int i = 0; i < partETags.size(); i++) {
+            parts.add(new PartETag(i + 1, partETags.get(i)));
+        }
+
+        try {
+            this.amazonS3.completeMultipartUpload(new CompleteMultipartUploadRequest(this.bucketName, key, uploadId,
+                    parts));
+        } catch (AmazonClientException e) {
+            throw translate(String.format("Cannot complete upload of '%s'", key), e);
+        }
+    }
+
+    @Override
+    public void abortMultipartUpload(String key, String uploadId) throws IOException {
+        try {
+            this.amazonS3.abortMultipartUpload(new AbortMultipartUploadRequest(this.bucketName, key, uploadId));
+        } catch (AmazonClientException e) {
+            throw translate(String.format("Cannot abort upload of '%s'", key), e);
+        }
+    }
+
+    private String getBucketName(String sourceBucketName) {
+        return sourceBucketName == null ? this.bucketName : sourceBucketName;
+    }
+
+    private static String getNextMarker(ObjectListing objectListing) {
+        if (!objectListing.isTruncated()) {
+            return null;
+        }
+        if (objectListing.getNextMarker() != null) {
+            return objectListing.getNextMarker();
+        }
+
+        String marker = "";
+
+        List<String> commonPrefixes = objectListing.getCommonPrefixes();
+        if (!commonPrefixes.isEmpty()) {
+            marker = commonPrefixes.get(commonPrefixes.size() - 1);
+        }
+
+        List<S3ObjectSummary> objectSummaries = objectListing.getObjectSummaries();
+        if (!objectSummaries.isEmpty()) {
+            String key = objectSummaries.get(objectSummaries.size() - 1).getKey();
+            if (key.compareTo(marker) > 0) {
+                marker = key;
+            }
+        }
+
+        return marker;
+    }
+
+    private static ObjectInfo toObjectInfo(String key, ObjectMetadata objectMetadata) {
+        if (objectMetadata == null) {
+            return new ObjectInfo(key, -1, null, null, null);
+        }
+        return new ObjectInfo(key, objectMetadata.getContentLength(), objectMetadata.getETag(),
+                objectMetadata.getLastModified(), objectMetadata.getContentType(), objectMetadata.getContentEncoding(),
+                objectMetadata.getUserMetadata());
+    }
+
+    private static IOException translate(String message, AmazonClientException e) {
+        if (e instanceof AmazonServiceException) {
+            return new TransportException(message, ((AmazonServiceException) e).getStatusCode(), e);
+        }
+        return new IOException(message, e);
+    }
+
+    private static final class S3ObjectContent extends ObjectContent {
+
+        private final S3ObjectInputStream inputStream;
+
+        private S3ObjectContent(ObjectInfo objectInfo, S3ObjectInputStream inputStream) {
+            super(objectInfo, inputStream);
+            this.inputStream = inputStream;
+        }
+
+        @Override
+        void abort() {
+            try {
+                this.inputStream.abort();
+            } catch (IOException e) {
+                // swallow the exception
+            }
+        }
+    }
+
+    /**
+     * Reports the retries the SDK made for each request to the span that is current when the request completes
+     */
+    private static final class RetryCountCollector extends RequestMetricCollector {
+
+        private final TraceRecorder traceRecorder;
+
+        private RetryCountCollector(TraceRecorder traceRecorder) {
+            this.traceRecorder = traceRecorder;
+        }
+
+        @Override
+        public void collectMetrics(Request<?> request, Response<?> response) {
+            Number requestCount = request.getAWSRequestMetrics().getTimingInfo().getAllCounters()
+                    .get(AWSRequestMetrics.Field.RequestCount.name());
+            if (requestCount != null) {
+                this.traceRecorder.addRetries(requestCount.intValue() - 1);
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A Bloom filter of keys. {@link #mightContain(String)} never returns {@code false} for a key that has been added, so a
+ * {@code false} is a definite miss; a {@code true} may be a false positive at roughly the rate the filter was sized
+ * for. Keys are hashed once to 64 bits and the filter's probes are derived from the two halves of that hash.
+ */
+final class BloomFilter {
+
+    private static final int MAGIC = 0x41574d42;
+
+    private static final int MAX_BITS = Integer.MAX_VALUE - 63;
+
+    private final long[] bits;
+
+    private final int numBits;
+
+    private final int numHashes;
+
+    private BloomFilter(long[] bits, int numBits, int numHashes) {
+        this.bits = bits;
+        this.numBits = numBits;
+        this.numHashes = numHashes;
+    }
+
+    /**
+     * Creates an empty filter sized for a number of keys and a false positive rate
+     *
+     * @param expectedKeys      The number of keys that will be added
+     * @param falsePositiveRate The desired rate of false positives once they have been added
+     * @return The filter
+     */
+    static BloomFilter create(long expectedKeys, double falsePositiveRate) {
+        long n = Math.max(1, expectedKeys);
+        long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int numBits = (int) Math.max(64, Math.min(MAX_BITS, m));
+        int numHashes = (int) Math.max(1, Math.round((double) numBits / n * Math.log(2)));
+        return new BloomFilter(new long[(numBits + 63) / 64], numBits, numHashes);
+    }
+
+    void add(String key) {
+        addHash(hash(key));
+    }
+
+    void addHash(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= this.numHashes; i++) {
+            int bit = index(h1 + i * h2);
+            this.bits[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    boolean mightContain(String key) {
+        long hash = hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= this.numHashes; i++) {
+            int bit = index(h1 + i * h2);
+            if ((this.bits[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    int getNumBits() {
+        return this.numBits;
+    }
+
+    int getNumHashes() {
+        return this.numHashes;
+    }
+
+    void writeTo(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(this.numBits);
+        data.writeInt(this.numHashes);
+        for (long word : this.bits) {
+            data.writeLong(word);
+        }
+        data.flush();
+    }
+
+    static BloomFilter readFrom(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a key filter");
+        }
+
+        int numBits = data.readInt();
+        int numHashes = data.readInt();
+        if (numBits < 64 || numBits > MAX_BITS || numHashes < 1) {
+            throw new IOException(String.format("Invalid key filter of %d bits and %d hashes", numBits, numHashes));
+        }
+
+        long[] bits = new long[(numBits + 63) / 64];
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] = data.readLong();
+        }
+        return new BloomFilter(bits, numBits, numHashes);
+    }
+
+    /**
+     * Hashes a key to 64 bits with FNV-1a over its characters, finished with a mixing step so that both halves are
+     * usable as independent hashes
+     */
+    static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private int index(int combined) {
+        return (combined & Integer.MAX_VALUE) % this.numBits;
+    }
+}
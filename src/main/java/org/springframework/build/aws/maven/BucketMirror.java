@@ -0,0 +1,288 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import org.apache.maven.wagon.WagonException;
+import org.apache.maven.wagon.repository.Repository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Incrementally copies everything below a prefix in a bucket to a local directory. The listing is paged through as
+ * objects are downloaded, and an object is only downloaded if there is no local file with the same size and either
+ * the same modification time or the same MD5 as the object's ETag. Downloaded files are given the object's
+ * modification time so that later runs can usually skip them without hashing.
+ * <p/>
+ * Can be run from the command line:
+ * <pre>
+ * java org.springframework.build.aws.maven.BucketMirror [--threads=N] [--transport=NAME] s3://bucket/path directory
+ * </pre>
+ */
+public final class BucketMirror {
+
+    static final int DEFAULT_THREADS = 8;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final Transport transport;
+
+    private final int threads;
+
+    private final AtomicLong listed = new AtomicLong();
+
+    private final AtomicLong downloaded = new AtomicLong();
+
+    private final AtomicLong bytesDownloaded = new AtomicLong();
+
+    private final AtomicLong skipped = new AtomicLong();
+
+    private final AtomicLong bytesSkipped = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    BucketMirror(Transport transport, int threads) {
+        this.transport = transport;
+        this.threads = threads;
+    }
+
+    /**
+     * Mirrors every object whose key starts with {@code prefix} into {@code destination}
+     *
+     * @param prefix      The prefix of the keys to mirror. It is removed from each key to give the local path.
+     * @param destination The directory to mirror into
+     * @return A summary of what was downloaded and what was skipped
+     * @throws IOException if the bucket cannot be listed
+     */
+    MirrorSummary mirror(String prefix, File destination) throws IOException {
+        String root = destination.getCanonicalPath() + File.separator;
+        ExecutorService executor = Executors.newFixedThreadPool(this.threads);
+        Semaphore inFlight = new Semaphore(this.threads * 4);
+
+        try {
+            String marker = null;
+            do {
+                ListingPage listingPage = this.transport.list(prefix, null, marker);
+                for (ObjectInfo objectInfo : listingPage.getObjects()) {
+                    File file = new File(destination, objectInfo.getKey().substring(prefix.length()));
+                    if (!(file.getCanonicalPath() + File.separator).startsWith(root)) {
+                        this.logger.warn("Skipping '{}' as it is outside of '{}'", objectInfo.getKey(), destination);
+                    } else if (objectInfo.getKey().endsWith("/")) {
+                        mkdirs(file);
+                    } else {
+                        this.listed.incrementAndGet();
+                        submit(executor, inFlight, objectInfo, file);
+                    }
+                }
+                marker = listingPage.getNextMarker();
+            } while (marker != null);
+        } finally {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        return new MirrorSummary(this.listed.get(), this.downloaded.get(), this.bytesDownloaded.get(),
+                this.skipped.get(), this.bytesSkipped.get(), this.failed.get());
+    }
+
+    private void submit(ExecutorService executor, final Semaphore inFlight, final ObjectInfo objectInfo,
+                        final File file) throws IOException {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while mirroring", e);
+        }
+
+        executor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    if (isUpToDate(objectInfo, file)) {
+                        BucketMirror.this.skipped.incrementAndGet();
+                        BucketMirror.this.bytesSkipped.addAndGet(objectInfo.getContentLength());
+                    } else {
+                        download(objectInfo, file);
+                        BucketMirror.this.downloaded.incrementAndGet();
+                        BucketMirror.this.bytesDownloaded.addAndGet(objectInfo.getContentLength());
+                        BucketMirror.this.logger.info("Downloaded '{}' ({} bytes) [{}/{}]", objectInfo.getKey(),
+                                objectInfo.getContentLength(), getCompleted(), BucketMirror.this.listed.get());
+                    }
+                } catch (IOException e) {
+                    BucketMirror.this.failed.incrementAndGet();
+                    BucketMirror.this.logger.warn("Cannot download '{}': {}", objectInfo.getKey(), e.getMessage());
+                } finally {
+                    inFlight.release();
+                }
+            }
+        });
+    }
+
+    private long getCompleted() {
+        return this.downloaded.get() + this.skipped.get() + this.failed.get();
+    }
+
+    private boolean isUpToDate(ObjectInfo listed, File file) throws IOException {
+        if (!file.isFile()) {
+            return false;
+        }
+
+        long lastModified = listed.getLastModified() == null ? 0 : listed.getLastModified().getTime();
+        boolean sameLastModified = lastModified != 0 && file.lastModified() / 1000 == lastModified / 1000;
+
+        ObjectInfo objectInfo = listed;
+        if (objectInfo.getContentEncoding() == null && file.length() != objectInfo.getContentLength()) {
+            if (!sameLastModified) {
+                return false;
+            }
+            // listings do not say whether an object is encoded, and a file that was downloaded from an encoded
+            // object has the decoded size, which its metadata records
+            objectInfo = this.transport.head(listed.getKey());
+            if (objectInfo == null || objectInfo.getContentEncoding() == null) {
+                return false;
+            }
+        }
+
+        if (file.length() != ContentEncoding.getDecodedLength(objectInfo)) {
+            return false;
+        }
+        if (sameLastModified) {
+            return true;
+        }
+
+        String md5 = ContentEncoding.getDecodedMd5(objectInfo);
+        if (md5 == null || md5.contains("-")) {
+            // multipart ETags are not the MD5 of the content
+            return false;
+        }
+
+        InputStream in = new FileInputStream(file);
+        try {
+            if (!md5.equals(IoUtils.md5Hex(in))) {
+                return false;
+            }
+        } finally {
+            IoUtils.closeQuietly(in);
+        }
+
+        if (lastModified != 0) {
+            file.setLastModified(lastModified);
+        }
+        return true;
+    }
+
+    private void download(ObjectInfo objectInfo, File file) throws IOException {
+        mkdirs(file.getParentFile());
+
+        File temp = File.createTempFile(String.format(".%s.", file.getName()), ".part", file.getParentFile());
+        try {
+            ObjectContent objectContent = this.transport.get(objectInfo.getKey());
+            try {
+                OutputStream out = new FileOutputStream(temp);
+                try {
+                    IoUtils.copy(ContentEncoding.decode(objectContent.getObjectInfo().getContentEncoding(),
+                            objectContent.getInputStream()), out);
+                } finally {
+                    IoUtils.closeQuietly(out);
+                }
+            } finally {
+                objectContent.close();
+            }
+
+            if (objectInfo.getLastModified() != null) {
+                temp.setLastModified(objectInfo.getLastModified().getTime());
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            temp.delete();
+        }
+    }
+
+    private static void mkdirs(File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+            throw new FileNotFoundException(String.format("Cannot create directory '%s'", directory));
+        }
+    }
+
+    /**
+     * Mirrors a bucket from the command line
+     *
+     * @param args {@code [--threads=N] [--transport=NAME] s3://bucket/path directory}
+     * @throws WagonException if the bucket cannot be mirrored
+     */
+    public static void main(String[] args) throws WagonException {
+        int threads = DEFAULT_THREADS;
+        String transport = null;
+        String url = null;
+        String directory = null;
+
+        for (String arg : args) {
+            if (arg.startsWith("--threads=")) {
+                threads = Integer.parseInt(arg.substring("--threads=".length()));
+            } else if (arg.startsWith("--transport=")) {
+                transport = arg.substring("--transport=".length());
+            } else if (url == null) {
+                url = arg;
+            } else if (directory == null) {
+                directory = arg;
+            } else {
+                url = null;
+                break;
+            }
+        }
+
+        if (url == null || directory == null) {
+            System.err.println("Usage: BucketMirror [--threads=N] [--transport=NAME] s3://bucket/path directory");
+            System.exit(2);
+        }
+
+        SimpleStorageServiceWagon wagon = new SimpleStorageServiceWagon();
+        if (transport != null) {
+            wagon.setTransport(transport);
+        }
+        wagon.connect(new Repository("mirror", url));
+        try {
+            MirrorSummary summary = wagon.mirror("", new File(directory), threads);
+            System.out.println(summary);
+            if (summary.getFailed() != 0) {
+                System.exit(1);
+            }
+        } finally {
+            wagon.disconnect();
+        }
+    }
+}
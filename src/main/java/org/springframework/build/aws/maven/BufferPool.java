@@ -0,0 +1,137 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * A pool of reusable transfer buffers shared by every copy in the JVM, with a cap on the memory held by the buffers
+ * in use and in the pool together. When the cap is reached a transfer waits for another to release its buffer rather
+ * than allocating more, so that many parallel gets and puts cannot drive the heap into repeated collections.
+ * <p/>
+ * The buffers are heap buffers: every stream involved in a transfer, whether from the SDK, {@link
+ * java.net.HttpURLConnection} or a file, reads into and writes from a {@code byte[]}, so a direct buffer would only
+ * add a copy.
+ */
+final class BufferPool {
+
+    static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    static final long DEFAULT_MAX_MEMORY = 32 * 1024 * 1024;
+
+    private static final BufferPool SHARED = new BufferPool(DEFAULT_BUFFER_SIZE, DEFAULT_MAX_MEMORY);
+
+    private final Object monitor = new Object();
+
+    private final Deque<ByteBuffer> free = new ArrayDeque<ByteBuffer>();
+
+    private int bufferSize;
+
+    private long maxMemory;
+
+    private long bytesInUse;
+
+    BufferPool(int bufferSize, long maxMemory) {
+        this.bufferSize = bufferSize;
+        this.maxMemory = maxMemory;
+    }
+
+    /**
+     * Returns the pool shared by every transfer in the JVM
+     *
+     * @return The shared pool
+     */
+    static BufferPool shared() {
+        return SHARED;
+    }
+
+    /**
+     * Changes the size of the buffers handed out and the cap on memory. Pooled buffers of another size are discarded.
+     *
+     * @param bufferSize The size of each buffer in bytes
+     * @param maxMemory  The most memory in bytes that buffers may hold. At least one buffer is always handed out, even
+     *                   if it is larger than this.
+     */
+    void configure(int bufferSize, long maxMemory) {
+        synchronized (this.monitor) {
+            this.bufferSize = bufferSize;
+            this.maxMemory = maxMemory;
+            this.free.clear();
+            this.monitor.notifyAll();
+        }
+    }
+
+    /**
+     * Takes a buffer from the pool, allocating one if the pool is empty and the cap allows, otherwise waiting for a
+     * buffer to be released
+     *
+     * @return A cleared buffer that must be given back with {@link #release(ByteBuffer)}
+     * @throws InterruptedIOException if the thread is interrupted while waiting
+     */
+    ByteBuffer acquire() throws InterruptedIOException {
+        synchronized (this.monitor) {
+            while (this.bytesInUse != 0 && this.bytesInUse + this.bufferSize > this.maxMemory) {
+                try {
+                    this.monitor.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for a transfer buffer");
+                }
+            }
+
+            ByteBuffer buffer = this.free.pollFirst();
+            if (buffer == null) {
+                buffer = ByteBuffer.allocate(this.bufferSize);
+            }
+            this.bytesInUse += buffer.capacity();
+
+            buffer.clear();
+            return buffer;
+        }
+    }
+
+    /**
+     * Gives a buffer back to the pool
+     *
+     * @param buffer A buffer returned by {@link #acquire()}
+     */
+    void release(ByteBuffer buffer) {
+        synchronized (this.monitor) {
+            this.bytesInUse -= buffer.capacity();
+            if (buffer.capacity() == this.bufferSize
+                    && this.bytesInUse + (this.free.size() + 1L) * this.bufferSize <= this.maxMemory) {
+                this.free.addFirst(buffer);
+            }
+            this.monitor.notifyAll();
+        }
+    }
+
+    long getBytesInUse() {
+        synchronized (this.monitor) {
+            return this.bytesInUse;
+        }
+    }
+
+    int getPooledBuffers() {
+        synchronized (this.monitor) {
+            return this.free.size();
+        }
+    }
+}
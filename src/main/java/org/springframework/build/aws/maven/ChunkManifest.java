@@ -0,0 +1,305 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+/**
+ * The content-defined chunks of an object, stored in the repository next to each SNAPSHOT artifact so that the next
+ * build's upload of it can copy the chunks that have not changed from the previous version instead of uploading them
+ * again.
+ * <p/>
+ * Chunk boundaries are chosen with a gear hash over the last 64 bytes, so they depend only on the content around them
+ * and an insertion or deletion only changes the chunks it touches. Chunks are at least {@link
+ * MultipartFileUpload#MIN_PART_SIZE} long, other than the last, so that each can be a part of a multipart upload.
+ */
+final class ChunkManifest {
+
+    /**
+     * The prefix of the manifest objects, relative to the repository's base directory
+     */
+    static final String MANIFEST_PREFIX = ".aws-maven/chunks/";
+
+    static final long MIN_CHUNK_SIZE = MultipartFileUpload.MIN_PART_SIZE;
+
+    /**
+     * A boundary is found on average every 2<sup>{@value}</sup> bytes after the minimum chunk size
+     */
+    static final int BOUNDARY_BITS = 22;
+
+    static final long MAX_CHUNK_SIZE = 32 * 1024 * 1024;
+
+    private static final int MAGIC = 0x41574d43;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final long[] GEAR = new long[256];
+
+    private static final Pattern UNIQUE_SNAPSHOT = Pattern.compile("-\\d{8}\\.\\d{6}-\\d+");
+
+    static {
+        Random random = new Random(0x41574d43L);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    private final String key;
+
+    private final String eTag;
+
+    private final List<Chunk> chunks;
+
+    ChunkManifest(String key, String eTag, List<Chunk> chunks) {
+        this.key = key;
+        this.eTag = eTag;
+        this.chunks = Collections.unmodifiableList(chunks);
+    }
+
+    /**
+     * Returns whether a resource is a SNAPSHOT artifact, which is deployed again by each build
+     *
+     * @param resourceName The name of the resource
+     * @return {@code true} if the resource is in a SNAPSHOT version's directory, otherwise {@code false}
+     */
+    static boolean isSnapshot(String resourceName) {
+        return resourceName.contains("-SNAPSHOT/");
+    }
+
+    /**
+     * Returns the name of the manifest of a resource. Every build of a SNAPSHOT artifact shares one manifest, whether
+     * its file name has a unique timestamp or not.
+     *
+     * @param resourceName The name of the resource
+     * @return The name of its manifest, relative to the repository's base directory
+     */
+    static String getManifestName(String resourceName) {
+        int slash = resourceName.lastIndexOf('/');
+        String fileName = UNIQUE_SNAPSHOT.matcher(resourceName.substring(slash + 1)).replaceFirst("-SNAPSHOT");
+        return MANIFEST_PREFIX + resourceName.substring(0, slash + 1) + fileName;
+    }
+
+    /**
+     * Splits a file into content-defined chunks
+     *
+     * @param key  The key the file is uploaded to
+     * @param file The file
+     * @return The manifest of the file, without an ETag
+     * @throws IOException if the file cannot be read
+     */
+    static ChunkManifest chunk(String key, File file) throws IOException {
+        return chunk(key, file, MIN_CHUNK_SIZE, BOUNDARY_BITS, MAX_CHUNK_SIZE);
+    }
+
+    static ChunkManifest chunk(String key, File file, long minChunkSize, int boundaryBits, long maxChunkSize)
+            throws IOException {
+        long mask = -1L << (64 - boundaryBits);
+        List<Chunk> chunks = new ArrayList<Chunk>();
+        MessageDigest digest = IoUtils.newMd5();
+
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long offset = 0;
+            long length = 0;
+            long hash = 0;
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                int start = 0;
+                for (int i = 0; i < read; i++) {
+                    length++;
+                    if (length < minChunkSize) {
+                        continue;
+                    }
+
+                    hash = (hash << 1) + GEAR[buffer[i] & 0xff];
+                    if ((hash & mask) == 0 || length >= maxChunkSize) {
+                        digest.update(buffer, start, i + 1 - start);
+                        chunks.add(new Chunk(offset, length, digest.digest()));
+                        start = i + 1;
+                        offset += length;
+                        length = 0;
+                        hash = 0;
+                    }
+                }
+                digest.update(buffer, start, read - start);
+            }
+            if (length > 0) {
+                chunks.add(new Chunk(offset, length, digest.digest()));
+            }
+        } finally {
+            IoUtils.closeQuietly(in);
+        }
+
+        return new ChunkManifest(key, null, chunks);
+    }
+
+    /**
+     * Reads a manifest written by {@link #write(OutputStream)}
+     *
+     * @param in The manifest
+     * @return The manifest
+     * @throws IOException if the manifest cannot be read or is not a manifest
+     */
+    static ChunkManifest read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a chunk manifest");
+        }
+
+        String key = data.readUTF();
+        String eTag = data.readUTF();
+        int count = data.readInt();
+        List<Chunk> chunks = new ArrayList<Chunk>(count);
+        long offset = 0;
+        for (int i = 0; i < count; i++) {
+            long length = data.readLong();
+            byte[] digest = new byte[16];
+            data.readFully(digest);
+            chunks.add(new Chunk(offset, length, digest));
+            offset += length;
+        }
+        return new ChunkManifest(key, eTag.isEmpty() ? null : eTag, chunks);
+    }
+
+    /**
+     * Writes the manifest
+     *
+     * @param out Where to write the manifest
+     * @throws IOException if the manifest cannot be written
+     */
+    void write(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeUTF(this.key);
+        data.writeUTF(this.eTag == null ? "" : this.eTag);
+        data.writeInt(this.chunks.size());
+        for (Chunk chunk : this.chunks) {
+            data.writeLong(chunk.length);
+            data.write(chunk.digest);
+        }
+        data.flush();
+    }
+
+    /**
+     * Returns the parts of a multipart upload of this manifest's file that copy the chunks it shares with a previous
+     * version from that version's object and read the others from the file. Adjacent parts from the same source are
+     * merged.
+     *
+     * @param previous The manifest of the previous version, or {@code null} if there is none
+     * @return The parts
+     */
+    List<MultipartFileUpload.Part> getParts(ChunkManifest previous) {
+        Map<String, Chunk> previousChunks = new HashMap<String, Chunk>();
+        if (previous != null) {
+            for (Chunk chunk : previous.chunks) {
+                previousChunks.put(chunk.getId(), chunk);
+            }
+        }
+
+        List<MultipartFileUpload.Part> parts = new ArrayList<MultipartFileUpload.Part>();
+        String sourceKey = null;
+        long offset = 0;
+        long length = 0;
+        for (Chunk chunk : this.chunks) {
+            Chunk unchanged = previousChunks.get(chunk.getId());
+            String chunkSourceKey = unchanged == null ? null : previous.key;
+            long chunkOffset = unchanged == null ? chunk.offset : unchanged.offset;
+
+            boolean adjacent = length > 0 && (chunkSourceKey == null ? sourceKey == null :
+                    chunkSourceKey.equals(sourceKey)) && offset + length == chunkOffset;
+            if (adjacent && length + chunk.length <= MultipartFileUpload.MAX_PART_SIZE) {
+                length += chunk.length;
+                continue;
+            }
+
+            if (length > 0) {
+                parts.add(new MultipartFileUpload.Part(sourceKey, offset, length));
+            }
+            sourceKey = chunkSourceKey;
+            offset = chunkOffset;
+            length = chunk.length;
+        }
+        if (length > 0) {
+            parts.add(new MultipartFileUpload.Part(sourceKey, offset, length));
+        }
+        return parts;
+    }
+
+    /**
+     * Returns a copy of the manifest for the object's ETag once it has been uploaded
+     *
+     * @param eTag The ETag of the object
+     * @return The copy
+     */
+    ChunkManifest withETag(String eTag) {
+        return new ChunkManifest(this.key, eTag, this.chunks);
+    }
+
+    String getKey() {
+        return this.key;
+    }
+
+    String getETag() {
+        return this.eTag;
+    }
+
+    List<Chunk> getChunks() {
+        return this.chunks;
+    }
+
+    static final class Chunk {
+
+        private final long offset;
+
+        private final long length;
+
+        private final byte[] digest;
+
+        Chunk(long offset, long length, byte[] digest) {
+            this.offset = offset;
+            this.length = length;
+            this.digest = digest;
+        }
+
+        long getOffset() {
+            return this.offset;
+        }
+
+        long getLength() {
+            return this.length;
+        }
+
+        private String getId() {
+            return IoUtils.hex(this.digest) + ":" + this.length;
+        }
+    }
+}
@@ -0,0 +1,322 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import org.apache.maven.wagon.Wagon;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * The settings of the HTTP client that a transport talks to S3 with. Each wagon holds its own settings, which Maven
+ * sets from the <code>&lt;configuration&gt;</code> of the repository's server in <code>settings.xml</code>, and which
+ * are overridden by system properties: <code>aws-maven.&lt;name&gt;</code> for every repository and
+ * <code>aws-maven.&lt;repository id&gt;.&lt;name&gt;</code> for one.
+ * <p/>
+ * The defaults favour many parallel transfers over a fast network: a larger connection pool than the SDK's and socket
+ * buffers large enough to keep a high bandwidth-delay path full. The first byte, idle and total timeouts are enforced
+ * for each request by {@link Deadline}, independently of the client.
+ */
+final class ClientSettings {
+
+    static final String PROPERTY_PREFIX = "aws-maven.";
+
+    static final int DEFAULT_MAX_CONNECTIONS = 64;
+
+    static final int DEFAULT_MAX_ERROR_RETRY = 3;
+
+    static final int DEFAULT_SOCKET_BUFFER_SIZE = 1024 * 1024;
+
+    static final long DEFAULT_FIRST_BYTE_TIMEOUT = 120 * 1000;
+
+    static final long DEFAULT_IDLE_TIMEOUT = 60 * 1000;
+
+    static final String HTTPS = "https";
+
+    static final String HTTP = "http";
+
+    private static final Set<String> SIGNERS = new HashSet<String>(Arrays.asList("S3SignerType",
+            "AWSS3V4SignerType"));
+
+    private volatile int connectionTimeout = Wagon.DEFAULT_CONNECTION_TIMEOUT;
+
+    private volatile int socketTimeout = Wagon.DEFAULT_READ_TIMEOUT;
+
+    private volatile int maxConnections = DEFAULT_MAX_CONNECTIONS;
+
+    private volatile int maxErrorRetry = DEFAULT_MAX_ERROR_RETRY;
+
+    private volatile int socketSendBufferSize = DEFAULT_SOCKET_BUFFER_SIZE;
+
+    private volatile int socketReceiveBufferSize = DEFAULT_SOCKET_BUFFER_SIZE;
+
+    private volatile boolean keepAlive = true;
+
+    private volatile String protocol = HTTPS;
+
+    private volatile String signer;
+
+    private volatile long firstByteTimeout = DEFAULT_FIRST_BYTE_TIMEOUT;
+
+    private volatile long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+
+    private volatile long totalTimeout = 0;
+
+    ClientSettings() {
+    }
+
+    private ClientSettings(ClientSettings settings) {
+        this.connectionTimeout = settings.connectionTimeout;
+        this.socketTimeout = settings.socketTimeout;
+        this.maxConnections = settings.maxConnections;
+        this.maxErrorRetry = settings.maxErrorRetry;
+        this.socketSendBufferSize = settings.socketSendBufferSize;
+        this.socketReceiveBufferSize = settings.socketReceiveBufferSize;
+        this.keepAlive = settings.keepAlive;
+        this.protocol = settings.protocol;
+        this.signer = settings.signer;
+        this.firstByteTimeout = settings.firstByteTimeout;
+        this.idleTimeout = settings.idleTimeout;
+        this.totalTimeout = settings.totalTimeout;
+    }
+
+    /**
+     * Returns a copy of these settings with the wagon's timeouts, overridden by any system properties for the
+     * repository
+     *
+     * @param connectionTimeout The wagon's connection timeout in milliseconds
+     * @param socketTimeout The wagon's read timeout in milliseconds
+     * @param properties The system properties
+     * @param repositoryId The id of the repository, or {@code null} if it has none
+     * @return The resolved settings
+     * @throws IllegalArgumentException if a timeout or property is not valid
+     */
+    ClientSettings resolve(int connectionTimeout, int socketTimeout, Properties properties, String repositoryId) {
+        ClientSettings settings = new ClientSettings(this);
+        settings.setConnectionTimeout(connectionTimeout);
+        settings.setSocketTimeout(socketTimeout);
+
+        settings.apply(properties, PROPERTY_PREFIX);
+        if (repositoryId != null && !repositoryId.isEmpty()) {
+            settings.apply(properties, PROPERTY_PREFIX + repositoryId + ".");
+        }
+        return settings;
+    }
+
+    private void apply(Properties properties, String prefix) {
+        for (String name : new String[]{"connectionTimeout", "socketTimeout", "maxConnections", "maxErrorRetry",
+                "socketSendBufferSize", "socketReceiveBufferSize", "keepAlive", "protocol", "signer", "firstByteTimeout",
+                "idleTimeout", "totalTimeout"}) {
+            String value = properties.getProperty(prefix + name);
+            if (value != null) {
+                set(name, value.trim());
+            }
+        }
+    }
+
+    private void set(String name, String value) {
+        switch (name) {
+            case "connectionTimeout":
+                setConnectionTimeout(toInt(name, value));
+                break;
+            case "socketTimeout":
+                setSocketTimeout(toInt(name, value));
+                break;
+            case "maxConnections":
+                setMaxConnections(toInt(name, value));
+                break;
+            case "maxErrorRetry":
+                setMaxErrorRetry(toInt(name, value));
+                break;
+            case "socketSendBufferSize":
+                setSocketSendBufferSize(toInt(name, value));
+                break;
+            case "socketReceiveBufferSize":
+                setSocketReceiveBufferSize(toInt(name, value));
+                break;
+            case "keepAlive":
+                setKeepAlive(Boolean.parseBoolean(value));
+                break;
+            case "protocol":
+                setProtocol(value);
+                break;
+            case "firstByteTimeout":
+                setFirstByteTimeout(toInt(name, value));
+                break;
+            case "idleTimeout":
+                setIdleTimeout(toInt(name, value));
+                break;
+            case "totalTimeout":
+                setTotalTimeout(toInt(name, value));
+                break;
+            default:
+                setSigner(value.isEmpty() ? null : value);
+        }
+    }
+
+    private static int toInt(String name, String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(String.format("%s must be a number, not '%s'", name, value), e);
+        }
+    }
+
+    int getConnectionTimeout() {
+        return this.connectionTimeout;
+    }
+
+    void setConnectionTimeout(int connectionTimeout) {
+        if (connectionTimeout < 0) {
+            throw new IllegalArgumentException("connectionTimeout must not be negative");
+        }
+        this.connectionTimeout = connectionTimeout;
+    }
+
+    int getSocketTimeout() {
+        return this.socketTimeout;
+    }
+
+    void setSocketTimeout(int socketTimeout) {
+        if (socketTimeout < 0) {
+            throw new IllegalArgumentException("socketTimeout must not be negative");
+        }
+        this.socketTimeout = socketTimeout;
+    }
+
+    int getMaxConnections() {
+        return this.maxConnections;
+    }
+
+    void setMaxConnections(int maxConnections) {
+        if (maxConnections < 1) {
+            throw new IllegalArgumentException("maxConnections must be at least 1");
+        }
+        this.maxConnections = maxConnections;
+    }
+
+    int getMaxErrorRetry() {
+        return this.maxErrorRetry;
+    }
+
+    void setMaxErrorRetry(int maxErrorRetry) {
+        if (maxErrorRetry < 0) {
+            throw new IllegalArgumentException("maxErrorRetry must not be negative");
+        }
+        this.maxErrorRetry = maxErrorRetry;
+    }
+
+    int getSocketSendBufferSize() {
+        return this.socketSendBufferSize;
+    }
+
+    void setSocketSendBufferSize(int socketSendBufferSize) {
+        if (socketSendBufferSize < 0) {
+            throw new IllegalArgumentException("socketSendBufferSize must not be negative");
+        }
+        this.socketSendBufferSize = socketSendBufferSize;
+    }
+
+    int getSocketReceiveBufferSize() {
+        return this.socketReceiveBufferSize;
+    }
+
+    void setSocketReceiveBufferSize(int socketReceiveBufferSize) {
+        if (socketReceiveBufferSize < 0) {
+            throw new IllegalArgumentException("socketReceiveBufferSize must not be negative");
+        }
+        this.socketReceiveBufferSize = socketReceiveBufferSize;
+    }
+
+    boolean isKeepAlive() {
+        return this.keepAlive;
+    }
+
+    void setKeepAlive(boolean keepAlive) {
+        this.keepAlive = keepAlive;
+    }
+
+    String getProtocol() {
+        return this.protocol;
+    }
+
+    void setProtocol(String protocol) {
+        String candidate = protocol == null ? null : protocol.toLowerCase(Locale.ENGLISH);
+        if (!HTTPS.equals(candidate) && !HTTP.equals(candidate)) {
+            throw new IllegalArgumentException(String.format("protocol must be 'https' or 'http', not '%s'",
+                    protocol));
+        }
+        this.protocol = candidate;
+    }
+
+    String getSigner() {
+        return this.signer;
+    }
+
+    void setSigner(String signer) {
+        if (signer != null && !SIGNERS.contains(signer)) {
+            throw new IllegalArgumentException(String.format("signer must be one of %s, not '%s'", SIGNERS, signer));
+        }
+        this.signer = signer;
+    }
+
+    long getFirstByteTimeout() {
+        return this.firstByteTimeout;
+    }
+
+    void setFirstByteTimeout(long firstByteTimeout) {
+        if (firstByteTimeout < 0) {
+            throw new IllegalArgumentException("firstByteTimeout must not be negative");
+        }
+        this.firstByteTimeout = firstByteTimeout;
+    }
+
+    long getIdleTimeout() {
+        return this.idleTimeout;
+    }
+
+    void setIdleTimeout(long idleTimeout) {
+        if (idleTimeout < 0) {
+            throw new IllegalArgumentException("idleTimeout must not be negative");
+        }
+        this.idleTimeout = idleTimeout;
+    }
+
+    long getTotalTimeout() {
+        return this.totalTimeout;
+    }
+
+    void setTotalTimeout(long totalTimeout) {
+        if (totalTimeout < 0) {
+            throw new IllegalArgumentException("totalTimeout must not be negative");
+        }
+        this.totalTimeout = totalTimeout;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ClientSettings [connectionTimeout=%d, socketTimeout=%d, maxConnections=%d, " +
+                        "maxErrorRetry=%d, socketSendBufferSize=%d, socketReceiveBufferSize=%d, keepAlive=%s, " +
+                        "protocol=%s, signer=%s, firstByteTimeout=%d, idleTimeout=%d, totalTimeout=%d]",
+                this.connectionTimeout, this.socketTimeout, this.maxConnections, this.maxErrorRetry,
+                this.socketSendBufferSize, this.socketReceiveBufferSize, this.keepAlive, this.protocol, this.signer,
+                this.firstByteTimeout, this.idleTimeout, this.totalTimeout);
+    }
+}
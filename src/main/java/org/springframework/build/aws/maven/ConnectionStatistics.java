@@ -0,0 +1,82 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+/**
+ * How the connections that object content was read from have been handled since the wagon was created. Every
+ * aborted connection has to be replaced by a new one, with a new TCP and TLS handshake, the next time the pool runs
+ * short.
+ */
+public final class ConnectionStatistics {
+
+    private final long leased;
+
+    private final long returned;
+
+    private final long drained;
+
+    private final long aborted;
+
+    ConnectionStatistics(long leased, long returned, long drained, long aborted) {
+        this.leased = leased;
+        this.returned = returned;
+        this.drained = drained;
+        this.aborted = aborted;
+    }
+
+    /**
+     * Returns the number of connections currently held by content that is being read
+     *
+     * @return The number of connections in use
+     */
+    public long getLeased() {
+        return this.leased;
+    }
+
+    /**
+     * Returns the number of connections returned for reuse after their content was read to the end
+     *
+     * @return The number of connections returned
+     */
+    public long getReturned() {
+        return this.returned;
+    }
+
+    /**
+     * Returns the number of connections returned for reuse after the rest of their content was drained
+     *
+     * @return The number of connections drained
+     */
+    public long getDrained() {
+        return this.drained;
+    }
+
+    /**
+     * Returns the number of connections closed because too much of their content was left unread
+     *
+     * @return The number of connections aborted
+     */
+    public long getAborted() {
+        return this.aborted;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d leased, %d returned, %d drained, %d aborted", this.leased, this.returned,
+                this.drained, this.aborted);
+    }
+}
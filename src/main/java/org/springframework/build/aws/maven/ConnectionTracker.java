@@ -0,0 +1,53 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts what happens to the connections that object content is read from
+ */
+final class ConnectionTracker {
+
+    private final AtomicLong leased = new AtomicLong();
+
+    private final AtomicLong returned = new AtomicLong();
+
+    private final AtomicLong drained = new AtomicLong();
+
+    private final AtomicLong aborted = new AtomicLong();
+
+    void leased() {
+        this.leased.incrementAndGet();
+    }
+
+    void released(ObjectContent.Release release) {
+        this.leased.decrementAndGet();
+        if (release == ObjectContent.Release.RETURNED) {
+            this.returned.incrementAndGet();
+        } else if (release == ObjectContent.Release.DRAINED) {
+            this.drained.incrementAndGet();
+        } else {
+            this.aborted.incrementAndGet();
+        }
+    }
+
+    ConnectionStatistics getStatistics() {
+        return new ConnectionStatistics(this.leased.get(), this.returned.get(), this.drained.get(),
+                this.aborted.get());
+    }
+}
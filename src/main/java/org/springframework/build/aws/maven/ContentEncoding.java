@@ -0,0 +1,114 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Encodes and decodes the content of objects stored with a {@code Content-Encoding}
+ */
+final class ContentEncoding {
+
+    static final String GZIP = "gzip";
+
+    /**
+     * The user metadata recording the length of the decoded content of an encoded object, whose own length is that of
+     * the encoded content
+     */
+    static final String DECODED_LENGTH = "decoded-content-length";
+
+    /**
+     * The user metadata recording the MD5 of the decoded content of an encoded object, whose ETag is the MD5 of the
+     * encoded content
+     */
+    static final String DECODED_MD5 = "decoded-content-md5";
+
+    private static final String IDENTITY = "identity";
+
+    private ContentEncoding() {
+    }
+
+    /**
+     * Wraps a stream of content stored with an encoding so that it reads the decoded content
+     *
+     * @param contentEncoding The encoding, or {@code null} if the content is stored as is
+     * @param in The stream of stored content
+     * @return A stream of the decoded content
+     * @throws IOException if the encoding is not supported or the content is not in it
+     */
+    static InputStream decode(String contentEncoding, InputStream in) throws IOException {
+        if (contentEncoding == null || contentEncoding.isEmpty() || IDENTITY.equalsIgnoreCase(contentEncoding)) {
+            return in;
+        }
+        if (GZIP.equals(contentEncoding.toLowerCase(Locale.ENGLISH))) {
+            return new GZIPInputStream(in);
+        }
+        throw new IOException(String.format("Unsupported content encoding '%s'", contentEncoding));
+    }
+
+    /**
+     * Returns the length of an object's decoded content
+     *
+     * @param objectInfo The object
+     * @return The length, or {@code -1} if the object is encoded and its decoded length was not recorded
+     */
+    static long getDecodedLength(ObjectInfo objectInfo) {
+        if (objectInfo.getContentEncoding() == null) {
+            return objectInfo.getContentLength();
+        }
+        try {
+            return Long.parseLong(objectInfo.getMetadata().get(DECODED_LENGTH));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the MD5 of an object's decoded content
+     *
+     * @param objectInfo The object
+     * @return The MD5, or {@code null} if it is not known. The ETag of an object uploaded as multipart, which is not
+     * an MD5, is returned as is.
+     */
+    static String getDecodedMd5(ObjectInfo objectInfo) {
+        return objectInfo.getContentEncoding() == null ? objectInfo.getETag() :
+                objectInfo.getMetadata().get(DECODED_MD5);
+    }
+
+    /**
+     * Compresses content with gzip
+     *
+     * @param content The content
+     * @return The compressed content
+     */
+    static byte[] gzip(byte[] content) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(content.length / 4 + 64);
+        try {
+            GZIPOutputStream out = new GZIPOutputStream(bytes);
+            out.write(content);
+            out.close();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot compress in memory", e);
+        }
+        return bytes.toByteArray();
+    }
+}
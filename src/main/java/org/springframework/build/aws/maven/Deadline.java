@@ -0,0 +1,247 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The deadlines of a single request and what to do when one of them passes. A request is cancelled when it has not
+ * made any progress within the first byte timeout, when it has made no further progress within the idle timeout,
+ * when it has taken longer than the total timeout, or when the thread that made it is interrupted. A timeout of
+ * {@code 0} is never reached.
+ * <p/>
+ * Cancelling a request runs the abort action that the transport registered with {@link #onCancel(Runnable)}, such as
+ * closing its connection, so that a thread blocked reading from or writing to the socket is released and the
+ * connection's slot in the pool is freed. Deadlines are checked by a single daemon thread every
+ * {@value #TICK_MILLIS} milliseconds.
+ * <p/>
+ * The deadline of the request being made is bound to the thread making it, so that transports can find it with
+ * {@link #current()} without it being passed through every call.
+ */
+final class Deadline {
+
+    static final long TICK_MILLIS = 100;
+
+    private static final Set<Deadline> ACTIVE = Collections.newSetFromMap(new ConcurrentHashMap<Deadline, Boolean>());
+
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<Deadline>();
+
+    private static ScheduledExecutorService watchdog;
+
+    private final String description;
+
+    private final Thread thread;
+
+    private final long firstByteTimeout;
+
+    private final long idleTimeout;
+
+    private final long totalTimeout;
+
+    private final long start;
+
+    private final Deadline previous;
+
+    private volatile long lastProgress = -1;
+
+    private volatile Runnable abort;
+
+    private volatile String cancelled;
+
+    private Deadline(String description, ClientSettings clientSettings) {
+        this.description = description;
+        this.thread = Thread.currentThread();
+        this.firstByteTimeout = clientSettings.getFirstByteTimeout();
+        this.idleTimeout = clientSettings.getIdleTimeout();
+        this.totalTimeout = clientSettings.getTotalTimeout();
+        this.start = System.nanoTime();
+        this.previous = CURRENT.get();
+    }
+
+    /**
+     * Starts the deadlines of a request and binds them to the current thread
+     *
+     * @param description    What the request is, for the message of the exception it fails with if it is cancelled
+     * @param clientSettings The settings holding the timeouts
+     * @return The deadline
+     * @throws InterruptedIOException if the current thread has already been interrupted
+     */
+    static Deadline start(String description, ClientSettings clientSettings) throws InterruptedIOException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException(String.format("%s was interrupted before it started", description));
+        }
+
+        Deadline deadline = new Deadline(description, clientSettings);
+        CURRENT.set(deadline);
+        ACTIVE.add(deadline);
+        ensureWatchdog();
+        return deadline;
+    }
+
+    /**
+     * Returns the deadline of the request being made by the current thread
+     *
+     * @return The deadline, or {@code null} if there is none
+     */
+    static Deadline current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Sets what to do to abort the request if it is cancelled, replacing any earlier action. If the request has
+     * already been cancelled, the action is run immediately.
+     *
+     * @param abort The abort action
+     */
+    void onCancel(Runnable abort) {
+        this.abort = abort;
+        if (this.cancelled != null) {
+            abort.run();
+        }
+    }
+
+    /**
+     * Records that the request has sent or received some bytes
+     */
+    void progress() {
+        this.lastProgress = System.nanoTime();
+    }
+
+    /**
+     * Unbinds the deadline from the current thread, leaving it active for the content of a response that is still to
+     * be read
+     */
+    void detach() {
+        if (CURRENT.get() == this) {
+            if (this.previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(this.previous);
+            }
+        }
+    }
+
+    /**
+     * Finishes with the deadline so that the request can no longer be cancelled
+     */
+    void end() {
+        detach();
+        ACTIVE.remove(this);
+    }
+
+    boolean isCancelled() {
+        return this.cancelled != null;
+    }
+
+    /**
+     * Throws the exception to fail the request with if it has been cancelled
+     *
+     * @throws InterruptedIOException if the request has been cancelled
+     */
+    void check() throws InterruptedIOException {
+        if (this.cancelled != null) {
+            throw new InterruptedIOException(this.cancelled);
+        }
+    }
+
+    /**
+     * Returns the exception to fail the request with if it has been cancelled, otherwise the exception it failed with
+     *
+     * @param e The exception the request failed with
+     * @return The exception to throw
+     */
+    IOException translate(IOException e) {
+        if (this.cancelled == null) {
+            return e;
+        }
+
+        InterruptedIOException exception = new InterruptedIOException(this.cancelled);
+        exception.initCause(e);
+        return exception;
+    }
+
+    private void tick(long now) {
+        String reason = null;
+        if (this.thread.isInterrupted()) {
+            reason = "was interrupted";
+        } else if (this.totalTimeout > 0 && elapsed(this.start, now) >= this.totalTimeout) {
+            reason = String.format("did not finish within %d ms", this.totalTimeout);
+        } else if (this.lastProgress == -1 && this.firstByteTimeout > 0
+                && elapsed(this.start, now) >= this.firstByteTimeout) {
+            reason = String.format("made no progress within %d ms", this.firstByteTimeout);
+        } else if (this.lastProgress != -1 && this.idleTimeout > 0
+                && elapsed(this.lastProgress, now) >= this.idleTimeout) {
+            reason = String.format("made no progress for %d ms", this.idleTimeout);
+        }
+
+        if (reason != null) {
+            cancel(String.format("%s %s", this.description, reason));
+        }
+    }
+
+    private void cancel(String reason) {
+        ACTIVE.remove(this);
+        this.cancelled = reason;
+
+        Runnable candidate = this.abort;
+        if (candidate != null) {
+            try {
+                candidate.run();
+            } catch (RuntimeException e) {
+                // the request fails either way
+            }
+        }
+    }
+
+    private static long elapsed(long from, long now) {
+        return TimeUnit.NANOSECONDS.toMillis(now - from);
+    }
+
+    private static synchronized void ensureWatchdog() {
+        if (watchdog != null) {
+            return;
+        }
+
+        watchdog = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "aws-maven-deadlines");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        watchdog.scheduleWithFixedDelay(new Runnable() {
+
+            @Override
+            public void run() {
+                long now = System.nanoTime();
+                for (Deadline deadline : ACTIVE) {
+                    deadline.tick(now);
+                }
+            }
+        }, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+}
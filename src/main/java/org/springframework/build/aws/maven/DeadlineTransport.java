@@ -0,0 +1,303 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * A {@link Transport} that gives every request a {@link Deadline}, records the progress of the content it sends and
+ * receives against it, and fails a cancelled request with an {@link java.io.InterruptedIOException}. The deadline of
+ * a get lasts until its content has been released, and cancelling it aborts the content.
+ * <p/>
+ * Requests that the delegate is blocked in before any content is exchanged can only be cancelled if the delegate
+ * registers an abort action with {@link Deadline#current()}; the content of puts is always checked between reads.
+ */
+final class DeadlineTransport implements Transport {
+
+    private final Transport delegate;
+
+    private final ClientSettings clientSettings;
+
+    DeadlineTransport(Transport delegate, ClientSettings clientSettings) {
+        this.delegate = delegate;
+        this.clientSettings = clientSettings;
+    }
+
+    @Override
+    public ObjectInfo head(String key) throws IOException {
+        Deadline deadline = Deadline.start(String.format("HEAD '%s'", key), this.clientSettings);
+        try {
+            return this.delegate.head(key);
+        } catch (IOException e) {
+            throw deadline.translate(e);
+        } finally {
+            deadline.end();
+        }
+    }
+
+    @Override
+    public ObjectContent get(String key) throws IOException {
+        Deadline deadline = Deadline.start(String.format("GET '%s'", key), this.clientSettings);
+        try {
+            return withDeadline(deadline, this.delegate.get(key));
+        } catch (IOException e) {
+            deadline.end();
+            throw deadline.translate(e);
+        }
+    }
+
+    @Override
+    public ObjectContent get(String key, long firstByte, long lastByte) throws IOException {
+        Deadline deadline = Deadline.start(String.format("GET '%s' bytes %d-%d", key, firstByte, lastByte),
+                this.clientSettings);
+        try {
+            return withDeadline(deadline, this.delegate.get(key, firstByte, lastByte));
+        } catch (IOException e) {
+            deadline.end();
+            throw deadline.translate(e);
+        }
+    }
+
+    @Override
+    public ObjectContent getIfChanged(String key, String eTag) throws IOException {
+        Deadline deadline = Deadline.start(String.format("GET '%s' if not '%s'", key, eTag), this.clientSettings);
+        ObjectContent objectContent;
+        try {
+            objectContent = this.delegate.getIfChanged(key, eTag);
+        } catch (IOException e) {
+            deadline.end();
+            throw deadline.translate(e);
+        }
+
+        if (objectContent == null) {
+            deadline.end();
+            return null;
+        }
+        return withDeadline(deadline, objectContent);
+    }
+
+    /**
+     * Keeps a get's deadline until its content is closed or aborted
+     */
+    private static ObjectContent withDeadline(final Deadline deadline, final ObjectContent objectContent) {
+        deadline.detach();
+        deadline.progress();
+        deadline.onCancel(new Runnable() {
+
+            @Override
+            public void run() {
+                objectContent.abort();
+            }
+        });
+
+        return new ObjectContent(objectContent.getObjectInfo(), new DeadlineInputStream(
+                objectContent.getInputStream(), deadline, true)) {
+
+            @Override
+            void abort() {
+                try {
+                    objectContent.abort();
+                } finally {
+                    deadline.end();
+                }
+            }
+        };
+    }
+
+    @Override
+    public void put(ObjectInfo metadata, InputStream in, boolean publicRead) throws IOException {
+        Deadline deadline = Deadline.start(String.format("PUT '%s'", metadata.getKey()), this.clientSettings);
+        try {
+            this.delegate.put(metadata, new DeadlineInputStream(in, deadline, false), publicRead);
+        } catch (IOException e) {
+            throw deadline.translate(e);
+        } finally {
+            deadline.end();
+        }
+    }
+
+    @Override
+    public ListingPage list(String prefix, String delimiter, String marker) throws IOException {
+        Deadline deadline = Deadline.start(String.format("LIST '%s'", prefix), this.clientSettings);
+        try {
+            return this.delegate.list(prefix, delimiter, marker);
+        } catch (IOException e) {
+            throw deadline.translate(e);
+        } finally {
+            deadline.end();
+        }
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Deadline deadline = Deadline.start(String.format("DELETE '%s'", key), this.clientSettings);
+        try {
+            this.delegate.delete(key);
+        } catch (IOException e) {
+            throw deadline.translate(e);
+        } finally {
+            deadline.end();
+        }
+    }
+
+    @Override
+    public void delete(List<String> keys) throws IOException {
+        Deadline deadline = Deadline.start(String.format("DELETE %d keys", keys.size()), this.clientSettings);
+        try {
+            this.delegate.delete(keys);
+        } catch (IOException e) {
+            throw deadline.translate(e);
+        } finally {
+            deadline.end();
+        }
+    }
+
+    @Override
+    public void copy(String sourceBucketName, String sourceKey, String destinationKey, boolean publicRead)
+            throws IOException {
+        Deadline deadline = Deadline.start(String.format("COPY '%s'", destinationKey), this.clientSettings);
+        try {
+            this.delegate.copy(sourceBucketName, sourceKey, destinationKey, publicRead);
+        } catch (IOException e) {
+            throw deadline.translate(e);
+        } finally {
+            deadline.end();
+        }
+    }
+
+    @Override
+    public String initiateMultipartUpload(ObjectInfo metadata, boolean publicRead) throws IOException {
+        Deadline deadline = Deadline.start(String.format("INITIATE UPLOAD '%s'", metadata.getKey()),
+                this.clientSettings);
+        try {
+            return this.delegate.initiateMultipartUpload(metadata, publicRead);
+        } catch (IOException e) {
+            throw deadline.translate(e);
+        } finally {
+            deadline.end();
+        }
+    }
+
+    @Override
+    public String uploadPart(String key, String uploadId, int partNumber, InputStream in, long length)
+            throws IOException {
+        Deadline deadline = Deadline.start(String.format("UPLOAD PART %d of '%s'", partNumber, key),
+                this.clientSettings);
+        try {
+            return this.delegate.uploadPart(key, uploadId, partNumber, new DeadlineInputStream(in, deadline, false),
+                    length);
+        } catch (IOException e) {
+            throw deadline.translate(e);
+        } finally {
+            deadline.end();
+        }
+    }
+
+    @Override
+    public String copyPart(String destinationKey, String uploadId, int partNumber, String sourceBucketName,
+                           String sourceKey, long firstByte, long lastByte) throws IOException {
+        Deadline deadline = Deadline.start(String.format("COPY PART %d of '%s'", partNumber, destinationKey),
+                this.clientSettings);
+        try {
+            return this.delegate.copyPart(destinationKey, uploadId, partNumber, sourceBucketName, sourceKey,
+                    firstByte, lastByte);
+        } catch (IOException e) {
+            throw deadline.translate(e);
+        } finally {
+            deadline.end();
+        }
+    }
+
+    @Override
+    public void completeMultipartUpload(String key, String uploadId, List<String> partETags) throws IOException {
+        Deadline deadline = Deadline.start(String.format("COMPLETE UPLOAD '%s'", key), this.clientSettings);
+        try {
+            this.delegate.completeMultipartUpload(key, uploadId, partETags);
+        } catch (IOException e) {
+            throw deadline.translate(e);
+        } finally {
+            deadline.end();
+        }
+    }
+
+    @Override
+    public void abortMultipartUpload(String key, String uploadId) throws IOException {
+        Deadline deadline = Deadline.start(String.format("ABORT UPLOAD '%s'", key), this.clientSettings);
+        try {
+            this.delegate.abortMultipartUpload(key, uploadId);
+        } catch (IOException e) {
+            throw deadline.translate(e);
+        } finally {
+            deadline.end();
+        }
+    }
+
+    /**
+     * Records each read as progress, and fails reads once the request has been cancelled. Marking and resetting are
+     * passed through so that the client can still retry a put.
+     */
+    private static final class DeadlineInputStream extends FilterInputStream {
+
+        private final Deadline deadline;
+
+        private final boolean endOnClose;
+
+        private DeadlineInputStream(InputStream in, Deadline deadline, boolean endOnClose) {
+            super(in);
+            this.deadline = deadline;
+            this.endOnClose = endOnClose;
+        }
+
+        @Override
+        public int read() throws IOException {
+            this.deadline.check();
+            try {
+                int b = super.read();
+                this.deadline.progress();
+                return b;
+            } catch (IOException e) {
+                throw this.deadline.translate(e);
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            this.deadline.check();
+            try {
+                int read = super.read(b, off, len);
+                this.deadline.progress();
+                return read;
+            } catch (IOException e) {
+                throw this.deadline.translate(e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                if (this.endOnClose) {
+                    this.deadline.end();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import org.apache.maven.wagon.ResourceDoesNotExistException;
+import org.apache.maven.wagon.TransferFailedException;
+import org.apache.maven.wagon.authorization.AuthorizationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Puts a local directory to a directory of a repository, putting only the files that are new or whose size or MD5
+ * differs from the object with the same key, smallest first. Objects below the directory that have no local file can
+ * optionally be deleted, apart from the wagon's own state.
+ */
+final class DeltaSync {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final Transport transport;
+
+    private final String baseDirectory;
+
+    private final KeyIndex keyIndex;
+
+    private final boolean deleteOrphans;
+
+    private final Target target;
+
+    DeltaSync(Transport transport, String baseDirectory, KeyIndex keyIndex, boolean deleteOrphans, Target target) {
+        this.transport = transport;
+        this.baseDirectory = baseDirectory;
+        this.keyIndex = keyIndex;
+        this.deleteOrphans = deleteOrphans;
+        this.target = target;
+    }
+
+    /**
+     * Puts the changed files of a local directory to a directory of the repository
+     *
+     * @param sourceDirectory      The local directory
+     * @param destinationDirectory The directory of the repository, relative to its base directory
+     * @return The number of files put
+     * @throws TransferFailedException       if the directory cannot be listed, a file cannot be put or an orphan
+     *                                       cannot be deleted
+     * @throws ResourceDoesNotExistException if a file cannot be put
+     * @throws AuthorizationException        if a file cannot be put
+     */
+    int sync(File sourceDirectory, String destinationDirectory) throws TransferFailedException,
+            ResourceDoesNotExistException, AuthorizationException {
+        String directory = getDirectory(destinationDirectory);
+        String prefix = getKey(directory);
+
+        Map<String, File> files = new LinkedHashMap<String, File>();
+        collectFiles(sourceDirectory, directory, files);
+
+        Map<String, ObjectInfo> remote = new LinkedHashMap<String, ObjectInfo>();
+        try {
+            String marker = null;
+            do {
+                ListingPage listingPage = this.transport.list(prefix, null, marker);
+                for (ObjectInfo objectInfo : listingPage.getObjects()) {
+                    remote.put(objectInfo.getKey(), objectInfo);
+                }
+                marker = listingPage.getNextMarker();
+            } while (marker != null);
+        } catch (IOException e) {
+            throw new TransferFailedException(String.format("Cannot list '%s'", destinationDirectory), e);
+        }
+
+        List<Map.Entry<String, File>> changed = new ArrayList<Map.Entry<String, File>>();
+        for (Map.Entry<String, File> entry : files.entrySet()) {
+            String key = getKey(entry.getKey());
+            ObjectInfo objectInfo = remote.remove(key);
+            if (objectInfo != null && objectInfo.getContentEncoding() == null
+                    && this.target.isCompressed(entry.getKey(), entry.getValue())
+                    && !isUnchanged(entry.getValue(), objectInfo)) {
+                // listings do not say whether an object is encoded, and an encoded object's size and ETag are
+                // those of the encoded content, so the object's metadata has the decoded ones
+                objectInfo = head(key);
+            }
+            if (!isUnchanged(entry.getValue(), objectInfo)) {
+                changed.add(entry);
+            }
+        }
+
+        Collections.sort(changed, new Comparator<Map.Entry<String, File>>() {
+
+            @Override
+            public int compare(Map.Entry<String, File> entry1, Map.Entry<String, File> entry2) {
+                return TransferScheduler.PUT_ORDER.compare(entry1.getValue(), entry2.getValue());
+            }
+        });
+        for (Map.Entry<String, File> entry : changed) {
+            this.target.put(entry.getValue(), entry.getKey());
+        }
+
+        List<String> orphans = new ArrayList<String>();
+        if (this.deleteOrphans) {
+            // the key index, key filter and chunk manifests are the wagon's own, not orphans
+            String statePrefix = getKey(SimpleStorageServiceWagon.STATE_PREFIX);
+            for (String key : remote.keySet()) {
+                if (!key.endsWith("/") && !key.startsWith(statePrefix)) {
+                    orphans.add(key);
+                }
+            }
+            deleteAll(orphans, destinationDirectory);
+
+            if (this.keyIndex != null) {
+                for (String orphan : orphans) {
+                    this.keyIndex.remove(orphan);
+                }
+            }
+        }
+
+        this.logger.info("Put {} of {} files to '{}'{}", changed.size(), files.size(), destinationDirectory,
+                this.deleteOrphans ? String.format(" and deleted %d orphans", orphans.size()) : "");
+        return changed.size();
+    }
+
+    /**
+     * Returns whether a file has the size and MD5 of an object, or for an encoded object the size and MD5 of its
+     * decoded content that were recorded in its metadata when it was put
+     *
+     * @param file       The file
+     * @param objectInfo The object, or {@code null} if there is none
+     * @return {@code true} if the file has the object's content, otherwise {@code false}
+     * @throws TransferFailedException if the file cannot be read
+     */
+    static boolean isUnchanged(File file, ObjectInfo objectInfo) throws TransferFailedException {
+        if (objectInfo == null) {
+            return false;
+        }
+
+        String md5 = ContentEncoding.getDecodedMd5(objectInfo);
+        if (ContentEncoding.getDecodedLength(objectInfo) != file.length() || md5 == null || md5.contains("-")) {
+            return false;
+        }
+
+        try {
+            return md5.equals(DigestCache.md5Hex(file));
+        } catch (IOException e) {
+            throw new TransferFailedException(String.format("Cannot read file from '%s'", file), e);
+        }
+    }
+
+    private String getKey(String resourceName) {
+        return this.baseDirectory.isEmpty() ? resourceName : this.baseDirectory.concat(resourceName);
+    }
+
+    private ObjectInfo head(String key) throws TransferFailedException {
+        try {
+            return this.target.head(key);
+        } catch (IOException e) {
+            throw new TransferFailedException(String.format("Cannot read metadata of '%s'", key), e);
+        }
+    }
+
+    private void deleteAll(List<String> keys, String destinationDirectory) throws TransferFailedException {
+        try {
+            for (int i = 0; i < keys.size(); i += Transport.MAX_DELETE_KEYS) {
+                this.transport.delete(keys.subList(i, Math.min(keys.size(), i + Transport.MAX_DELETE_KEYS)));
+            }
+        } catch (IOException e) {
+            throw new TransferFailedException(String.format("Cannot delete orphans from '%s'", destinationDirectory),
+                    e);
+        }
+    }
+
+    private static String getDirectory(String destinationDirectory) {
+        String directory = destinationDirectory;
+        while (directory.startsWith("./")) {
+            directory = directory.substring(2);
+        }
+        if (".".equals(directory)) {
+            directory = "";
+        }
+        return directory.isEmpty() || directory.endsWith("/") ? directory : directory + "/";
+    }
+
+    private static void collectFiles(File directory, String resourcePrefix, Map<String, File> files) {
+        File[] children = directory.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                if (child.isDirectory()) {
+                    collectFiles(child, resourcePrefix + child.getName() + "/", files);
+                } else {
+                    files.put(resourcePrefix + child.getName(), child);
+                }
+            }
+        }
+    }
+
+    /**
+     * The wagon that changed files are put with, so that they are put with its settings and transfer events
+     */
+    interface Target {
+
+        /**
+         * Returns whether a resource would be put gzip-encoded
+         *
+         * @param resourceName The name of the resource
+         * @param file         The file to put
+         * @return {@code true} if the file would be put encoded, otherwise {@code false}
+         */
+        boolean isCompressed(String resourceName, File file);
+
+        /**
+         * Returns the metadata of an object
+         *
+         * @param key The key of the object
+         * @return The metadata, or {@code null} if there is no such object
+         * @throws IOException if the metadata cannot be read
+         */
+        ObjectInfo head(String key) throws IOException;
+
+        /**
+         * Puts a file
+         *
+         * @param file         The file to put
+         * @param resourceName The name of the resource to put it to
+         * @throws TransferFailedException       if the file cannot be put
+         * @throws ResourceDoesNotExistException if the file cannot be put
+         * @throws AuthorizationException        if the file cannot be put
+         */
+        void put(File file, String resourceName) throws TransferFailedException, ResourceDoesNotExistException,
+                AuthorizationException;
+    }
+}
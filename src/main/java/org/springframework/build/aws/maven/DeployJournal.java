@@ -0,0 +1,298 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A durable record of the files staged for upload during a single deploy session. Each staged file is copied into
+ * the journal's directory and an entry appended to its journal file before {@link #stage(String, InputStream)}
+ * returns, so that a deploy that crashes before committing can be resumed by a later session.
+ * <p/>
+ * A session holds an exclusive lock on its journal for as long as it is open. Journals that can be locked by another
+ * session were abandoned and are returned by {@link #recover(File)}, oldest first, by the creation time that is
+ * written to the lock file.
+ */
+final class DeployJournal implements Closeable {
+
+    private static final String JOURNAL = "journal";
+
+    private static final String LOCK = "lock";
+
+    private static final char STAGED = 'S';
+
+    private static final char COMMITTED = 'C';
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File directory;
+
+    private final RandomAccessFile lockFile;
+
+    private final FileLock lock;
+
+    private final long created;
+
+    private final Map<String, File> pending = new LinkedHashMap<String, File>();
+
+    private final FileOutputStream journal;
+
+    private int sequence;
+
+    private DeployJournal(File directory, RandomAccessFile lockFile, FileLock lock, long created) throws IOException {
+        this.directory = directory;
+        this.lockFile = lockFile;
+        this.lock = lock;
+        this.created = created;
+
+        File journalFile = new File(directory, JOURNAL);
+        if (journalFile.exists()) {
+            load(journalFile);
+        }
+        this.journal = new FileOutputStream(journalFile, true);
+    }
+
+    /**
+     * Creates a new, empty journal in a directory of its own below {@code root}
+     *
+     * @param root The directory that holds the journals of all sessions
+     * @return The new journal
+     * @throws IOException if the journal cannot be created
+     */
+    static DeployJournal create(File root) throws IOException {
+        File directory = new File(root, UUID.randomUUID().toString());
+        if (!directory.mkdirs()) {
+            throw new FileNotFoundException(String.format("Cannot create directory '%s'", directory));
+        }
+
+        DeployJournal journal = open(directory, System.currentTimeMillis());
+        if (journal == null) {
+            throw new IOException(String.format("Cannot lock '%s'", directory));
+        }
+        return journal;
+    }
+
+    /**
+     * Returns the journals below {@code root} that are not held open by any other session
+     *
+     * @param root The directory that holds the journals of all sessions
+     * @return The abandoned journals, oldest first, locked on behalf of the caller
+     * @throws IOException if a journal cannot be read
+     */
+    static List<DeployJournal> recover(File root) throws IOException {
+        List<DeployJournal> journals = new ArrayList<DeployJournal>();
+
+        File[] directories = root.listFiles();
+        if (directories != null) {
+            for (File directory : directories) {
+                if (directory.isDirectory()) {
+                    DeployJournal journal = open(directory, -1);
+                    if (journal != null) {
+                        journals.add(journal);
+                    }
+                }
+            }
+        }
+
+        // pending content for the same key is resolved in favour of the later journal, so they must be in order
+        Collections.sort(journals, new Comparator<DeployJournal>() {
+
+            @Override
+            public int compare(DeployJournal journal1, DeployJournal journal2) {
+                return journal1.created < journal2.created ? -1 : (journal1.created == journal2.created ? 0 : 1);
+            }
+        });
+        return journals;
+    }
+
+    /**
+     * Opens and locks the journal in a directory, recording its creation time if {@code created} is not negative and
+     * otherwise reading the recorded one
+     */
+    private static DeployJournal open(File directory, long created) throws IOException {
+        File file = new File(directory, LOCK);
+        RandomAccessFile lockFile = new RandomAccessFile(file, "rw");
+        try {
+            FileLock lock = lockFile.getChannel().tryLock();
+            if (lock != null) {
+                if (created >= 0) {
+                    lockFile.writeLong(created);
+                    lockFile.getFD().sync();
+                    return new DeployJournal(directory, lockFile, lock, created);
+                }
+                // journals written before creation times were recorded are as old as their lock file
+                return new DeployJournal(directory, lockFile, lock, lockFile.length() >= 8 ? lockFile.readLong() :
+                        file.lastModified());
+            }
+        } catch (OverlappingFileLockException e) {
+            // held by this JVM
+        }
+
+        IoUtils.closeQuietly(lockFile);
+        return null;
+    }
+
+    /**
+     * Copies content into the journal and records it as pending upload to {@code key}, replacing anything previously
+     * staged for the same key
+     *
+     * @param key The key the content will be uploaded to
+     * @param in  The content to stage
+     * @throws IOException if the content cannot be staged
+     */
+    synchronized void stage(String key, InputStream in) throws IOException {
+        File file = new File(this.directory, String.format("%d.staged", this.sequence++));
+
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            IoUtils.copy(in, out);
+            out.getFD().sync();
+        } finally {
+            IoUtils.closeQuietly(out);
+        }
+
+        append(STAGED, key, file.getName());
+
+        File previous = this.pending.put(key, file);
+        if (previous != null) {
+            previous.delete();
+        }
+    }
+
+    /**
+     * Records that the content staged for {@code key} has been uploaded
+     *
+     * @param key The key that was uploaded
+     * @throws IOException if the journal cannot be updated
+     */
+    synchronized void committed(String key) throws IOException {
+        append(COMMITTED, key, null);
+
+        File file = this.pending.remove(key);
+        if (file != null) {
+            file.delete();
+        }
+    }
+
+    synchronized File getStaged(String key) {
+        return this.pending.get(key);
+    }
+
+    synchronized Map<String, File> getPending() {
+        return new LinkedHashMap<String, File>(this.pending);
+    }
+
+    @Override
+    public synchronized void close() {
+        IoUtils.closeQuietly(this.journal);
+        try {
+            this.lock.release();
+        } catch (IOException e) {
+            // swallow the exception
+        }
+        IoUtils.closeQuietly(this.lockFile);
+    }
+
+    /**
+     * Closes the journal and deletes it along with any content it still holds
+     */
+    synchronized void delete() {
+        close();
+
+        File[] files = this.directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        this.directory.delete();
+    }
+
+    private void append(char type, String key, String fileName) throws IOException {
+        StringBuilder entry = new StringBuilder().append(type).append('\t').append(key);
+        if (fileName != null) {
+            entry.append('\t').append(fileName);
+        }
+        entry.append('\n');
+
+        this.journal.write(entry.toString().getBytes(UTF_8));
+        this.journal.getFD().sync();
+    }
+
+    private void load(File journalFile) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(journalFile), UTF_8));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t");
+                if (fields.length == 3 && fields[0].charAt(0) == STAGED) {
+                    File file = new File(this.directory, fields[2]);
+                    if (file.isFile()) {
+                        this.pending.put(fields[1], file);
+                    }
+                } else if (fields.length == 2 && fields[0].charAt(0) == COMMITTED) {
+                    this.pending.remove(fields[1]);
+                }
+            }
+        } finally {
+            IoUtils.closeQuietly(reader);
+        }
+
+        File[] files = this.directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                this.sequence = Math.max(this.sequence, getSequence(file) + 1);
+            }
+        }
+    }
+
+    private static int getSequence(File file) {
+        String name = file.getName();
+        if (name.endsWith(".staged")) {
+            try {
+                return Integer.parseInt(name.substring(0, name.length() - ".staged".length()));
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public String toString() {
+        return this.directory.toString();
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The MD5 of a local file, cached under {@code ~/.m2/aws-maven/digests} so that checking the same file against an
+ * ETag again does not read it again. Entries are keyed by the canonical path of the file, so nothing is written next
+ * to it, and record the size and modification time of the file they were computed for, being ignored once either
+ * changes.
+ */
+final class DigestCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DigestCache.class);
+
+    private static final File DIRECTORY = new File(System.getProperty("user.home"), ".m2/aws-maven/digests");
+
+    private DigestCache() {
+    }
+
+    /**
+     * Returns the MD5 of a file, from the cache if its entry is current and otherwise by reading the file and then
+     * caching the result
+     *
+     * @param file The file
+     * @return The MD5 of the file, in hex
+     * @throws IOException if the file cannot be read
+     */
+    static String md5Hex(File file) throws IOException {
+        return md5Hex(file, DIRECTORY);
+    }
+
+    static String md5Hex(File file, File directory) throws IOException {
+        String path = file.getCanonicalPath();
+        File entry = getEntry(path, directory);
+        long length = file.length();
+        long lastModified = file.lastModified();
+
+        String md5 = read(entry, path, length, lastModified);
+        if (md5 != null) {
+            return md5;
+        }
+
+        InputStream in = new FileInputStream(file);
+        try {
+            md5 = IoUtils.md5Hex(in);
+        } finally {
+            IoUtils.closeQuietly(in);
+        }
+
+        // a file that changed while it was read may not have the digest that was computed
+        if (file.length() == length && file.lastModified() == lastModified) {
+            write(entry, md5, length, lastModified, path);
+        }
+        return md5;
+    }
+
+    /**
+     * Returns the cache entry of a file
+     *
+     * @param file The file
+     * @param directory The directory of the cache
+     * @return The cache entry
+     * @throws IOException if the canonical path of the file cannot be determined
+     */
+    static File getEntry(File file, File directory) throws IOException {
+        return getEntry(file.getCanonicalPath(), directory);
+    }
+
+    static File getEntry(File file) throws IOException {
+        return getEntry(file, DIRECTORY);
+    }
+
+    private static File getEntry(String path, File directory) throws IOException {
+        String name = IoUtils.md5Hex(new ByteArrayInputStream(path.getBytes(StandardCharsets.UTF_8)));
+        return new File(new File(directory, name.substring(0, 2)), name);
+    }
+
+    private static String read(File entry, String path, long length, long lastModified) {
+        if (!entry.isFile()) {
+            return null;
+        }
+
+        BufferedReader in = null;
+        try {
+            in = new BufferedReader(new InputStreamReader(new FileInputStream(entry), StandardCharsets.UTF_8));
+            String[] fields = String.valueOf(in.readLine()).split(" ", 4);
+            if (fields.length == 4 && fields[0].length() == 32 && Long.parseLong(fields[1]) == length
+                    && Long.parseLong(fields[2]) == lastModified && fields[3].equals(path)) {
+                return fields[0];
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Cannot read digest cache entry '{}': {}", entry, e.getMessage());
+        } catch (NumberFormatException e) {
+            LOGGER.debug("Ignoring malformed digest cache entry '{}'", entry);
+        } finally {
+            IoUtils.closeQuietly(in);
+        }
+        return null;
+    }
+
+    private static void write(File entry, String md5, long length, long lastModified, String path) {
+        OutputStream out = null;
+        try {
+            entry.getParentFile().mkdirs();
+            out = new FileOutputStream(entry);
+            out.write(String.format("%s %d %d %s%n", md5, length, lastModified, path)
+                    .getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            LOGGER.debug("Cannot write digest cache entry '{}': {}", entry, e.getMessage());
+        } finally {
+            IoUtils.closeQuietly(out);
+        }
+    }
+}
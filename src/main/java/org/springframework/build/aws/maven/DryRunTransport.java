@@ -0,0 +1,150 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A {@link Transport} that makes no requests at all, but records each request it is asked to make so that a
+ * {@link RequestPlan} can report what a session would have cost. Every object appears not to exist: heads find
+ * nothing, gets fail with {@code 404} and listings are empty. The content of puts is not read.
+ */
+final class DryRunTransport implements Transport {
+
+    private static final int NOT_FOUND = 404;
+
+    private final Map<String, Map<String, Long>> requests = new TreeMap<String, Map<String, Long>>();
+
+    private final Map<String, Long> bytes = new TreeMap<String, Long>();
+
+    private int uploads;
+
+    @Override
+    public ObjectInfo head(String key) {
+        record("HEAD", key, 0);
+        return null;
+    }
+
+    @Override
+    public ObjectContent get(String key) throws IOException {
+        record("GET", key, 0);
+        throw new TransportException(String.format("'%s' does not exist in a dry run", key), NOT_FOUND);
+    }
+
+    @Override
+    public ObjectContent get(String key, long firstByte, long lastByte) throws IOException {
+        return get(key);
+    }
+
+    @Override
+    public ObjectContent getIfChanged(String key, String eTag) throws IOException {
+        return get(key);
+    }
+
+    @Override
+    public void put(ObjectInfo metadata, InputStream in, boolean publicRead) {
+        record("PUT", metadata.getKey(), Math.max(0, metadata.getContentLength()));
+    }
+
+    @Override
+    public ListingPage list(String prefix, String delimiter, String marker) {
+        record("LIST", prefix == null ? "" : prefix, 0);
+        return new ListingPage(Collections.<String>emptyList(), Collections.<ObjectInfo>emptyList(), null);
+    }
+
+    @Override
+    public void delete(String key) {
+        record("DELETE", key, 0);
+    }
+
+    @Override
+    public void delete(List<String> keys) {
+        if (!keys.isEmpty()) {
+            record("DELETE MULTIPLE", keys.get(0), 0);
+        }
+    }
+
+    @Override
+    public void copy(String sourceBucketName, String sourceKey, String destinationKey, boolean publicRead) {
+        record("COPY", destinationKey, 0);
+    }
+
+    @Override
+    public synchronized String initiateMultipartUpload(ObjectInfo metadata, boolean publicRead) {
+        record("INITIATE", metadata.getKey(), 0);
+        return String.format("dry-run-%d", ++this.uploads);
+    }
+
+    @Override
+    public String uploadPart(String key, String uploadId, int partNumber, InputStream in, long length) {
+        record("UPLOAD PART", key, length);
+        return uploadId + "-" + partNumber;
+    }
+
+    @Override
+    public String copyPart(String destinationKey, String uploadId, int partNumber, String sourceBucketName,
+                           String sourceKey, long firstByte, long lastByte) {
+        record("COPY PART", destinationKey, 0);
+        return uploadId + "-" + partNumber;
+    }
+
+    @Override
+    public void completeMultipartUpload(String key, String uploadId, List<String> partETags) {
+        record("COMPLETE", key, 0);
+    }
+
+    @Override
+    public void abortMultipartUpload(String key, String uploadId) {
+        record("ABORT", key, 0);
+    }
+
+    /**
+     * Returns the requests recorded so far
+     *
+     * @return The requests recorded so far
+     */
+    synchronized RequestPlan getPlan() {
+        return new RequestPlan(this.requests, this.bytes);
+    }
+
+    private synchronized void record(String verb, String key, long length) {
+        String prefix = getPrefix(key);
+        Map<String, Long> prefixRequests = this.requests.get(prefix);
+        if (prefixRequests == null) {
+            prefixRequests = new TreeMap<String, Long>();
+            this.requests.put(prefix, prefixRequests);
+        }
+        prefixRequests.put(verb, increment(prefixRequests.get(verb), 1));
+        this.bytes.put(verb, increment(this.bytes.get(verb), length));
+    }
+
+    /**
+     * Returns the directory that contains a key, treating a directory marker as contained by its parent
+     */
+    static String getPrefix(String key) {
+        return key.length() < 2 ? "" : key.substring(0, key.lastIndexOf('/', key.length() - 2) + 1);
+    }
+
+    private static long increment(Long value, long delta) {
+        return value == null ? delta : value + delta;
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * An {@link InputStream} over a range of a file that reads with positional {@link FileChannel#read(ByteBuffer, long)}
+ * calls straight into the caller's buffer. Any number of slices can share a channel and be read concurrently, as
+ * none of them moves the channel's position. The stream supports {@link #mark(int)} and {@link #reset()} at no cost,
+ * so a request that is retried can re-read its slice. Every read is reported to a {@link TransferProgress}, which
+ * slices of the same file may share.
+ */
+final class FileSliceInputStream extends InputStream {
+
+    private final FileChannel channel;
+
+    private final long end;
+
+    private final TransferProgress transferProgress;
+
+    private long position;
+
+    private long mark;
+
+    FileSliceInputStream(FileChannel channel, long offset, long length, TransferProgress transferProgress) {
+        this.channel = channel;
+        this.end = offset + length;
+        this.transferProgress = transferProgress;
+        this.position = offset;
+        this.mark = offset;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+
+        int remaining = (int) Math.min(len, this.end - this.position);
+        if (remaining <= 0) {
+            return -1;
+        }
+
+        int count = this.channel.read(ByteBuffer.wrap(b, off, remaining), this.position);
+        if (count == -1) {
+            return -1;
+        }
+        this.position += count;
+
+        if (off == 0) {
+            notify(b, count);
+        } else {
+            byte[] bytes = new byte[count];
+            System.arraycopy(b, off, bytes, 0, count);
+            notify(bytes, count);
+        }
+        return count;
+    }
+
+    @Override
+    public long skip(long n) {
+        long skipped = Math.max(0, Math.min(n, this.end - this.position));
+        this.position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.min(Integer.MAX_VALUE, this.end - this.position);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public synchronized void mark(int readLimit) {
+        this.mark = this.position;
+    }
+
+    @Override
+    public synchronized void reset() {
+        this.position = this.mark;
+    }
+
+    /**
+     * Does not close the channel, which belongs to the caller
+     */
+    @Override
+    public void close() {
+    }
+
+    private void notify(byte[] buffer, int length) {
+        synchronized (this.transferProgress) {
+            this.transferProgress.notify(buffer, length);
+        }
+    }
+}
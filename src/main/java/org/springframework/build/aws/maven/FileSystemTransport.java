@@ -0,0 +1,443 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * A {@link Transport} that stores objects as files beneath a root directory, with each key mapping to the path of the
+ * same name. Keys ending in {@code /} are directory markers and are stored as directories. The root is expected to be
+ * a directory named after the bucket, so that other buckets can be found next to it. Parts of multipart uploads are
+ * kept in hidden files next to the object until the upload completes.
+ * <p/>
+ * The ETag of an object is the MD5 of its file. It is recorded when the transport writes the file and only computed
+ * when no recorded value matches the file's current size and modification time.
+ */
+final class FileSystemTransport implements Transport {
+
+    private static final int NOT_FOUND = 404;
+
+    private static final int BAD_REQUEST = 400;
+
+    private static final int REQUESTED_RANGE_NOT_SATISFIABLE = 416;
+
+    private static final TransferProgress NO_PROGRESS = new TransferProgress() {
+
+        @Override
+        public void notify(byte[] buffer, int length) {
+            // ranges are not transfers of the wagon
+        }
+    };
+
+    private final File root;
+
+    private final Map<String, MultipartUpload> uploads = new ConcurrentHashMap<String, MultipartUpload>();
+
+    private final Map<File, Digest> digests = new ConcurrentHashMap<File, Digest>();
+
+    FileSystemTransport(File root) {
+        this.root = root;
+    }
+
+    @Override
+    public ObjectInfo head(String key) throws IOException {
+        File file = getFile(key);
+        if (isDirectoryMarker(key)) {
+            return file.isDirectory() ? new ObjectInfo(key, 0, null, new Date(file.lastModified()), null) : null;
+        }
+        return file.isFile() ? toObjectInfo(key, file) : null;
+    }
+
+    @Override
+    public ObjectContent get(String key) throws IOException {
+        File file = getFile(key);
+        if (!file.isFile()) {
+            throw new TransportException(String.format("'%s' does not exist", key), NOT_FOUND);
+        }
+
+        final InputStream in = new FileInputStream(file);
+        return new ObjectContent(new ObjectInfo(key, file.length(), null, new Date(file.lastModified()), null), in) {
+
+            @Override
+            void abort() {
+                IoUtils.closeQuietly(in);
+            }
+        };
+    }
+
+    @Override
+    public ObjectContent get(String key, long firstByte, long lastByte) throws IOException {
+        File file = getFile(key);
+        if (!file.isFile()) {
+            throw new TransportException(String.format("'%s' does not exist", key), NOT_FOUND);
+        }
+
+        final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        long size = channel.size();
+        if (firstByte < 0 || firstByte >= size || firstByte > lastByte) {
+            IoUtils.closeQuietly(channel);
+            throw new TransportException(String.format("Range %d-%d is not satisfiable for '%s'", firstByte,
+                    lastByte, key), REQUESTED_RANGE_NOT_SATISFIABLE);
+        }
+
+        long length = Math.min(lastByte, size - 1) - firstByte + 1;
+        InputStream in = new FilterInputStream(new FileSliceInputStream(channel, firstByte, length,
+                NO_PROGRESS)) {
+
+            @Override
+            public void close() throws IOException {
+                channel.close();
+            }
+        };
+        return new ObjectContent(new ObjectInfo(key, length, null, new Date(file.lastModified()), null), in) {
+
+            @Override
+            void abort() {
+                IoUtils.closeQuietly(channel);
+            }
+        };
+    }
+
+    @Override
+    public ObjectContent getIfChanged(String key, String eTag) throws IOException {
+        ObjectInfo objectInfo = head(key);
+        return objectInfo != null && eTag.equals(objectInfo.getETag()) ? null : get(key);
+    }
+
+    @Override
+    public void put(ObjectInfo metadata, InputStream in, boolean publicRead) throws IOException {
+        File file = getFile(metadata.getKey());
+        if (isDirectoryMarker(metadata.getKey())) {
+            mkdirs(file);
+            return;
+        }
+
+        mkdirs(file.getParentFile());
+        File temp = File.createTempFile(String.format(".%s.", file.getName()), ".part", file.getParentFile());
+        try {
+            MessageDigest digest = IoUtils.newMd5();
+            OutputStream out = new FileOutputStream(temp);
+            try {
+                // files cannot carry a content encoding, so encoded content is stored decoded
+                IoUtils.copy(new DigestInputStream(ContentEncoding.decode(metadata.getContentEncoding(), in),
+                        digest), out);
+            } finally {
+                IoUtils.closeQuietly(out);
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            record(file, IoUtils.hex(digest.digest()));
+        } finally {
+            temp.delete();
+        }
+    }
+
+    @Override
+    public ListingPage list(String prefix, String delimiter, String marker) throws IOException {
+        int index = prefix.lastIndexOf('/') + 1;
+        File directory = getFile(prefix.substring(0, index));
+
+        NavigableMap<String, ObjectInfo> objectInfos = new TreeMap<String, ObjectInfo>();
+        collect(directory, prefix.substring(0, index), prefix, "/".equals(delimiter), objectInfos);
+
+        return ListingPage.of(objectInfos, prefix, delimiter, marker);
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        File file = getFile(key);
+        if (isDirectoryMarker(key) ? file.isDirectory() : file.isFile()) {
+            Files.deleteIfExists(file.toPath());
+            this.digests.remove(file.getAbsoluteFile());
+        }
+    }
+
+    @Override
+    public void delete(List<String> keys) throws IOException {
+        for (String key : keys) {
+            delete(key);
+        }
+    }
+
+    @Override
+    public void copy(String sourceBucketName, String sourceKey, String destinationKey, boolean publicRead)
+            throws IOException {
+        File source = getSource(sourceBucketName, sourceKey);
+
+        File destination = getFile(destinationKey);
+        mkdirs(destination.getParentFile());
+        Files.copy(source.toPath(), destination.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        Digest digest = getDigest(source);
+        if (digest != null) {
+            record(destination, digest.md5);
+        }
+    }
+
+    @Override
+    public String initiateMultipartUpload(ObjectInfo metadata, boolean publicRead) throws IOException {
+        File file = getFile(metadata.getKey());
+        mkdirs(file.getParentFile());
+
+        String uploadId = UUID.randomUUID().toString();
+        this.uploads.put(uploadId, new MultipartUpload(metadata.getKey(), file));
+        return uploadId;
+    }
+
+    @Override
+    public String uploadPart(String key, String uploadId, int partNumber, InputStream in, long length)
+            throws IOException {
+        MultipartUpload upload = getUpload(key, uploadId);
+
+        File part = File.createTempFile(String.format(".%s.", upload.file.getName()), ".part",
+                upload.file.getParentFile());
+        OutputStream out = new FileOutputStream(part);
+        try {
+            IoUtils.copy(in, out);
+        } finally {
+            IoUtils.closeQuietly(out);
+        }
+
+        return addPart(upload, partNumber, part);
+    }
+
+    @Override
+    public String copyPart(String destinationKey, String uploadId, int partNumber, String sourceBucketName,
+                           String sourceKey, long firstByte, long lastByte) throws IOException {
+        MultipartUpload upload = getUpload(destinationKey, uploadId);
+        File source = getSource(sourceBucketName, sourceKey);
+        if (firstByte < 0 || lastByte >= source.length() || firstByte > lastByte) {
+            throw new TransportException(String.format("Range %d-%d is not satisfiable for '%s'", firstByte,
+                    lastByte, sourceKey), BAD_REQUEST);
+        }
+
+        File part = File.createTempFile(String.format(".%s.", upload.file.getName()), ".part",
+                upload.file.getParentFile());
+        RandomAccessFile in = new RandomAccessFile(source, "r");
+        try {
+            OutputStream out = new FileOutputStream(part);
+            try {
+                in.getChannel().transferTo(firstByte, lastByte - firstByte + 1, Channels.newChannel(out));
+            } finally {
+                IoUtils.closeQuietly(out);
+            }
+        } finally {
+            IoUtils.closeQuietly(in);
+        }
+
+        return addPart(upload, partNumber, part);
+    }
+
+    @Override
+    public void completeMultipartUpload(String key, String uploadId, List<String> partETags) throws IOException {
+        MultipartUpload upload = getUpload(key, uploadId);
+        if (upload.parts.size() != partETags.size()) {
+            throw new TransportException(String.format("Upload of '%s' has %d parts, not %d", key,
+                    upload.parts.size(), partETags.size()), BAD_REQUEST);
+        }
+
+        File temp = File.createTempFile(String.format(".%s.", upload.file.getName()), ".part",
+                upload.file.getParentFile());
+        try {
+            OutputStream out = new FileOutputStream(temp);
+            try {
+                for (File part : upload.parts.values()) {
+                    Files.copy(part.toPath(), out);
+                }
+            } finally {
+                IoUtils.closeQuietly(out);
+            }
+            Files.move(temp.toPath(), upload.file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            temp.delete();
+        }
+
+        abortMultipartUpload(key, uploadId);
+    }
+
+    @Override
+    public void abortMultipartUpload(String key, String uploadId) {
+        MultipartUpload upload = this.uploads.remove(uploadId);
+        if (upload != null) {
+            for (File part : upload.parts.values()) {
+                part.delete();
+            }
+        }
+    }
+
+    private static String addPart(MultipartUpload upload, int partNumber, File part) throws IOException {
+        File previous = upload.parts.put(partNumber, part);
+        if (previous != null) {
+            previous.delete();
+        }
+        return md5Hex(part);
+    }
+
+    private File getSource(String sourceBucketName, String sourceKey) throws IOException {
+        File sourceRoot = sourceBucketName == null ? this.root : new File(this.root.getParentFile(), sourceBucketName);
+        File source = getFile(sourceRoot, sourceKey);
+        if (!source.isFile()) {
+            throw new TransportException(String.format("'%s' does not exist", sourceKey), NOT_FOUND);
+        }
+        return source;
+    }
+
+    private MultipartUpload getUpload(String key, String uploadId) throws TransportException {
+        MultipartUpload upload = this.uploads.get(uploadId);
+        if (upload == null || !upload.key.equals(key)) {
+            throw new TransportException(String.format("Upload '%s' of '%s' does not exist", uploadId, key),
+                    NOT_FOUND);
+        }
+        return upload;
+    }
+
+    private void collect(File directory, String directoryKey, String prefix, boolean shallow,
+                         NavigableMap<String, ObjectInfo> objectInfos) throws IOException {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        for (File file : files) {
+            if (file.getName().startsWith(".") && file.getName().endsWith(".part")) {
+                continue;
+            }
+
+            String key = directoryKey + file.getName();
+            if (file.isDirectory()) {
+                String childKey = key + "/";
+                if (shallow) {
+                    // a placeholder below the directory is enough for the listing to roll it up into a common prefix
+                    if (childKey.startsWith(prefix)) {
+                        objectInfos.put(childKey + Character.MAX_VALUE, null);
+                    }
+                } else if (childKey.startsWith(prefix) || prefix.startsWith(childKey)) {
+                    collect(file, childKey, prefix, false, objectInfos);
+                }
+            } else if (key.startsWith(prefix)) {
+                objectInfos.put(key, toObjectInfo(key, file));
+            }
+        }
+    }
+
+    private File getFile(String key) throws IOException {
+        return getFile(this.root, key);
+    }
+
+    private static File getFile(File root, String key) throws IOException {
+        File file = new File(root, key);
+        if (!file.getCanonicalFile().toPath().startsWith(root.getCanonicalFile().toPath())) {
+            throw new TransportException(String.format("'%s' is outside of '%s'", key, root), BAD_REQUEST);
+        }
+        return file;
+    }
+
+    private ObjectInfo toObjectInfo(String key, File file) throws IOException {
+        return new ObjectInfo(key, file.length(), getMd5(file), new Date(file.lastModified()), null);
+    }
+
+    private String getMd5(File file) throws IOException {
+        Digest digest = getDigest(file);
+        return digest == null ? record(file, md5Hex(file)) : digest.md5;
+    }
+
+    private Digest getDigest(File file) {
+        Digest digest = this.digests.get(file.getAbsoluteFile());
+        return digest != null && digest.matches(file) ? digest : null;
+    }
+
+    private String record(File file, String md5) {
+        this.digests.put(file.getAbsoluteFile(), new Digest(file.length(), file.lastModified(), md5));
+        return md5;
+    }
+
+    private static String md5Hex(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            return IoUtils.md5Hex(in);
+        } finally {
+            IoUtils.closeQuietly(in);
+        }
+    }
+
+    private static final class Digest {
+
+        private final long length;
+
+        private final long lastModified;
+
+        private final String md5;
+
+        private Digest(long length, long lastModified, String md5) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.md5 = md5;
+        }
+
+        private boolean matches(File file) {
+            return this.length == file.length() && this.lastModified == file.lastModified();
+        }
+    }
+
+    private static final class MultipartUpload {
+
+        private final String key;
+
+        private final File file;
+
+        private final ConcurrentSkipListMap<Integer, File> parts = new ConcurrentSkipListMap<Integer, File>();
+
+        private MultipartUpload(String key, File file) {
+            this.key = key;
+            this.file = file;
+        }
+    }
+
+    private static boolean isDirectoryMarker(String key) {
+        return key.isEmpty() || key.endsWith("/");
+    }
+
+    private static void mkdirs(File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+            throw new FileNotFoundException(String.format("Cannot create directory '%s'", directory));
+        }
+    }
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * A {@link Transport} that keeps objects in memory. Transports for the same bucket name share their contents for the
+ * life of the JVM, so that separate wagon instances in a build see each other's writes.
+ */
+final class InMemoryTransport implements Transport {
+
+    private static final int BAD_REQUEST = 400;
+
+    private static final int NOT_FOUND = 404;
+
+    private static final int REQUESTED_RANGE_NOT_SATISFIABLE = 416;
+
+    private static final ConcurrentMap<String, InMemoryTransport> BUCKETS =
+            new ConcurrentHashMap<String, InMemoryTransport>();
+
+    private final ConcurrentSkipListMap<String, ObjectInfo> objectInfos =
+            new ConcurrentSkipListMap<String, ObjectInfo>();
+
+    private final Map<String, byte[]> contents = new ConcurrentHashMap<String, byte[]>();
+
+    private final Map<String, MultipartUpload> uploads = new ConcurrentHashMap<String, MultipartUpload>();
+
+    InMemoryTransport() {
+    }
+
+    static InMemoryTransport forBucket(String bucketName) {
+        InMemoryTransport transport = BUCKETS.get(bucketName);
+        if (transport == null) {
+            InMemoryTransport candidate = new InMemoryTransport();
+            transport = BUCKETS.putIfAbsent(bucketName, candidate);
+            if (transport == null) {
+                transport = candidate;
+            }
+        }
+        return transport;
+    }
+
+    @Override
+    public ObjectInfo head(String key) {
+        return this.objectInfos.get(key);
+    }
+
+    @Override
+    public synchronized ObjectContent get(String key) throws IOException {
+        ObjectInfo objectInfo = this.objectInfos.get(key);
+        if (objectInfo == null) {
+            throw new TransportException(String.format("'%s' does not exist", key), NOT_FOUND);
+        }
+
+        return new ObjectContent(objectInfo, new ByteArrayInputStream(this.contents.get(key))) {
+
+            @Override
+            void abort() {
+                // nothing to release
+            }
+        };
+    }
+
+    @Override
+    public synchronized ObjectContent get(String key, long firstByte, long lastByte) throws IOException {
+        ObjectInfo objectInfo = this.objectInfos.get(key);
+        if (objectInfo == null) {
+            throw new TransportException(String.format("'%s' does not exist", key), NOT_FOUND);
+        }
+
+        byte[] content = this.contents.get(key);
+        if (firstByte < 0 || firstByte >= content.length || firstByte > lastByte) {
+            throw new TransportException(String.format("Range %d-%d is not satisfiable for '%s'", firstByte,
+                    lastByte, key), REQUESTED_RANGE_NOT_SATISFIABLE);
+        }
+
+        int length = (int) (Math.min(lastByte, content.length - 1) - firstByte + 1);
+        return new ObjectContent(new ObjectInfo(key, length, objectInfo.getETag(), objectInfo.getLastModified(),
+                objectInfo.getContentType(), objectInfo.getContentEncoding(), objectInfo.getMetadata()),
+                new ByteArrayInputStream(content, (int) firstByte, length)) {
+
+            @Override
+            void abort() {
+                // nothing to release
+            }
+        };
+    }
+
+    @Override
+    public ObjectContent getIfChanged(String key, String eTag) throws IOException {
+        ObjectInfo objectInfo = head(key);
+        return objectInfo != null && eTag.equals(objectInfo.getETag()) ? null : get(key);
+    }
+
+    @Override
+    public void put(ObjectInfo metadata, InputStream in, boolean publicRead) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IoUtils.copy(in, out);
+        byte[] content = out.toByteArray();
+
+        store(metadata.getKey(), content, metadata.getContentType(), metadata.getContentEncoding(),
+                metadata.getMetadata());
+    }
+
+    @Override
+    public ListingPage list(String prefix, String delimiter, String marker) {
+        return ListingPage.of(this.objectInfos, prefix, delimiter, marker);
+    }
+
+    @Override
+    public synchronized void delete(String key) {
+        this.objectInfos.remove(key);
+        this.contents.remove(key);
+    }
+
+    @Override
+    public synchronized void delete(List<String> keys) {
+        for (String key : keys) {
+            delete(key);
+        }
+    }
+
+    @Override
+    public void copy(String sourceBucketName, String sourceKey, String destinationKey, boolean publicRead)
+            throws IOException {
+        InMemoryTransport source = getSource(sourceBucketName);
+        ObjectInfo objectInfo;
+        byte[] content;
+        synchronized (source) {
+            objectInfo = source.objectInfos.get(sourceKey);
+            content = source.contents.get(sourceKey);
+        }
+        if (objectInfo == null) {
+            throw new TransportException(String.format("'%s' does not exist", sourceKey), NOT_FOUND);
+        }
+
+        store(destinationKey, content, objectInfo.getContentType(), objectInfo.getContentEncoding(),
+                objectInfo.getMetadata());
+    }
+
+    @Override
+    public String initiateMultipartUpload(ObjectInfo metadata, boolean publicRead) {
+        String uploadId = UUID.randomUUID().toString();
+        this.uploads.put(uploadId, new MultipartUpload(metadata.getKey(), metadata.getContentType()));
+        return uploadId;
+    }
+
+    @Override
+    public String uploadPart(String key, String uploadId, int partNumber, InputStream in, long length)
+            throws IOException {
+        MultipartUpload upload = getUpload(key, uploadId, partNumber);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IoUtils.copy(in, out);
+        if (out.size() != length) {
+            throw new TransportException(String.format("Part %d of '%s' is %d bytes, not %d", partNumber, key,
+                    out.size(), length), BAD_REQUEST);
+        }
+
+        byte[] part = out.toByteArray();
+        upload.parts.put(partNumber, part);
+        return IoUtils.md5Hex(new ByteArrayInputStream(part));
+    }
+
+    @Override
+    public String copyPart(String destinationKey, String uploadId, int partNumber, String sourceBucketName,
+                           String sourceKey, long firstByte, long lastByte) throws IOException {
+        MultipartUpload upload = getUpload(destinationKey, uploadId, partNumber);
+
+        byte[] content = getSource(sourceBucketName).contents.get(sourceKey);
+        if (content == null) {
+            throw new TransportException(String.format("'%s' does not exist", sourceKey), NOT_FOUND);
+        }
+        if (firstByte < 0 || lastByte >= content.length || firstByte > lastByte) {
+            throw new TransportException(String.format("Range %d-%d is not satisfiable for '%s'", firstByte,
+                    lastByte, sourceKey), BAD_REQUEST);
+        }
+
+        byte[] part = new byte[(int) (lastByte - firstByte + 1)];
+        System.arraycopy(content, (int) firstByte, part, 0, part.length);
+        upload.parts.put(partNumber, part);
+        return IoUtils.md5Hex(new ByteArrayInputStream(part));
+    }
+
+    @Override
+    public void completeMultipartUpload(String key, String uploadId, List<String> partETags) throws IOException {
+        MultipartUpload upload = getUpload(key, uploadId);
+        if (upload.parts.size() != partETags.size()) {
+            throw new TransportException(String.format("Upload of '%s' has %d parts, not %d", key,
+                    upload.parts.size(), partETags.size()), BAD_REQUEST);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MessageDigest messageDigest = IoUtils.newMd5();
+        for (byte[] part : upload.parts.values()) {
+            out.write(part);
+            messageDigest.update(IoUtils.newMd5().digest(part));
+        }
+
+        this.uploads.remove(uploadId);
+        store(key, out.toByteArray(), upload.contentType, null, null,
+                String.format("%s-%d", IoUtils.hex(messageDigest.digest()), partETags.size()));
+    }
+
+    @Override
+    public void abortMultipartUpload(String key, String uploadId) {
+        this.uploads.remove(uploadId);
+    }
+
+    private InMemoryTransport getSource(String sourceBucketName) {
+        return sourceBucketName == null ? this : forBucket(sourceBucketName);
+    }
+
+    private MultipartUpload getUpload(String key, String uploadId, int partNumber) throws TransportException {
+        if (partNumber < 1 || partNumber > MultipartFileUpload.MAX_PARTS) {
+            throw new TransportException(String.format("Part number %d of '%s' is not between 1 and %d", partNumber,
+                    key, MultipartFileUpload.MAX_PARTS), BAD_REQUEST);
+        }
+        return getUpload(key, uploadId);
+    }
+
+    private MultipartUpload getUpload(String key, String uploadId) throws TransportException {
+        MultipartUpload upload = this.uploads.get(uploadId);
+        if (upload == null || !upload.key.equals(key)) {
+            throw new TransportException(String.format("Upload '%s' of '%s' does not exist", uploadId, key),
+                    NOT_FOUND);
+        }
+        return upload;
+    }
+
+    private void store(String key, byte[] content, String contentType, String contentEncoding,
+                       Map<String, String> metadata) throws IOException {
+        store(key, content, contentType, contentEncoding, metadata,
+                IoUtils.md5Hex(new ByteArrayInputStream(content)));
+    }
+
+    private synchronized void store(String key, byte[] content, String contentType, String contentEncoding,
+                                    Map<String, String> metadata, String eTag) {
+        this.contents.put(key, content);
+        this.objectInfos.put(key, new ObjectInfo(key, content.length, eTag, new Date(), contentType,
+                contentEncoding, metadata));
+    }
+
+    private static final class MultipartUpload {
+
+        private final String key;
+
+        private final String contentType;
+
+        private final ConcurrentSkipListMap<Integer, byte[]> parts = new ConcurrentSkipListMap<Integer, byte[]>();
+
+        private MultipartUpload(String key, String contentType) {
+            this.key = key;
+            this.contentType = contentType;
+        }
+    }
+}
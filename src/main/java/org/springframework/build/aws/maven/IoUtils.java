@@ -20,26 +20,89 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 final class IoUtils {
 
-    private static final int BUFFER_SIZE = 8192;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final char[] BASE64 =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
 
     private IoUtils() {
     }
 
     static void copy(InputStream in, OutputStream out) throws IOException {
-        byte[] buffer = new byte[BUFFER_SIZE];
+        BufferPool bufferPool = BufferPool.shared();
+        ByteBuffer buffer = bufferPool.acquire();
+        try {
+            byte[] bytes = buffer.array();
+
+            int read;
+            while ((read = in.read(bytes, 0, buffer.capacity())) > 0) {
+                out.write(bytes, 0, read);
+            }
+        } finally {
+            bufferPool.release(buffer);
+            out.flush();
+        }
+    }
 
-        int read;
+    static String md5Hex(InputStream in) throws IOException {
+        MessageDigest messageDigest = newMd5();
 
+        BufferPool bufferPool = BufferPool.shared();
+        ByteBuffer buffer = bufferPool.acquire();
         try {
-            while ((read = in.read(buffer)) > 0) {
-                out.write(buffer, 0, read);
+            byte[] bytes = buffer.array();
+
+            int read;
+            while ((read = in.read(bytes, 0, buffer.capacity())) != -1) {
+                messageDigest.update(bytes, 0, read);
             }
         } finally {
-            out.flush();
+            bufferPool.release(buffer);
+        }
+
+        return hex(messageDigest.digest());
+    }
+
+    static MessageDigest newMd5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is not available", e);
+        }
+    }
+
+    static String hex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(chars);
+    }
+
+    static String base64(byte[] bytes) {
+        StringBuilder sb = new StringBuilder((bytes.length + 2) / 3 * 4);
+        for (int i = 0; i < bytes.length; i += 3) {
+            int remaining = Math.min(3, bytes.length - i);
+            int b = (bytes[i] & 0xff) << 16;
+            if (remaining > 1) {
+                b |= (bytes[i + 1] & 0xff) << 8;
+            }
+            if (remaining > 2) {
+                b |= bytes[i + 2] & 0xff;
+            }
+
+            sb.append(BASE64[(b >> 18) & 0x3f]).append(BASE64[(b >> 12) & 0x3f])
+                    .append(remaining > 1 ? BASE64[(b >> 6) & 0x3f] : '=')
+                    .append(remaining > 2 ? BASE64[b & 0x3f] : '=');
         }
+        return sb.toString();
     }
 
     static void closeQuietly(Closeable... closeables) {
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * Loads the {@link BloomFilter} of every key in a repository, so that lookups of keys that definitely do not exist
+ * can be answered without a request. The filter is read from a local cache file if that was written within the
+ * refresh interval, otherwise from the filter published in the repository by {@link #publish()} if that is recent
+ * enough, and otherwise built by listing the repository. Whatever is loaded is written back to the cache.
+ * <p/>
+ * A key put after the filter was built is not in it until the filter is refreshed, other than keys put through the
+ * same filter with {@link #add(String)}, which {@link #flush()} writes back to the cache for later sessions.
+ */
+final class KeyFilter {
+
+    /**
+     * The key of the published filter, relative to the repository's base directory
+     */
+    static final String PUBLISHED_KEY = ".aws-maven/keys.bloom";
+
+    static final double FALSE_POSITIVE_RATE = 0.01;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final Transport transport;
+
+    private final String prefix;
+
+    private final File cacheFile;
+
+    private final long refreshMillis;
+
+    private volatile BloomFilter bloomFilter;
+
+    private volatile boolean added = false;
+
+    KeyFilter(Transport transport, String prefix, File cacheFile, long refreshMillis) {
+        this.transport = transport;
+        this.prefix = prefix;
+        this.cacheFile = cacheFile;
+        this.refreshMillis = refreshMillis;
+    }
+
+    /**
+     * Returns whether a key definitely does not exist, loading the filter on first use
+     *
+     * @param key The key to look up
+     * @return {@code true} if the key definitely does not exist, {@code false} if it might
+     * @throws IOException if the filter cannot be loaded
+     */
+    boolean isDefinitelyMissing(String key) throws IOException {
+        return !load().mightContain(key);
+    }
+
+    /**
+     * Adds a key that has just been put, so that it is found for the rest of the session
+     *
+     * @param key The key that was put
+     */
+    void add(String key) {
+        this.added = true;
+        BloomFilter candidate = this.bloomFilter;
+        if (candidate != null) {
+            synchronized (candidate) {
+                candidate.add(key);
+            }
+        }
+    }
+
+    /**
+     * Writes the keys added since the filter was loaded back to the cache, so that a later session reading the cache
+     * finds them. The cache keeps its age, so it is still refreshed when it would have been. If the filter was never
+     * loaded, the cache, which does not have the keys, is deleted instead.
+     */
+    synchronized void flush() {
+        if (!this.added) {
+            return;
+        }
+
+        BloomFilter candidate = this.bloomFilter;
+        if (candidate == null) {
+            if (this.cacheFile.isFile() && !this.cacheFile.delete()) {
+                this.logger.warn("Cannot delete stale key filter cache '{}'", this.cacheFile);
+            }
+        } else {
+            long lastModified = this.cacheFile.lastModified();
+            synchronized (candidate) {
+                writeCache(candidate);
+            }
+            if (lastModified != 0) {
+                this.cacheFile.setLastModified(lastModified);
+            }
+        }
+        this.added = false;
+    }
+
+    /**
+     * Builds the filter from a listing of the repository and publishes it for other builds to load
+     *
+     * @return The number of keys in the published filter
+     * @throws IOException if the repository cannot be listed or the filter cannot be put
+     */
+    long publish() throws IOException {
+        long[] hashes = listHashes();
+        BloomFilter candidate = toBloomFilter(hashes);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        candidate.writeTo(out);
+        byte[] bytes = out.toByteArray();
+        this.transport.put(new ObjectInfo(this.prefix + PUBLISHED_KEY, bytes.length, null, null,
+                "application/octet-stream"), new ByteArrayInputStream(bytes), false);
+
+        this.bloomFilter = candidate;
+        writeCache(candidate);
+        return hashes.length;
+    }
+
+    private synchronized BloomFilter load() throws IOException {
+        BloomFilter candidate = this.bloomFilter;
+        if (candidate != null) {
+            return candidate;
+        }
+
+        long now = System.currentTimeMillis();
+        if (this.cacheFile.isFile() && now - this.cacheFile.lastModified() < this.refreshMillis) {
+            candidate = readCache();
+        }
+        if (candidate == null) {
+            candidate = readPublished(now);
+            if (candidate == null) {
+                long[] hashes = listHashes();
+                candidate = toBloomFilter(hashes);
+                this.logger.info("Built key filter of {} keys below '{}'", hashes.length, this.prefix);
+            }
+            writeCache(candidate);
+        }
+
+        this.bloomFilter = candidate;
+        return candidate;
+    }
+
+    private BloomFilter readCache() {
+        try {
+            InputStream in = new FileInputStream(this.cacheFile);
+            try {
+                return BloomFilter.readFrom(in);
+            } finally {
+                IoUtils.closeQuietly(in);
+            }
+        } catch (IOException e) {
+            this.logger.warn("Ignoring unreadable key filter cache '{}': {}", this.cacheFile, e.getMessage());
+            return null;
+        }
+    }
+
+    private BloomFilter readPublished(long now) throws IOException {
+        String key = this.prefix + PUBLISHED_KEY;
+        ObjectInfo objectInfo = this.transport.head(key);
+        if (objectInfo == null || objectInfo.getLastModified() == null
+                || now - objectInfo.getLastModified().getTime() >= this.refreshMillis) {
+            return null;
+        }
+
+        ObjectContent objectContent = this.transport.get(key);
+        try {
+            return BloomFilter.readFrom(objectContent.getInputStream());
+        } catch (IOException e) {
+            this.logger.warn("Ignoring unreadable published key filter '{}': {}", key, e.getMessage());
+            return null;
+        } finally {
+            objectContent.close();
+        }
+    }
+
+    private void writeCache(BloomFilter candidate) {
+        File directory = this.cacheFile.getParentFile();
+        try {
+            if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+                throw new FileNotFoundException(String.format("Cannot create directory '%s'", directory));
+            }
+
+            File temp = File.createTempFile(String.format(".%s.", this.cacheFile.getName()), ".part", directory);
+            try {
+                OutputStream out = new FileOutputStream(temp);
+                try {
+                    candidate.writeTo(out);
+                } finally {
+                    IoUtils.closeQuietly(out);
+                }
+                Files.move(temp.toPath(), this.cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                temp.delete();
+            }
+        } catch (IOException e) {
+            this.logger.warn("Cannot write key filter cache '{}': {}", this.cacheFile, e.getMessage());
+        }
+    }
+
+    /**
+     * Lists every key below the prefix, keeping only their hashes so that the listing can be streamed into a filter
+     * sized for the number of keys found
+     */
+    private long[] listHashes() throws IOException {
+        long[] hashes = new long[ListingPage.MAX_KEYS];
+        int count = 0;
+
+        String marker = null;
+        do {
+            ListingPage listingPage = this.transport.list(this.prefix, null, marker);
+            for (ObjectInfo objectInfo : listingPage.getObjects()) {
+                if (count == hashes.length) {
+                    hashes = Arrays.copyOf(hashes, hashes.length * 2);
+                }
+                hashes[count++] = BloomFilter.hash(objectInfo.getKey());
+            }
+            marker = listingPage.getNextMarker();
+        } while (marker != null);
+
+        return Arrays.copyOf(hashes, count);
+    }
+
+    private static BloomFilter toBloomFilter(long[] hashes) {
+        BloomFilter candidate = BloomFilter.create(hashes.length, FALSE_POSITIVE_RATE);
+        for (long hash : hashes) {
+            candidate.addHash(hash);
+        }
+        return candidate;
+    }
+}
@@ -0,0 +1,462 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * An index of every key in a repository with its size, ETag and last modified time, published in the repository
+ * itself so that existence checks, timestamp checks and directory listings can be answered without a request per
+ * query.
+ * <p/>
+ * The index is sharded by the first {@value #SHARD_DEPTH} directories of each key, which for a Maven repository is
+ * roughly the groupId, so a build only fetches the shards of the groups it resolves, each once per session. Keys
+ * with fewer directories are in the root shard, whose presence also marks that the repository has an index at all. Each
+ * shard records when the index was last built by {@link #publish()}, and keeps that time when {@link #flush()} adds
+ * keys to it. A shard whose index was built longer ago than the maximum age is stale, and questions about its keys
+ * are not answered so that the caller falls back to asking S3, since keys put by other means are only indexed by the
+ * next publish.
+ * <p/>
+ * Keys put through {@link #add(ObjectInfo)} and deleted through {@link #remove(String)} are visible immediately and
+ * written to their shards by {@link #flush()},
+ * which re-reads each shard first so that entries added by other builds since it was loaded are kept. Puts that do
+ * not go through an index, and concurrent flushes of the same shard, are only reconciled by {@link #publish()}.
+ */
+final class KeyIndex {
+
+    /**
+     * The prefix of the shard objects, relative to the repository's base directory
+     */
+    static final String INDEX_PREFIX = ".aws-maven/index/";
+
+    static final int SHARD_DEPTH = 2;
+
+    static final String ROOT_SHARD = "_";
+
+    private static final int MAGIC = 0x41574d4a;
+
+    /**
+     * The header of shards without the time of the publish, which are taken to be as old as their object
+     */
+    private static final int UNDATED_MAGIC = 0x41574d49;
+
+    private static final Date NEVER = new Date(0);
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final Transport transport;
+
+    private final String prefix;
+
+    private final long maxAgeMillis;
+
+    private final Map<String, Shard> shards = new HashMap<String, Shard>();
+
+    private final Map<String, Map<String, ObjectInfo>> pending = new HashMap<String, Map<String, ObjectInfo>>();
+
+    private boolean rootChecked = false;
+
+    private Shard root;
+
+    KeyIndex(Transport transport, String prefix, long maxAgeMillis) {
+        this.transport = transport;
+        this.prefix = prefix;
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    /**
+     * Returns whether the index can answer questions about a key, loading its shard on first use
+     *
+     * @param key The key
+     * @return {@code true} if the key's shard is published and not stale, otherwise {@code false}
+     * @throws IOException if the shard cannot be loaded
+     */
+    synchronized boolean covers(String key) throws IOException {
+        return getShard(getShardName(relativize(key))) != null;
+    }
+
+    /**
+     * Returns the entry of a key covered by the index
+     *
+     * @param key The key
+     * @return The entry, or {@code null} if the key does not exist
+     * @throws IOException if the shard cannot be loaded
+     */
+    synchronized ObjectInfo find(String key) throws IOException {
+        Shard shard = getShard(getShardName(relativize(key)));
+        return shard == null ? null : shard.entries.get(key);
+    }
+
+    /**
+     * Returns the names of the objects and directories directly within a directory, if the index can answer for all
+     * of them
+     *
+     * @param directoryKey The key of the directory, ending in {@code /}
+     * @return The names, with directories ending in {@code /}, or {@code null} if the index cannot answer
+     * @throws IOException if the shard cannot be loaded
+     */
+    synchronized List<String> list(String directoryKey) throws IOException {
+        String relative = relativize(directoryKey);
+        if (relative == null || depth(relative) < SHARD_DEPTH) {
+            return null;
+        }
+
+        Shard shard = getShard(getShardName(relative));
+        if (shard == null) {
+            return null;
+        }
+
+        Set<String> names = new HashSet<String>();
+        List<String> resourceNames = new ArrayList<String>();
+        for (String key : shard.entries.tailMap(directoryKey).keySet()) {
+            if (!key.startsWith(directoryKey)) {
+                break;
+            }
+
+            String name = key.substring(directoryKey.length());
+            int index = name.indexOf('/');
+            if (index != -1) {
+                name = name.substring(0, index + 1);
+            }
+            if (!name.isEmpty() && names.add(name)) {
+                resourceNames.add(name);
+            }
+        }
+        return resourceNames;
+    }
+
+    /**
+     * Adds an object that has just been put, so that it is visible for the rest of the session and written to its
+     * shard by the next {@link #flush()}
+     *
+     * @param objectInfo The object that was put
+     */
+    synchronized void add(ObjectInfo objectInfo) {
+        String relative = relativize(objectInfo.getKey());
+        if (relative == null || relative.startsWith(INDEX_PREFIX)) {
+            return;
+        }
+
+        change(getShardName(relative), objectInfo.getKey(), objectInfo);
+    }
+
+    /**
+     * Removes an object that has just been deleted, so that it is missing for the rest of the session and removed
+     * from its shard by the next {@link #flush()}
+     *
+     * @param key The key of the object that was deleted
+     */
+    synchronized void remove(String key) {
+        String relative = relativize(key);
+        if (relative == null || relative.startsWith(INDEX_PREFIX)) {
+            return;
+        }
+
+        change(getShardName(relative), key, null);
+    }
+
+    private void change(String shardName, String key, ObjectInfo objectInfo) {
+        Map<String, ObjectInfo> entries = this.pending.get(shardName);
+        if (entries == null) {
+            entries = new HashMap<String, ObjectInfo>();
+            this.pending.put(shardName, entries);
+        }
+        entries.put(key, objectInfo);
+
+        Shard shard = this.shards.get(shardName);
+        if (shard != null) {
+            apply(entries, shard.entries);
+        }
+    }
+
+    /**
+     * Writes the objects added and removed since the last flush to their shards, provided the repository has an index
+     *
+     * @return The number of shards written
+     * @throws IOException if a shard cannot be read or written
+     */
+    synchronized int flush() throws IOException {
+        if (this.pending.isEmpty()) {
+            return 0;
+        }
+
+        if (getRoot() == null) {
+            this.logger.debug("Not updating key index of '{}' because it has not been published", this.prefix);
+            this.pending.clear();
+            return 0;
+        }
+
+        int written = 0;
+        for (Map.Entry<String, Map<String, ObjectInfo>> entry : new ArrayList<Map.Entry<String,
+                Map<String, ObjectInfo>>>(this.pending.entrySet())) {
+            Shard shard = read(entry.getKey());
+            TreeMap<String, ObjectInfo> entries = shard == null ? new TreeMap<String, ObjectInfo>() : shard.entries;
+            apply(entry.getValue(), entries);
+            write(entry.getKey(), entries, shard == null ? getRoot().published : shard.published);
+            this.pending.remove(entry.getKey());
+            written++;
+        }
+        return written;
+    }
+
+    /**
+     * Builds every shard from a listing of the repository and publishes them, deleting shards that no longer have
+     * any keys
+     *
+     * @return The number of keys in the index
+     * @throws IOException if the repository cannot be listed or a shard cannot be written
+     */
+    synchronized long publish() throws IOException {
+        Map<String, TreeMap<String, ObjectInfo>> built = new HashMap<String, TreeMap<String, ObjectInfo>>();
+        built.put(ROOT_SHARD, new TreeMap<String, ObjectInfo>());
+        List<String> existing = new ArrayList<String>();
+        long count = 0;
+        Date published = new Date();
+
+        String marker = null;
+        do {
+            ListingPage listingPage = this.transport.list(this.prefix, null, marker);
+            for (ObjectInfo objectInfo : listingPage.getObjects()) {
+                String relative = relativize(objectInfo.getKey());
+                if (relative.startsWith(INDEX_PREFIX)) {
+                    existing.add(objectInfo.getKey());
+                    continue;
+                }
+
+                String shardName = getShardName(relative);
+                TreeMap<String, ObjectInfo> entries = built.get(shardName);
+                if (entries == null) {
+                    entries = new TreeMap<String, ObjectInfo>();
+                    built.put(shardName, entries);
+                }
+                entries.put(objectInfo.getKey(), objectInfo);
+                count++;
+            }
+            marker = listingPage.getNextMarker();
+        } while (marker != null);
+
+        for (Map.Entry<String, TreeMap<String, ObjectInfo>> entry : built.entrySet()) {
+            write(entry.getKey(), entry.getValue(), published);
+            existing.remove(getShardKey(entry.getKey()));
+        }
+        if (!existing.isEmpty()) {
+            this.transport.delete(existing);
+        }
+
+        this.shards.clear();
+        this.pending.clear();
+        this.rootChecked = false;
+        return count;
+    }
+
+    private Shard getShard(String shardName) throws IOException {
+        Shard shard = this.shards.get(shardName);
+        if (shard == null) {
+            Shard candidate = getRoot();
+            if (candidate == null) {
+                return null;
+            }
+
+            shard = ROOT_SHARD.equals(shardName) ? candidate : read(shardName);
+            if (shard == null) {
+                // a published index without this shard has no keys in it
+                shard = new Shard(new TreeMap<String, ObjectInfo>(), candidate.published);
+            }
+
+            Map<String, ObjectInfo> entries = this.pending.get(shardName);
+            if (entries != null) {
+                apply(entries, shard.entries);
+            }
+            this.shards.put(shardName, shard);
+        }
+
+        return System.currentTimeMillis() - shard.published.getTime() < this.maxAgeMillis ? shard : null;
+    }
+
+    private Shard getRoot() throws IOException {
+        if (!this.rootChecked) {
+            this.root = read(ROOT_SHARD);
+            this.rootChecked = true;
+        }
+        return this.root;
+    }
+
+    private Shard read(String shardName) throws IOException {
+        ObjectContent objectContent;
+        try {
+            objectContent = this.transport.get(getShardKey(shardName));
+        } catch (TransportException e) {
+            if (e.isNotFound()) {
+                return null;
+            }
+            throw e;
+        }
+
+        try {
+            Date lastModified = objectContent.getObjectInfo().getLastModified();
+            return readShard(objectContent.getInputStream(), lastModified == null ? NEVER : lastModified);
+        } finally {
+            objectContent.close();
+        }
+    }
+
+    private void write(String shardName, SortedMap<String, ObjectInfo> entries, Date published) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(new GZIPOutputStream(bytes));
+        out.writeInt(MAGIC);
+        out.writeLong(published.getTime());
+        out.writeInt(entries.size());
+
+        String previous = "";
+        for (ObjectInfo objectInfo : entries.values()) {
+            String key = relativize(objectInfo.getKey());
+            int common = commonPrefixLength(previous, key);
+            out.writeShort(common);
+            out.writeUTF(key.substring(common));
+            out.writeLong(objectInfo.getContentLength());
+            out.writeUTF(objectInfo.getETag() == null ? "" : objectInfo.getETag());
+            out.writeLong(objectInfo.getLastModified() == null ? -1 : objectInfo.getLastModified().getTime());
+            previous = key;
+        }
+        out.close();
+
+        byte[] content = bytes.toByteArray();
+        this.transport.put(new ObjectInfo(getShardKey(shardName), content.length, null, null,
+                "application/octet-stream"), new ByteArrayInputStream(content), false);
+    }
+
+    private Shard readShard(InputStream in, Date undated) throws IOException {
+        DataInputStream data = new DataInputStream(new GZIPInputStream(in));
+        int magic = data.readInt();
+        if (magic != MAGIC && magic != UNDATED_MAGIC) {
+            throw new IOException("Not a key index");
+        }
+        Date published = magic == MAGIC ? new Date(data.readLong()) : undated;
+
+        TreeMap<String, ObjectInfo> entries = new TreeMap<String, ObjectInfo>();
+        int count = data.readInt();
+        String previous = "";
+        for (int i = 0; i < count; i++) {
+            int common = data.readUnsignedShort();
+            if (common > previous.length()) {
+                throw new IOException("Corrupt key index");
+            }
+            String key = previous.substring(0, common) + data.readUTF();
+            long contentLength = data.readLong();
+            String eTag = data.readUTF();
+            long lastModified = data.readLong();
+
+            entries.put(this.prefix + key, new ObjectInfo(this.prefix + key, contentLength,
+                    eTag.isEmpty() ? null : eTag, lastModified == -1 ? null : new Date(lastModified), null));
+            previous = key;
+        }
+        return new Shard(entries, published);
+    }
+
+    private String getShardKey(String shardName) {
+        return this.prefix + INDEX_PREFIX + shardName.replace('/', '.') + ".idx";
+    }
+
+    private String relativize(String key) {
+        return key.startsWith(this.prefix) ? key.substring(this.prefix.length()) : null;
+    }
+
+    /**
+     * Returns the name of the shard of a key relative to the repository: its first {@value #SHARD_DEPTH} directories,
+     * or the root shard if it has fewer
+     *
+     * @param relativeKey The key relative to the repository's base directory
+     * @return The shard's name
+     */
+    static String getShardName(String relativeKey) {
+        if (relativeKey == null) {
+            return ROOT_SHARD;
+        }
+
+        int index = -1;
+        for (int i = 0; i < SHARD_DEPTH; i++) {
+            index = relativeKey.indexOf('/', index + 1);
+            if (index == -1) {
+                return ROOT_SHARD;
+            }
+        }
+        return relativeKey.substring(0, index);
+    }
+
+    /**
+     * Applies pending changes to the entries of a shard, a {@code null} change being a removal
+     */
+    private static void apply(Map<String, ObjectInfo> changes, Map<String, ObjectInfo> entries) {
+        for (Map.Entry<String, ObjectInfo> change : changes.entrySet()) {
+            if (change.getValue() == null) {
+                entries.remove(change.getKey());
+            } else {
+                entries.put(change.getKey(), change.getValue());
+            }
+        }
+    }
+
+    private static int depth(String relativeKey) {
+        int depth = 0;
+        for (int i = 0; i < relativeKey.length(); i++) {
+            if (relativeKey.charAt(i) == '/') {
+                depth++;
+            }
+        }
+        return depth;
+    }
+
+    private static int commonPrefixLength(String a, String b) {
+        int max = Math.min(Math.min(a.length(), b.length()), 0xffff);
+        int i = 0;
+        while (i < max && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+
+    private static final class Shard {
+
+        private final TreeMap<String, ObjectInfo> entries;
+
+        private final Date published;
+
+        private Shard(TreeMap<String, ObjectInfo> entries, Date published) {
+            this.entries = entries;
+            this.published = published;
+        }
+    }
+}
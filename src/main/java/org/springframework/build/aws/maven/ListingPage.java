@@ -0,0 +1,107 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+
+final class ListingPage {
+
+    static final int MAX_KEYS = 1000;
+
+    private final List<String> commonPrefixes;
+
+    private final List<ObjectInfo> objects;
+
+    private final String nextMarker;
+
+    ListingPage(List<String> commonPrefixes, List<ObjectInfo> objects, String nextMarker) {
+        this.commonPrefixes = new ArrayList<String>(commonPrefixes);
+        this.objects = new ArrayList<ObjectInfo>(objects);
+        this.nextMarker = nextMarker;
+    }
+
+    List<String> getCommonPrefixes() {
+        return this.commonPrefixes;
+    }
+
+    List<ObjectInfo> getObjects() {
+        return this.objects;
+    }
+
+    /**
+     * Returns the marker to pass to the next listing request
+     *
+     * @return The marker to continue the listing from, or {@code null} if this is the last page
+     */
+    String getNextMarker() {
+        return this.nextMarker;
+    }
+
+    boolean isTruncated() {
+        return this.nextMarker != null;
+    }
+
+    /**
+     * Creates a page from objects held locally, following the same prefix, delimiter and marker semantics as S3. Like
+     * S3's, the objects listed have no content type, content encoding or user metadata.
+     *
+     * @param objects   All of the objects, sorted by key
+     * @param prefix    The prefix that all returned keys start with
+     * @param delimiter The delimiter used to roll keys up into common prefixes, or {@code null} for none
+     * @param marker    The key to start listing after, or {@code null} to start at the beginning
+     * @return The page of objects
+     */
+    static ListingPage of(NavigableMap<String, ObjectInfo> objects, String prefix, String delimiter, String marker) {
+        List<String> commonPrefixes = new ArrayList<String>();
+        List<ObjectInfo> page = new ArrayList<ObjectInfo>();
+        String last = null;
+        boolean truncated = false;
+
+        Map.Entry<String, ObjectInfo> entry = marker == null || marker.compareTo(prefix) < 0 ?
+                objects.ceilingEntry(prefix) : objects.higherEntry(marker);
+
+        while (entry != null && entry.getKey().startsWith(prefix)) {
+            if (commonPrefixes.size() + page.size() == MAX_KEYS) {
+                truncated = true;
+                break;
+            }
+
+            String key = entry.getKey();
+            int index = delimiter == null ? -1 : key.indexOf(delimiter, prefix.length());
+
+            if (index == -1) {
+                ObjectInfo objectInfo = entry.getValue();
+                page.add(new ObjectInfo(key, objectInfo.getContentLength(), objectInfo.getETag(),
+                        objectInfo.getLastModified(), null));
+                last = key;
+                entry = objects.higherEntry(key);
+            } else {
+                String commonPrefix = key.substring(0, index + delimiter.length());
+                if (marker == null || commonPrefix.compareTo(marker) > 0) {
+                    commonPrefixes.add(commonPrefix);
+                    last = commonPrefix;
+                }
+                entry = objects.higherEntry(commonPrefix + Character.MAX_VALUE);
+            }
+        }
+
+        return new ListingPage(commonPrefixes, page, truncated ? last : null);
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Merges two versions of a {@code maven-metadata.xml} file, such as a release repository's and the one promoted to it
+ * from staging, which normally only lists the staged version. The versions and plugins of both are kept; the
+ * {@code latest} and {@code release} versions are taken from whichever was updated last.
+ */
+final class MavenMetadata {
+
+    private static final String VERSIONING = "versioning";
+
+    private static final String VERSIONS = "versions";
+
+    private static final String VERSION = "version";
+
+    private static final String LAST_UPDATED = "lastUpdated";
+
+    private static final String PLUGINS = "plugins";
+
+    private static final String PLUGIN = "plugin";
+
+    private static final String PREFIX = "prefix";
+
+    private static final String[] LATEST = {"latest", "release"};
+
+    private MavenMetadata() {
+    }
+
+    /**
+     * Merges metadata into existing metadata
+     *
+     * @param existing The existing metadata
+     * @param merged   The metadata to merge into it
+     * @return The merged metadata
+     * @throws IOException if either is not well-formed
+     */
+    static byte[] merge(byte[] existing, byte[] merged) throws IOException {
+        Document target = parse(existing);
+        Document source = parse(merged);
+
+        Element sourceVersioning = getChild(source.getDocumentElement(), VERSIONING);
+        if (sourceVersioning != null) {
+            Element targetVersioning = getChild(target.getDocumentElement(), VERSIONING);
+            if (targetVersioning == null) {
+                target.getDocumentElement().appendChild(target.importNode(sourceVersioning, true));
+            } else {
+                mergeVersioning(targetVersioning, sourceVersioning);
+            }
+        }
+
+        Element sourcePlugins = getChild(source.getDocumentElement(), PLUGINS);
+        if (sourcePlugins != null) {
+            Element targetPlugins = getOrCreateChild(target.getDocumentElement(), PLUGINS);
+            Set<String> prefixes = new LinkedHashSet<String>();
+            for (Element plugin : getChildren(targetPlugins, PLUGIN)) {
+                prefixes.add(getText(plugin, PREFIX));
+            }
+            for (Element plugin : getChildren(sourcePlugins, PLUGIN)) {
+                if (prefixes.add(getText(plugin, PREFIX))) {
+                    targetPlugins.appendChild(target.importNode(plugin, true));
+                }
+            }
+        }
+
+        return serialize(target);
+    }
+
+    private static void mergeVersioning(Element target, Element source) {
+        Element targetVersions = getOrCreateChild(target, VERSIONS);
+        Set<String> versions = new LinkedHashSet<String>();
+        for (Element version : getChildren(targetVersions, VERSION)) {
+            versions.add(version.getTextContent().trim());
+        }
+        Element sourceVersions = getChild(source, VERSIONS);
+        if (sourceVersions != null) {
+            for (Element version : getChildren(sourceVersions, VERSION)) {
+                if (versions.add(version.getTextContent().trim())) {
+                    targetVersions.appendChild(target.getOwnerDocument().importNode(version, true));
+                }
+            }
+        }
+
+        String targetLastUpdated = getText(target, LAST_UPDATED);
+        String sourceLastUpdated = getText(source, LAST_UPDATED);
+        if (targetLastUpdated == null || (sourceLastUpdated != null
+                && sourceLastUpdated.compareTo(targetLastUpdated) >= 0)) {
+            for (String name : LATEST) {
+                String value = getText(source, name);
+                if (value != null) {
+                    getOrCreateChild(target, name).setTextContent(value);
+                }
+            }
+            if (sourceLastUpdated != null) {
+                getOrCreateChild(target, LAST_UPDATED).setTextContent(sourceLastUpdated);
+            }
+        }
+    }
+
+    private static Document parse(byte[] content) throws IOException {
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            factory.setExpandEntityReferences(false);
+            DocumentBuilder builder = factory.newDocumentBuilder();
+            Document document = builder.parse(new ByteArrayInputStream(content));
+            removeWhitespace(document.getDocumentElement());
+            return document;
+        } catch (ParserConfigurationException e) {
+            throw new IllegalStateException("Cannot create XML parser", e);
+        } catch (SAXException e) {
+            throw new IOException(String.format("Malformed metadata: %s", e.getMessage()), e);
+        }
+    }
+
+    private static byte[] serialize(Document document) {
+        try {
+            Transformer transformer = TransformerFactory.newInstance().newTransformer();
+            transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
+            transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+            transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            transformer.transform(new DOMSource(document), new StreamResult(out));
+            return out.toByteArray();
+        } catch (TransformerException e) {
+            throw new IllegalStateException("Cannot write XML in memory", e);
+        }
+    }
+
+    private static void removeWhitespace(Node node) {
+        NodeList children = node.getChildNodes();
+        for (int i = children.getLength() - 1; i >= 0; i--) {
+            Node child = children.item(i);
+            if (child.getNodeType() == Node.TEXT_NODE && child.getTextContent().trim().isEmpty()) {
+                node.removeChild(child);
+            } else {
+                removeWhitespace(child);
+            }
+        }
+    }
+
+    private static Element getChild(Element parent, String name) {
+        for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeType() == Node.ELEMENT_NODE && name.equals(child.getNodeName())) {
+                return (Element) child;
+            }
+        }
+        return null;
+    }
+
+    private static Element getOrCreateChild(Element parent, String name) {
+        Element child = getChild(parent, name);
+        if (child == null) {
+            child = parent.getOwnerDocument().createElement(name);
+            parent.appendChild(child);
+        }
+        return child;
+    }
+
+    private static List<Element> getChildren(Element parent, String name) {
+        List<Element> children = new ArrayList<Element>();
+        for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeType() == Node.ELEMENT_NODE && name.equals(child.getNodeName())) {
+                children.add((Element) child);
+            }
+        }
+        return children;
+    }
+
+    private static String getText(Element parent, String name) {
+        Element child = getChild(parent, name);
+        return child == null ? null : child.getTextContent().trim();
+    }
+}
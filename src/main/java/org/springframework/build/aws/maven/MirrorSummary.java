@@ -0,0 +1,104 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+/**
+ * The outcome of mirroring a bucket to a local directory
+ */
+public final class MirrorSummary {
+
+    private final long listed;
+
+    private final long downloaded;
+
+    private final long bytesDownloaded;
+
+    private final long skipped;
+
+    private final long bytesSkipped;
+
+    private final long failed;
+
+    MirrorSummary(long listed, long downloaded, long bytesDownloaded, long skipped, long bytesSkipped, long failed) {
+        this.listed = listed;
+        this.downloaded = downloaded;
+        this.bytesDownloaded = bytesDownloaded;
+        this.skipped = skipped;
+        this.bytesSkipped = bytesSkipped;
+        this.failed = failed;
+    }
+
+    /**
+     * Returns the number of objects found in the bucket
+     *
+     * @return The number of objects found in the bucket
+     */
+    public long getListed() {
+        return this.listed;
+    }
+
+    /**
+     * Returns the number of objects that were new or changed and were downloaded
+     *
+     * @return The number of objects downloaded
+     */
+    public long getDownloaded() {
+        return this.downloaded;
+    }
+
+    /**
+     * Returns the number of bytes downloaded
+     *
+     * @return The number of bytes downloaded
+     */
+    public long getBytesDownloaded() {
+        return this.bytesDownloaded;
+    }
+
+    /**
+     * Returns the number of objects that were already up to date locally
+     *
+     * @return The number of objects skipped
+     */
+    public long getSkipped() {
+        return this.skipped;
+    }
+
+    /**
+     * Returns the number of bytes that did not need to be downloaded because the local copy was up to date
+     *
+     * @return The number of bytes saved
+     */
+    public long getBytesSkipped() {
+        return this.bytesSkipped;
+    }
+
+    /**
+     * Returns the number of objects that could not be downloaded
+     *
+     * @return The number of objects that failed
+     */
+    public long getFailed() {
+        return this.failed;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d objects listed, %d downloaded (%d bytes), %d up to date (%d bytes saved), %d failed",
+                this.listed, this.downloaded, this.bytesDownloaded, this.skipped, this.bytesSkipped, this.failed);
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Writes a file as a multipart upload whose parts are uploaded in parallel. The file is opened once and each part's
+ * body is a {@link FileSliceInputStream} over its range, so parts are read concurrently without sharing a stream or
+ * copying the file into per-part heap buffers. If any part fails the upload is aborted.
+ */
+final class MultipartFileUpload {
+
+    /**
+     * The smallest part S3 accepts, other than the last
+     */
+    static final long MIN_PART_SIZE = 5 * 1024 * 1024;
+
+    /**
+     * The largest part S3 accepts
+     */
+    static final long MAX_PART_SIZE = 5L * 1024 * 1024 * 1024;
+
+    /**
+     * The most parts S3 accepts in one upload
+     */
+    static final int MAX_PARTS = 10000;
+
+    private final Transport transport;
+
+    private final int threads;
+
+    private final long partSize;
+
+    MultipartFileUpload(Transport transport, int threads, long partSize) {
+        this.transport = transport;
+        this.threads = threads;
+        this.partSize = partSize;
+    }
+
+    /**
+     * Uploads a file
+     *
+     * @param metadata         The key and, optionally, content type of the object
+     * @param file             The file to upload
+     * @param transferProgress Notified of the bytes read from the file, by whichever thread reads them
+     * @param publicRead       {@code true} if the object should be publicly readable, otherwise {@code false}
+     * @throws IOException if the file cannot be read or the upload fails
+     */
+    void upload(ObjectInfo metadata, File file, TransferProgress transferProgress, boolean publicRead)
+            throws IOException {
+        long contentLength = file.length();
+        long size = getPartSize(contentLength, this.partSize);
+
+        List<Part> parts = new ArrayList<Part>();
+        for (long offset = 0; offset < contentLength; offset += size) {
+            parts.add(new Part(null, offset, Math.min(size, contentLength - offset)));
+        }
+        upload(metadata, file, parts, transferProgress, publicRead);
+    }
+
+    /**
+     * Uploads an object assembled from ranges of a file and ranges of existing objects, which are copied without
+     * transferring them through the client
+     *
+     * @param metadata         The key and, optionally, content type of the object
+     * @param file             The file to read parts from
+     * @param parts            The parts of the object, in order
+     * @param transferProgress Notified of the bytes read from the file, by whichever thread reads them
+     * @param publicRead       {@code true} if the object should be publicly readable, otherwise {@code false}
+     * @throws IOException if the file cannot be read or the upload fails
+     */
+    void upload(final ObjectInfo metadata, File file, List<Part> parts, final TransferProgress transferProgress,
+                boolean publicRead) throws IOException {
+        final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        ExecutorService executor = Executors.newFixedThreadPool(this.threads);
+        try {
+            final String uploadId = this.transport.initiateMultipartUpload(metadata, publicRead);
+
+            List<Future<String>> partETags = new ArrayList<Future<String>>();
+            for (final Part part : parts) {
+                final int partNumber = partETags.size() + 1;
+                partETags.add(executor.submit(new Callable<String>() {
+
+                    @Override
+                    public String call() throws IOException {
+                        if (part.sourceKey != null) {
+                            return MultipartFileUpload.this.transport.copyPart(metadata.getKey(), uploadId,
+                                    partNumber, null, part.sourceKey, part.offset, part.offset + part.length - 1);
+                        }
+                        InputStream in = new FileSliceInputStream(channel, part.offset, part.length,
+                                transferProgress);
+                        return MultipartFileUpload.this.transport.uploadPart(metadata.getKey(), uploadId, partNumber,
+                                in, part.length);
+                    }
+                }));
+            }
+
+            complete(metadata.getKey(), uploadId, partETags);
+        } finally {
+            executor.shutdownNow();
+            IoUtils.closeQuietly(channel);
+        }
+    }
+
+    private void complete(String key, String uploadId, List<Future<String>> parts) throws IOException {
+        try {
+            List<String> partETags = new ArrayList<String>(parts.size());
+            for (Future<String> part : parts) {
+                partETags.add(await(part));
+            }
+            this.transport.completeMultipartUpload(key, uploadId, partETags);
+        } catch (IOException e) {
+            for (Future<String> part : parts) {
+                part.cancel(false);
+            }
+            try {
+                this.transport.abortMultipartUpload(key, uploadId);
+            } catch (IOException abortFailure) {
+                e.addSuppressed(abortFailure);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the part size to use for a file, which is the configured size unless the file would then need more
+     * than {@link #MAX_PARTS} parts
+     */
+    static long getPartSize(long contentLength, long partSize) {
+        return Math.max(partSize, (contentLength + MAX_PARTS - 1) / MAX_PARTS);
+    }
+
+    /**
+     * A part of a multipart upload: either a range of the file being uploaded or a range of an existing object in the
+     * same bucket
+     */
+    static final class Part {
+
+        private final String sourceKey;
+
+        private final long offset;
+
+        private final long length;
+
+        /**
+         * Creates a new part
+         *
+         * @param sourceKey The key of the object to copy the range from, or {@code null} to read it from the file
+         * @param offset    The offset of the range
+         * @param length    The length of the range
+         */
+        Part(String sourceKey, long offset, long length) {
+            this.sourceKey = sourceKey;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        String getSourceKey() {
+            return this.sourceKey;
+        }
+
+        long getOffset() {
+            return this.offset;
+        }
+
+        long getLength() {
+            return this.length;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s[%d, %d)", this.sourceKey == null ? "file" : this.sourceKey, this.offset,
+                    this.offset + this.length);
+        }
+    }
+
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while uploading", e);
+        }
+    }
+}
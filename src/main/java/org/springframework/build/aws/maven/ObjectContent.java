@@ -0,0 +1,196 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * The content of an object, which holds the connection it is being read from until it is closed. Closing content
+ * that has been read to the end returns the connection for reuse. If less than {@link #DRAIN_LIMIT} bytes remain,
+ * they are read and discarded so that the connection can still be reused; otherwise reading them would cost more
+ * than a new connection and the content is aborted instead.
+ */
+abstract class ObjectContent implements Closeable {
+
+    /**
+     * The most unread bytes that are drained to keep a connection rather than aborting it
+     */
+    static final long DRAIN_LIMIT = 64 * 1024;
+
+    /**
+     * What happened to the connection when the content was released
+     */
+    enum Release {
+
+        /**
+         * The content had been read to the end and the connection was returned for reuse
+         */
+        RETURNED,
+
+        /**
+         * The rest of the content was read and discarded so that the connection could be returned for reuse
+         */
+        DRAINED,
+
+        /**
+         * The connection was closed
+         */
+        ABORTED
+    }
+
+    private final ObjectInfo objectInfo;
+
+    private final PositionInputStream inputStream;
+
+    protected ObjectContent(ObjectInfo objectInfo, InputStream inputStream) {
+        this.objectInfo = objectInfo;
+        this.inputStream = new PositionInputStream(inputStream);
+    }
+
+    final ObjectInfo getObjectInfo() {
+        return this.objectInfo;
+    }
+
+    final InputStream getInputStream() {
+        return this.inputStream;
+    }
+
+    /**
+     * Abandons the content without reading the rest of it, releasing the underlying connection rather than returning
+     * it for reuse
+     */
+    abstract void abort();
+
+    /**
+     * Finishes with the content, draining or aborting it as described above
+     *
+     * @return What happened to the connection
+     */
+    final Release release() {
+        long remaining = this.objectInfo.getContentLength() - this.inputStream.getPosition();
+        if (this.inputStream.isAtEnd() || remaining == 0) {
+            return closeOrAbort(Release.RETURNED);
+        }
+
+        if (this.objectInfo.getContentLength() < 0 || remaining > DRAIN_LIMIT) {
+            abort();
+            return Release.ABORTED;
+        }
+
+        try {
+            if (!drain()) {
+                abort();
+                return Release.ABORTED;
+            }
+        } catch (IOException e) {
+            abort();
+            return Release.ABORTED;
+        }
+        return closeOrAbort(Release.DRAINED);
+    }
+
+    @Override
+    public void close() {
+        release();
+    }
+
+    private Release closeOrAbort(Release release) {
+        try {
+            this.inputStream.close();
+            return release;
+        } catch (IOException e) {
+            abort();
+            return Release.ABORTED;
+        }
+    }
+
+    /**
+     * Reads to the end of the content, giving up if there is more of it than expected
+     */
+    private boolean drain() throws IOException {
+        BufferPool bufferPool = BufferPool.shared();
+        ByteBuffer buffer = bufferPool.acquire();
+        try {
+            long limit = this.inputStream.getPosition() + DRAIN_LIMIT;
+            while (this.inputStream.read(buffer.array(), 0, buffer.capacity()) != -1) {
+                if (this.inputStream.getPosition() > limit) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            bufferPool.release(buffer);
+        }
+    }
+
+    private static final class PositionInputStream extends FilterInputStream {
+
+        private long position;
+
+        private boolean atEnd;
+
+        private PositionInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b == -1) {
+                this.atEnd = true;
+            } else {
+                this.position++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int count = super.read(b, off, len);
+            if (count == -1) {
+                this.atEnd = true;
+            } else {
+                this.position += count;
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            this.position += skipped;
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private long getPosition() {
+            return this.position;
+        }
+
+        private boolean isAtEnd() {
+            return this.atEnd;
+        }
+    }
+}
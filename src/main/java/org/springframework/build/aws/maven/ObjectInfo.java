@@ -0,0 +1,106 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+final class ObjectInfo {
+
+    private final String key;
+
+    private final long contentLength;
+
+    private final String eTag;
+
+    private final Date lastModified;
+
+    private final String contentType;
+
+    private final String contentEncoding;
+
+    private final Map<String, String> metadata;
+
+    ObjectInfo(String key, long contentLength, String eTag, Date lastModified, String contentType) {
+        this(key, contentLength, eTag, lastModified, contentType, null);
+    }
+
+    ObjectInfo(String key, long contentLength, String eTag, Date lastModified, String contentType,
+               String contentEncoding) {
+        this(key, contentLength, eTag, lastModified, contentType, contentEncoding, null);
+    }
+
+    ObjectInfo(String key, long contentLength, String eTag, Date lastModified, String contentType,
+               String contentEncoding, Map<String, String> metadata) {
+        this.key = key;
+        this.contentLength = contentLength;
+        this.eTag = eTag;
+        this.lastModified = lastModified == null ? null : new Date(lastModified.getTime());
+        this.contentType = contentType;
+        this.contentEncoding = contentEncoding;
+        this.metadata = metadata == null || metadata.isEmpty() ? Collections.<String, String>emptyMap() :
+                Collections.unmodifiableMap(new LinkedHashMap<String, String>(metadata));
+    }
+
+    String getKey() {
+        return this.key;
+    }
+
+    long getContentLength() {
+        return this.contentLength;
+    }
+
+    String getETag() {
+        return this.eTag;
+    }
+
+    Date getLastModified() {
+        return this.lastModified == null ? null : new Date(this.lastModified.getTime());
+    }
+
+    String getContentType() {
+        return this.contentType;
+    }
+
+    /**
+     * Returns the encoding the content is stored in, such as {@code gzip}
+     *
+     * @return The content encoding, or {@code null} if the content is stored as is
+     */
+    String getContentEncoding() {
+        return this.contentEncoding;
+    }
+
+    /**
+     * Returns the user metadata stored with the object, keyed by lower case name without the {@code x-amz-meta-}
+     * prefix. Listings do not return user metadata.
+     *
+     * @return The user metadata
+     */
+    Map<String, String> getMetadata() {
+        return this.metadata;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ObjectInfo [key=%s, contentLength=%d, eTag=%s, lastModified=%s, contentType=%s, " +
+                "contentEncoding=%s, metadata=%s]", this.key, this.contentLength, this.eTag, this.lastModified,
+                this.contentType, this.contentEncoding, this.metadata);
+    }
+}
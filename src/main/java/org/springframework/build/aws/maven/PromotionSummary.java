@@ -0,0 +1,93 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+/**
+ * The outcome of promoting one repository to another
+ */
+public final class PromotionSummary {
+
+    private final long listed;
+
+    private final long copied;
+
+    private final long bytesCopied;
+
+    private final long multipart;
+
+    private final long failed;
+
+    PromotionSummary(long listed, long copied, long bytesCopied, long multipart, long failed) {
+        this.listed = listed;
+        this.copied = copied;
+        this.bytesCopied = bytesCopied;
+        this.multipart = multipart;
+        this.failed = failed;
+    }
+
+    /**
+     * Returns the number of objects found in the source repository
+     *
+     * @return The number of objects found in the source repository
+     */
+    public long getListed() {
+        return this.listed;
+    }
+
+    /**
+     * Returns the number of objects copied to the destination repository
+     *
+     * @return The number of objects copied
+     */
+    public long getCopied() {
+        return this.copied;
+    }
+
+    /**
+     * Returns the number of bytes copied. None of them passed through the client.
+     *
+     * @return The number of bytes copied
+     */
+    public long getBytesCopied() {
+        return this.bytesCopied;
+    }
+
+    /**
+     * Returns the number of objects that were large enough to be copied in parts
+     *
+     * @return The number of objects copied in parts
+     */
+    public long getMultipart() {
+        return this.multipart;
+    }
+
+    /**
+     * Returns the number of objects that were not promoted, including metadata held back because other objects
+     * failed
+     *
+     * @return The number of objects that failed
+     */
+    public long getFailed() {
+        return this.failed;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d objects listed, %d copied (%d bytes, %d in parts), %d failed", this.listed,
+                this.copied, this.bytesCopied, this.multipart, this.failed);
+    }
+}
@@ -0,0 +1,315 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.Proxy;
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * A {@link Transport} for public-read repositories that makes gets and HEADs as plain, unsigned requests to the
+ * bucket's URL, or to a URL that serves the bucket such as a CDN. Reads therefore need no credentials, no region
+ * lookup and no signing, and reuse connections through {@link HttpURLConnection}'s keep-alive pool.
+ * <p/>
+ * Everything else, including listings, is passed to a signed transport that is only created on first use, so a build
+ * that only reads never creates one. S3 answers an anonymous request for a key that does not exist with {@code 403}
+ * unless the bucket can be listed anonymously, so {@code 403} is taken to mean that the object does not exist or is
+ * not public.
+ */
+final class PublicReadTransport implements Transport {
+
+    private static final int MOVED_PERMANENTLY = 301;
+
+    private static final int NOT_MODIFIED = 304;
+
+    private static final int FORBIDDEN = 403;
+
+    private static final int NOT_FOUND = 404;
+
+    private final Proxy proxy;
+
+    private final ClientSettings clientSettings;
+
+    private final Callable<Transport> signedTransportFactory;
+
+    private volatile String baseUrl;
+
+    private volatile Transport signedTransport;
+
+    /**
+     * Creates a new instance
+     *
+     * @param baseUrl                The URL that keys are resolved against, ending in {@code /}
+     * @param proxy                  The proxy to connect through
+     * @param clientSettings         The timeouts and keep-alive to apply
+     * @param signedTransportFactory Creates the transport for everything other than gets and HEADs
+     */
+    PublicReadTransport(String baseUrl, Proxy proxy, ClientSettings clientSettings,
+                        Callable<Transport> signedTransportFactory) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
+        this.proxy = proxy;
+        this.clientSettings = clientSettings;
+        this.signedTransportFactory = signedTransportFactory;
+    }
+
+    /**
+     * Returns the URL of a bucket on S3's global endpoint. Buckets whose names contain dots are addressed by path,
+     * since their virtual host names do not match S3's certificate; S3 redirects those requests to the bucket's
+     * region, which is then used for every later request.
+     *
+     * @param bucketName     The name of the bucket
+     * @param clientSettings The client settings whose protocol to use
+     * @return The URL of the bucket, ending in {@code /}
+     */
+    static String getDefaultUrl(String bucketName, ClientSettings clientSettings) {
+        return getUrl(bucketName, Region.US.getEndpoint(), clientSettings);
+    }
+
+    /**
+     * Returns the URL that a URL of a bucket moves to when S3 redirects it to the bucket's region. A virtual-hosted
+     * URL keeps the bucket in its host name, and a path-style URL keeps it in its path. Any other host name is taken
+     * to be the name of the bucket, as S3 requires of buckets that are served under a host name of their own.
+     *
+     * @param baseUrl        The URL of the bucket
+     * @param signingRegion  The region of the bucket, as reported by S3
+     * @param clientSettings The client settings whose protocol to use
+     * @return The URL of the bucket in its region, ending in {@code /}
+     * @throws MalformedURLException if {@code baseUrl} is not a URL
+     */
+    static String getRegionalUrl(String baseUrl, String signingRegion, ClientSettings clientSettings)
+            throws MalformedURLException {
+        URL url = new URL(baseUrl);
+        String host = url.getHost();
+        String endpoint = getEndpoint(signingRegion);
+        if (isEndpoint(host)) {
+            return String.format("%s://%s%s", clientSettings.getProtocol(), endpoint, url.getPath());
+        }
+
+        int index = Math.max(host.lastIndexOf(".s3."), host.lastIndexOf(".s3-"));
+        String bucketName = index < 0 ? host : host.substring(0, index);
+        return getUrl(bucketName, endpoint, clientSettings) + url.getPath().substring(1);
+    }
+
+    @Override
+    public ObjectInfo head(String key) throws IOException {
+        HttpURLConnection connection = open("HEAD", key, null, null);
+        try {
+            int statusCode = connection.getResponseCode();
+            if (statusCode == NOT_FOUND || statusCode == FORBIDDEN) {
+                return null;
+            }
+            SignatureV4Transport.checkResponse(connection, String.format("Cannot read metadata of '%s'", key));
+            return SignatureV4Transport.toObjectInfo(key, connection);
+        } finally {
+            SignatureV4Transport.release(connection);
+        }
+    }
+
+    @Override
+    public ObjectContent get(String key) throws IOException {
+        return get(key, null, null);
+    }
+
+    @Override
+    public ObjectContent get(String key, long firstByte, long lastByte) throws IOException {
+        return get(key, "Range", String.format("bytes=%d-%d", firstByte, lastByte));
+    }
+
+    @Override
+    public ObjectContent getIfChanged(String key, String eTag) throws IOException {
+        return get(key, "If-None-Match", String.format("\"%s\"", eTag));
+    }
+
+    @Override
+    public void put(ObjectInfo metadata, InputStream in, boolean publicRead) throws IOException {
+        getSignedTransport().put(metadata, in, publicRead);
+    }
+
+    @Override
+    public ListingPage list(String prefix, String delimiter, String marker) throws IOException {
+        return getSignedTransport().list(prefix, delimiter, marker);
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        getSignedTransport().delete(key);
+    }
+
+    @Override
+    public void delete(List<String> keys) throws IOException {
+        getSignedTransport().delete(keys);
+    }
+
+    @Override
+    public void copy(String sourceBucketName, String sourceKey, String destinationKey, boolean publicRead)
+            throws IOException {
+        getSignedTransport().copy(sourceBucketName, sourceKey, destinationKey, publicRead);
+    }
+
+    @Override
+    public String initiateMultipartUpload(ObjectInfo metadata, boolean publicRead) throws IOException {
+        return getSignedTransport().initiateMultipartUpload(metadata, publicRead);
+    }
+
+    @Override
+    public String uploadPart(String key, String uploadId, int partNumber, InputStream in, long length)
+            throws IOException {
+        return getSignedTransport().uploadPart(key, uploadId, partNumber, in, length);
+    }
+
+    @Override
+    public String copyPart(String destinationKey, String uploadId, int partNumber, String sourceBucketName,
+                           String sourceKey, long firstByte, long lastByte) throws IOException {
+        return getSignedTransport().copyPart(destinationKey, uploadId, partNumber, sourceBucketName, sourceKey,
+                firstByte, lastByte);
+    }
+
+    @Override
+    public void completeMultipartUpload(String key, String uploadId, List<String> partETags) throws IOException {
+        getSignedTransport().completeMultipartUpload(key, uploadId, partETags);
+    }
+
+    @Override
+    public void abortMultipartUpload(String key, String uploadId) throws IOException {
+        getSignedTransport().abortMultipartUpload(key, uploadId);
+    }
+
+    String getBaseUrl() {
+        return this.baseUrl;
+    }
+
+    boolean isSignedTransportCreated() {
+        return this.signedTransport != null;
+    }
+
+    private ObjectContent get(String key, String header, String value) throws IOException {
+        final HttpURLConnection connection = open("GET", key, header, value);
+        try {
+            int statusCode = connection.getResponseCode();
+            if (statusCode == NOT_MODIFIED) {
+                SignatureV4Transport.release(connection);
+                return null;
+            }
+            if (statusCode == NOT_FOUND || statusCode == FORBIDDEN) {
+                throw new TransportException(String.format("'%s' does not exist or is not public: %d", key,
+                        statusCode), NOT_FOUND);
+            }
+            SignatureV4Transport.checkResponse(connection, String.format("Cannot read '%s'", key));
+            return new ObjectContent(SignatureV4Transport.toObjectInfo(key, connection),
+                    connection.getInputStream()) {
+
+                @Override
+                void abort() {
+                    connection.disconnect();
+                }
+            };
+        } catch (IOException e) {
+            SignatureV4Transport.release(connection);
+            throw e;
+        }
+    }
+
+    private HttpURLConnection open(String method, String key, String header, String value) throws IOException {
+        HttpURLConnection connection = connect(method, key, header, value);
+        if (connection.getResponseCode() == MOVED_PERMANENTLY) {
+            String region = connection.getHeaderField("x-amz-bucket-region");
+            if (region != null) {
+                SignatureV4Transport.release(connection);
+                this.baseUrl = getRegionalUrl(this.baseUrl, region, this.clientSettings);
+                connection = connect(method, key, header, value);
+            }
+        }
+        return connection;
+    }
+
+    private HttpURLConnection connect(String method, String key, String header, String value) throws IOException {
+        URL url = new URL(this.baseUrl + SignatureV4Signer.encode(key, false));
+        final HttpURLConnection connection = (HttpURLConnection) url.openConnection(this.proxy);
+        Deadline deadline = Deadline.current();
+        if (deadline != null) {
+            deadline.onCancel(new Runnable() {
+
+                @Override
+                public void run() {
+                    connection.disconnect();
+                }
+            });
+        }
+        connection.setRequestMethod(method);
+        connection.setUseCaches(false);
+        connection.setInstanceFollowRedirects(true);
+        connection.setConnectTimeout(this.clientSettings.getConnectionTimeout());
+        connection.setReadTimeout(this.clientSettings.getSocketTimeout());
+        if (header != null) {
+            connection.setRequestProperty(header, value);
+        }
+        if (!this.clientSettings.isKeepAlive()) {
+            connection.setRequestProperty("Connection", "close");
+        }
+        return connection;
+    }
+
+    private Transport getSignedTransport() throws IOException {
+        Transport candidate = this.signedTransport;
+        if (candidate == null) {
+            synchronized (this) {
+                candidate = this.signedTransport;
+                if (candidate == null) {
+                    try {
+                        candidate = this.signedTransportFactory.call();
+                    } catch (IOException | RuntimeException e) {
+                        throw e;
+                    } catch (Exception e) {
+                        throw new IOException(e);
+                    }
+                    this.signedTransport = candidate;
+                }
+            }
+        }
+        return candidate;
+    }
+
+    private static String getUrl(String bucketName, String endpoint, ClientSettings clientSettings) {
+        if (bucketName.contains(".")) {
+            return String.format("%s://%s/%s/", clientSettings.getProtocol(), endpoint, bucketName);
+        }
+        return String.format("%s://%s.%s/", clientSettings.getProtocol(), bucketName, endpoint);
+    }
+
+    private static boolean isEndpoint(String host) {
+        for (Region region : Region.values()) {
+            if (region.getEndpoint().equals(host)) {
+                return true;
+            }
+        }
+        return host.startsWith("s3.") || host.startsWith("s3-");
+    }
+
+    private static String getEndpoint(String signingRegion) {
+        for (Region region : Region.values()) {
+            if (region.getSigningRegion().equals(signingRegion)) {
+                return region.getEndpoint();
+            }
+        }
+        return String.format("s3.%s.amazonaws.com", signingRegion);
+    }
+}
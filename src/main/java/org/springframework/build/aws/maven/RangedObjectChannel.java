@@ -0,0 +1,213 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A read-only {@link SeekableByteChannel} over an object that reads it with ranged gets of whole blocks, so that a
+ * reader that only needs part of a large object, such as the central directory at the end of a JAR, only transfers
+ * that part.
+ * <p/>
+ * The most recently used blocks are kept in a small cache. A miss on the block after the last one fetched is taken
+ * as a sequential read, and fetches twice as many blocks as the previous miss did, up to a maximum, in one request;
+ * any other miss fetches a single block. If the object's ETag changes between requests the read fails rather than
+ * mixing blocks of two versions.
+ */
+final class RangedObjectChannel implements SeekableByteChannel {
+
+    static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+    static final int DEFAULT_MAX_READ_AHEAD = 16;
+
+    static final int DEFAULT_CACHED_BLOCKS = 32;
+
+    private final Transport transport;
+
+    private final String key;
+
+    private final long size;
+
+    private final String eTag;
+
+    private final int blockSize;
+
+    private final int maxReadAhead;
+
+    private final Map<Long, byte[]> blocks;
+
+    private boolean open = true;
+
+    private long position = 0;
+
+    private long nextBlock = -1;
+
+    private int readAhead = 1;
+
+    RangedObjectChannel(Transport transport, ObjectInfo objectInfo) {
+        this(transport, objectInfo, DEFAULT_BLOCK_SIZE, DEFAULT_MAX_READ_AHEAD, DEFAULT_CACHED_BLOCKS);
+    }
+
+    RangedObjectChannel(Transport transport, ObjectInfo objectInfo, int blockSize, int maxReadAhead,
+                        final int cachedBlocks) {
+        this.transport = transport;
+        this.key = objectInfo.getKey();
+        this.size = objectInfo.getContentLength();
+        this.eTag = objectInfo.getETag();
+        this.blockSize = blockSize;
+        this.maxReadAhead = Math.min(maxReadAhead, cachedBlocks);
+        this.blocks = new LinkedHashMap<Long, byte[]>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+                return size() > cachedBlocks;
+            }
+        };
+    }
+
+    @Override
+    public synchronized int read(ByteBuffer dst) throws IOException {
+        checkOpen();
+        if (this.position >= this.size) {
+            return -1;
+        }
+
+        int read = 0;
+        while (dst.hasRemaining() && this.position < this.size) {
+            long index = this.position / this.blockSize;
+            byte[] block = getBlock(index);
+            int offset = (int) (this.position - index * this.blockSize);
+            int length = Math.min(dst.remaining(), block.length - offset);
+            dst.put(block, offset, length);
+            this.position += length;
+            read += length;
+        }
+        return read;
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public synchronized long position() throws IOException {
+        checkOpen();
+        return this.position;
+    }
+
+    @Override
+    public synchronized SeekableByteChannel position(long newPosition) throws IOException {
+        if (newPosition < 0) {
+            throw new IllegalArgumentException("position must not be negative");
+        }
+        checkOpen();
+        this.position = newPosition;
+        return this;
+    }
+
+    @Override
+    public synchronized long size() throws IOException {
+        checkOpen();
+        return this.size;
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long size) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public synchronized boolean isOpen() {
+        return this.open;
+    }
+
+    @Override
+    public synchronized void close() {
+        this.open = false;
+        this.blocks.clear();
+    }
+
+    private byte[] getBlock(long index) throws IOException {
+        byte[] block = this.blocks.get(index);
+        if (block != null) {
+            return block;
+        }
+
+        this.readAhead = index == this.nextBlock ? Math.min(this.readAhead * 2, this.maxReadAhead) : 1;
+        long lastBlock = (this.size - 1) / this.blockSize;
+        long count = 1;
+        while (count < this.readAhead && index + count <= lastBlock && !this.blocks.containsKey(index + count)) {
+            count++;
+        }
+
+        long firstByte = index * this.blockSize;
+        long lastByte = Math.min((index + count) * this.blockSize, this.size) - 1;
+        byte[] content = fetch(firstByte, lastByte);
+        for (int i = 0; i < count; i++) {
+            int offset = i * this.blockSize;
+            byte[] fetched = new byte[Math.min(this.blockSize, content.length - offset)];
+            System.arraycopy(content, offset, fetched, 0, fetched.length);
+            this.blocks.put(index + i, fetched);
+            if (i == 0) {
+                block = fetched;
+            }
+        }
+
+        this.nextBlock = index + count;
+        return block;
+    }
+
+    private byte[] fetch(long firstByte, long lastByte) throws IOException {
+        ObjectContent objectContent = this.transport.get(this.key, firstByte, lastByte);
+        try {
+            String fetchedETag = objectContent.getObjectInfo().getETag();
+            if (this.eTag != null && fetchedETag != null && !this.eTag.equals(fetchedETag)) {
+                throw new IOException(String.format("'%s' changed while being read", this.key));
+            }
+
+            byte[] content = new byte[(int) (lastByte - firstByte + 1)];
+            InputStream in = objectContent.getInputStream();
+            int offset = 0;
+            while (offset < content.length) {
+                int read = in.read(content, offset, content.length - offset);
+                if (read == -1) {
+                    throw new EOFException(String.format("'%s' ended at byte %d rather than %d", this.key,
+                            firstByte + offset, lastByte + 1));
+                }
+                offset += read;
+            }
+            return content;
+        } finally {
+            objectContent.close();
+        }
+    }
+
+    private void checkOpen() throws ClosedChannelException {
+        if (!this.open) {
+            throw new ClosedChannelException();
+        }
+    }
+}
@@ -17,24 +17,27 @@
 package org.springframework.build.aws.maven;
 
 enum Region {
-    US("US", "s3.amazonaws.com"), //
-    US_WEST_OREGON("us-west-2", "s3-us-west-2.amazonaws.com"), //
-    US_WEST_NORTHERN_CALIFORNIA("us-west-1", "s3-us-west-1.amazonaws.com"), //
-    EU("EU", "s3-eu-west-1.amazonaws.com"), //
-    EU_IRELAND("eu-west-1", "s3-eu-west-1.amazonaws.com"), //
-    GOV_CLOUD("us-gov-west-1", "us-gov-west-1.amazonaws.com"), //
-    ASIA_PACIFIC_SINGAPORE("ap-southeast-1", "s3-ap-southeast-1.amazonaws.com"), //
-    ASIA_PACIFIC_SYDNEY("ap-southeast-2", "s3-ap-southeast-2.amazonaws.com"), //
-    ASIA_PACIFIC_TOKYO("ap-northeast-1", "s3-ap-northeast-1.amazonaws.com"), //
-    SOUTH_AMERICA_SAO_PALO("sa-east-1", "s3-sa-east-1.amazonaws.com");
+    US("US", "s3.amazonaws.com", "us-east-1"), //
+    US_WEST_OREGON("us-west-2", "s3-us-west-2.amazonaws.com", "us-west-2"), //
+    US_WEST_NORTHERN_CALIFORNIA("us-west-1", "s3-us-west-1.amazonaws.com", "us-west-1"), //
+    EU("EU", "s3-eu-west-1.amazonaws.com", "eu-west-1"), //
+    EU_IRELAND("eu-west-1", "s3-eu-west-1.amazonaws.com", "eu-west-1"), //
+    GOV_CLOUD("us-gov-west-1", "us-gov-west-1.amazonaws.com", "us-gov-west-1"), //
+    ASIA_PACIFIC_SINGAPORE("ap-southeast-1", "s3-ap-southeast-1.amazonaws.com", "ap-southeast-1"), //
+    ASIA_PACIFIC_SYDNEY("ap-southeast-2", "s3-ap-southeast-2.amazonaws.com", "ap-southeast-2"), //
+    ASIA_PACIFIC_TOKYO("ap-northeast-1", "s3-ap-northeast-1.amazonaws.com", "ap-northeast-1"), //
+    SOUTH_AMERICA_SAO_PALO("sa-east-1", "s3-sa-east-1.amazonaws.com", "sa-east-1");
 
     private final String locationConstraint;
 
     private final String endpoint;
 
-    private Region(String locationConstraint, String endpoint) {
+    private final String signingRegion;
+
+    private Region(String locationConstraint, String endpoint, String signingRegion) {
         this.locationConstraint = locationConstraint;
         this.endpoint = endpoint;
+        this.signingRegion = signingRegion;
     }
 
     String getEndpoint() {
@@ -45,6 +48,10 @@ enum Region {
         return this.locationConstraint;
     }
 
+    String getSigningRegion() {
+        return this.signingRegion;
+    }
+
     static Region fromLocationConstraint(String locationConstraint) {
         for (Region region : values()) {
             if (region.getLocationConstraint().equals(locationConstraint)) {
@@ -0,0 +1,468 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import org.apache.maven.wagon.WagonException;
+import org.apache.maven.wagon.repository.Repository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Promotes everything below a prefix in one bucket to a prefix in another, or the same, bucket using server-side
+ * copies so that no content passes through the client. Objects up to {@code multipartThreshold} bytes are copied
+ * with a single request; larger objects are copied as a multipart upload whose parts are copied in parallel. Either
+ * way the object keeps its content type. Maven metadata is only promoted once every other object has been copied, so
+ * that the release repository never advertises a version whose artifacts are missing, and metadata the release
+ * repository already has is merged with the promoted metadata rather than replaced (see {@link MavenMetadata}).
+ * <p/>
+ * Can be run from the command line:
+ * <pre>
+ * java org.springframework.build.aws.maven.ReleasePromoter [--threads=N] [--transport=NAME] [--private]
+ *     s3://staging/path s3://release/path [directory]
+ * </pre>
+ */
+public final class ReleasePromoter {
+
+    static final int DEFAULT_THREADS = 8;
+
+    static final long DEFAULT_MULTIPART_THRESHOLD = 128 * 1024 * 1024;
+
+    static final long DEFAULT_PART_SIZE = 64 * 1024 * 1024;
+
+    private static final String METADATA_EXTENSION = ".xml";
+
+    private static final Map<String, String> CHECKSUM_ALGORITHMS = new LinkedHashMap<String, String>();
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    static {
+        CHECKSUM_ALGORITHMS.put(".md5", "MD5");
+        CHECKSUM_ALGORITHMS.put(".sha1", "SHA-1");
+        CHECKSUM_ALGORITHMS.put(".sha256", "SHA-256");
+        CHECKSUM_ALGORITHMS.put(".sha512", "SHA-512");
+    }
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final Transport source;
+
+    private final String sourceBucketName;
+
+    private final Transport destination;
+
+    private final int threads;
+
+    private final boolean publicRead;
+
+    private final long multipartThreshold;
+
+    private final long partSize;
+
+    private final AtomicLong copied = new AtomicLong();
+
+    private final AtomicLong bytesCopied = new AtomicLong();
+
+    private final AtomicLong multipart = new AtomicLong();
+
+    ReleasePromoter(Transport source, String sourceBucketName, Transport destination, int threads,
+                    boolean publicRead) {
+        this(source, sourceBucketName, destination, threads, publicRead, DEFAULT_MULTIPART_THRESHOLD,
+                DEFAULT_PART_SIZE);
+    }
+
+    ReleasePromoter(Transport source, String sourceBucketName, Transport destination, int threads,
+                    boolean publicRead, long multipartThreshold, long partSize) {
+        this.source = source;
+        this.sourceBucketName = sourceBucketName;
+        this.destination = destination;
+        this.threads = threads;
+        this.publicRead = publicRead;
+        this.multipartThreshold = multipartThreshold;
+        this.partSize = partSize;
+    }
+
+    /**
+     * Copies every object whose key starts with {@code sourcePrefix} to the same relative key below
+     * {@code destinationPrefix}
+     *
+     * @param sourcePrefix      The prefix of the keys to promote
+     * @param destinationPrefix The prefix to promote them to
+     * @return A summary of what was copied
+     * @throws IOException if the source cannot be listed
+     */
+    PromotionSummary promote(String sourcePrefix, String destinationPrefix) throws IOException {
+        List<String> directories = new ArrayList<String>();
+        List<ObjectInfo> objects = new ArrayList<ObjectInfo>();
+        List<ObjectInfo> metadata = new ArrayList<ObjectInfo>();
+
+        String marker = null;
+        do {
+            ListingPage listingPage = this.source.list(sourcePrefix, null, marker);
+            for (ObjectInfo objectInfo : listingPage.getObjects()) {
+                if (objectInfo.getKey().endsWith("/")) {
+                    directories.add(objectInfo.getKey());
+                } else if (StagedDeployment.isMetadata(objectInfo.getKey())) {
+                    metadata.add(objectInfo);
+                } else {
+                    objects.add(objectInfo);
+                }
+            }
+            marker = listingPage.getNextMarker();
+        } while (marker != null);
+
+        ExecutorService executor = Executors.newFixedThreadPool(this.threads);
+        try {
+            List<String> failed = new ArrayList<String>();
+            failed.addAll(copy(executor, objects, sourcePrefix, destinationPrefix));
+            if (failed.isEmpty()) {
+                failed.addAll(promoteMetadata(executor, metadata, sourcePrefix, destinationPrefix));
+            } else {
+                this.logger.warn("Not promoting {} metadata files as {} objects could not be copied", metadata.size(),
+                        failed.size());
+                for (ObjectInfo objectInfo : metadata) {
+                    failed.add(objectInfo.getKey());
+                }
+            }
+
+            if (failed.isEmpty()) {
+                for (String directory : directories) {
+                    this.destination.put(new ObjectInfo(getDestinationKey(directory, sourcePrefix,
+                            destinationPrefix), 0, null, null, null), new ByteArrayInputStream(new byte[0]), true);
+                }
+            }
+
+            return new PromotionSummary(objects.size() + metadata.size(), this.copied.get(), this.bytesCopied.get(),
+                    this.multipart.get(), failed.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private List<String> copy(ExecutorService executor, List<ObjectInfo> objects, String sourcePrefix,
+                              String destinationPrefix) throws IOException {
+        Map<ObjectInfo, Future<?>> copies = new LinkedHashMap<ObjectInfo, Future<?>>();
+        Map<ObjectInfo, MultipartCopy> multipartCopies = new LinkedHashMap<ObjectInfo, MultipartCopy>();
+        List<String> failed = new ArrayList<String>();
+
+        for (final ObjectInfo objectInfo : objects) {
+            final String destinationKey = getDestinationKey(objectInfo.getKey(), sourcePrefix, destinationPrefix);
+            if (objectInfo.getContentLength() <= this.multipartThreshold) {
+                copies.put(objectInfo, executor.submit(new Callable<Void>() {
+
+                    @Override
+                    public Void call() throws IOException {
+                        ReleasePromoter.this.destination.copy(ReleasePromoter.this.sourceBucketName,
+                                objectInfo.getKey(), destinationKey, ReleasePromoter.this.publicRead);
+                        return null;
+                    }
+                }));
+            } else {
+                try {
+                    multipartCopies.put(objectInfo, startMultipartCopy(executor, objectInfo, destinationKey));
+                } catch (IOException e) {
+                    this.logger.warn("Cannot copy '{}': {}", objectInfo.getKey(), e.getMessage());
+                    failed.add(objectInfo.getKey());
+                }
+            }
+        }
+
+        for (Map.Entry<ObjectInfo, Future<?>> copy : copies.entrySet()) {
+            try {
+                await(copy.getValue());
+                copied(copy.getKey(), false);
+            } catch (IOException e) {
+                this.logger.warn("Cannot copy '{}': {}", copy.getKey().getKey(), e.getMessage());
+                failed.add(copy.getKey().getKey());
+            }
+        }
+
+        for (Map.Entry<ObjectInfo, MultipartCopy> multipartCopy : multipartCopies.entrySet()) {
+            try {
+                multipartCopy.getValue().complete();
+                copied(multipartCopy.getKey(), true);
+            } catch (IOException e) {
+                this.logger.warn("Cannot copy '{}': {}", multipartCopy.getKey().getKey(), e.getMessage());
+                failed.add(multipartCopy.getKey().getKey());
+            }
+        }
+
+        return failed;
+    }
+
+    /**
+     * Copies metadata files, except that a {@code maven-metadata.xml} that already exists in the destination is merged
+     * with the promoted one rather than replaced, so that the versions released before are still listed, and its
+     * checksums are computed from the merged content
+     */
+    private List<String> promoteMetadata(ExecutorService executor, List<ObjectInfo> metadata, String sourcePrefix,
+                                         String destinationPrefix) throws IOException {
+        List<String> failed = new ArrayList<String>();
+        Set<String> merged = new HashSet<String>();
+        for (ObjectInfo objectInfo : metadata) {
+            if (!objectInfo.getKey().endsWith(METADATA_EXTENSION)) {
+                continue;
+            }
+
+            String destinationKey = getDestinationKey(objectInfo.getKey(), sourcePrefix, destinationPrefix);
+            try {
+                if (this.destination.head(destinationKey) != null) {
+                    merged.add(objectInfo.getKey());
+                    mergeMetadata(objectInfo, destinationKey, getChecksums(metadata, objectInfo.getKey()));
+                }
+            } catch (IOException e) {
+                this.logger.warn("Cannot merge '{}': {}", objectInfo.getKey(), e.getMessage());
+                failed.add(objectInfo.getKey());
+            }
+        }
+
+        List<ObjectInfo> copies = new ArrayList<ObjectInfo>();
+        for (ObjectInfo objectInfo : metadata) {
+            String checksummed = objectInfo.getKey().substring(0, objectInfo.getKey().lastIndexOf('.'));
+            if (merged.contains(objectInfo.getKey()) || merged.contains(checksummed)) {
+                if (failed.contains(objectInfo.getKey()) || failed.contains(checksummed)) {
+                    failed.add(objectInfo.getKey());
+                }
+            } else {
+                copies.add(objectInfo);
+            }
+        }
+        failed.addAll(copy(executor, copies, sourcePrefix, destinationPrefix));
+        return new ArrayList<String>(new LinkedHashSet<String>(failed));
+    }
+
+    private void mergeMetadata(ObjectInfo objectInfo, String destinationKey, List<ObjectInfo> checksums)
+            throws IOException {
+        byte[] content = MavenMetadata.merge(read(this.destination, destinationKey),
+                read(this.source, objectInfo.getKey()));
+        this.destination.put(new ObjectInfo(destinationKey, content.length, null, null, objectInfo.getContentType()),
+                new ByteArrayInputStream(content), this.publicRead);
+        copied(objectInfo, false);
+
+        for (ObjectInfo checksum : checksums) {
+            String extension = checksum.getKey().substring(objectInfo.getKey().length());
+            byte[] hex = IoUtils.hex(getDigest(extension).digest(content)).getBytes(UTF_8);
+            this.destination.put(new ObjectInfo(destinationKey + extension, hex.length, null, null, null),
+                    new ByteArrayInputStream(hex), this.publicRead);
+            copied(checksum, false);
+        }
+    }
+
+    private static List<ObjectInfo> getChecksums(List<ObjectInfo> metadata, String key) {
+        List<ObjectInfo> checksums = new ArrayList<ObjectInfo>();
+        for (ObjectInfo objectInfo : metadata) {
+            if (objectInfo.getKey().startsWith(key + ".") && CHECKSUM_ALGORITHMS.containsKey(
+                    objectInfo.getKey().substring(key.length()))) {
+                checksums.add(objectInfo);
+            }
+        }
+        return checksums;
+    }
+
+    private static MessageDigest getDigest(String extension) {
+        try {
+            return MessageDigest.getInstance(CHECKSUM_ALGORITHMS.get(extension));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(String.format("No %s digest", CHECKSUM_ALGORITHMS.get(extension)), e);
+        }
+    }
+
+    private static byte[] read(Transport transport, String key) throws IOException {
+        ObjectContent objectContent = transport.get(key);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            IoUtils.copy(ContentEncoding.decode(objectContent.getObjectInfo().getContentEncoding(),
+                    objectContent.getInputStream()), out);
+            return out.toByteArray();
+        } finally {
+            objectContent.close();
+        }
+    }
+
+    private MultipartCopy startMultipartCopy(ExecutorService executor, final ObjectInfo objectInfo,
+                                             final String destinationKey) throws IOException {
+        ObjectInfo sourceInfo = this.source.head(objectInfo.getKey());
+        if (sourceInfo == null) {
+            throw new IOException(String.format("'%s' no longer exists", objectInfo.getKey()));
+        }
+
+        final String uploadId = this.destination.initiateMultipartUpload(new ObjectInfo(destinationKey,
+                sourceInfo.getContentLength(), null, null, sourceInfo.getContentType()), this.publicRead);
+
+        List<Future<String>> parts = new ArrayList<Future<String>>();
+        long contentLength = sourceInfo.getContentLength();
+        long size = MultipartFileUpload.getPartSize(contentLength, this.partSize);
+        for (long firstByte = 0; firstByte < contentLength; firstByte += size) {
+            final int partNumber = parts.size() + 1;
+            final long first = firstByte;
+            final long last = Math.min(firstByte + size, contentLength) - 1;
+            parts.add(executor.submit(new Callable<String>() {
+
+                @Override
+                public String call() throws IOException {
+                    return ReleasePromoter.this.destination.copyPart(destinationKey, uploadId, partNumber,
+                            ReleasePromoter.this.sourceBucketName, objectInfo.getKey(), first, last);
+                }
+            }));
+        }
+
+        return new MultipartCopy(destinationKey, uploadId, parts);
+    }
+
+    private void copied(ObjectInfo objectInfo, boolean multipart) {
+        this.copied.incrementAndGet();
+        this.bytesCopied.addAndGet(objectInfo.getContentLength());
+        if (multipart) {
+            this.multipart.incrementAndGet();
+        }
+        this.logger.info("Promoted '{}' ({} bytes)", objectInfo.getKey(), objectInfo.getContentLength());
+    }
+
+    private static String getDestinationKey(String key, String sourcePrefix, String destinationPrefix) {
+        return destinationPrefix.concat(key.substring(sourcePrefix.length()));
+    }
+
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while promoting", e);
+        }
+    }
+
+    /**
+     * Promotes a repository from the command line
+     *
+     * @param args {@code [--threads=N] [--transport=NAME] [--private] s3://staging/path s3://release/path [directory]}
+     * @throws WagonException if the repository cannot be promoted
+     */
+    public static void main(String[] args) throws WagonException {
+        int threads = DEFAULT_THREADS;
+        String transport = null;
+        boolean publicRead = true;
+        String sourceUrl = null;
+        String destinationUrl = null;
+        String directory = null;
+        boolean usage = false;
+
+        for (String arg : args) {
+            if (arg.startsWith("--threads=")) {
+                threads = Integer.parseInt(arg.substring("--threads=".length()));
+            } else if (arg.startsWith("--transport=")) {
+                transport = arg.substring("--transport=".length());
+            } else if ("--private".equals(arg)) {
+                publicRead = false;
+            } else if (sourceUrl == null) {
+                sourceUrl = arg;
+            } else if (destinationUrl == null) {
+                destinationUrl = arg;
+            } else if (directory == null) {
+                directory = arg;
+            } else {
+                usage = true;
+            }
+        }
+
+        if (usage || sourceUrl == null || destinationUrl == null) {
+            System.err.println("Usage: ReleasePromoter [--threads=N] [--transport=NAME] [--private] "
+                    + "s3://staging/path s3://release/path [directory]");
+            System.exit(2);
+        }
+
+        SimpleStorageServiceWagon wagon = new SimpleStorageServiceWagon();
+        if (transport != null) {
+            wagon.setTransport(transport);
+        }
+        wagon.connect(new Repository("release", destinationUrl));
+        try {
+            PromotionSummary summary = wagon.promote(sourceUrl, directory == null ? "" : directory, threads,
+                    publicRead);
+            System.out.println(summary);
+            if (summary.getFailed() != 0) {
+                System.exit(1);
+            }
+        } finally {
+            wagon.disconnect();
+        }
+    }
+
+    /**
+     * A multipart copy whose parts have been submitted. Completing it waits for the parts and either completes the
+     * upload or, if any part failed, aborts it.
+     */
+    private final class MultipartCopy {
+
+        private final String key;
+
+        private final String uploadId;
+
+        private final List<Future<String>> parts;
+
+        private MultipartCopy(String key, String uploadId, List<Future<String>> parts) {
+            this.key = key;
+            this.uploadId = uploadId;
+            this.parts = parts;
+        }
+
+        private void complete() throws IOException {
+            try {
+                List<String> partETags = new ArrayList<String>(this.parts.size());
+                for (Future<String> part : this.parts) {
+                    partETags.add(await(part));
+                }
+                ReleasePromoter.this.destination.completeMultipartUpload(this.key, this.uploadId, partETags);
+            } catch (IOException e) {
+                for (Future<String> part : this.parts) {
+                    part.cancel(false);
+                }
+                try {
+                    ReleasePromoter.this.destination.abortMultipartUpload(this.key, this.uploadId);
+                } catch (IOException abortFailure) {
+                    ReleasePromoter.this.logger.warn("Cannot abort upload of '{}': {}", this.key,
+                            abortFailure.getMessage());
+                }
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The S3 requests a dry run would have made, counted by verb and by the directory of the key they were made for,
+ * along with the bytes they would have uploaded. Multipart uploads are counted per request, so an upload of ten parts
+ * is an {@code INITIATE}, ten {@code UPLOAD PART}s and a {@code COMPLETE}.
+ */
+public final class RequestPlan {
+
+    private final Map<String, Map<String, Long>> requestsByPrefix;
+
+    private final Map<String, Long> requests;
+
+    private final Map<String, Long> bytes;
+
+    RequestPlan(Map<String, Map<String, Long>> requestsByPrefix, Map<String, Long> bytes) {
+        Map<String, Map<String, Long>> copy = new TreeMap<String, Map<String, Long>>();
+        Map<String, Long> totals = new TreeMap<String, Long>();
+        for (Map.Entry<String, Map<String, Long>> prefix : requestsByPrefix.entrySet()) {
+            copy.put(prefix.getKey(), Collections.unmodifiableMap(new TreeMap<String, Long>(prefix.getValue())));
+            for (Map.Entry<String, Long> verb : prefix.getValue().entrySet()) {
+                Long total = totals.get(verb.getKey());
+                totals.put(verb.getKey(), total == null ? verb.getValue() : total + verb.getValue());
+            }
+        }
+
+        this.requestsByPrefix = Collections.unmodifiableMap(copy);
+        this.requests = Collections.unmodifiableMap(totals);
+        this.bytes = Collections.unmodifiableMap(new TreeMap<String, Long>(bytes));
+    }
+
+    /**
+     * Returns the number of requests of each verb, such as {@code PUT} or {@code HEAD}
+     *
+     * @return The number of requests by verb
+     */
+    public Map<String, Long> getRequests() {
+        return this.requests;
+    }
+
+    /**
+     * Returns the number of requests of each verb made for keys in each directory
+     *
+     * @return The number of requests by verb, by directory
+     */
+    public Map<String, Map<String, Long>> getRequestsByPrefix() {
+        return this.requestsByPrefix;
+    }
+
+    /**
+     * Returns the number of bytes the requests of each verb would have uploaded
+     *
+     * @return The number of bytes by verb
+     */
+    public Map<String, Long> getBytes() {
+        return this.bytes;
+    }
+
+    /**
+     * Returns the total number of requests
+     *
+     * @return The total number of requests
+     */
+    public long getTotalRequests() {
+        long total = 0;
+        for (long count : this.requests.values()) {
+            total += count;
+        }
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder().append(getTotalRequests()).append(" requests");
+        for (Map.Entry<String, Long> verb : this.requests.entrySet()) {
+            sb.append(String.format("%n  %-15s %8d requests %14d bytes", verb.getKey(), verb.getValue(),
+                    this.bytes.get(verb.getKey())));
+        }
+        for (Map.Entry<String, Map<String, Long>> prefix : this.requestsByPrefix.entrySet()) {
+            sb.append(String.format("%n  %s %s", prefix.getKey().isEmpty() ? "/" : prefix.getKey(),
+                    prefix.getValue()));
+        }
+        return sb.toString();
+    }
+}
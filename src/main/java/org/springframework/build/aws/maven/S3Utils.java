@@ -17,6 +17,7 @@
 package org.springframework.build.aws.maven;
 
 import com.amazonaws.ClientConfiguration;
+import com.amazonaws.Protocol;
 import org.apache.maven.wagon.proxy.ProxyInfo;
 import org.apache.maven.wagon.proxy.ProxyInfoProvider;
 import org.apache.maven.wagon.repository.Repository;
@@ -41,7 +42,23 @@ final class S3Utils {
     }
 
     static ClientConfiguration getClientConfiguration(ProxyInfoProvider proxyInfoProvider) {
-        ClientConfiguration clientConfiguration = new ClientConfiguration();
+        return getClientConfiguration(proxyInfoProvider, new ClientSettings());
+    }
+
+    static ClientConfiguration getClientConfiguration(ProxyInfoProvider proxyInfoProvider,
+                                                      ClientSettings clientSettings) {
+        ClientConfiguration clientConfiguration = new ClientConfiguration()
+                .withConnectionTimeout(clientSettings.getConnectionTimeout())
+                .withSocketTimeout(clientSettings.getSocketTimeout())
+                .withMaxConnections(clientSettings.getMaxConnections())
+                .withMaxErrorRetry(clientSettings.getMaxErrorRetry())
+                .withSocketBufferSizeHints(clientSettings.getSocketSendBufferSize(),
+                        clientSettings.getSocketReceiveBufferSize())
+                .withProtocol(ClientSettings.HTTP.equals(clientSettings.getProtocol()) ? Protocol.HTTP :
+                        Protocol.HTTPS);
+        if (clientSettings.getSigner() != null) {
+            clientConfiguration.setSignerOverride(clientSettings.getSigner());
+        }
 
         if (proxyInfoProvider != null) {
             ProxyInfo proxyInfo = proxyInfoProvider.getProxyInfo("s3");
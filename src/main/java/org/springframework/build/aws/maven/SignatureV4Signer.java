@@ -0,0 +1,175 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TimeZone;
+import java.util.TreeMap;
+
+/**
+ * Signs S3 requests using AWS Signature Version 4
+ *
+ * @see <a href="http://docs.aws.amazon.com/AmazonS3/latest/API/sig-v4-authenticating-requests.html">Authenticating
+ * Requests (AWS Signature Version 4)</a>
+ */
+final class SignatureV4Signer {
+
+    static final String EMPTY_PAYLOAD_HASH = "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855";
+
+    static final String UNSIGNED_PAYLOAD = "UNSIGNED-PAYLOAD";
+
+    private static final String ALGORITHM = "AWS4-HMAC-SHA256";
+
+    private static final String SERVICE = "s3";
+
+    private static final String TERMINATOR = "aws4_request";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final SigningCredentials credentials;
+
+    private final String region;
+
+    SignatureV4Signer(SigningCredentials credentials, String region) {
+        this.credentials = credentials;
+        this.region = region;
+    }
+
+    /**
+     * Signs a request, adding the {@code Host}, {@code x-amz-date}, {@code x-amz-content-sha256},
+     * {@code x-amz-security-token} (when using temporary credentials) and {@code Authorization} headers to
+     * {@code headers}
+     *
+     * @param method          The HTTP method of the request
+     * @param host            The host the request is sent to
+     * @param path            The unencoded path of the request
+     * @param queryParameters The unencoded query parameters of the request
+     * @param headers         The headers of the request, to which the signing headers are added
+     * @param payloadHash     The hex encoded SHA-256 hash of the payload or {@link #UNSIGNED_PAYLOAD}
+     * @param date            The time of the request
+     */
+    void sign(String method, String host, String path, Map<String, String> queryParameters,
+              Map<String, String> headers, String payloadHash, Date date) {
+        String timestamp = format("yyyyMMdd'T'HHmmss'Z'", date);
+        String scope = String.format("%s/%s/%s/%s", timestamp.substring(0, 8), this.region, SERVICE, TERMINATOR);
+
+        headers.put("Host", host);
+        headers.put("x-amz-date", timestamp);
+        headers.put("x-amz-content-sha256", payloadHash);
+        if (this.credentials.getSessionToken() != null) {
+            headers.put("x-amz-security-token", this.credentials.getSessionToken());
+        }
+
+        SortedMap<String, String> canonicalHeaders = new TreeMap<String, String>();
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            canonicalHeaders.put(header.getKey().toLowerCase(Locale.ENGLISH), header.getValue().trim());
+        }
+
+        StringBuilder signedHeaders = new StringBuilder();
+        StringBuilder canonicalRequest = new StringBuilder(method).append('\n')
+                .append(encode(path, false)).append('\n')
+                .append(canonicalQueryString(queryParameters)).append('\n');
+        for (Map.Entry<String, String> header : canonicalHeaders.entrySet()) {
+            canonicalRequest.append(header.getKey()).append(':').append(header.getValue()).append('\n');
+            if (signedHeaders.length() != 0) {
+                signedHeaders.append(';');
+            }
+            signedHeaders.append(header.getKey());
+        }
+        canonicalRequest.append('\n').append(signedHeaders).append('\n').append(payloadHash);
+
+        String stringToSign = new StringBuilder(ALGORITHM).append('\n')
+                .append(timestamp).append('\n')
+                .append(scope).append('\n')
+                .append(IoUtils.hex(sha256(canonicalRequest.toString().getBytes(UTF_8)))).toString();
+
+        byte[] signingKey = hmac(("AWS4" + this.credentials.getSecretKey()).getBytes(UTF_8), timestamp.substring(0, 8));
+        signingKey = hmac(signingKey, this.region);
+        signingKey = hmac(signingKey, SERVICE);
+        signingKey = hmac(signingKey, TERMINATOR);
+
+        String signature = IoUtils.hex(hmac(signingKey, stringToSign));
+        headers.put("Authorization", String.format("%s Credential=%s/%s,SignedHeaders=%s,Signature=%s", ALGORITHM,
+                this.credentials.getAccessKeyId(), scope, signedHeaders, signature));
+    }
+
+    static String canonicalQueryString(Map<String, String> queryParameters) {
+        SortedMap<String, String> encoded = new TreeMap<String, String>();
+        for (Map.Entry<String, String> queryParameter : queryParameters.entrySet()) {
+            encoded.put(encode(queryParameter.getKey(), true),
+                    encode(queryParameter.getValue() == null ? "" : queryParameter.getValue(), true));
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, String> queryParameter : encoded.entrySet()) {
+            if (sb.length() != 0) {
+                sb.append('&');
+            }
+            sb.append(queryParameter.getKey()).append('=').append(queryParameter.getValue());
+        }
+        return sb.toString();
+    }
+
+    static String encode(String value, boolean encodeSlash) {
+        StringBuilder sb = new StringBuilder(value.length());
+        for (byte b : value.getBytes(UTF_8)) {
+            char c = (char) (b & 0xff);
+            if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '-' || c == '_'
+                    || c == '.' || c == '~' || (c == '/' && !encodeSlash)) {
+                sb.append(c);
+            } else {
+                sb.append('%').append(Character.toUpperCase(HEX[c >> 4])).append(Character.toUpperCase(HEX[c & 0xf]));
+            }
+        }
+        return sb.toString();
+    }
+
+    static byte[] sha256(byte[] bytes) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(bytes);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static byte[] hmac(byte[] key, String data) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(data.getBytes(UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    }
+
+    private static String format(String pattern, Date date) {
+        SimpleDateFormat dateFormat = new SimpleDateFormat(pattern, Locale.US);
+        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return dateFormat.format(date);
+    }
+}
@@ -0,0 +1,735 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import org.apache.maven.wagon.authentication.AuthenticationInfo;
+import org.apache.maven.wagon.proxy.ProxyInfo;
+import org.apache.maven.wagon.proxy.ProxyInfoProvider;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.URL;
+import java.net.URLConnection;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * A {@link Transport} that talks to S3 directly over {@link HttpURLConnection}, signing requests with
+ * {@link SignatureV4Signer}. Using it means the AWS SDK is never loaded.
+ */
+final class SignatureV4Transport implements Transport {
+
+    private static final int NOT_FOUND = 404;
+
+    private static final int MULTIPLE_CHOICES = 300;
+
+    private static final int NOT_MODIFIED = 304;
+
+    private static final int INTERNAL_ERROR = 500;
+
+    private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+
+    private static final String USER_METADATA_PREFIX = "x-amz-meta-";
+
+    private final String bucketName;
+
+    private final String endpoint;
+
+    private final SignatureV4Signer signer;
+
+    private final Proxy proxy;
+
+    private final ClientSettings clientSettings;
+
+    SignatureV4Transport(String bucketName, Region region, SigningCredentials credentials, Proxy proxy) {
+        this(bucketName, region, credentials, proxy, new ClientSettings());
+    }
+
+    SignatureV4Transport(String bucketName, Region region, SigningCredentials credentials, Proxy proxy,
+                         ClientSettings clientSettings) {
+        this.bucketName = bucketName;
+        this.endpoint = region.getEndpoint();
+        this.signer = new SignatureV4Signer(credentials, region.getSigningRegion());
+        this.proxy = proxy;
+        this.clientSettings = clientSettings;
+    }
+
+    /**
+     * Creates a transport for a bucket in whichever region it is in. Of the client settings, the timeouts, the
+     * protocol and keep-alive apply; {@link HttpURLConnection} pools connections and sizes socket buffers itself.
+     */
+    static SignatureV4Transport create(String bucketName, AuthenticationInfo authenticationInfo,
+                                       ProxyInfoProvider proxyInfoProvider, ClientSettings clientSettings)
+            throws IOException {
+        SigningCredentials credentials = SigningCredentials.resolve(authenticationInfo);
+        if (credentials == null) {
+            throw new IOException("Unable to find AWS credentials in the environment, system properties or server "
+                    + "authentication information");
+        }
+
+        Proxy proxy = getProxy(proxyInfoProvider);
+        String locationConstraint = new SignatureV4Transport(bucketName, Region.US, credentials, proxy,
+                clientSettings).getBucketLocation();
+
+        return new SignatureV4Transport(bucketName, Region.fromLocationConstraint(locationConstraint), credentials,
+                proxy, clientSettings);
+    }
+
+    @Override
+    public ObjectInfo head(String key) throws IOException {
+        HttpURLConnection connection = open("HEAD", key, new LinkedHashMap<String, String>(),
+                new LinkedHashMap<String, String>(), SignatureV4Signer.EMPTY_PAYLOAD_HASH);
+        try {
+            if (connection.getResponseCode() == NOT_FOUND) {
+                return null;
+            }
+            checkResponse(connection, String.format("Cannot read metadata of '%s'", key));
+            return toObjectInfo(key, connection);
+        } finally {
+            release(connection);
+        }
+    }
+
+    @Override
+    public ObjectContent get(String key) throws IOException {
+        return get(key, new LinkedHashMap<String, String>(), String.format("Cannot read '%s'", key));
+    }
+
+    @Override
+    public ObjectContent get(String key, long firstByte, long lastByte) throws IOException {
+        Map<String, String> headers = new LinkedHashMap<String, String>();
+        headers.put("Range", String.format("bytes=%d-%d", firstByte, lastByte));
+        return get(key, headers, String.format("Cannot read bytes %d-%d of '%s'", firstByte, lastByte, key));
+    }
+
+    @Override
+    public ObjectContent getIfChanged(String key, String eTag) throws IOException {
+        Map<String, String> headers = new LinkedHashMap<String, String>();
+        headers.put("If-None-Match", String.format("\"%s\"", eTag));
+        return get(key, headers, String.format("Cannot read '%s'", key));
+    }
+
+    private ObjectContent get(String key, Map<String, String> headers, String message) throws IOException {
+        final HttpURLConnection connection = open("GET", key, new LinkedHashMap<String, String>(), headers,
+                SignatureV4Signer.EMPTY_PAYLOAD_HASH);
+        try {
+            if (connection.getResponseCode() == NOT_MODIFIED) {
+                release(connection);
+                return null;
+            }
+            checkResponse(connection, message);
+            return new ObjectContent(toObjectInfo(key, connection), connection.getInputStream()) {
+
+                @Override
+                void abort() {
+                    connection.disconnect();
+                }
+            };
+        } catch (IOException e) {
+            release(connection);
+            throw e;
+        }
+    }
+
+    @Override
+    public void put(ObjectInfo metadata, InputStream in, boolean publicRead) throws IOException {
+        Map<String, String> headers = new LinkedHashMap<String, String>();
+        headers.put("Content-Type", getContentType(metadata));
+        if (metadata.getContentEncoding() != null) {
+            headers.put("Content-Encoding", metadata.getContentEncoding());
+        }
+        for (Map.Entry<String, String> entry : metadata.getMetadata().entrySet()) {
+            headers.put(USER_METADATA_PREFIX + entry.getKey(), entry.getValue());
+        }
+        if (publicRead) {
+            headers.put("x-amz-acl", "public-read");
+        }
+
+        HttpURLConnection connection = open("PUT", metadata.getKey(), new LinkedHashMap<String, String>(), headers,
+                SignatureV4Signer.UNSIGNED_PAYLOAD);
+        try {
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(metadata.getContentLength());
+
+            OutputStream out = connection.getOutputStream();
+            try {
+                IoUtils.copy(in, out);
+            } finally {
+                IoUtils.closeQuietly(out);
+            }
+
+            checkResponse(connection, String.format("Cannot write '%s'", metadata.getKey()));
+        } finally {
+            release(connection);
+        }
+    }
+
+    @Override
+    public ListingPage list(String prefix, String delimiter, String marker) throws IOException {
+        Map<String, String> queryParameters = new LinkedHashMap<String, String>();
+        if (prefix != null) {
+            queryParameters.put("prefix", prefix);
+        }
+        if (delimiter != null) {
+            queryParameters.put("delimiter", delimiter);
+        }
+        if (marker != null) {
+            queryParameters.put("marker", marker);
+        }
+
+        HttpURLConnection connection = open("GET", "", queryParameters, new LinkedHashMap<String, String>(),
+                SignatureV4Signer.EMPTY_PAYLOAD_HASH);
+        try {
+            checkResponse(connection, String.format("Cannot list '%s'", prefix));
+            return parseListing(connection.getInputStream());
+        } finally {
+            release(connection);
+        }
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        HttpURLConnection connection = open("DELETE", key, new LinkedHashMap<String, String>(),
+                new LinkedHashMap<String, String>(), SignatureV4Signer.EMPTY_PAYLOAD_HASH);
+        try {
+            if (connection.getResponseCode() != NOT_FOUND) {
+                checkResponse(connection, String.format("Cannot delete '%s'", key));
+            }
+        } finally {
+            release(connection);
+        }
+    }
+
+    @Override
+    public void delete(List<String> keys) throws IOException {
+        if (keys.isEmpty()) {
+            return;
+        }
+
+        byte[] body = deleteRequest(keys);
+
+        Map<String, String> queryParameters = new LinkedHashMap<String, String>();
+        queryParameters.put("delete", "");
+        Map<String, String> headers = new LinkedHashMap<String, String>();
+        headers.put("Content-Type", "application/xml");
+        headers.put("Content-MD5", IoUtils.base64(IoUtils.newMd5().digest(body)));
+
+        HttpURLConnection connection = open("POST", "", queryParameters, headers,
+                IoUtils.hex(SignatureV4Signer.sha256(body)));
+        try {
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(body.length);
+
+            OutputStream out = connection.getOutputStream();
+            try {
+                out.write(body);
+            } finally {
+                IoUtils.closeQuietly(out);
+            }
+
+            checkResponse(connection, String.format("Cannot delete %d objects", keys.size()));
+            String response = readBody(connection.getInputStream());
+            int start = response.indexOf("<Error>");
+            if (start != -1) {
+                throw new TransportException(String.format("Cannot delete %d objects: %s", keys.size(),
+                        response.substring(start)), INTERNAL_ERROR);
+            }
+        } finally {
+            release(connection);
+        }
+    }
+
+    @Override
+    public void copy(String sourceBucketName, String sourceKey, String destinationKey, boolean publicRead)
+            throws IOException {
+        Map<String, String> headers = new LinkedHashMap<String, String>();
+        headers.put("x-amz-copy-source", getCopySource(sourceBucketName, sourceKey));
+        if (publicRead) {
+            headers.put("x-amz-acl", "public-read");
+        }
+
+        HttpURLConnection connection = open("PUT", destinationKey, new LinkedHashMap<String, String>(), headers,
+                SignatureV4Signer.EMPTY_PAYLOAD_HASH);
+        try {
+            String message = String.format("Cannot copy '%s' to '%s'", sourceKey, destinationKey);
+            send(connection, new byte[0]);
+            checkResponse(connection, message);
+            checkBody(readBody(connection.getInputStream()), message);
+        } finally {
+            release(connection);
+        }
+    }
+
+    @Override
+    public String initiateMultipartUpload(ObjectInfo metadata, boolean publicRead) throws IOException {
+        Map<String, String> queryParameters = new LinkedHashMap<String, String>();
+        queryParameters.put("uploads", "");
+        Map<String, String> headers = new LinkedHashMap<String, String>();
+        headers.put("Content-Type", getContentType(metadata));
+        if (publicRead) {
+            headers.put("x-amz-acl", "public-read");
+        }
+
+        HttpURLConnection connection = open("POST", metadata.getKey(), queryParameters, headers,
+                SignatureV4Signer.EMPTY_PAYLOAD_HASH);
+        try {
+            String message = String.format("Cannot start upload of '%s'", metadata.getKey());
+            send(connection, new byte[0]);
+            checkResponse(connection, message);
+            return getElement(readBody(connection.getInputStream()), "UploadId", message);
+        } finally {
+            release(connection);
+        }
+    }
+
+    @Override
+    public String uploadPart(String key, String uploadId, int partNumber, InputStream in, long length)
+            throws IOException {
+        Map<String, String> queryParameters = new LinkedHashMap<String, String>();
+        queryParameters.put("partNumber", Integer.toString(partNumber));
+        queryParameters.put("uploadId", uploadId);
+
+        HttpURLConnection connection = open("PUT", key, queryParameters, new LinkedHashMap<String, String>(),
+                SignatureV4Signer.UNSIGNED_PAYLOAD);
+        try {
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(length);
+
+            OutputStream out = connection.getOutputStream();
+            try {
+                IoUtils.copy(in, out);
+            } finally {
+                IoUtils.closeQuietly(out);
+            }
+
+            checkResponse(connection, String.format("Cannot write part %d of '%s'", partNumber, key));
+            return unquote(connection.getHeaderField("ETag"));
+        } finally {
+            release(connection);
+        }
+    }
+
+    @Override
+    public String copyPart(String destinationKey, String uploadId, int partNumber, String sourceBucketName,
+                           String sourceKey, long firstByte, long lastByte) throws IOException {
+        Map<String, String> queryParameters = new LinkedHashMap<String, String>();
+        queryParameters.put("partNumber", Integer.toString(partNumber));
+        queryParameters.put("uploadId", uploadId);
+        Map<String, String> headers = new LinkedHashMap<String, String>();
+        headers.put("x-amz-copy-source", getCopySource(sourceBucketName, sourceKey));
+        headers.put("x-amz-copy-source-range", "bytes=" + firstByte + "-" + lastByte);
+
+        HttpURLConnection connection = open("PUT", destinationKey, queryParameters, headers,
+                SignatureV4Signer.EMPTY_PAYLOAD_HASH);
+        try {
+            String message = String.format("Cannot copy part %d of '%s' to '%s'", partNumber, sourceKey,
+                    destinationKey);
+            send(connection, new byte[0]);
+            checkResponse(connection, message);
+            return unquote(getElement(readBody(connection.getInputStream()), "ETag", message));
+        } finally {
+            release(connection);
+        }
+    }
+
+    @Override
+    public void completeMultipartUpload(String key, String uploadId, List<String> partETags) throws IOException {
+        byte[] body = completeMultipartUploadRequest(partETags);
+
+        Map<String, String> queryParameters = new LinkedHashMap<String, String>();
+        queryParameters.put("uploadId", uploadId);
+        Map<String, String> headers = new LinkedHashMap<String, String>();
+        headers.put("Content-Type", "application/xml");
+
+        HttpURLConnection connection = open("POST", key, queryParameters, headers,
+                IoUtils.hex(SignatureV4Signer.sha256(body)));
+        try {
+            String message = String.format("Cannot complete upload of '%s'", key);
+            send(connection, body);
+            checkResponse(connection, message);
+            checkBody(readBody(connection.getInputStream()), message);
+        } finally {
+            release(connection);
+        }
+    }
+
+    @Override
+    public void abortMultipartUpload(String key, String uploadId) throws IOException {
+        Map<String, String> queryParameters = new LinkedHashMap<String, String>();
+        queryParameters.put("uploadId", uploadId);
+
+        HttpURLConnection connection = open("DELETE", key, queryParameters, new LinkedHashMap<String, String>(),
+                SignatureV4Signer.EMPTY_PAYLOAD_HASH);
+        try {
+            if (connection.getResponseCode() != NOT_FOUND) {
+                checkResponse(connection, String.format("Cannot abort upload of '%s'", key));
+            }
+        } finally {
+            release(connection);
+        }
+    }
+
+    String getBucketLocation() throws IOException {
+        Map<String, String> queryParameters = new LinkedHashMap<String, String>();
+        queryParameters.put("location", "");
+
+        HttpURLConnection connection = open("GET", "", queryParameters, new LinkedHashMap<String, String>(),
+                SignatureV4Signer.EMPTY_PAYLOAD_HASH);
+        try {
+            checkResponse(connection, String.format("Cannot locate bucket '%s'", this.bucketName));
+            String locationConstraint = parseLocationConstraint(connection.getInputStream());
+            return locationConstraint.isEmpty() ? Region.US.getLocationConstraint() : locationConstraint;
+        } finally {
+            release(connection);
+        }
+    }
+
+    private HttpURLConnection open(String method, String key, Map<String, String> queryParameters,
+                                   Map<String, String> headers, String payloadHash) throws IOException {
+        String path = String.format("/%s/%s", this.bucketName, key);
+        this.signer.sign(method, this.endpoint, path, queryParameters, headers, payloadHash, new Date());
+
+        StringBuilder url = new StringBuilder(this.clientSettings.getProtocol()).append("://").append(this.endpoint)
+                .append(SignatureV4Signer.encode(path, false));
+        if (!queryParameters.isEmpty()) {
+            url.append('?').append(SignatureV4Signer.canonicalQueryString(queryParameters));
+        }
+
+        final HttpURLConnection connection = (HttpURLConnection) new URL(url.toString()).openConnection(this.proxy);
+        Deadline deadline = Deadline.current();
+        if (deadline != null) {
+            deadline.onCancel(new Runnable() {
+
+                @Override
+                public void run() {
+                    connection.disconnect();
+                }
+            });
+        }
+        connection.setRequestMethod(method);
+        connection.setUseCaches(false);
+        connection.setInstanceFollowRedirects(false);
+        connection.setConnectTimeout(this.clientSettings.getConnectionTimeout());
+        connection.setReadTimeout(this.clientSettings.getSocketTimeout());
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            if (!"Host".equals(header.getKey())) {
+                connection.setRequestProperty(header.getKey(), header.getValue());
+            }
+        }
+        if (!this.clientSettings.isKeepAlive()) {
+            connection.setRequestProperty("Connection", "close");
+        }
+        return connection;
+    }
+
+    private String getCopySource(String sourceBucketName, String sourceKey) {
+        return SignatureV4Signer.encode(String.format("/%s/%s", sourceBucketName == null ? this.bucketName :
+                sourceBucketName, sourceKey), false);
+    }
+
+    private static void send(HttpURLConnection connection, byte[] body) throws IOException {
+        connection.setDoOutput(true);
+        connection.setFixedLengthStreamingMode(body.length);
+
+        OutputStream out = connection.getOutputStream();
+        try {
+            out.write(body);
+        } finally {
+            IoUtils.closeQuietly(out);
+        }
+    }
+
+    /**
+     * Copy and complete requests can fail after S3 has sent a {@code 200} status, in which case the error is in the
+     * body
+     */
+    private static void checkBody(String body, String message) throws TransportException {
+        int start = body.indexOf("<Error>");
+        if (start != -1) {
+            throw new TransportException(String.format("%s: %s", message, body.substring(start)), INTERNAL_ERROR);
+        }
+    }
+
+    private static String getElement(String body, String name, String message) throws TransportException {
+        checkBody(body, message);
+
+        String value = getElement(body, name);
+        if (value == null) {
+            throw new TransportException(String.format("%s: no %s in response", message, name), INTERNAL_ERROR);
+        }
+        return value;
+    }
+
+    static String getElement(String body, String name) {
+        String startTag = "<" + name + ">";
+        int start = body.indexOf(startTag);
+        int end = body.indexOf("</" + name + ">", start);
+        return start != -1 && end != -1 ? unescape(body.substring(start + startTag.length(), end)) : null;
+    }
+
+    static void checkResponse(HttpURLConnection connection, String message) throws IOException {
+        int statusCode = connection.getResponseCode();
+        if (statusCode >= MULTIPLE_CHOICES) {
+            String error = readErrorCode(connection);
+            throw new TransportException(String.format("%s: %d %s", message, statusCode,
+                    error != null ? error : connection.getResponseMessage()), statusCode);
+        }
+    }
+
+    private static String readErrorCode(HttpURLConnection connection) {
+        InputStream in = connection.getErrorStream();
+        if (in == null) {
+            return null;
+        }
+
+        try {
+            String body = readBody(in);
+
+            int start = body.indexOf("<Code>");
+            int end = body.indexOf("</Code>");
+            return start != -1 && end > start ? body.substring(start + "<Code>".length(), end) : null;
+        } catch (IOException e) {
+            return null;
+        } finally {
+            IoUtils.closeQuietly(in);
+        }
+    }
+
+    private static String readBody(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IoUtils.copy(in, out);
+        return out.toString("UTF-8");
+    }
+
+    /**
+     * Reads any remaining response so that the connection can be returned to the keep-alive cache
+     */
+    static void release(HttpURLConnection connection) {
+        InputStream in = null;
+        try {
+            in = connection.getInputStream();
+            while (in.read() != -1) {
+                // drain the response
+            }
+        } catch (IOException e) {
+            IoUtils.closeQuietly(connection.getErrorStream());
+        } finally {
+            IoUtils.closeQuietly(in);
+        }
+    }
+
+    static ObjectInfo toObjectInfo(String key, HttpURLConnection connection) {
+        Map<String, String> metadata = new LinkedHashMap<String, String>();
+        for (Map.Entry<String, List<String>> header : connection.getHeaderFields().entrySet()) {
+            String name = header.getKey() == null ? null : header.getKey().toLowerCase(Locale.ENGLISH);
+            if (name != null && name.startsWith(USER_METADATA_PREFIX) && !header.getValue().isEmpty()) {
+                metadata.put(name.substring(USER_METADATA_PREFIX.length()), header.getValue().get(0));
+            }
+        }
+
+        long lastModified = connection.getLastModified();
+        return new ObjectInfo(key, connection.getContentLengthLong(), unquote(connection.getHeaderField("ETag")),
+                lastModified == 0 ? null : new Date(lastModified), connection.getContentType(),
+                connection.getContentEncoding(), metadata);
+    }
+
+    private static String getContentType(ObjectInfo metadata) {
+        if (metadata.getContentType() != null) {
+            return metadata.getContentType();
+        }
+
+        String contentType = URLConnection.guessContentTypeFromName(metadata.getKey());
+        return contentType != null ? contentType : DEFAULT_CONTENT_TYPE;
+    }
+
+    static Proxy getProxy(ProxyInfoProvider proxyInfoProvider) {
+        if (proxyInfoProvider != null) {
+            ProxyInfo proxyInfo = proxyInfoProvider.getProxyInfo("s3");
+            if (proxyInfo != null) {
+                return new Proxy(Proxy.Type.HTTP, InetSocketAddress.createUnresolved(proxyInfo.getHost(),
+                        proxyInfo.getPort()));
+            }
+        }
+        return Proxy.NO_PROXY;
+    }
+
+    static byte[] deleteRequest(List<String> keys) throws IOException {
+        StringBuilder sb = new StringBuilder("<Delete><Quiet>true</Quiet>");
+        for (String key : keys) {
+            escape(sb.append("<Object><Key>"), key).append("</Key></Object>");
+        }
+        return sb.append("</Delete>").toString().getBytes("UTF-8");
+    }
+
+    static byte[] completeMultipartUploadRequest(List<String> partETags) throws IOException {
+        StringBuilder sb = new StringBuilder("<CompleteMultipartUpload>");
+        for (int i = 0; i < partETags.size(); i++) {
+            sb.append("<Part><PartNumber>").append(i + 1).append("</PartNumber><ETag>\"");
+            escape(sb, partETags.get(i)).append("\"</ETag></Part>");
+        }
+        return sb.append("</CompleteMultipartUpload>").toString().getBytes("UTF-8");
+    }
+
+    private static StringBuilder escape(StringBuilder sb, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '<':
+                    sb.append("&lt;");
+                    break;
+                case '>':
+                    sb.append("&gt;");
+                    break;
+                case '&':
+                    sb.append("&amp;");
+                    break;
+                default:
+                    sb.append(c);
+            }
+        }
+        return sb;
+    }
+
+    private static String unescape(String value) {
+        return value.replace("&quot;", "\"").replace("&lt;", "<").replace("&gt;", ">").replace("&amp;", "&");
+    }
+
+    static ListingPage parseListing(InputStream in) throws IOException {
+        List<String> commonPrefixes = new ArrayList<String>();
+        List<ObjectInfo> objects = new ArrayList<ObjectInfo>();
+        boolean truncated = false;
+        String nextMarker = null;
+        String lastKey = "";
+
+        try {
+            XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(in);
+            try {
+                boolean inCommonPrefixes = false;
+                String key = null;
+                long size = 0;
+                String eTag = null;
+                Date lastModified = null;
+
+                while (reader.hasNext()) {
+                    int event = reader.next();
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        String name = reader.getLocalName();
+                        if ("CommonPrefixes".equals(name)) {
+                            inCommonPrefixes = true;
+                        } else if ("Prefix".equals(name) && inCommonPrefixes) {
+                            String commonPrefix = reader.getElementText();
+                            commonPrefixes.add(commonPrefix);
+                            lastKey = max(lastKey, commonPrefix);
+                        } else if ("Key".equals(name)) {
+                            key = reader.getElementText();
+                        } else if ("Size".equals(name)) {
+                            size = Long.parseLong(reader.getElementText().trim());
+                        } else if ("ETag".equals(name)) {
+                            eTag = unquote(reader.getElementText());
+                        } else if ("LastModified".equals(name)) {
+                            lastModified = parseIso8601(reader.getElementText());
+                        } else if ("IsTruncated".equals(name)) {
+                            truncated = Boolean.parseBoolean(reader.getElementText().trim());
+                        } else if ("NextMarker".equals(name)) {
+                            nextMarker = reader.getElementText();
+                        }
+                    } else if (event == XMLStreamConstants.END_ELEMENT) {
+                        String name = reader.getLocalName();
+                        if ("CommonPrefixes".equals(name)) {
+                            inCommonPrefixes = false;
+                        } else if ("Contents".equals(name)) {
+                            objects.add(new ObjectInfo(key, size, eTag, lastModified, null));
+                            lastKey = max(lastKey, key);
+                            key = null;
+                            size = 0;
+                            eTag = null;
+                            lastModified = null;
+                        }
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Cannot parse listing", e);
+        }
+
+        if (!truncated) {
+            nextMarker = null;
+        } else if (nextMarker == null || nextMarker.isEmpty()) {
+            nextMarker = lastKey;
+        }
+
+        return new ListingPage(commonPrefixes, objects, nextMarker);
+    }
+
+    static String parseLocationConstraint(InputStream in) throws IOException {
+        try {
+            XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(in);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT
+                            && "LocationConstraint".equals(reader.getLocalName())) {
+                        return reader.getElementText().trim();
+                    }
+                }
+                return "";
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Cannot parse bucket location", e);
+        }
+    }
+
+    private static String max(String a, String b) {
+        return a.compareTo(b) >= 0 ? a : b;
+    }
+
+    private static String unquote(String value) {
+        if (value != null && value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+            return value.substring(1, value.length() - 1);
+        }
+        return value;
+    }
+
+    private static Date parseIso8601(String value) throws IOException {
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
+        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        try {
+            return dateFormat.parse(value.trim());
+        } catch (ParseException e) {
+            throw new IOException(String.format("Cannot parse date '%s'", value), e);
+        }
+    }
+}
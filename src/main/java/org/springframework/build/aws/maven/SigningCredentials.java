@@ -0,0 +1,84 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import org.apache.maven.wagon.authentication.AuthenticationInfo;
+
+/**
+ * Credentials used to sign requests without the AWS SDK. They are resolved in the same order as
+ * {@link AuthenticationInfoAWSCredentialsProviderChain}, except that the EC2 instance metadata service is not
+ * consulted.
+ */
+final class SigningCredentials {
+
+    private final String accessKeyId;
+
+    private final String secretKey;
+
+    private final String sessionToken;
+
+    SigningCredentials(String accessKeyId, String secretKey, String sessionToken) {
+        this.accessKeyId = accessKeyId;
+        this.secretKey = secretKey;
+        this.sessionToken = sessionToken;
+    }
+
+    String getAccessKeyId() {
+        return this.accessKeyId;
+    }
+
+    String getSecretKey() {
+        return this.secretKey;
+    }
+
+    String getSessionToken() {
+        return this.sessionToken;
+    }
+
+    static SigningCredentials resolve(AuthenticationInfo authenticationInfo) {
+        String accessKeyId = firstNonEmpty(System.getenv("AWS_ACCESS_KEY_ID"), System.getenv("AWS_ACCESS_KEY"));
+        String secretKey = firstNonEmpty(System.getenv("AWS_SECRET_KEY"), System.getenv("AWS_SECRET_ACCESS_KEY"));
+        if (accessKeyId != null && secretKey != null) {
+            return new SigningCredentials(accessKeyId, secretKey, firstNonEmpty(System.getenv("AWS_SESSION_TOKEN")));
+        }
+
+        accessKeyId = firstNonEmpty(System.getProperty("aws.accessKeyId"));
+        secretKey = firstNonEmpty(System.getProperty("aws.secretKey"));
+        if (accessKeyId != null && secretKey != null) {
+            return new SigningCredentials(accessKeyId, secretKey, null);
+        }
+
+        if (authenticationInfo != null) {
+            accessKeyId = firstNonEmpty(authenticationInfo.getUserName());
+            secretKey = firstNonEmpty(authenticationInfo.getPassword());
+            if (accessKeyId != null && secretKey != null) {
+                return new SigningCredentials(accessKeyId, secretKey, null);
+            }
+        }
+
+        return null;
+    }
+
+    private static String firstNonEmpty(String... candidates) {
+        for (String candidate : candidates) {
+            if (candidate != null && !candidate.trim().isEmpty()) {
+                return candidate.trim();
+            }
+        }
+        return null;
+    }
+}
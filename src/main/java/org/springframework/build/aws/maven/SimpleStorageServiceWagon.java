@@ -16,25 +16,41 @@
 
 package org.springframework.build.aws.maven;
 
-import com.amazonaws.AmazonServiceException;
-import com.amazonaws.ClientConfiguration;
-import com.amazonaws.services.s3.AmazonS3;
-import com.amazonaws.services.s3.AmazonS3Client;
-import com.amazonaws.services.s3.internal.Mimetypes;
-import com.amazonaws.services.s3.model.*;
+import org.apache.maven.wagon.ConnectionException;
 import org.apache.maven.wagon.ResourceDoesNotExistException;
 import org.apache.maven.wagon.TransferFailedException;
+import org.apache.maven.wagon.WagonException;
 import org.apache.maven.wagon.authentication.AuthenticationException;
 import org.apache.maven.wagon.authentication.AuthenticationInfo;
 import org.apache.maven.wagon.proxy.ProxyInfoProvider;
+import org.apache.maven.wagon.authorization.AuthorizationException;
 import org.apache.maven.wagon.repository.Repository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.io.*;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * An implementation of the Maven Wagon interface that allows you to access the Amazon S3 service. URLs that reference
@@ -44,19 +60,129 @@ import java.util.regex.Pattern;
  * <p/>
  * This implementation uses the <code>username</code> and <code>passphrase</code> portions of the server authentication
  * metadata for credentials.
+ * <p/>
+ * The server configuration options, such as <code>transport</code>, <code>deltaSync</code> and
+ * <code>keyIndex</code>, are described in the project's README.md. Most are implemented by collaborators of the wagon,
+ * such as {@link TransportFactory}, {@link DeltaSync}, {@link StagedDeployment} and {@link TransferScheduler}.
  */
 public final class SimpleStorageServiceWagon extends AbstractWagon {
 
-    private static final String KEY_FORMAT = "%s%s";
+    private static final int DEFAULT_STAGED_DEPLOY_THREADS = 8;
+
+    private static final long DEFAULT_MULTIPART_PART_SIZE = 16 * 1024 * 1024;
+
+    private static final int DEFAULT_MULTIPART_THREADS = 4;
+
+    private static final long DEFAULT_KEY_FILTER_REFRESH = 900;
+
+    private static final long DEFAULT_KEY_INDEX_MAX_AGE = 86400;
+
+    private static final String DEFAULT_COMPRESSED_EXTENSIONS = "pom,xml,module,html,css,js";
+
+    private static final long MAX_COMPRESSED_SIZE = 16 * 1024 * 1024;
+
+    private static final String WAGON = "wagon";
 
-    private static final String RESOURCE_FORMAT = "%s(.*)";
+    private static final String WARM_UP_KEY = ".aws-maven-warm-up";
 
-    private volatile AmazonS3 amazonS3;
+    static final String STATE_PREFIX = ".aws-maven/";
+
+    private static final TransferProgress NO_PROGRESS = new TransferProgress() {
+
+        @Override
+        public void notify(byte[] buffer, int length) {
+            // staged files are uploaded after the transfers that staged them have completed
+        }
+    };
+
+    private volatile Transport transport;
 
     private volatile String bucketName;
 
     private volatile String baseDirectory;
 
+    private volatile AuthenticationInfo authenticationInfo;
+
+    private volatile ProxyInfoProvider proxyInfoProvider;
+
+    private volatile boolean lazyConnect = false;
+
+    private volatile String transportName = TransportFactory.SDK;
+
+    private volatile boolean stagedDeploy = false;
+
+    private volatile File stagingDirectory;
+
+    private volatile int stagedDeployThreads = DEFAULT_STAGED_DEPLOY_THREADS;
+
+    private volatile StagedDeployment stagedDeployment;
+
+    private volatile boolean deltaSync = false;
+
+    private volatile boolean deltaUpload = false;
+
+    private volatile boolean skipUnchanged = false;
+
+    private volatile boolean deleteOrphans = false;
+
+    private volatile File traceFile;
+
+    private volatile TraceRecorder traceRecorder = TraceRecorder.DISABLED;
+
+    private volatile int warmUpConnections = 0;
+
+    private volatile WarmUpTransport warmUpTransport;
+
+    private volatile long multipartThreshold = 0;
+
+    private volatile long multipartPartSize = DEFAULT_MULTIPART_PART_SIZE;
+
+    private volatile int multipartThreads = DEFAULT_MULTIPART_THREADS;
+
+    private volatile boolean keyFilter = false;
+
+    private volatile long keyFilterRefresh = DEFAULT_KEY_FILTER_REFRESH;
+
+    private volatile KeyFilter activeKeyFilter;
+
+    private volatile boolean keyIndex = false;
+
+    private volatile long keyIndexMaxAge = DEFAULT_KEY_INDEX_MAX_AGE;
+
+    private volatile KeyIndex activeKeyIndex;
+
+    private volatile boolean compression = false;
+
+    private volatile Set<String> compressedExtensions = toExtensions(DEFAULT_COMPRESSED_EXTENSIONS);
+
+    private final ClientSettings clientSettings = new ClientSettings();
+
+    private volatile ClientSettings resolvedClientSettings;
+
+    private volatile boolean dryRun = false;
+
+    private volatile DryRunTransport dryRunTransport;
+
+    private volatile RequestPlan requestPlan;
+
+    private volatile int bufferSize = BufferPool.DEFAULT_BUFFER_SIZE;
+
+    private volatile long maxBufferMemory = BufferPool.DEFAULT_MAX_MEMORY;
+
+    private final ConnectionTracker connectionTracker = new ConnectionTracker();
+
+    private volatile SingleFlight singleFlight = new SingleFlight();
+
+    private volatile int smallTransfers = TransferScheduler.DEFAULT_SMALL_TRANSFERS;
+
+    private volatile int largeTransfers = TransferScheduler.DEFAULT_LARGE_TRANSFERS;
+
+    private volatile long largeTransferSize = TransferScheduler.DEFAULT_LARGE_TRANSFER_SIZE;
+
+    private final Map<String, Long> newerSizes = new ConcurrentHashMap<String, Long>();
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
     /**
      * Creates a new instance of the wagon
      */
@@ -64,188 +190,1585 @@ public final class SimpleStorageServiceWagon extends AbstractWagon {
         super(true);
     }
 
-    SimpleStorageServiceWagon(AmazonS3 amazonS3, String bucketName, String baseDirectory) {
+    SimpleStorageServiceWagon(Transport transport, String baseDirectory) {
         super(true);
-        this.amazonS3 = amazonS3;
-        this.bucketName = bucketName;
+        this.transport = transport;
         this.baseDirectory = baseDirectory;
     }
 
-    @Override
-    protected void connectToRepository(Repository repository, AuthenticationInfo authenticationInfo,
-                                       ProxyInfoProvider proxyInfoProvider) throws AuthenticationException {
-        if (this.amazonS3 == null) {
-            AuthenticationInfoAWSCredentialsProviderChain credentialsProvider =
-                    new AuthenticationInfoAWSCredentialsProviderChain(authenticationInfo);
-            ClientConfiguration clientConfiguration = S3Utils.getClientConfiguration(proxyInfoProvider);
-
-            this.bucketName = S3Utils.getBucketName(repository);
-            this.baseDirectory = S3Utils.getBaseDirectory(repository);
+    /**
+     * Sets whether creation of the S3 client should be deferred until the first operation that requires it
+     *
+     * @param lazyConnect {@code true} to defer creation of the S3 client, otherwise {@code false}
+     */
+    public void setLazyConnect(boolean lazyConnect) {
+        this.lazyConnect = lazyConnect;
+    }
 
-            this.amazonS3 = new AmazonS3Client(credentialsProvider, clientConfiguration);
-            Region region = Region.fromLocationConstraint(this.amazonS3.getBucketLocation(this.bucketName));
-            this.amazonS3.setEndpoint(region.getEndpoint());
+    /**
+     * Sets the transport used to access S3
+     *
+     * @param transport {@code sdk} to use the AWS SDK, {@code http} to use the built-in Signature Version 4 client,
+     *                  {@code memory} to keep objects in memory, a {@code file:} URL to store objects on disk, or
+     *                  {@code public} or an {@code https:} URL to read a public-read bucket without signing
+     */
+    public void setTransport(String transport) {
+        if (!TransportFactory.isSupported(transport)) {
+            throw new IllegalArgumentException(String.format("'%s' is not a valid transport", transport));
         }
+        this.transportName = transport;
     }
 
-    @Override
-    protected void disconnectFromRepository() {
-        this.amazonS3 = null;
-        this.bucketName = null;
-        this.baseDirectory = null;
+    /**
+     * Sets whether files should be staged locally and uploaded together when the wagon disconnects
+     *
+     * @param stagedDeploy {@code true} to stage files, otherwise {@code false}
+     */
+    public void setStagedDeploy(boolean stagedDeploy) {
+        this.stagedDeploy = stagedDeploy;
     }
 
-    @Override
-    protected boolean doesRemoteResourceExist(String resourceName) {
-        try {
-            getObjectMetadata(resourceName);
-            return true;
-        } catch (AmazonServiceException e) {
-            return false;
-        }
+    /**
+     * Sets the directory that staged files are journaled in. Defaults to a directory per repository below
+     * {@code ~/.m2/aws-maven/staging}.
+     *
+     * @param stagingDirectory The directory to journal staged files in
+     */
+    public void setStagingDirectory(File stagingDirectory) {
+        this.stagingDirectory = stagingDirectory;
     }
 
-    @Override
-    protected boolean isRemoteResourceNewer(String resourceName, long timestamp) throws ResourceDoesNotExistException {
-        try {
-            Date lastModified = getObjectMetadata(resourceName).getLastModified();
-            return lastModified == null || lastModified.getTime() > timestamp;
-        } catch (AmazonServiceException e) {
-            throw new ResourceDoesNotExistException(String.format("'%s' does not exist", resourceName), e);
+    /**
+     * Sets the number of files uploaded concurrently when staged files are committed
+     *
+     * @param stagedDeployThreads The number of concurrent uploads
+     */
+    public void setStagedDeployThreads(int stagedDeployThreads) {
+        if (stagedDeployThreads < 1) {
+            throw new IllegalArgumentException("stagedDeployThreads must be at least 1");
         }
+        this.stagedDeployThreads = stagedDeployThreads;
     }
 
-    @Override
-    protected List<String> listDirectory(String directory) throws ResourceDoesNotExistException {
-        List<String> directoryContents = new ArrayList<String>();
+    /**
+     * Sets whether {@code putDirectory} should only put files that differ from those already in the repository
+     *
+     * @param deltaSync {@code true} to only put changed files, otherwise {@code false}
+     */
+    public void setDeltaSync(boolean deltaSync) {
+        this.deltaSync = deltaSync;
+    }
 
-        try {
-            String prefix = getKey(directory);
-            Pattern pattern = Pattern.compile(String.format(RESOURCE_FORMAT, prefix));
+    /**
+     * Sets whether a SNAPSHOT artifact larger than a multipart upload's smallest part should be put by copying the
+     * chunks it shares with the previous build's artifact and uploading only the others
+     *
+     * @param deltaUpload {@code true} to only upload changed chunks, otherwise {@code false}
+     */
+    public void setDeltaUpload(boolean deltaUpload) {
+        this.deltaUpload = deltaUpload;
+    }
 
-            ListObjectsRequest listObjectsRequest = new ListObjectsRequest() //
-                    .withBucketName(this.bucketName) //
-                    .withPrefix(prefix) //
-                    .withDelimiter("/");
+    /**
+     * Sets whether a get should leave a destination file that already exists alone if its size and MD5 match the
+     * remote object's, rather than downloading the object again
+     *
+     * @param skipUnchanged {@code true} to skip downloads of unchanged files, otherwise {@code false}
+     */
+    public void setSkipUnchanged(boolean skipUnchanged) {
+        this.skipUnchanged = skipUnchanged;
+    }
 
-            ObjectListing objectListing;
+    /**
+     * Sets whether a delta sync should delete objects in the destination directory that have no local counterpart
+     *
+     * @param deleteOrphans {@code true} to delete orphaned objects, otherwise {@code false}
+     */
+    public void setDeleteOrphans(boolean deleteOrphans) {
+        this.deleteOrphans = deleteOrphans;
+    }
 
-            objectListing = this.amazonS3.listObjects(listObjectsRequest);
-            directoryContents.addAll(getResourceNames(objectListing, pattern));
+    /**
+     * Sets the file that a trace of the session is written to when the wagon disconnects. The file is in the Chrome
+     * trace event format and can be opened with <code>chrome://tracing</code> or Perfetto.
+     *
+     * @param traceFile The file to write the trace to, or {@code null} to not trace
+     */
+    public void setTraceFile(File traceFile) {
+        this.traceFile = traceFile;
+    }
 
-            while (objectListing.isTruncated()) {
-                objectListing = this.amazonS3.listObjects(listObjectsRequest);
-                directoryContents.addAll(getResourceNames(objectListing, pattern));
-            }
+    /**
+     * Sets the number of connections to open in the background as soon as the S3 client has been created
+     *
+     * @param warmUpConnections The number of connections to open, or {@code 0} to not open any
+     */
+    public void setWarmUpConnections(int warmUpConnections) {
+        if (warmUpConnections < 0) {
+            throw new IllegalArgumentException("warmUpConnections must not be negative");
+        }
+        this.warmUpConnections = warmUpConnections;
+    }
 
-            return directoryContents;
-        } catch (AmazonServiceException e) {
-            throw new ResourceDoesNotExistException(String.format("'%s' does not exist", directory), e);
+    /**
+     * Sets the size above which a file is put as a multipart upload whose parts are uploaded in parallel. Objects
+     * uploaded this way have an ETag that is not the MD5 of their content.
+     *
+     * @param multipartThreshold The size in bytes, or {@code 0} to always put files with a single request
+     */
+    public void setMultipartThreshold(long multipartThreshold) {
+        if (multipartThreshold < 0) {
+            throw new IllegalArgumentException("multipartThreshold must not be negative");
         }
+        this.multipartThreshold = multipartThreshold;
     }
 
-    @Override
-    protected void getResource(String resourceName, File destination, TransferProgress transferProgress)
-            throws TransferFailedException, ResourceDoesNotExistException {
-        InputStream in = null;
-        OutputStream out = null;
-        try {
-            S3Object s3Object = this.amazonS3.getObject(this.bucketName, getKey(resourceName));
+    /**
+     * Sets the size of the parts of a multipart upload. It is raised for files that would otherwise need more parts
+     * than S3 allows.
+     *
+     * @param multipartPartSize The size in bytes, at least 5 MB
+     */
+    public void setMultipartPartSize(long multipartPartSize) {
+        if (multipartPartSize < MultipartFileUpload.MIN_PART_SIZE) {
+            throw new IllegalArgumentException("multipartPartSize must be at least 5 MB");
+        }
+        this.multipartPartSize = multipartPartSize;
+    }
 
-            in = s3Object.getObjectContent();
-            out = new TransferProgressFileOutputStream(destination, transferProgress);
+    /**
+     * Sets the number of parts of a multipart upload that are uploaded concurrently
+     *
+     * @param multipartThreads The number of concurrent part uploads
+     */
+    public void setMultipartThreads(int multipartThreads) {
+        if (multipartThreads < 1) {
+            throw new IllegalArgumentException("multipartThreads must be at least 1");
+        }
+        this.multipartThreads = multipartThreads;
+    }
 
-            IoUtils.copy(in, out);
-        } catch (AmazonServiceException e) {
-            throw new ResourceDoesNotExistException(String.format("'%s' does not exist", resourceName), e);
-        } catch (FileNotFoundException e) {
-            throw new TransferFailedException(String.format("Cannot write file to '%s'", destination), e);
-        } catch (IOException e) {
-            throw new TransferFailedException(String.format("Cannot read from '%s' and write to '%s'", resourceName, destination), e);
-        } finally {
-            IoUtils.closeQuietly(in, out);
+    /**
+     * Sets the number of small transfers, such as metadata, POMs and checksums, that the wagons for the bucket run at
+     * once. The limit is shared by every wagon for the bucket in the JVM (see {@link TransferScheduler}), so only the
+     * value of the first wagon to connect to the bucket applies; later wagons use the same limits.
+     *
+     * @param smallTransfers The number of concurrent small transfers
+     */
+    public void setSmallTransfers(int smallTransfers) {
+        if (smallTransfers < 1) {
+            throw new IllegalArgumentException("smallTransfers must be at least 1");
         }
+        this.smallTransfers = smallTransfers;
     }
 
-    @Override
-    protected void putResource(File source, String destination, TransferProgress transferProgress) throws TransferFailedException,
-            ResourceDoesNotExistException {
-        String key = getKey(destination);
+    /**
+     * Sets the number of large transfers that the wagons for the bucket run at once. Large transfers never take the
+     * slots of small ones, so metadata and POMs do not queue behind large artifacts. As with
+     * {@link #setSmallTransfers(int)}, only the value of the first wagon to connect to the bucket applies.
+     *
+     * @param largeTransfers The number of concurrent large transfers
+     */
+    public void setLargeTransfers(int largeTransfers) {
+        if (largeTransfers < 1) {
+            throw new IllegalArgumentException("largeTransfers must be at least 1");
+        }
+        this.largeTransfers = largeTransfers;
+    }
 
-        mkdirs(key, 0);
+    /**
+     * Sets the size above which a transfer is large. A get whose size is known neither from a staged file, the key
+     * index nor a preceding <code>getIfNewer</code> is large unless it is of metadata, a POM or a checksum. As with
+     * {@link #setSmallTransfers(int)}, only the value of the first wagon to connect to the bucket applies.
+     *
+     * @param largeTransferSize The size in bytes
+     */
+    public void setLargeTransferSize(long largeTransferSize) {
+        if (largeTransferSize < 0) {
+            throw new IllegalArgumentException("largeTransferSize must not be negative");
+        }
+        this.largeTransferSize = largeTransferSize;
+    }
 
-        InputStream in = null;
-        try {
-            ObjectMetadata objectMetadata = new ObjectMetadata();
-            objectMetadata.setContentLength(source.length());
-            objectMetadata.setContentType(Mimetypes.getInstance().getMimetype(source));
+    /**
+     * Sets whether lookups of resources should first consult a Bloom filter of every key in the repository, so that
+     * resources that definitely do not exist are reported missing without a request (see {@link KeyFilter})
+     *
+     * @param keyFilter {@code true} to use a key filter, otherwise {@code false}
+     */
+    public void setKeyFilter(boolean keyFilter) {
+        this.keyFilter = keyFilter;
+    }
 
-            in = new TransferProgressFileInputStream(source, transferProgress);
+    /**
+     * Sets how old a cached or published key filter may be before it is rebuilt from a listing of the repository.
+     * Resources deployed by other builds are reported missing for up to this long.
+     *
+     * @param keyFilterRefresh The age in seconds
+     */
+    public void setKeyFilterRefresh(long keyFilterRefresh) {
+        if (keyFilterRefresh < 0) {
+            throw new IllegalArgumentException("keyFilterRefresh must not be negative");
+        }
+        this.keyFilterRefresh = keyFilterRefresh;
+    }
 
-            this.amazonS3.putObject(new PutObjectRequest(this.bucketName, key, in, objectMetadata));
-        } catch (AmazonServiceException e) {
-            throw new TransferFailedException(String.format("Cannot write file to '%s'", destination), e);
-        } catch (FileNotFoundException e) {
-            throw new ResourceDoesNotExistException(String.format("Cannot read file from '%s'", source), e);
-        } finally {
-            IoUtils.closeQuietly(in);
+    /**
+     * Sets whether existence checks, timestamp checks and directory listings should be answered from the key index
+     * published in the repository, and whether resources put by the wagon should be added to it (see
+     * {@link KeyIndex})
+     *
+     * @param keyIndex {@code true} to use the key index, otherwise {@code false}
+     */
+    public void setKeyIndex(boolean keyIndex) {
+        this.keyIndex = keyIndex;
+    }
+
+    /**
+     * Sets how long after the key index was last published its shards may answer lookups, before lookups go to S3
+     * instead
+     *
+     * @param keyIndexMaxAge The age in seconds
+     */
+    public void setKeyIndexMaxAge(long keyIndexMaxAge) {
+        if (keyIndexMaxAge < 0) {
+            throw new IllegalArgumentException("keyIndexMaxAge must not be negative");
         }
+        this.keyIndexMaxAge = keyIndexMaxAge;
+    }
+
+    /**
+     * Sets whether resources with one of the compressed extensions should be put gzip-encoded. Resources stored
+     * encoded are decoded when they are got, whether or not this is set.
+     *
+     * @param compression {@code true} to compress resources, otherwise {@code false}
+     */
+    public void setCompression(boolean compression) {
+        this.compression = compression;
     }
 
-    private ObjectMetadata getObjectMetadata(String resourceName) {
-        return this.amazonS3.getObjectMetadata(this.bucketName, getKey(resourceName));
+    /**
+     * Sets the extensions of the resources that are compressed when {@code compression} is enabled
+     *
+     * @param compressedExtensions The extensions, separated by commas
+     */
+    public void setCompressedExtensions(String compressedExtensions) {
+        Set<String> extensions = toExtensions(compressedExtensions);
+        if (extensions.isEmpty()) {
+            throw new IllegalArgumentException("compressedExtensions must not be empty");
+        }
+        this.compressedExtensions = extensions;
     }
 
-    private String getKey(String resourceName) {
-        return String.format(KEY_FORMAT, this.baseDirectory, resourceName);
+    private static Set<String> toExtensions(String extensions) {
+        Set<String> candidates = new HashSet<String>();
+        if (extensions != null) {
+            for (String extension : extensions.split(",")) {
+                extension = extension.trim().toLowerCase(Locale.ENGLISH);
+                if (extension.startsWith(".")) {
+                    extension = extension.substring(1);
+                }
+                if (!extension.isEmpty()) {
+                    candidates.add(extension);
+                }
+            }
+        }
+        return candidates;
     }
 
-    private List<String> getResourceNames(ObjectListing objectListing, Pattern pattern) {
-        List<String> resourceNames = new ArrayList<String>();
+    /**
+     * Sets whether the wagon should only record the S3 requests it would make, without making any. The plan is
+     * logged when the wagon disconnects and is available from {@link #getRequestPlan()}.
+     *
+     * @param dryRun {@code true} to make no requests, otherwise {@code false}
+     */
+    public void setDryRun(boolean dryRun) {
+        this.dryRun = dryRun;
+    }
 
-        for (String commonPrefix : objectListing.getCommonPrefixes()) {
-            resourceNames.add(getResourceName(commonPrefix, pattern));
+    /**
+     * Sets the size of the buffers that transfers copy through. The buffers come from a pool shared by every wagon in
+     * the JVM (see {@link BufferPool}), so the last value set applies to all of them.
+     *
+     * @param bufferSize The size of each buffer in bytes
+     */
+    public void setBufferSize(int bufferSize) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("bufferSize must be at least 1");
         }
+        this.bufferSize = bufferSize;
+        BufferPool.shared().configure(bufferSize, this.maxBufferMemory);
+    }
 
-        for (S3ObjectSummary s3ObjectSummary : objectListing.getObjectSummaries()) {
-            resourceNames.add(getResourceName(s3ObjectSummary.getKey(), pattern));
+    /**
+     * Sets the most memory that the buffers of all concurrent transfers in the JVM may hold. Once it is reached, a
+     * transfer waits for another to release its buffer.
+     *
+     * @param maxBufferMemory The memory in bytes
+     */
+    public void setMaxBufferMemory(long maxBufferMemory) {
+        if (maxBufferMemory < 1) {
+            throw new IllegalArgumentException("maxBufferMemory must be at least 1");
         }
+        this.maxBufferMemory = maxBufferMemory;
+        BufferPool.shared().configure(this.bufferSize, maxBufferMemory);
+    }
+
+    /**
+     * Sets the most connections the S3 client keeps open to the bucket. Only applies to the <code>sdk</code>
+     * transport.
+     *
+     * @param maxConnections The number of connections
+     */
+    public void setMaxConnections(int maxConnections) {
+        this.clientSettings.setMaxConnections(maxConnections);
+    }
+
+    /**
+     * Sets how many times the S3 client retries a request that failed with a retryable error. Only applies to the
+     * <code>sdk</code> transport.
+     *
+     * @param maxErrorRetry The number of retries
+     */
+    public void setMaxErrorRetry(int maxErrorRetry) {
+        this.clientSettings.setMaxErrorRetry(maxErrorRetry);
+    }
+
+    /**
+     * Sets the size of the send buffer that the S3 client asks for on each socket. Only applies to the
+     * <code>sdk</code> transport.
+     *
+     * @param socketSendBufferSize The size in bytes, or {@code 0} for the operating system's default
+     */
+    public void setSocketSendBufferSize(int socketSendBufferSize) {
+        this.clientSettings.setSocketSendBufferSize(socketSendBufferSize);
+    }
+
+    /**
+     * Sets the size of the receive buffer that the S3 client asks for on each socket. Only applies to the
+     * <code>sdk</code> transport.
+     *
+     * @param socketReceiveBufferSize The size in bytes, or {@code 0} for the operating system's default
+     */
+    public void setSocketReceiveBufferSize(int socketReceiveBufferSize) {
+        this.clientSettings.setSocketReceiveBufferSize(socketReceiveBufferSize);
+    }
+
+    /**
+     * Sets whether connections are kept open between requests. Only applies to the <code>http</code> transport; the
+     * SDK always reuses its connections.
+     *
+     * @param keepAlive {@code true} to reuse connections, otherwise {@code false}
+     */
+    public void setKeepAlive(boolean keepAlive) {
+        this.clientSettings.setKeepAlive(keepAlive);
+    }
+
+    /**
+     * Sets the protocol that requests are made with
+     *
+     * @param protocol {@code https} or {@code http}
+     */
+    public void setProtocol(String protocol) {
+        this.clientSettings.setProtocol(protocol);
+    }
+
+    /**
+     * Sets the signer that the S3 client signs requests with instead of the one it chooses for the region. Only
+     * applies to the <code>sdk</code> transport.
+     *
+     * @param signer {@code S3SignerType} or {@code AWSS3V4SignerType}
+     */
+    public void setSigner(String signer) {
+        this.clientSettings.setSigner(signer);
+    }
+
+    /**
+     * Sets how long a request may go without sending or receiving anything at all before it is cancelled
+     *
+     * @param firstByteTimeout The timeout in milliseconds, or {@code 0} for none
+     */
+    public void setFirstByteTimeout(long firstByteTimeout) {
+        this.clientSettings.setFirstByteTimeout(firstByteTimeout);
+    }
+
+    /**
+     * Sets how long a request that has started transferring content may go without any further progress before it is
+     * cancelled
+     *
+     * @param idleTimeout The timeout in milliseconds, or {@code 0} for none
+     */
+    public void setIdleTimeout(long idleTimeout) {
+        this.clientSettings.setIdleTimeout(idleTimeout);
+    }
 
-        return resourceNames;
+    /**
+     * Sets how long a request, including the transfer of its content, may take before it is cancelled
+     *
+     * @param totalTimeout The timeout in milliseconds, or {@code 0} for none
+     */
+    public void setTotalTimeout(long totalTimeout) {
+        this.clientSettings.setTotalTimeout(totalTimeout);
     }
 
-    private String getResourceName(String key, Pattern pattern) {
-        Matcher matcher = pattern.matcher(key);
-        if (matcher.find()) {
-            return matcher.group(1);
+    @Override
+    protected void connectToRepository(Repository repository, AuthenticationInfo authenticationInfo,
+                                       ProxyInfoProvider proxyInfoProvider) throws AuthenticationException,
+            ConnectionException {
+        if (this.traceFile != null) {
+            this.traceRecorder = new TraceRecorder(String.format("aws-maven %s", repository.getUrl()));
+        }
+
+        TraceRecorder.Span span = this.traceRecorder.begin(WAGON, "connect", repository.getUrl());
+        try {
+            openRepository(repository, authenticationInfo, proxyInfoProvider);
+        } finally {
+            span.end();
         }
-        return key;
     }
 
-    private void mkdirs(String path, int index) throws TransferFailedException {
-        int directoryIndex = path.indexOf('/', index) + 1;
+    private void openRepository(Repository repository, AuthenticationInfo authenticationInfo,
+                                ProxyInfoProvider proxyInfoProvider) throws ConnectionException {
+        if (this.transport == null) {
+            this.authenticationInfo = authenticationInfo;
+            this.proxyInfoProvider = proxyInfoProvider;
+            this.bucketName = S3Utils.getBucketName(repository);
+            this.baseDirectory = S3Utils.getBaseDirectory(repository);
+            try {
+                this.resolvedClientSettings = this.clientSettings.resolve(getTimeout(), getReadTimeout(),
+                        System.getProperties(), repository.getId());
+            } catch (IllegalArgumentException e) {
+                throw new ConnectionException(String.format("Invalid client settings for '%s': %s",
+                        repository.getUrl(), e.getMessage()), e);
+            }
+            this.logger.debug("Client settings: {}", this.resolvedClientSettings);
+            this.singleFlight = SingleFlight.forBucket(this.transportName, this.bucketName);
+            setTransferScheduler(TransferScheduler.forBucket(this.transportName, this.bucketName, this.smallTransfers,
+                    this.largeTransfers, this.largeTransferSize));
 
-        if (directoryIndex != 0) {
-            String directory = path.substring(0, directoryIndex);
-            PutObjectRequest putObjectRequest = createDirectoryPutObjectRequest(directory);
+            if (!this.lazyConnect) {
+                try {
+                    getTransport();
+                } catch (TransferFailedException e) {
+                    throw new ConnectionException(e.getMessage(), e.getCause());
+                }
+            }
+        }
 
+        if (this.stagedDeploy) {
+            File root = this.stagingDirectory != null ? this.stagingDirectory : getDefaultStagingDirectory(repository);
+            StagedDeployment candidate = new StagedDeployment(root, this.stagedDeployThreads);
             try {
-                this.amazonS3.putObject(putObjectRequest);
-            } catch (AmazonServiceException e) {
-                throw new TransferFailedException(String.format("Cannot write directory '%s'", directory), e);
+                candidate.open();
+            } catch (IOException e) {
+                throw new ConnectionException(String.format("Cannot open staging directory '%s'", root), e);
+            }
+            this.stagedDeployment = candidate;
+        }
+    }
+
+    @Override
+    protected void disconnectFromRepository() throws ConnectionException {
+        TraceRecorder recorder = this.traceRecorder;
+        TraceRecorder.Span span = recorder.begin(WAGON, "disconnect", null);
+        try {
+            StagedDeployment candidate = this.stagedDeployment;
+            this.stagedDeployment = null;
+            if (candidate != null) {
+                try {
+                    commit(candidate);
+                } catch (TransferFailedException e) {
+                    throw new ConnectionException(e.getMessage(), e);
+                }
             }
+            flushKeyIndex();
+        } finally {
+            flushKeyFilter();
+            span.end();
+
+            this.transport = null;
+            this.bucketName = null;
+            this.baseDirectory = null;
+            this.authenticationInfo = null;
+            this.proxyInfoProvider = null;
+            this.traceRecorder = TraceRecorder.DISABLED;
+            this.activeKeyFilter = null;
+            this.activeKeyIndex = null;
+            this.newerSizes.clear();
+
+            export(recorder);
+            logFirstRequest();
+            logRequestPlan();
+            this.logger.debug("Connections: {}", this.connectionTracker.getStatistics());
+        }
+    }
+
+    /**
+     * Returns how the connections that resources were read from have been handled since the wagon was created:
+     * whether they were returned for reuse, drained so they could be reused, or aborted
+     *
+     * @return The connection statistics
+     */
+    public ConnectionStatistics getConnectionStatistics() {
+        return this.connectionTracker.getStatistics();
+    }
+
+    /**
+     * Returns the requests recorded by a dry run, for the current session or, once disconnected, the last session
+     *
+     * @return The requests a dry run would have made, or {@code null} if there has been no dry run
+     */
+    public RequestPlan getRequestPlan() {
+        DryRunTransport candidate = this.dryRunTransport;
+        return candidate == null ? this.requestPlan : candidate.getPlan();
+    }
 
-            mkdirs(path, directoryIndex);
+    private void logRequestPlan() {
+        DryRunTransport candidate = this.dryRunTransport;
+        this.dryRunTransport = null;
+        if (candidate != null) {
+            this.requestPlan = candidate.getPlan();
+            this.logger.info("Dry run would have made {}", this.requestPlan);
         }
     }
 
-    private PutObjectRequest createDirectoryPutObjectRequest(String key) {
-        ByteArrayInputStream inputStream = new ByteArrayInputStream(new byte[0]);
+    private void logFirstRequest() {
+        WarmUpTransport candidate = this.warmUpTransport;
+        this.warmUpTransport = null;
+        if (candidate == null || candidate.getFirstRequestNanos() == -1) {
+            return;
+        }
+
+        if (candidate.getWarmUpConnections() == 0) {
+            this.logger.debug("First request took {} ms without warm-up", candidate.getFirstRequestNanos() / 1000000);
+        } else if (candidate.getWarmUpNanos() == -1) {
+            this.logger.info("First request took {} ms with {} warm-up connections still opening",
+                    candidate.getFirstRequestNanos() / 1000000, candidate.getWarmUpConnections());
+        } else {
+            this.logger.info("First request took {} ms with {} warm-up connections, which took {} ms to open",
+                    candidate.getFirstRequestNanos() / 1000000, candidate.getWarmUpConnections(),
+                    candidate.getWarmUpNanos() / 1000000);
+        }
+    }
 
-        ObjectMetadata objectMetadata = new ObjectMetadata();
-        objectMetadata.setContentLength(0);
+    private void export(TraceRecorder recorder) {
+        File file = this.traceFile;
+        if (recorder.isEnabled() && file != null) {
+            try {
+                recorder.export(file);
+                this.logger.info("Wrote trace of {} spans to '{}'", recorder.size(), file);
+            } catch (IOException e) {
+                this.logger.warn("Cannot write trace to '{}': {}", file, e.getMessage());
+            }
+        }
+    }
 
-        return new PutObjectRequest(this.bucketName, key, inputStream, objectMetadata).withCannedAcl(CannedAccessControlList.PublicRead);
+    @Override
+    protected boolean doesRemoteResourceExist(String resourceName) throws TransferFailedException {
+        TraceRecorder.Span span = this.traceRecorder.begin(WAGON, "resourceExists", resourceName);
+        try {
+            if (getStaged(resourceName) != null) {
+                return true;
+            }
+
+            Transport transport = getTransport();
+            KeyIndex index = getKeyIndex(transport);
+            boolean indexed = isIndexed(index, getKey(resourceName));
+            if (!indexed && isDefinitelyMissing(transport, getKey(resourceName))) {
+                return false;
+            }
+
+            try {
+                if (indexed) {
+                    return index.find(getKey(resourceName)) != null;
+                }
+                return head(transport, getKey(resourceName)) != null;
+            } catch (TransportException e) {
+                return false;
+            } catch (IOException e) {
+                throw new TransferFailedException(String.format("Cannot read from '%s'", resourceName), e);
+            }
+        } finally {
+            span.end();
+        }
+    }
+
+    @Override
+    protected boolean isRemoteResourceNewer(String resourceName, long timestamp) throws TransferFailedException,
+            ResourceDoesNotExistException {
+        TraceRecorder.Span span = this.traceRecorder.begin(WAGON, "getIfNewer", resourceName);
+        try {
+            File staged = getStaged(resourceName);
+            if (staged != null) {
+                return staged.lastModified() > timestamp;
+            }
+
+            Transport transport = getTransport();
+            KeyIndex index = getKeyIndex(transport);
+            boolean indexed = isIndexed(index, getKey(resourceName));
+            if (!indexed && isDefinitelyMissing(transport, getKey(resourceName))) {
+                throw new ResourceDoesNotExistException(String.format("'%s' does not exist", resourceName));
+            }
+
+            try {
+                ObjectInfo objectInfo = indexed ? index.find(getKey(resourceName)) :
+                        head(transport, getKey(resourceName));
+                if (objectInfo == null) {
+                    throw new ResourceDoesNotExistException(String.format("'%s' does not exist", resourceName));
+                }
+
+                Date lastModified = objectInfo.getLastModified();
+                if (lastModified != null && lastModified.getTime() <= timestamp) {
+                    return false;
+                }
+
+                // the get that follows is scheduled by the size found here
+                this.newerSizes.put(resourceName, objectInfo.getContentLength());
+                return true;
+            } catch (TransportException e) {
+                throw new ResourceDoesNotExistException(String.format("'%s' does not exist", resourceName), e);
+            } catch (IOException e) {
+                throw new TransferFailedException(String.format("Cannot read from '%s'", resourceName), e);
+            }
+        } finally {
+            span.end();
+        }
+    }
+
+    @Override
+    protected long getResourceSize(String resourceName) {
+        Long newerSize = this.newerSizes.remove(resourceName);
+        if (newerSize != null) {
+            return newerSize;
+        }
+
+        File staged = getStaged(resourceName);
+        if (staged != null) {
+            return staged.length();
+        }
+
+        // only an index that is already in use, so that sizing a get never loads one
+        KeyIndex index = this.activeKeyIndex;
+        if (isIndexed(index, getKey(resourceName))) {
+            try {
+                ObjectInfo objectInfo = index.find(getKey(resourceName));
+                if (objectInfo != null) {
+                    return objectInfo.getContentLength();
+                }
+            } catch (IOException e) {
+                this.logger.debug("Cannot size '{}' from the key index: {}", resourceName, e.getMessage());
+            }
+        }
+        return -1;
+    }
+
+    private ObjectInfo head(final Transport transport, final String key) throws IOException {
+        return this.singleFlight.execute("HEAD " + key, new SingleFlight.Call<ObjectInfo, IOException>() {
+
+            @Override
+            public ObjectInfo call() throws IOException {
+                return transport.head(key);
+            }
+
+        });
+    }
+
+    @Override
+    protected List<String> listDirectory(String directory) throws TransferFailedException,
+            ResourceDoesNotExistException {
+        TraceRecorder.Span span = this.traceRecorder.begin(WAGON, "getFileList", directory);
+        try {
+            Transport transport = getTransport();
+            List<String> directoryContents = new ArrayList<String>();
+
+            try {
+                String prefix = getKey(directory);
+
+                List<String> indexed = listIndexed(getKeyIndex(transport), prefix);
+                if (indexed != null) {
+                    return indexed;
+                }
+
+                String marker = null;
+                do {
+                    ListingPage listingPage = transport.list(prefix, "/", marker);
+                    addResourceNames(listingPage, prefix, directoryContents);
+                    marker = listingPage.getNextMarker();
+                } while (marker != null);
+
+                return directoryContents;
+            } catch (TransportException e) {
+                throw new ResourceDoesNotExistException(String.format("'%s' does not exist", directory), e);
+            } catch (IOException e) {
+                throw new TransferFailedException(String.format("Cannot list '%s'", directory), e);
+            }
+        } finally {
+            span.end();
+        }
+    }
+
+    @Override
+    protected void getResource(final String resourceName, final File destination,
+                               final TransferProgress transferProgress)
+            throws TransferFailedException, ResourceDoesNotExistException {
+        final TraceRecorder.Span span = this.traceRecorder.begin(WAGON, "get", resourceName);
+        try {
+            File staged = getStaged(resourceName);
+            if (staged != null) {
+                download(null, null, staged, resourceName, destination, transferProgress, span);
+                return;
+            }
+
+            final Transport transport = getTransport();
+            if (isDefinitelyMissing(transport, getKey(resourceName))) {
+                throw new ResourceDoesNotExistException(String.format("'%s' does not exist", resourceName));
+            }
+
+            final boolean skipUnchanged = this.skipUnchanged && destination.isFile();
+            try {
+                this.singleFlight.execute("GET " + getKey(resourceName), new SingleFlight.Call<File, WagonException>() {
+
+                    @Override
+                    public File call() throws WagonException {
+                        if (!skipUnchanged) {
+                            download(transport, null, null, resourceName, destination, transferProgress, span);
+                        } else if (!getIfChanged(transport, resourceName, destination, transferProgress, span)) {
+                            span.arg("skipped", true);
+                        }
+                        return destination;
+                    }
+
+                }, new SingleFlight.Share<File, WagonException>() {
+
+                    @Override
+                    public void share(File downloaded) throws WagonException {
+                        span.arg("coalesced", true);
+                        if (!downloaded.equals(destination)) {
+                            download(null, null, downloaded, resourceName, destination, transferProgress, span);
+                        }
+                    }
+
+                });
+            } catch (TransferFailedException e) {
+                throw e;
+            } catch (ResourceDoesNotExistException e) {
+                throw e;
+            } catch (WagonException e) {
+                throw new TransferFailedException(e.getMessage(), e);
+            }
+        } finally {
+            span.arg("bytes", destination.length());
+            span.end();
+        }
+    }
+
+    /**
+     * Downloads a resource over an existing destination file unless the file has the remote object's size and MD5.
+     * The remote object's size and ETag are taken from the key index if it covers the object, and otherwise the get
+     * is made conditional on the ETag not being the file's MD5.
+     *
+     * @return {@code true} if the resource was downloaded, {@code false} if the destination was unchanged
+     */
+    private boolean getIfChanged(Transport transport, String resourceName, File destination,
+                                 TransferProgress transferProgress, TraceRecorder.Span span)
+            throws TransferFailedException, ResourceDoesNotExistException {
+        String key = getKey(resourceName);
+        String md5;
+        try {
+            KeyIndex index = getKeyIndex(transport);
+            if (isIndexed(index, key)) {
+                if (DeltaSync.isUnchanged(destination, index.find(key))) {
+                    return false;
+                }
+                return download(transport, null, null, resourceName, destination, transferProgress, span);
+            }
+            md5 = DigestCache.md5Hex(destination);
+        } catch (IOException e) {
+            throw new TransferFailedException(String.format("Cannot read from '%s'", resourceName), e);
+        }
+
+        // the ETag of an encoded object is the MD5 of its encoded content, so never matches
+        return download(transport, md5, null, resourceName, destination, transferProgress, span);
+    }
+
+    /**
+     * Copies a local file, or the content of the object if {@code source} is {@code null}, to the destination
+     *
+     * @param ifChanged An ETag to only get the object if it does not have, or {@code null} to get it regardless
+     * @return {@code true} if the destination was written, {@code false} if the object has the ETag
+     */
+    private boolean download(Transport transport, String ifChanged, File source, String resourceName,
+                             File destination, TransferProgress transferProgress, TraceRecorder.Span span)
+            throws TransferFailedException, ResourceDoesNotExistException {
+        ObjectContent objectContent = null;
+        InputStream in = null;
+        OutputStream out = null;
+        try {
+            if (source != null) {
+                in = new FileInputStream(source);
+            } else {
+                objectContent = ifChanged == null ? transport.get(getKey(resourceName)) :
+                        transport.getIfChanged(getKey(resourceName), ifChanged);
+                if (objectContent == null) {
+                    return false;
+                }
+                this.connectionTracker.leased();
+                in = ContentEncoding.decode(objectContent.getObjectInfo().getContentEncoding(),
+                        objectContent.getInputStream());
+            }
+            out = new TransferProgressFileOutputStream(destination, transferProgress);
+
+            IoUtils.copy(in, out);
+            return true;
+        } catch (TransportException e) {
+            throw new ResourceDoesNotExistException(String.format("'%s' does not exist", resourceName), e);
+        } catch (FileNotFoundException e) {
+            throw new TransferFailedException(String.format("Cannot write file to '%s'", destination), e);
+        } catch (IOException e) {
+            throw new TransferFailedException(String.format("Cannot read from '%s' and write to '%s'", resourceName, destination), e);
+        } finally {
+            if (objectContent != null) {
+                ObjectContent.Release release = objectContent.release();
+                this.connectionTracker.released(release);
+                span.arg("connection", release.name().toLowerCase(Locale.ENGLISH));
+            } else {
+                IoUtils.closeQuietly(in);
+            }
+            IoUtils.closeQuietly(out);
+        }
+    }
+
+    @Override
+    protected void putResource(File source, String destination, TransferProgress transferProgress) throws TransferFailedException,
+            ResourceDoesNotExistException {
+        TraceRecorder.Span span = this.traceRecorder.begin(WAGON, "put", destination);
+        try {
+            String key = getKey(destination);
+
+            StagedDeployment candidate = this.stagedDeployment;
+            if (candidate != null) {
+                stage(candidate, key, source, destination, transferProgress);
+                return;
+            }
+
+            Transport transport = getTransport();
+            mkdirs(transport, key, 0, new HashSet<String>());
+            putFile(transport, key, source, destination, transferProgress, span);
+        } finally {
+            span.arg("bytes", source.length());
+            span.end();
+        }
+    }
+
+    /**
+     * Puts a file with delta upload, multipart upload, compression or a single put, whichever applies to it, and adds
+     * it to the key filter and key index
+     */
+    private void putFile(Transport transport, String key, File source, String destination,
+                         TransferProgress transferProgress, TraceRecorder.Span span) throws TransferFailedException,
+            ResourceDoesNotExistException {
+        if (this.deltaUpload && ChunkManifest.isSnapshot(destination) &&
+                source.length() > MultipartFileUpload.MIN_PART_SIZE) {
+            putDelta(transport, key, source, destination, transferProgress, span);
+            added(transport, new ObjectInfo(key, source.length(), null, new Date(), null));
+            return;
+        }
+
+        if (this.multipartThreshold > 0 && source.length() > this.multipartThreshold) {
+            putMultipart(transport, key, source, destination, transferProgress);
+            added(transport, new ObjectInfo(key, source.length(), null, new Date(), null));
+            return;
+        }
+
+        if (isCompressed(destination, source)) {
+            putCompressed(transport, key, source, destination, transferProgress);
+            return;
+        }
+
+        InputStream in = null;
+        try {
+            in = new TransferProgressFileInputStream(source, transferProgress);
+            MessageDigest digest = null;
+            if (this.keyIndex) {
+                digest = IoUtils.newMd5();
+                in = new DigestInputStream(in, digest);
+            }
+
+            transport.put(new ObjectInfo(key, source.length(), null, null, null), in, false);
+            added(transport, new ObjectInfo(key, source.length(), digest == null ? null :
+                    IoUtils.hex(digest.digest()), new Date(), null));
+        } catch (FileNotFoundException e) {
+            throw new ResourceDoesNotExistException(String.format("Cannot read file from '%s'", source), e);
+        } catch (IOException e) {
+            throw new TransferFailedException(String.format("Cannot write file to '%s'", destination), e);
+        } finally {
+            IoUtils.closeQuietly(in);
+        }
+    }
+
+    private void added(Transport transport, ObjectInfo objectInfo) {
+        if (this.keyFilter) {
+            getKeyFilter(transport).add(objectInfo.getKey());
+        } else {
+            KeyFilter candidate = this.activeKeyFilter;
+            if (candidate != null) {
+                candidate.add(objectInfo.getKey());
+            }
+        }
+
+        KeyIndex index = getKeyIndex(transport);
+        if (index != null) {
+            index.add(objectInfo);
+        }
+    }
+
+    private boolean isCompressed(String destination, File source) {
+        if (!this.compression || source.length() > MAX_COMPRESSED_SIZE) {
+            return false;
+        }
+
+        int index = destination.lastIndexOf('.');
+        return index != -1 && this.compressedExtensions.contains(destination.substring(index + 1)
+                .toLowerCase(Locale.ENGLISH));
+    }
+
+    private void putCompressed(Transport transport, String key, File source, String destination,
+                               TransferProgress transferProgress) throws TransferFailedException,
+            ResourceDoesNotExistException {
+        byte[] content;
+        InputStream in = null;
+        try {
+            in = new TransferProgressFileInputStream(source, transferProgress);
+            ByteArrayOutputStream out = new ByteArrayOutputStream((int) source.length());
+            IoUtils.copy(in, out);
+            content = out.toByteArray();
+        } catch (FileNotFoundException e) {
+            throw new ResourceDoesNotExistException(String.format("Cannot read file from '%s'", source), e);
+        } catch (IOException e) {
+            throw new TransferFailedException(String.format("Cannot read file from '%s'", source), e);
+        } finally {
+            IoUtils.closeQuietly(in);
+        }
+
+        // content that does not compress is stored as is, so that it can be got without decoding
+        byte[] compressed = ContentEncoding.gzip(content);
+        String contentEncoding = null;
+        Map<String, String> metadata = new LinkedHashMap<String, String>();
+        if (compressed.length < content.length) {
+            metadata.put(ContentEncoding.DECODED_LENGTH, String.valueOf(content.length));
+            metadata.put(ContentEncoding.DECODED_MD5, IoUtils.hex(IoUtils.newMd5().digest(content)));
+            content = compressed;
+            contentEncoding = ContentEncoding.GZIP;
+        }
+
+        try {
+            transport.put(new ObjectInfo(key, content.length, null, null, null, contentEncoding, metadata),
+                    new ByteArrayInputStream(content), false);
+        } catch (IOException e) {
+            throw new TransferFailedException(String.format("Cannot write file to '%s'", destination), e);
+        }
+        added(transport, new ObjectInfo(key, content.length, IoUtils.hex(IoUtils.newMd5().digest(content)),
+                new Date(), null, contentEncoding, metadata));
+    }
+
+    private void putMultipart(Transport transport, String key, File source, String destination,
+                              TransferProgress transferProgress) throws TransferFailedException,
+            ResourceDoesNotExistException {
+        if (!source.isFile()) {
+            throw new ResourceDoesNotExistException(String.format("Cannot read file from '%s'", source));
+        }
+
+        try {
+            new MultipartFileUpload(transport, this.multipartThreads, this.multipartPartSize).upload(
+                    new ObjectInfo(key, source.length(), null, null, null), source, transferProgress, false);
+        } catch (IOException e) {
+            throw new TransferFailedException(String.format("Cannot write file to '%s'", destination), e);
+        }
+    }
+
+    private void putDelta(Transport transport, String key, File source, String destination,
+                          TransferProgress transferProgress, TraceRecorder.Span span)
+            throws TransferFailedException, ResourceDoesNotExistException {
+        if (!source.isFile()) {
+            throw new ResourceDoesNotExistException(String.format("Cannot read file from '%s'", source));
+        }
+
+        String manifestKey = getKey(ChunkManifest.getManifestName(destination));
+        try {
+            ChunkManifest manifest = ChunkManifest.chunk(key, source);
+            ChunkManifest previous = getPreviousManifest(transport, manifestKey);
+            List<MultipartFileUpload.Part> parts = manifest.getParts(previous);
+            if (parts.size() > MultipartFileUpload.MAX_PARTS) {
+                parts = manifest.getParts(null);
+            }
+
+            long copied = 0;
+            for (MultipartFileUpload.Part part : parts) {
+                if (part.getSourceKey() != null) {
+                    copied += part.getLength();
+                }
+            }
+            span.arg("copied", copied);
+            this.logger.debug("Copying {} of {} bytes of '{}' from '{}'", copied, source.length(), key,
+                    previous == null ? null : previous.getKey());
+
+            new MultipartFileUpload(transport, this.multipartThreads, this.multipartPartSize).upload(
+                    new ObjectInfo(key, source.length(), null, null, null), source, parts, transferProgress, false);
+
+            putManifest(transport, manifestKey, manifest);
+        } catch (IOException e) {
+            throw new TransferFailedException(String.format("Cannot write file to '%s'", destination), e);
+        }
+    }
+
+    /**
+     * Returns the manifest of the previous version of a SNAPSHOT artifact, if it still describes that version's object
+     */
+    private ChunkManifest getPreviousManifest(Transport transport, String manifestKey) throws IOException {
+        ChunkManifest previous;
+        ObjectContent objectContent;
+        try {
+            objectContent = transport.get(manifestKey);
+        } catch (TransportException e) {
+            return null;
+        }
+        try {
+            previous = ChunkManifest.read(objectContent.getInputStream());
+        } catch (IOException e) {
+            this.logger.warn("Ignoring unreadable chunk manifest '{}': {}", manifestKey, e.getMessage());
+            return null;
+        } finally {
+            objectContent.close();
+        }
+
+        ObjectInfo objectInfo = transport.head(previous.getKey());
+        if (objectInfo == null || previous.getETag() == null || !previous.getETag().equals(objectInfo.getETag())) {
+            this.logger.debug("Ignoring chunk manifest '{}' of a changed object", manifestKey);
+            return null;
+        }
+        return previous;
+    }
+
+    private void putManifest(Transport transport, String manifestKey, ChunkManifest manifest) {
+        try {
+            ObjectInfo objectInfo = transport.head(manifest.getKey());
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            manifest.withETag(objectInfo == null ? null : objectInfo.getETag()).write(out);
+            transport.put(new ObjectInfo(manifestKey, out.size(), null, null, null),
+                    new ByteArrayInputStream(out.toByteArray()), false);
+        } catch (IOException e) {
+            this.logger.warn("Cannot write chunk manifest '{}', so the next upload will not be a delta: {}",
+                    manifestKey, e.getMessage());
+        }
+    }
+
+    private void stage(StagedDeployment stagedDeployment, String key, File source, String destination,
+                       TransferProgress transferProgress) throws TransferFailedException,
+            ResourceDoesNotExistException {
+        InputStream in = null;
+        try {
+            in = new TransferProgressFileInputStream(source, transferProgress);
+            stagedDeployment.getJournal().stage(key, in);
+        } catch (FileNotFoundException e) {
+            throw new ResourceDoesNotExistException(String.format("Cannot read file from '%s'", source), e);
+        } catch (IOException e) {
+            throw new TransferFailedException(String.format("Cannot stage file for '%s'", destination), e);
+        } finally {
+            IoUtils.closeQuietly(in);
+        }
+    }
+
+    /**
+     * Uploads everything staged since the wagon connected or was last committed. Without this, staged files are only
+     * uploaded when the wagon disconnects, and Maven only logs a failure to disconnect at debug level, so a deploy
+     * whose files never reached S3 would still succeed. Files put afterwards are staged again.
+     *
+     * @throws TransferFailedException if any staged file could not be uploaded. Those files remain staged and are
+     *                                 uploaded by the next commit.
+     */
+    public void commitStagedDeploy() throws TransferFailedException {
+        StagedDeployment candidate = this.stagedDeployment;
+        if (candidate == null) {
+            return;
+        }
+
+        this.stagedDeployment = null;
+        TransferFailedException failure = null;
+        try {
+            commit(candidate);
+        } catch (TransferFailedException e) {
+            failure = e;
+        }
+
+        StagedDeployment next = new StagedDeployment(candidate.getRoot(), this.stagedDeployThreads);
+        try {
+            next.open();
+        } catch (IOException e) {
+            throw new TransferFailedException(String.format("Cannot open staging directory '%s'",
+                    candidate.getRoot()), e);
+        }
+        this.stagedDeployment = next;
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void commit(StagedDeployment stagedDeployment) throws TransferFailedException {
+        try {
+            commitStaged(stagedDeployment);
+        } catch (TransferFailedException e) {
+            this.logger.error("Staged deploy failed, staged files remain in '{}': {}", stagedDeployment.getRoot(),
+                    e.getMessage());
+            throw e;
+        }
+    }
+
+    private void commitStaged(StagedDeployment stagedDeployment) throws TransferFailedException {
+        final Transport transport;
+        try {
+            transport = getTransport();
+        } catch (TransferFailedException e) {
+            stagedDeployment.close();
+            throw e;
+        }
+
+        final Set<String> directories = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        try {
+            stagedDeployment.commit(new StagedDeployment.Uploader() {
+
+                @Override
+                public void upload(String key, File file) throws IOException {
+                    TraceRecorder.Span span = SimpleStorageServiceWagon.this.traceRecorder.begin(WAGON, "commit",
+                            key);
+                    try {
+                        mkdirs(transport, key, 0, directories);
+                        String baseDirectory = SimpleStorageServiceWagon.this.baseDirectory;
+                        putFile(transport, key, file, key.startsWith(baseDirectory) ?
+                                key.substring(baseDirectory.length()) : key, NO_PROGRESS, span);
+                    } catch (WagonException e) {
+                        throw new IOException(e.getMessage(), e.getCause());
+                    } finally {
+                        span.end();
+                    }
+                }
+            });
+        } catch (IOException e) {
+            throw new TransferFailedException(e.getMessage(), e);
+        }
+    }
+
+    private File getStaged(String resourceName) {
+        StagedDeployment candidate = this.stagedDeployment;
+        return candidate == null ? null : candidate.getJournal().getStaged(getKey(resourceName));
+    }
+
+    private static File getDefaultStagingDirectory(Repository repository) {
+        return getLocalDirectory("staging", S3Utils.getBucketName(repository), S3Utils.getBaseDirectory(repository));
+    }
+
+    /**
+     * Returns the directory below {@code ~/.m2/aws-maven} that holds local state of a kind for a repository
+     */
+    private static File getLocalDirectory(String kind, String bucketName, String baseDirectory) {
+        String name = baseDirectory.isEmpty() ? "_" : baseDirectory.substring(0, baseDirectory.length() - 1)
+                .replace('/', '_');
+
+        return new File(new File(new File(new File(System.getProperty("user.home"), ".m2/aws-maven"), kind),
+                bucketName), name);
+    }
+
+    private KeyFilter getKeyFilter(Transport transport) {
+        KeyFilter candidate = this.activeKeyFilter;
+        if (candidate == null) {
+            synchronized (this) {
+                candidate = this.activeKeyFilter;
+                if (candidate == null) {
+                    candidate = new KeyFilter(transport, this.baseDirectory, new File(getLocalDirectory(
+                            "key-filters", this.bucketName, this.baseDirectory), "keys.bloom"),
+                            this.keyFilterRefresh * 1000);
+                    this.activeKeyFilter = candidate;
+                }
+            }
+        }
+        return candidate;
+    }
+
+    private boolean isDefinitelyMissing(Transport transport, String key) {
+        if (!this.keyFilter) {
+            return false;
+        }
+
+        KeyFilter candidate = getKeyFilter(transport);
+        try {
+            return candidate.isDefinitelyMissing(key);
+        } catch (IOException e) {
+            this.logger.warn("Cannot load key filter, looking up '{}' directly: {}", key, e.getMessage());
+            return false;
+        }
+    }
+
+    private KeyIndex getKeyIndex(Transport transport) {
+        if (!this.keyIndex) {
+            return null;
+        }
+
+        KeyIndex candidate = this.activeKeyIndex;
+        if (candidate == null) {
+            synchronized (this) {
+                candidate = this.activeKeyIndex;
+                if (candidate == null) {
+                    candidate = new KeyIndex(transport, this.baseDirectory, this.keyIndexMaxAge * 1000);
+                    this.activeKeyIndex = candidate;
+                }
+            }
+        }
+        return candidate;
+    }
+
+    private boolean isIndexed(KeyIndex index, String key) {
+        if (index == null) {
+            return false;
+        }
+
+        try {
+            return index.covers(key);
+        } catch (IOException e) {
+            this.logger.warn("Cannot load key index, looking up '{}' directly: {}", key, e.getMessage());
+            return false;
+        }
+    }
+
+    private List<String> listIndexed(KeyIndex index, String prefix) {
+        if (index == null) {
+            return null;
+        }
+
+        try {
+            return index.list(prefix);
+        } catch (IOException e) {
+            this.logger.warn("Cannot load key index, listing '{}' directly: {}", prefix, e.getMessage());
+            return null;
+        }
+    }
+
+    private void flushKeyFilter() {
+        KeyFilter candidate = this.activeKeyFilter;
+        if (candidate != null) {
+            candidate.flush();
+        }
+    }
+
+    private void flushKeyIndex() throws ConnectionException {
+        KeyIndex candidate = this.activeKeyIndex;
+        if (candidate != null) {
+            try {
+                int shards = candidate.flush();
+                this.logger.debug("Updated {} shards of the key index", shards);
+            } catch (IOException e) {
+                throw new ConnectionException(String.format("Cannot update key index of '%s'", this.baseDirectory),
+                        e);
+            }
+        }
+    }
+
+    /**
+     * Builds the key index of the connected repository from a listing and publishes it in the repository, so that
+     * builds using {@code keyIndex} answer lookups from it
+     *
+     * @return The number of keys in the index
+     * @throws TransferFailedException if the repository cannot be listed or the index cannot be put
+     */
+    public long publishKeyIndex() throws TransferFailedException {
+        Transport transport = getTransport();
+        TraceRecorder.Span span = this.traceRecorder.begin(WAGON, "publishKeyIndex", this.baseDirectory);
+        try {
+            KeyIndex candidate = new KeyIndex(transport, this.baseDirectory, this.keyIndexMaxAge * 1000);
+            long keys = candidate.publish();
+            this.activeKeyIndex = candidate;
+            return keys;
+        } catch (IOException e) {
+            throw new TransferFailedException(String.format("Cannot publish key index of '%s'",
+                    this.baseDirectory), e);
+        } finally {
+            span.end();
+        }
+    }
+
+    /**
+     * Builds a Bloom filter of every key in the connected repository and publishes it in the repository, so that
+     * builds using {@code keyFilter} can load it instead of listing the repository themselves
+     *
+     * @return The number of keys in the filter
+     * @throws TransferFailedException if the repository cannot be listed or the filter cannot be put
+     */
+    public long publishKeyFilter() throws TransferFailedException {
+        Transport transport = getTransport();
+        TraceRecorder.Span span = this.traceRecorder.begin(WAGON, "publishKeyFilter", this.baseDirectory);
+        try {
+            KeyFilter candidate = new KeyFilter(transport, this.baseDirectory, new File(getLocalDirectory(
+                    "key-filters", this.bucketName, this.baseDirectory), "keys.bloom"), this.keyFilterRefresh * 1000);
+            long keys = candidate.publish();
+            this.activeKeyFilter = candidate;
+            return keys;
+        } catch (IOException e) {
+            throw new TransferFailedException(String.format("Cannot publish key filter of '%s'",
+                    this.baseDirectory), e);
+        } finally {
+            span.end();
+        }
+    }
+
+    @Override
+    protected void putDirectoryResources(File sourceDirectory, String destinationDirectory)
+            throws TransferFailedException, ResourceDoesNotExistException, AuthorizationException {
+        TraceRecorder.Span span = this.traceRecorder.begin(WAGON, "putDirectory", destinationDirectory);
+        try {
+            if (!this.deltaSync) {
+                super.putDirectoryResources(sourceDirectory, destinationDirectory);
+                return;
+            }
+
+            final Transport transport = getTransport();
+            new DeltaSync(transport, this.baseDirectory, this.deleteOrphans ? getKeyIndex(transport) : null,
+                    this.deleteOrphans,
+                    new DeltaSync.Target() {
+
+                        @Override
+                        public boolean isCompressed(String resourceName, File file) {
+                            return SimpleStorageServiceWagon.this.isCompressed(resourceName, file);
+                        }
+
+                        @Override
+                        public ObjectInfo head(String key) throws IOException {
+                            return SimpleStorageServiceWagon.this.head(transport, key);
+                        }
+
+                        @Override
+                        public void put(File file, String resourceName) throws TransferFailedException,
+                                ResourceDoesNotExistException, AuthorizationException {
+                            SimpleStorageServiceWagon.this.put(file, resourceName);
+                        }
+
+                    }).sync(sourceDirectory, destinationDirectory);
+        } finally {
+            span.end();
+        }
+    }
+
+    /**
+     * Opens a resource of the connected repository for reading any part of it without downloading the rest. The
+     * resource is read with ranged gets of small blocks, which are cached and, for sequential reads, fetched ahead
+     * (see {@link RangedObjectChannel}).
+     *
+     * @param resourceName The name of the resource
+     * @return A read-only channel over the resource, which the caller must close
+     * @throws TransferFailedException       if the resource cannot be read in parts
+     * @throws ResourceDoesNotExistException if the resource does not exist
+     */
+    public SeekableByteChannel openChannel(String resourceName) throws TransferFailedException,
+            ResourceDoesNotExistException {
+        TraceRecorder.Span span = this.traceRecorder.begin(WAGON, "openChannel", resourceName);
+        try {
+            File staged = getStaged(resourceName);
+            if (staged != null) {
+                try {
+                    return FileChannel.open(staged.toPath(), StandardOpenOption.READ);
+                } catch (IOException e) {
+                    throw new TransferFailedException(String.format("Cannot read from '%s'", resourceName), e);
+                }
+            }
+
+            Transport transport = getTransport();
+            if (isDefinitelyMissing(transport, getKey(resourceName))) {
+                throw new ResourceDoesNotExistException(String.format("'%s' does not exist", resourceName));
+            }
+
+            ObjectInfo objectInfo;
+            try {
+                objectInfo = head(transport, getKey(resourceName));
+            } catch (IOException e) {
+                throw new TransferFailedException(String.format("Cannot read from '%s'", resourceName), e);
+            }
+            if (objectInfo == null) {
+                throw new ResourceDoesNotExistException(String.format("'%s' does not exist", resourceName));
+            }
+            if (objectInfo.getContentEncoding() != null) {
+                throw new TransferFailedException(String.format("'%s' is %s-encoded and cannot be read in parts",
+                        resourceName, objectInfo.getContentEncoding()));
+            }
+
+            span.arg("bytes", objectInfo.getContentLength());
+            return new RangedObjectChannel(transport, objectInfo);
+        } finally {
+            span.end();
+        }
+    }
+
+    /**
+     * Incrementally mirrors everything below a directory of the connected repository into a local directory,
+     * downloading only objects that are new or have changed (see {@link BucketMirror})
+     *
+     * @param path        The directory in the repository to mirror, or an empty string for the whole repository
+     * @param destination The local directory to mirror into
+     * @param threads     The number of concurrent downloads
+     * @return A summary of what was downloaded and what was skipped
+     * @throws TransferFailedException if the repository cannot be listed
+     */
+    public MirrorSummary mirror(String path, File destination, int threads) throws TransferFailedException {
+        Transport transport = getTransport();
+        String prefix = getKey(path.isEmpty() || path.endsWith("/") ? path : path + "/");
+
+        TraceRecorder.Span span = this.traceRecorder.begin(WAGON, "mirror", path);
+        try {
+            return new BucketMirror(transport, threads).mirror(prefix, destination);
+        } catch (IOException e) {
+            throw new TransferFailedException(String.format("Cannot mirror '%s' to '%s'", path, destination), e);
+        } finally {
+            span.end();
+        }
+    }
+
+    /**
+     * Promotes everything below a directory of another repository to the same directory of the connected repository
+     * using server-side copies, so that promotion time depends on the number of objects rather than their size (see
+     * {@link ReleasePromoter})
+     *
+     * @param sourceUrl  The {@code s3://} URL of the repository to promote from, typically a staging repository
+     * @param path       The directory to promote, or an empty string for the whole repository
+     * @param threads    The number of concurrent copies
+     * @param publicRead {@code true} if the promoted objects should be publicly readable, otherwise {@code false}
+     * @return A summary of what was copied
+     * @throws TransferFailedException if the source repository cannot be listed
+     */
+    public PromotionSummary promote(String sourceUrl, String path, int threads, boolean publicRead)
+            throws TransferFailedException {
+        Repository source = new Repository("source", sourceUrl);
+        String sourceBucketName = S3Utils.getBucketName(source);
+        String directory = path.isEmpty() || path.endsWith("/") ? path : path + "/";
+        String sourcePrefix = S3Utils.getBaseDirectory(source).concat(directory);
+
+        TraceRecorder.Span span = this.traceRecorder.begin(WAGON, "promote", sourceUrl);
+        try {
+            Transport destination = getTransport();
+            Transport sourceTransport = sourceBucketName.equals(this.bucketName) || this.dryRun ? destination :
+                    TransportFactory.create(this.transportName, sourceBucketName, this.authenticationInfo,
+                            this.proxyInfoProvider, this.resolvedClientSettings, this.traceRecorder);
+
+            PromotionSummary summary = new ReleasePromoter(sourceTransport, sourceBucketName, destination, threads,
+                    publicRead).promote(sourcePrefix, getKey(directory));
+            if (summary.getCopied() > 0 && !this.dryRun) {
+                addPromoted(destination, getKey(directory));
+            }
+            return summary;
+        } catch (IOException e) {
+            throw new TransferFailedException(String.format("Cannot promote '%s' from '%s'", path, sourceUrl), e);
+        } finally {
+            span.end();
+        }
+    }
+
+    /**
+     * Adds the keys below a promoted directory to the key index and key filter, which copies do not go through
+     */
+    private void addPromoted(Transport transport, String prefix) throws IOException {
+        if (getKeyIndex(transport) == null && this.activeKeyFilter == null && !this.keyFilter) {
+            return;
+        }
+
+        String marker = null;
+        do {
+            ListingPage listingPage = transport.list(prefix, null, marker);
+            for (ObjectInfo objectInfo : listingPage.getObjects()) {
+                added(transport, objectInfo);
+            }
+            marker = listingPage.getNextMarker();
+        } while (marker != null);
+    }
+
+    private Transport getTransport() throws TransferFailedException {
+        Transport candidate = this.transport;
+        if (candidate == null) {
+            synchronized (this) {
+                candidate = this.transport;
+                if (candidate == null && this.dryRun) {
+                    DryRunTransport dryRunTransport = new DryRunTransport();
+                    this.dryRunTransport = dryRunTransport;
+
+                    candidate = dryRunTransport;
+                    this.transport = candidate;
+                } else if (candidate == null) {
+                    TraceRecorder.Span span = this.traceRecorder.begin(WAGON, "createTransport", this.transportName);
+                    try {
+                        candidate = TransportFactory.create(this.transportName, this.bucketName,
+                                this.authenticationInfo, this.proxyInfoProvider, this.resolvedClientSettings,
+                                this.traceRecorder);
+                    } catch (IOException e) {
+                        throw new TransferFailedException(String.format("Cannot connect to bucket '%s'",
+                                this.bucketName), e);
+                    } finally {
+                        span.end();
+                    }
+
+                    WarmUpTransport warmUp = new WarmUpTransport(candidate);
+                    warmUp.warmUp(this.warmUpConnections, getKey(WARM_UP_KEY));
+                    this.warmUpTransport = warmUp;
+
+                    candidate = warmUp;
+                    this.transport = candidate;
+                }
+            }
+        }
+        return candidate;
+    }
+
+    boolean isTransportCreated() {
+        return this.transport != null;
+    }
+
+    String getKey(String resourceName) {
+        return this.baseDirectory.isEmpty() ? resourceName : this.baseDirectory.concat(resourceName);
+    }
+
+    static void addResourceNames(ListingPage listingPage, String prefix, List<String> resourceNames) {
+        for (String commonPrefix : listingPage.getCommonPrefixes()) {
+            resourceNames.add(getResourceName(commonPrefix, prefix));
+        }
+
+        for (ObjectInfo objectInfo : listingPage.getObjects()) {
+            String resourceName = getResourceName(objectInfo.getKey(), prefix);
+            if (!resourceName.isEmpty()) {
+                resourceNames.add(resourceName);
+            }
+        }
+    }
+
+    private static String getResourceName(String key, String prefix) {
+        // listings only return keys that start with the prefix, so the name is simply the rest of the key
+        return key.startsWith(prefix) ? key.substring(prefix.length()) : key;
+    }
+
+    private void mkdirs(Transport transport, String path, int index, Set<String> directories)
+            throws TransferFailedException {
+        int directoryIndex = path.indexOf('/', index) + 1;
+
+        if (directoryIndex != 0) {
+            String directory = path.substring(0, directoryIndex);
+
+            if (directories.add(directory)) {
+                TraceRecorder.Span span = this.traceRecorder.begin(WAGON, "mkdirs", directory);
+                try {
+                    transport.put(new ObjectInfo(directory, 0, null, null, null),
+                            new ByteArrayInputStream(new byte[0]), true);
+                } catch (IOException e) {
+                    throw new TransferFailedException(String.format("Cannot write directory '%s'", directory), e);
+                } finally {
+                    span.end();
+                }
+            }
+
+            mkdirs(transport, path, directoryIndex, directories);
+        }
     }
 
 }
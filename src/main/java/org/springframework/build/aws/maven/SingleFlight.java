@@ -0,0 +1,226 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Collapses concurrent identical requests into one. The first caller for a key makes the request; callers for the
+ * same key that arrive before it has finished wait for it and are given its result, or fail with its exception,
+ * instead of making their own. A caller that arrives after it has finished makes a new request.
+ * <p/>
+ * Each waiter can be handed the result while the caller that made the request has not yet returned, so that it can,
+ * for example, copy a downloaded file before that caller moves it. That caller returns once every waiter has finished
+ * with the result.
+ * <p/>
+ * There is one instance per transport and bucket, shared by every wagon in the JVM.
+ */
+final class SingleFlight {
+
+    private static final ConcurrentMap<String, SingleFlight> INSTANCES = new ConcurrentHashMap<String, SingleFlight>();
+
+    private final ConcurrentMap<String, Flight> flights = new ConcurrentHashMap<String, Flight>();
+
+    SingleFlight() {
+    }
+
+    /**
+     * Returns the instance shared by every wagon using a transport to access a bucket
+     *
+     * @param transport  The name of the transport
+     * @param bucketName The name of the bucket
+     * @return The instance
+     */
+    static SingleFlight forBucket(String transport, String bucketName) {
+        String name = String.format("%s %s", transport, bucketName);
+        SingleFlight candidate = INSTANCES.get(name);
+        if (candidate == null) {
+            SingleFlight singleFlight = new SingleFlight();
+            candidate = INSTANCES.putIfAbsent(name, singleFlight);
+            if (candidate == null) {
+                candidate = singleFlight;
+            }
+        }
+        return candidate;
+    }
+
+    /**
+     * Makes a request, or waits for an identical one that is in flight
+     *
+     * @param key  What identifies identical requests
+     * @param call The request
+     * @param <T>  The type of the result
+     * @param <E>  The type of exception the request fails with
+     * @return The result
+     * @throws E if the request fails
+     */
+    <T, E extends Exception> T execute(String key, Call<T, E> call) throws E {
+        return execute(key, call, null);
+    }
+
+    /**
+     * Makes a request, or waits for an identical one that is in flight and shares its result
+     *
+     * @param key   What identifies identical requests
+     * @param call  The request
+     * @param share What each waiter does with the result before the caller that made the request returns, or
+     *              {@code null} for nothing
+     * @param <T>   The type of the result
+     * @param <E>   The type of exception the request and sharing fail with
+     * @return The result
+     * @throws E if the request or sharing fails
+     */
+    @SuppressWarnings("unchecked")
+    <T, E extends Exception> T execute(String key, Call<T, E> call, Share<T, E> share) throws E {
+        Flight flight = new Flight();
+        while (true) {
+            Flight existing = this.flights.putIfAbsent(key, flight);
+            if (existing == null) {
+                break;
+            }
+
+            if (existing.join()) {
+                try {
+                    existing.await();
+                    if (existing.exception != null) {
+                        throw (E) existing.exception;
+                    }
+                    T result = (T) existing.result;
+                    if (share != null) {
+                        share.share(result);
+                    }
+                    return result;
+                } finally {
+                    existing.leave();
+                }
+            }
+
+            // the request finished while joining it, so it can no longer be shared
+            this.flights.remove(key, existing);
+        }
+
+        try {
+            T result = call.call();
+            flight.complete(result, null);
+            return result;
+        } catch (Exception e) {
+            flight.complete(null, e);
+            throw e;
+        } finally {
+            this.flights.remove(key, flight);
+            flight.close();
+        }
+    }
+
+    /**
+     * Returns the number of requests in flight
+     *
+     * @return The number of requests
+     */
+    int getInFlight() {
+        return this.flights.size();
+    }
+
+    /**
+     * A request that can be shared
+     *
+     * @param <T> The type of the result
+     * @param <E> The type of exception the request fails with
+     */
+    interface Call<T, E extends Exception> {
+
+        T call() throws E;
+    }
+
+    /**
+     * What a waiter does with the result of a shared request
+     *
+     * @param <T> The type of the result
+     * @param <E> The type of exception sharing fails with
+     */
+    interface Share<T, E extends Exception> {
+
+        void share(T result) throws E;
+    }
+
+    private static final class Flight {
+
+        private boolean done = false;
+
+        private boolean closed = false;
+
+        private int waiters = 0;
+
+        private volatile Object result;
+
+        private volatile Exception exception;
+
+        private synchronized boolean join() {
+            if (this.closed) {
+                return false;
+            }
+            this.waiters++;
+            return true;
+        }
+
+        /**
+         * Waits for the result without giving up on interrupt, since the request being waited for is bounded by its own
+         * deadlines. The interrupt is preserved for the caller.
+         */
+        private synchronized void await() {
+            boolean interrupted = false;
+            while (!this.done) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private synchronized void leave() {
+            this.waiters--;
+            notifyAll();
+        }
+
+        private synchronized void complete(Object result, Exception exception) {
+            this.result = result;
+            this.exception = exception;
+            this.done = true;
+            notifyAll();
+        }
+
+        private synchronized void close() {
+            this.closed = true;
+            boolean interrupted = false;
+            while (this.waiters > 0) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
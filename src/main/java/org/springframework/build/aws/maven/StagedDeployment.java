@@ -0,0 +1,228 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Collects the files put during a deploy in a {@link DeployJournal} and uploads them all at the end of the session.
+ * Uploads run in parallel and in three phases so that a repository never advertises content that is missing:
+ * <ol>
+ * <li>artifacts</li>
+ * <li>checksums of artifacts that were uploaded successfully</li>
+ * <li><code>maven-metadata.xml</code> files and their checksums, only if everything else succeeded</li>
+ * </ol>
+ * Files left pending by sessions that did not finish are picked up and uploaded along with the current session's.
+ */
+final class StagedDeployment {
+
+    private static final String[] CHECKSUM_EXTENSIONS = {".md5", ".sha1", ".sha256", ".sha512"};
+
+    private static final String METADATA_PREFIX = "maven-metadata";
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final File root;
+
+    private final int threads;
+
+    private volatile DeployJournal journal;
+
+    private volatile List<DeployJournal> recovered;
+
+    StagedDeployment(File root, int threads) {
+        this.root = root;
+        this.threads = threads;
+    }
+
+    void open() throws IOException {
+        this.recovered = DeployJournal.recover(this.root);
+        for (DeployJournal abandoned : this.recovered) {
+            this.logger.info("Resuming staged deploy from {}", abandoned);
+        }
+        this.journal = DeployJournal.create(this.root);
+    }
+
+    File getRoot() {
+        return this.root;
+    }
+
+    DeployJournal getJournal() {
+        return this.journal;
+    }
+
+    /**
+     * Uploads everything pending in the current and recovered journals. Journals that are fully committed are
+     * deleted; any others are kept so that a later session can resume them.
+     *
+     * @param uploader Uploads a single staged file
+     * @throws IOException if any file could not be uploaded
+     */
+    void commit(final Uploader uploader) throws IOException {
+        List<DeployJournal> journals = new ArrayList<DeployJournal>(this.recovered);
+        journals.add(this.journal);
+
+        Map<String, DeployJournal> owners = new LinkedHashMap<String, DeployJournal>();
+        Map<String, File> pending = new LinkedHashMap<String, File>();
+        for (DeployJournal candidate : journals) {
+            for (Map.Entry<String, File> entry : candidate.getPending().entrySet()) {
+                DeployJournal superseded = owners.put(entry.getKey(), candidate);
+                if (superseded != null) {
+                    superseded.committed(entry.getKey());
+                }
+                pending.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(this.threads);
+        try {
+            List<String> failed = new ArrayList<String>();
+
+            Map<String, File> artifacts = new LinkedHashMap<String, File>();
+            Map<String, File> checksums = new LinkedHashMap<String, File>();
+            Map<String, File> metadata = new LinkedHashMap<String, File>();
+            for (Map.Entry<String, File> entry : pending.entrySet()) {
+                if (isMetadata(entry.getKey())) {
+                    metadata.put(entry.getKey(), entry.getValue());
+                } else if (isChecksum(entry.getKey())) {
+                    checksums.put(entry.getKey(), entry.getValue());
+                } else {
+                    artifacts.put(entry.getKey(), entry.getValue());
+                }
+            }
+
+            failed.addAll(upload(executor, uploader, artifacts, owners));
+
+            for (String key : new ArrayList<String>(checksums.keySet())) {
+                if (failed.contains(getChecksummed(key))) {
+                    checksums.remove(key);
+                    failed.add(key);
+                }
+            }
+            failed.addAll(upload(executor, uploader, checksums, owners));
+
+            if (failed.isEmpty()) {
+                failed.addAll(upload(executor, uploader, metadata, owners));
+            } else {
+                failed.addAll(metadata.keySet());
+            }
+
+            if (!failed.isEmpty()) {
+                throw new IOException(String.format("Cannot upload %s; they remain staged in '%s'", failed,
+                        this.root));
+            }
+        } finally {
+            executor.shutdownNow();
+            for (DeployJournal candidate : journals) {
+                if (candidate.getPending().isEmpty()) {
+                    candidate.delete();
+                } else {
+                    candidate.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Releases the journals without uploading anything, leaving their content staged
+     */
+    void close() {
+        for (DeployJournal abandoned : this.recovered) {
+            abandoned.close();
+        }
+        if (this.journal.getPending().isEmpty()) {
+            this.journal.delete();
+        } else {
+            this.journal.close();
+        }
+    }
+
+    private List<String> upload(ExecutorService executor, final Uploader uploader, Map<String, File> files,
+                                final Map<String, DeployJournal> owners) throws IOException {
+        Map<String, Future<Void>> futures = new LinkedHashMap<String, Future<Void>>();
+        for (final Map.Entry<String, File> entry : files.entrySet()) {
+            futures.put(entry.getKey(), executor.submit(new Callable<Void>() {
+
+                @Override
+                public Void call() throws IOException {
+                    uploader.upload(entry.getKey(), entry.getValue());
+                    owners.get(entry.getKey()).committed(entry.getKey());
+                    return null;
+                }
+            }));
+        }
+
+        List<String> failed = new ArrayList<String>();
+        for (Map.Entry<String, Future<Void>> future : futures.entrySet()) {
+            try {
+                future.getValue().get();
+            } catch (ExecutionException e) {
+                this.logger.warn("Cannot upload '{}': {}", future.getKey(), e.getCause().getMessage());
+                failed.add(future.getKey());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while uploading staged files", e);
+            }
+        }
+        return failed;
+    }
+
+    static boolean isMetadata(String key) {
+        return key.substring(key.lastIndexOf('/') + 1).startsWith(METADATA_PREFIX);
+    }
+
+    static boolean isChecksum(String key) {
+        return getChecksummed(key) != null;
+    }
+
+    private static String getChecksummed(String key) {
+        for (String extension : CHECKSUM_EXTENSIONS) {
+            if (key.endsWith(extension)) {
+                return key.substring(0, key.length() - extension.length());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Uploads a single staged file
+     */
+    interface Uploader {
+
+        /**
+         * Uploads a staged file
+         *
+         * @param key  The key to upload to
+         * @param file The staged content
+         * @throws IOException if the file cannot be uploaded
+         */
+        void upload(String key, File file) throws IOException;
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Records a timeline of spans, one for each wagon operation and each request made by a {@link Transport}, and exports
+ * it in the Chrome trace event format understood by <code>chrome://tracing</code> and Perfetto.
+ * <p/>
+ * Recording a span costs two calls to {@link System#nanoTime()} and a queue insertion. {@link #DISABLED} records
+ * nothing and hands out a single shared span, so tracing can be left in place when it is not wanted.
+ */
+final class TraceRecorder {
+
+    static final TraceRecorder DISABLED = new TraceRecorder(null);
+
+    private final String processName;
+
+    private final long origin = System.nanoTime();
+
+    private final Queue<Span> spans = new ConcurrentLinkedQueue<Span>();
+
+    private final ThreadLocal<Span> current = new ThreadLocal<Span>();
+
+    private final Span disabledSpan = new Span(this, null, null);
+
+    /**
+     * Creates a new recorder
+     *
+     * @param processName The name the trace is shown under, or {@code null} to record nothing
+     */
+    TraceRecorder(String processName) {
+        this.processName = processName;
+    }
+
+    boolean isEnabled() {
+        return this.processName != null;
+    }
+
+    /**
+     * Starts a span on the current thread. The span becomes the current thread's innermost span until it ends.
+     *
+     * @param category  The category of the span, such as {@code wagon} or {@code s3}
+     * @param operation The operation the span times
+     * @param subject   What the operation acts on, such as a key, or {@code null}
+     * @return The span, which must be {@link Span#end() ended}
+     */
+    Span begin(String category, String operation, String subject) {
+        if (!isEnabled()) {
+            return this.disabledSpan;
+        }
+
+        Span span = new Span(this, category, subject == null ? operation : operation + " " + subject);
+        span.parent = this.current.get();
+        this.current.set(span);
+        return span;
+    }
+
+    /**
+     * Adds to the number of retries recorded against the current thread's innermost span
+     *
+     * @param retries The number of retries
+     */
+    void addRetries(int retries) {
+        Span span = this.current.get();
+        if (span != null && retries > 0) {
+            span.retries += retries;
+        }
+    }
+
+    /**
+     * Writes every span that has ended to a file in the Chrome trace event format
+     *
+     * @param file The file to write to
+     * @throws IOException if the file cannot be written
+     */
+    void export(File file) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory()) {
+            throw new IOException(String.format("Cannot create directory '%s'", parent));
+        }
+
+        Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+        try {
+            out.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[\n");
+            out.write("{\"name\":\"process_name\",\"ph\":\"M\",\"pid\":1,\"args\":{\"name\":");
+            writeString(out, this.processName);
+            out.write("}}");
+
+            Map<Long, String> threads = new LinkedHashMap<Long, String>();
+            for (Span span : this.spans) {
+                if (!threads.containsKey(span.threadId)) {
+                    threads.put(span.threadId, span.threadName);
+                }
+                out.write(",\n");
+                span.write(out, this.origin);
+            }
+
+            for (Map.Entry<Long, String> thread : threads.entrySet()) {
+                out.write(String.format(",%n{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":%d,\"args\":"
+                        + "{\"name\":", thread.getKey()));
+                writeString(out, thread.getValue());
+                out.write("}}");
+            }
+
+            out.write("\n]}\n");
+        } finally {
+            IoUtils.closeQuietly(out);
+        }
+    }
+
+    int size() {
+        return this.spans.size();
+    }
+
+    private void ended(Span span) {
+        if (this.current.get() == span) {
+            if (span.parent == null) {
+                this.current.remove();
+            } else {
+                this.current.set(span.parent);
+            }
+        }
+        this.spans.add(span);
+    }
+
+    private static void writeString(Writer out, String value) throws IOException {
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.write('\\');
+                out.write(c);
+            } else if (c < 0x20) {
+                out.write(String.format("\\u%04x", (int) c));
+            } else {
+                out.write(c);
+            }
+        }
+        out.write('"');
+    }
+
+    /**
+     * A single timed operation
+     */
+    static final class Span {
+
+        private final TraceRecorder traceRecorder;
+
+        private final String category;
+
+        private final String name;
+
+        private final long threadId;
+
+        private final String threadName;
+
+        private final long start;
+
+        private volatile long end;
+
+        private volatile int retries;
+
+        private volatile Span parent;
+
+        private Map<String, Object> args;
+
+        private Span(TraceRecorder traceRecorder, String category, String name) {
+            this.traceRecorder = traceRecorder;
+            this.category = category;
+            this.name = name;
+
+            Thread thread = Thread.currentThread();
+            this.threadId = thread.getId();
+            this.threadName = thread.getName();
+            this.start = System.nanoTime();
+        }
+
+        /**
+         * Attaches a value, such as a byte count or status code, to the span
+         *
+         * @param key   The name of the value
+         * @param value The value
+         * @return The span
+         */
+        Span arg(String key, Object value) {
+            if (this.category != null) {
+                synchronized (this) {
+                    if (this.args == null) {
+                        this.args = new LinkedHashMap<String, Object>();
+                    }
+                    this.args.put(key, value);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Ends the span. Ending a span more than once has no effect.
+         */
+        void end() {
+            if (this.category != null && this.end == 0) {
+                this.end = System.nanoTime();
+                this.traceRecorder.ended(this);
+            }
+        }
+
+        private synchronized void write(Writer out, long origin) throws IOException {
+            out.write("{\"name\":");
+            writeString(out, this.name);
+            out.write(",\"cat\":");
+            writeString(out, this.category);
+            out.write(String.format(Locale.ENGLISH, ",\"ph\":\"X\",\"ts\":%.3f,\"dur\":%.3f,\"pid\":1,\"tid\":%d",
+                    (this.start - origin) / 1e3, (this.end - this.start) / 1e3, this.threadId));
+
+            out.write(",\"args\":{\"retries\":");
+            out.write(Integer.toString(this.retries));
+            if (this.args != null) {
+                for (Map.Entry<String, Object> arg : this.args.entrySet()) {
+                    out.write(',');
+                    writeString(out, arg.getKey());
+                    out.write(':');
+                    if (arg.getValue() instanceof Number) {
+                        out.write(arg.getValue().toString());
+                    } else {
+                        writeString(out, String.valueOf(arg.getValue()));
+                    }
+                }
+            }
+            out.write("}}");
+        }
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * A {@link Transport} that records a span in a {@link TraceRecorder} for every request made by another transport,
+ * along with the key, the bytes transferred and, if the request fails, its status code. The span for a
+ * {@link #get(String)} lasts until its content is closed.
+ */
+final class TracingTransport implements Transport {
+
+    private static final String CATEGORY = "s3";
+
+    private final Transport delegate;
+
+    private final TraceRecorder traceRecorder;
+
+    TracingTransport(Transport delegate, TraceRecorder traceRecorder) {
+        this.delegate = delegate;
+        this.traceRecorder = traceRecorder;
+    }
+
+    @Override
+    public ObjectInfo head(String key) throws IOException {
+        TraceRecorder.Span span = begin("HEAD", key);
+        try {
+            ObjectInfo objectInfo = this.delegate.head(key);
+            span.arg("found", objectInfo != null);
+            return objectInfo;
+        } catch (IOException e) {
+            throw failed(span, e);
+        } finally {
+            span.end();
+        }
+    }
+
+    @Override
+    public ObjectContent get(String key) throws IOException {
+        TraceRecorder.Span span = begin("GET", key);
+        try {
+            return traced(span, this.delegate.get(key));
+        } catch (IOException e) {
+            failed(span, e);
+            span.end();
+            throw e;
+        }
+    }
+
+    @Override
+    public ObjectContent get(String key, long firstByte, long lastByte) throws IOException {
+        TraceRecorder.Span span = begin("GET", key).arg("range", String.format("%d-%d", firstByte, lastByte));
+        try {
+            return traced(span, this.delegate.get(key, firstByte, lastByte));
+        } catch (IOException e) {
+            failed(span, e);
+            span.end();
+            throw e;
+        }
+    }
+
+    @Override
+    public ObjectContent getIfChanged(String key, String eTag) throws IOException {
+        TraceRecorder.Span span = begin("GET", key).arg("ifNoneMatch", eTag);
+        ObjectContent objectContent;
+        try {
+            objectContent = this.delegate.getIfChanged(key, eTag);
+        } catch (IOException e) {
+            failed(span, e);
+            span.end();
+            throw e;
+        }
+
+        if (objectContent == null) {
+            span.arg("notModified", true);
+            span.end();
+            return null;
+        }
+        return traced(span, objectContent);
+    }
+
+    private static ObjectContent traced(final TraceRecorder.Span span, final ObjectContent objectContent) {
+        final CountingInputStream in = new CountingInputStream(objectContent.getInputStream()) {
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    span.arg("bytes", getCount());
+                    span.end();
+                }
+            }
+        };
+
+        return new ObjectContent(objectContent.getObjectInfo(), in) {
+
+            @Override
+            void abort() {
+                span.arg("aborted", true);
+                objectContent.abort();
+                span.arg("bytes", in.getCount());
+                span.end();
+            }
+        };
+    }
+
+    @Override
+    public void put(ObjectInfo metadata, InputStream in, boolean publicRead) throws IOException {
+        TraceRecorder.Span span = begin("PUT", metadata.getKey());
+        CountingInputStream counting = new CountingInputStream(in);
+        try {
+            this.delegate.put(metadata, counting, publicRead);
+        } catch (IOException e) {
+            throw failed(span, e);
+        } finally {
+            span.arg("bytes", counting.getCount());
+            span.end();
+        }
+    }
+
+    @Override
+    public ListingPage list(String prefix, String delimiter, String marker) throws IOException {
+        TraceRecorder.Span span = begin("LIST", prefix);
+        try {
+            ListingPage listingPage = this.delegate.list(prefix, delimiter, marker);
+            span.arg("results", listingPage.getObjects().size() + listingPage.getCommonPrefixes().size());
+            return listingPage;
+        } catch (IOException e) {
+            throw failed(span, e);
+        } finally {
+            span.end();
+        }
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        TraceRecorder.Span span = begin("DELETE", key);
+        try {
+            this.delegate.delete(key);
+        } catch (IOException e) {
+            throw failed(span, e);
+        } finally {
+            span.end();
+        }
+    }
+
+    @Override
+    public void delete(List<String> keys) throws IOException {
+        TraceRecorder.Span span = this.traceRecorder.begin(CATEGORY, "DELETE", null).arg("keys", keys.size());
+        try {
+            this.delegate.delete(keys);
+        } catch (IOException e) {
+            throw failed(span, e);
+        } finally {
+            span.end();
+        }
+    }
+
+    @Override
+    public void copy(String sourceBucketName, String sourceKey, String destinationKey, boolean publicRead)
+            throws IOException {
+        TraceRecorder.Span span = begin("COPY", destinationKey).arg("source", sourceKey);
+        try {
+            this.delegate.copy(sourceBucketName, sourceKey, destinationKey, publicRead);
+        } catch (IOException e) {
+            throw failed(span, e);
+        } finally {
+            span.end();
+        }
+    }
+
+    @Override
+    public String initiateMultipartUpload(ObjectInfo metadata, boolean publicRead) throws IOException {
+        TraceRecorder.Span span = begin("INITIATE", metadata.getKey());
+        try {
+            return this.delegate.initiateMultipartUpload(metadata, publicRead);
+        } catch (IOException e) {
+            throw failed(span, e);
+        } finally {
+            span.end();
+        }
+    }
+
+    @Override
+    public String uploadPart(String key, String uploadId, int partNumber, InputStream in, long length)
+            throws IOException {
+        TraceRecorder.Span span = begin("UPLOAD PART", key).arg("part", partNumber).arg("bytes", length);
+        try {
+            return this.delegate.uploadPart(key, uploadId, partNumber, in, length);
+        } catch (IOException e) {
+            throw failed(span, e);
+        } finally {
+            span.end();
+        }
+    }
+
+    @Override
+    public String copyPart(String destinationKey, String uploadId, int partNumber, String sourceBucketName,
+                           String sourceKey, long firstByte, long lastByte) throws IOException {
+        TraceRecorder.Span span = begin("COPY PART", destinationKey).arg("source", sourceKey)
+                .arg("part", partNumber).arg("bytes", lastByte - firstByte + 1);
+        try {
+            return this.delegate.copyPart(destinationKey, uploadId, partNumber, sourceBucketName, sourceKey,
+                    firstByte, lastByte);
+        } catch (IOException e) {
+            throw failed(span, e);
+        } finally {
+            span.end();
+        }
+    }
+
+    @Override
+    public void completeMultipartUpload(String key, String uploadId, List<String> partETags) throws IOException {
+        TraceRecorder.Span span = begin("COMPLETE", key).arg("parts", partETags.size());
+        try {
+            this.delegate.completeMultipartUpload(key, uploadId, partETags);
+        } catch (IOException e) {
+            throw failed(span, e);
+        } finally {
+            span.end();
+        }
+    }
+
+    @Override
+    public void abortMultipartUpload(String key, String uploadId) throws IOException {
+        TraceRecorder.Span span = begin("ABORT", key);
+        try {
+            this.delegate.abortMultipartUpload(key, uploadId);
+        } catch (IOException e) {
+            throw failed(span, e);
+        } finally {
+            span.end();
+        }
+    }
+
+    private TraceRecorder.Span begin(String method, String key) {
+        return this.traceRecorder.begin(CATEGORY, method, key);
+    }
+
+    private static IOException failed(TraceRecorder.Span span, IOException e) {
+        span.arg("error", e instanceof TransportException ? ((TransportException) e).getStatusCode() :
+                e.getClass().getSimpleName());
+        return e;
+    }
+
+    static class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                this.count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                this.count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            this.count += skipped;
+            return skipped;
+        }
+
+        long getCount() {
+            return this.count;
+        }
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import java.io.File;
+import java.io.InterruptedIOException;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Admits concurrent transfers so that small, latency-critical resources never queue behind large ones. Transfers of
+ * at most {@code largeTransferSize} bytes, and of metadata, POMs and checksums whose size is not known up front, run
+ * in the small lane; everything else runs in the large lane. Each lane admits a limited number of transfers at once,
+ * and a small transfer may also take a large lane slot that no large transfer is waiting for.
+ * <p/>
+ * Waiting transfers are admitted in order of priority: repository metadata, checksums and signatures first, then POMs
+ * and other descriptors, then artifacts. So that a steady stream of small transfers cannot starve an artifact, a
+ * transfer is ranked by the time it arrived plus one aging interval per priority class, which means that a waiting
+ * transfer overtakes every transfer of a higher priority that arrives more than that long after it.
+ * <p/>
+ * There is one instance per transport and bucket, shared by every wagon in the JVM, with the limits of the wagon that
+ * created it.
+ */
+final class TransferScheduler {
+
+    static final int DEFAULT_SMALL_TRANSFERS = 8;
+
+    static final int DEFAULT_LARGE_TRANSFERS = 4;
+
+    static final long DEFAULT_LARGE_TRANSFER_SIZE = 1024 * 1024;
+
+    static final long DEFAULT_AGING = 1000;
+
+    static final int PRIORITY_METADATA = 0;
+
+    static final int PRIORITY_DESCRIPTOR = 1;
+
+    static final int PRIORITY_ARTIFACT = 2;
+
+    /**
+     * Orders files to put so that those that unblock the most, and those that are quickest to put, come first
+     */
+    static final Comparator<File> PUT_ORDER = new Comparator<File>() {
+
+        @Override
+        public int compare(File file1, File file2) {
+            int priority1 = getPriority(file1.getName());
+            int priority2 = getPriority(file2.getName());
+            if (priority1 != priority2) {
+                return priority1 < priority2 ? -1 : 1;
+            }
+            long length1 = file1.length();
+            long length2 = file2.length();
+            return length1 < length2 ? -1 : (length1 == length2 ? 0 : 1);
+        }
+    };
+
+    private static final TransferScheduler UNBOUNDED = new TransferScheduler(Integer.MAX_VALUE, Integer.MAX_VALUE,
+            Long.MAX_VALUE, DEFAULT_AGING);
+
+    private static final ConcurrentMap<String, TransferScheduler> INSTANCES =
+            new ConcurrentHashMap<String, TransferScheduler>();
+
+    private final Object monitor = new Object();
+
+    private final Lane small = new Lane();
+
+    private final Lane large = new Lane();
+
+    private final long aging;
+
+    private final long largeTransferSize;
+
+    private long sequence = 0;
+
+    TransferScheduler(int smallTransfers, int largeTransfers, long largeTransferSize, long aging) {
+        this.small.available = smallTransfers;
+        this.large.available = largeTransfers;
+        this.largeTransferSize = largeTransferSize;
+        this.aging = aging;
+    }
+
+    /**
+     * Returns a scheduler that admits every transfer immediately
+     *
+     * @return The scheduler
+     */
+    static TransferScheduler unbounded() {
+        return UNBOUNDED;
+    }
+
+    /**
+     * Returns the instance shared by every wagon using a transport to access a bucket, creating it with the given
+     * limits if there is none. The limits of an existing instance are left as they are, so that a wagon cannot change
+     * them for the others.
+     *
+     * @param transport         The name of the transport
+     * @param bucketName        The name of the bucket
+     * @param smallTransfers    The number of small transfers, if the instance is created
+     * @param largeTransfers    The number of large transfers, if the instance is created
+     * @param largeTransferSize The size in bytes above which a transfer is large, if the instance is created
+     * @return The instance
+     */
+    static TransferScheduler forBucket(String transport, String bucketName, int smallTransfers, int largeTransfers,
+                                       long largeTransferSize) {
+        String name = String.format("%s %s", transport, bucketName);
+        TransferScheduler candidate = INSTANCES.get(name);
+        if (candidate == null) {
+            TransferScheduler transferScheduler = new TransferScheduler(smallTransfers, largeTransfers,
+                    largeTransferSize, DEFAULT_AGING);
+            candidate = INSTANCES.putIfAbsent(name, transferScheduler);
+            if (candidate == null) {
+                candidate = transferScheduler;
+            }
+        }
+        return candidate;
+    }
+
+    /**
+     * Returns the priority class of a resource, lower being more urgent
+     *
+     * @param resourceName The name of the resource
+     * @return The priority class
+     */
+    static int getPriority(String resourceName) {
+        String name = resourceName.substring(resourceName.lastIndexOf('/') + 1).toLowerCase(Locale.ENGLISH);
+        if (name.startsWith("maven-metadata") || name.endsWith(".md5") || name.endsWith(".sha1")
+                || name.endsWith(".sha256") || name.endsWith(".sha512") || name.endsWith(".asc")) {
+            return PRIORITY_METADATA;
+        }
+        if (name.endsWith(".pom") || name.endsWith(".module") || name.endsWith(".xml")) {
+            return PRIORITY_DESCRIPTOR;
+        }
+        return PRIORITY_ARTIFACT;
+    }
+
+    /**
+     * Waits until a transfer is admitted
+     *
+     * @param resourceName The name of the resource being transferred
+     * @param size         The size of the transfer in bytes, or {@code -1} if it is not known
+     * @return The admission that must be given back with {@link Ticket#release()} once the transfer has finished
+     * @throws InterruptedIOException if the thread is interrupted while waiting
+     */
+    Ticket acquire(String resourceName, long size) throws InterruptedIOException {
+        int priority = getPriority(resourceName);
+        synchronized (this.monitor) {
+            boolean large = size < 0 ? priority == PRIORITY_ARTIFACT : size > this.largeTransferSize;
+            Ticket ticket = new Ticket(large ? this.large : this.small,
+                    System.currentTimeMillis() + priority * this.aging, this.sequence++);
+            ticket.queue.waiting.add(ticket);
+            dispatch();
+
+            while (ticket.lane == null) {
+                try {
+                    this.monitor.wait();
+                } catch (InterruptedException e) {
+                    if (ticket.lane == null) {
+                        ticket.queue.waiting.remove(ticket);
+                    } else {
+                        ticket.release();
+                    }
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException(String.format("Interrupted while waiting to transfer '%s'",
+                            resourceName));
+                }
+            }
+            return ticket;
+        }
+    }
+
+    /**
+     * Returns the number of transfers waiting to be admitted
+     *
+     * @return The number of transfers
+     */
+    int getWaiting() {
+        synchronized (this.monitor) {
+            return this.small.waiting.size() + this.large.waiting.size();
+        }
+    }
+
+    private void release(Ticket ticket) {
+        synchronized (this.monitor) {
+            ticket.lane.available++;
+            dispatch();
+        }
+    }
+
+    private void dispatch() {
+        boolean admitted = admit(this.large, this.large) | admit(this.small, this.small);
+        if (this.large.waiting.isEmpty()) {
+            admitted |= admit(this.small, this.large);
+        }
+        if (admitted) {
+            this.monitor.notifyAll();
+        }
+    }
+
+    private static boolean admit(Lane queue, Lane lane) {
+        boolean admitted = false;
+        while (lane.available > 0 && !queue.waiting.isEmpty()) {
+            Ticket ticket = queue.waiting.poll();
+            lane.available--;
+            ticket.lane = lane;
+            admitted = true;
+        }
+        return admitted;
+    }
+
+    private static final class Lane {
+
+        private final PriorityQueue<Ticket> waiting = new PriorityQueue<Ticket>();
+
+        private int available;
+    }
+
+    /**
+     * The admission of a transfer
+     */
+    final class Ticket implements Comparable<Ticket> {
+
+        private final Lane queue;
+
+        private final long rank;
+
+        private final long sequence;
+
+        private Lane lane;
+
+        private boolean released = false;
+
+        private Ticket(Lane queue, long rank, long sequence) {
+            this.queue = queue;
+            this.rank = rank;
+            this.sequence = sequence;
+        }
+
+        /**
+         * Gives the admission back, admitting the next waiting transfer. Releasing more than once has no effect.
+         */
+        void release() {
+            synchronized (TransferScheduler.this.monitor) {
+                if (!this.released) {
+                    this.released = true;
+                    TransferScheduler.this.release(this);
+                }
+            }
+        }
+
+        @Override
+        public int compareTo(Ticket other) {
+            if (this.rank != other.rank) {
+                return this.rank < other.rank ? -1 : 1;
+            }
+            return this.sequence < other.sequence ? -1 : (this.sequence == other.sequence ? 0 : 1);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * The operations the wagon needs from a storage service. Implementations are bound to a single bucket and address
+ * objects by their full key within it.
+ *
+ * @see TransportFactory
+ */
+interface Transport {
+
+    /**
+     * The most keys that can be passed to {@link #delete(List)} at once
+     */
+    int MAX_DELETE_KEYS = 1000;
+
+    /**
+     * Returns the metadata of an object
+     *
+     * @param key The key of the object
+     * @return The metadata of the object or {@code null} if the object does not exist
+     * @throws IOException if the metadata cannot be retrieved
+     */
+    ObjectInfo head(String key) throws IOException;
+
+    /**
+     * Opens the content of an object. The caller is responsible for closing the returned content.
+     *
+     * @param key The key of the object
+     * @return The content of the object
+     * @throws TransportException if the service rejects the request, including when the object does not exist
+     * @throws IOException        if the content cannot be opened
+     */
+    ObjectContent get(String key) throws IOException;
+
+    /**
+     * Opens a range of the content of an object. The caller is responsible for closing the returned content, whose
+     * metadata has the length of the range rather than of the object.
+     *
+     * @param key       The key of the object
+     * @param firstByte The offset of the first byte to read
+     * @param lastByte  The offset of the last byte to read, inclusive. A range that extends past the end of the object
+     *                  is cut short.
+     * @return The range of the content of the object
+     * @throws TransportException if the service rejects the request, including when the object does not exist or
+     *                            starts after its end
+     * @throws IOException        if the content cannot be opened
+     */
+    ObjectContent get(String key, long firstByte, long lastByte) throws IOException;
+
+    /**
+     * Opens the content of an object unless its ETag is a given one, such as the MD5 of a copy that is already held
+     * locally. The caller is responsible for closing the returned content.
+     *
+     * @param key  The key of the object
+     * @param eTag The ETag of the copy that is already held
+     * @return The content of the object, or {@code null} if the object's ETag is {@code eTag}
+     * @throws TransportException if the service rejects the request, including when the object does not exist
+     * @throws IOException        if the content cannot be opened
+     */
+    ObjectContent getIfChanged(String key, String eTag) throws IOException;
+
+    /**
+     * Writes an object
+     *
+     * @param metadata   The key, length and content type of the object
+     * @param in         The content of the object
+     * @param publicRead {@code true} if the object should be publicly readable, otherwise {@code false}
+     * @throws IOException if the object cannot be written
+     */
+    void put(ObjectInfo metadata, InputStream in, boolean publicRead) throws IOException;
+
+    /**
+     * Lists a single page of objects
+     *
+     * @param prefix    The prefix that all returned keys start with
+     * @param delimiter The delimiter used to roll keys up into common prefixes, or {@code null} for none
+     * @param marker    The key to start listing after, or {@code null} to start at the beginning
+     * @return The page of objects
+     * @throws IOException if the objects cannot be listed
+     */
+    ListingPage list(String prefix, String delimiter, String marker) throws IOException;
+
+    /**
+     * Deletes an object. Deleting an object that does not exist is not an error.
+     *
+     * @param key The key of the object
+     * @throws IOException if the object cannot be deleted
+     */
+    void delete(String key) throws IOException;
+
+    /**
+     * Deletes up to {@link #MAX_DELETE_KEYS} objects in a single request. Deleting objects that do not exist is not an
+     * error.
+     *
+     * @param keys The keys of the objects
+     * @throws IOException if any of the objects cannot be deleted
+     */
+    void delete(List<String> keys) throws IOException;
+
+    /**
+     * Copies an object without transferring its content through the client. The object's content type is kept.
+     *
+     * @param sourceBucketName The bucket to copy the object from, or {@code null} to copy from this transport's bucket
+     * @param sourceKey        The key of the object to copy
+     * @param destinationKey   The key to copy the object to
+     * @param publicRead       {@code true} if the copy should be publicly readable, otherwise {@code false}
+     * @throws TransportException if the service rejects the request, including when the source does not exist
+     * @throws IOException        if the object cannot be copied
+     */
+    void copy(String sourceBucketName, String sourceKey, String destinationKey, boolean publicRead)
+            throws IOException;
+
+    /**
+     * Starts writing an object in parts. The upload must be either completed or aborted.
+     *
+     * @param metadata   The key and content type of the object
+     * @param publicRead {@code true} if the object should be publicly readable, otherwise {@code false}
+     * @return The id of the upload
+     * @throws IOException if the upload cannot be started
+     */
+    String initiateMultipartUpload(ObjectInfo metadata, boolean publicRead) throws IOException;
+
+    /**
+     * Writes a part of a multipart upload. Transports may read {@code in} again from its mark to retry the request.
+     *
+     * @param key        The key of the object being uploaded
+     * @param uploadId   The id of the upload
+     * @param partNumber The number of the part, starting at 1
+     * @param in         The content of the part
+     * @param length     The length of the part
+     * @return The ETag of the part
+     * @throws IOException if the part cannot be written
+     */
+    String uploadPart(String key, String uploadId, int partNumber, InputStream in, long length) throws IOException;
+
+    /**
+     * Writes a part of a multipart upload by copying a range of an existing object without transferring it through
+     * the client
+     *
+     * @param destinationKey   The key of the object being uploaded
+     * @param uploadId         The id of the upload
+     * @param partNumber       The number of the part, starting at 1
+     * @param sourceBucketName The bucket to copy from, or {@code null} to copy from this transport's bucket
+     * @param sourceKey        The key of the object to copy from
+     * @param firstByte        The offset of the first byte to copy
+     * @param lastByte         The offset of the last byte to copy, inclusive
+     * @return The ETag of the part
+     * @throws IOException if the part cannot be copied
+     */
+    String copyPart(String destinationKey, String uploadId, int partNumber, String sourceBucketName, String sourceKey,
+                    long firstByte, long lastByte) throws IOException;
+
+    /**
+     * Completes a multipart upload, making the object visible
+     *
+     * @param key       The key of the object being uploaded
+     * @param uploadId  The id of the upload
+     * @param partETags The ETags of the parts, in part number order
+     * @throws IOException if the upload cannot be completed
+     */
+    void completeMultipartUpload(String key, String uploadId, List<String> partETags) throws IOException;
+
+    /**
+     * Abandons a multipart upload, discarding any parts that have been written
+     *
+     * @param key      The key of the object being uploaded
+     * @param uploadId The id of the upload
+     * @throws IOException if the upload cannot be aborted
+     */
+    void abortMultipartUpload(String key, String uploadId) throws IOException;
+
+}
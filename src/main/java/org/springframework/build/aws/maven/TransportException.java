@@ -0,0 +1,49 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import java.io.IOException;
+
+/**
+ * Indicates that the storage service received a request and rejected it
+ */
+final class TransportException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int NOT_FOUND = 404;
+
+    private final int statusCode;
+
+    TransportException(String message, int statusCode) {
+        super(message);
+        this.statusCode = statusCode;
+    }
+
+    TransportException(String message, int statusCode, Throwable cause) {
+        super(message, cause);
+        this.statusCode = statusCode;
+    }
+
+    int getStatusCode() {
+        return this.statusCode;
+    }
+
+    boolean isNotFound() {
+        return this.statusCode == NOT_FOUND;
+    }
+}
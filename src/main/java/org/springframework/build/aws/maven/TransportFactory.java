@@ -0,0 +1,108 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import org.apache.maven.wagon.authentication.AuthenticationInfo;
+import org.apache.maven.wagon.proxy.ProxyInfoProvider;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.concurrent.Callable;
+
+/**
+ * Creates {@link Transport}s by name. The supported names are:
+ * <ul>
+ * <li><code>sdk</code> - S3 accessed through the AWS SDK</li>
+ * <li><code>http</code> - S3 accessed through the built-in Signature Version 4 client</li>
+ * <li><code>memory</code> - objects held in memory for the life of the JVM</li>
+ * <li><code>file:</code> URLs - objects stored as files, with each bucket in a directory below the URL</li>
+ * <li><code>public</code> - a public-read bucket read with unsigned requests to its S3 URL, and written through the
+ * AWS SDK</li>
+ * <li><code>https:</code> and <code>http:</code> URLs - the same, reading from that URL, such as a CDN's</li>
+ * </ul>
+ * Transports that talk to S3 are wrapped so that every request has a {@link Deadline}. When a {@link TraceRecorder} is
+ * enabled, the transport is also wrapped so that every request is recorded.
+ */
+final class TransportFactory {
+
+    static final String SDK = "sdk";
+
+    static final String HTTP = "http";
+
+    static final String MEMORY = "memory";
+
+    static final String PUBLIC = "public";
+
+    private static final String FILE_SCHEME = "file:";
+
+    private static final String HTTPS_SCHEME = "https:";
+
+    private static final String HTTP_SCHEME = "http:";
+
+    private TransportFactory() {
+    }
+
+    static boolean isSupported(String transport) {
+        return SDK.equals(transport) || HTTP.equals(transport) || MEMORY.equals(transport) || PUBLIC.equals(transport)
+                || (transport != null && (transport.startsWith(FILE_SCHEME) || isPublicUrl(transport)));
+    }
+
+    static Transport create(String transport, final String bucketName, final AuthenticationInfo authenticationInfo,
+                            final ProxyInfoProvider proxyInfoProvider, final ClientSettings clientSettings,
+                            final TraceRecorder traceRecorder) throws IOException {
+        Transport candidate;
+        if (HTTP.equals(transport)) {
+            candidate = new DeadlineTransport(SignatureV4Transport.create(bucketName, authenticationInfo,
+                    proxyInfoProvider, clientSettings), clientSettings);
+        } else if (MEMORY.equals(transport)) {
+            candidate = InMemoryTransport.forBucket(bucketName);
+        } else if (transport.startsWith(FILE_SCHEME)) {
+            candidate = new FileSystemTransport(new File(getRoot(transport), bucketName));
+        } else if (PUBLIC.equals(transport) || isPublicUrl(transport)) {
+            String baseUrl = PUBLIC.equals(transport) ? PublicReadTransport.getDefaultUrl(bucketName, clientSettings) :
+                    transport;
+            candidate = new DeadlineTransport(new PublicReadTransport(baseUrl,
+                    SignatureV4Transport.getProxy(proxyInfoProvider), clientSettings, new Callable<Transport>() {
+
+                @Override
+                public Transport call() throws IOException {
+                    return AmazonS3Transport.create(bucketName, authenticationInfo, proxyInfoProvider,
+                            clientSettings, traceRecorder);
+                }
+            }), clientSettings);
+        } else {
+            candidate = new DeadlineTransport(AmazonS3Transport.create(bucketName, authenticationInfo,
+                    proxyInfoProvider, clientSettings, traceRecorder), clientSettings);
+        }
+
+        return traceRecorder.isEnabled() ? new TracingTransport(candidate, traceRecorder) : candidate;
+    }
+
+    private static boolean isPublicUrl(String transport) {
+        return transport.startsWith(HTTPS_SCHEME) || transport.startsWith(HTTP_SCHEME);
+    }
+
+    private static File getRoot(String url) throws IOException {
+        try {
+            return new File(new URI(url));
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            throw new IOException(String.format("'%s' is not a valid file URL", url), e);
+        }
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link Transport} that can open connections to the service in the background before they are needed, and that
+ * measures how long the first request made through it takes so that the effect of doing so can be seen.
+ * <p/>
+ * Each warm-up connection is opened by a daemon thread making a <code>HEAD</code> request. The requests run in
+ * parallel so that the client has to open a connection for each of them, and they are released back to the client's
+ * pool as soon as their response has been read. A failed warm-up request is ignored.
+ */
+final class WarmUpTransport implements Transport {
+
+    private final Transport delegate;
+
+    private final AtomicBoolean firstRequest = new AtomicBoolean();
+
+    private volatile long firstRequestNanos = -1;
+
+    private volatile long warmUpNanos = -1;
+
+    private volatile int warmUpConnections;
+
+    WarmUpTransport(Transport delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Starts opening connections in the background and returns immediately
+     *
+     * @param connections The number of connections to open
+     * @param key         The key to make the warm-up requests for. It does not need to exist.
+     */
+    void warmUp(int connections, final String key) {
+        if (connections < 1) {
+            return;
+        }
+
+        this.warmUpConnections = connections;
+        final long start = System.nanoTime();
+        final AtomicInteger remaining = new AtomicInteger(connections);
+
+        for (int i = 0; i < connections; i++) {
+            Thread thread = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        WarmUpTransport.this.delegate.head(key);
+                    } catch (IOException e) {
+                        // the connection is still opened and pooled
+                    } finally {
+                        if (remaining.decrementAndGet() == 0) {
+                            WarmUpTransport.this.warmUpNanos = System.nanoTime() - start;
+                        }
+                    }
+                }
+            }, String.format("aws-maven-warm-up-%d", i));
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Returns how long the first request made through this transport took
+     *
+     * @return The duration in nanoseconds, or {@code -1} if no request has completed
+     */
+    long getFirstRequestNanos() {
+        return this.firstRequestNanos;
+    }
+
+    /**
+     * Returns how long it took to open all of the warm-up connections
+     *
+     * @return The duration in nanoseconds, or {@code -1} if warm-up was not requested or has not finished
+     */
+    long getWarmUpNanos() {
+        return this.warmUpNanos;
+    }
+
+    int getWarmUpConnections() {
+        return this.warmUpConnections;
+    }
+
+    @Override
+    public ObjectInfo head(String key) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return this.delegate.head(key);
+        } finally {
+            completed(start);
+        }
+    }
+
+    @Override
+    public ObjectContent get(String key) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return this.delegate.get(key);
+        } finally {
+            completed(start);
+        }
+    }
+
+    @Override
+    public ObjectContent getIfChanged(String key, String eTag) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return this.delegate.getIfChanged(key, eTag);
+        } finally {
+            completed(start);
+        }
+    }
+
+    @Override
+    public ObjectContent get(String key, long firstByte, long lastByte) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return this.delegate.get(key, firstByte, lastByte);
+        } finally {
+            completed(start);
+        }
+    }
+
+    @Override
+    public void put(ObjectInfo metadata, InputStream in, boolean publicRead) throws IOException {
+        long start = System.nanoTime();
+        try {
+            this.delegate.put(metadata, in, publicRead);
+        } finally {
+            completed(start);
+        }
+    }
+
+    @Override
+    public ListingPage list(String prefix, String delimiter, String marker) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return this.delegate.list(prefix, delimiter, marker);
+        } finally {
+            completed(start);
+        }
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        long start = System.nanoTime();
+        try {
+            this.delegate.delete(key);
+        } finally {
+            completed(start);
+        }
+    }
+
+    @Override
+    public void delete(List<String> keys) throws IOException {
+        long start = System.nanoTime();
+        try {
+            this.delegate.delete(keys);
+        } finally {
+            completed(start);
+        }
+    }
+
+    @Override
+    public void copy(String sourceBucketName, String sourceKey, String destinationKey, boolean publicRead)
+            throws IOException {
+        long start = System.nanoTime();
+        try {
+            this.delegate.copy(sourceBucketName, sourceKey, destinationKey, publicRead);
+        } finally {
+            completed(start);
+        }
+    }
+
+    @Override
+    public String initiateMultipartUpload(ObjectInfo metadata, boolean publicRead) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return this.delegate.initiateMultipartUpload(metadata, publicRead);
+        } finally {
+            completed(start);
+        }
+    }
+
+    @Override
+    public String uploadPart(String key, String uploadId, int partNumber, InputStream in, long length)
+            throws IOException {
+        long start = System.nanoTime();
+        try {
+            return this.delegate.uploadPart(key, uploadId, partNumber, in, length);
+        } finally {
+            completed(start);
+        }
+    }
+
+    @Override
+    public String copyPart(String destinationKey, String uploadId, int partNumber, String sourceBucketName,
+                           String sourceKey, long firstByte, long lastByte) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return this.delegate.copyPart(destinationKey, uploadId, partNumber, sourceBucketName, sourceKey,
+                    firstByte, lastByte);
+        } finally {
+            completed(start);
+        }
+    }
+
+    @Override
+    public void completeMultipartUpload(String key, String uploadId, List<String> partETags) throws IOException {
+        long start = System.nanoTime();
+        try {
+            this.delegate.completeMultipartUpload(key, uploadId, partETags);
+        } finally {
+            completed(start);
+        }
+    }
+
+    @Override
+    public void abortMultipartUpload(String key, String uploadId) throws IOException {
+        long start = System.nanoTime();
+        try {
+            this.delegate.abortMultipartUpload(key, uploadId);
+        } finally {
+            completed(start);
+        }
+    }
+
+    private void completed(long start) {
+        if (this.firstRequestNanos == -1 && this.firstRequest.compareAndSet(false, true)) {
+            this.firstRequestNanos = System.nanoTime() - start;
+        }
+    }
+}
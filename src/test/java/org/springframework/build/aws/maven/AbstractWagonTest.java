@@ -36,6 +36,11 @@ import java.io.File;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.*;
 import static org.mockito.Matchers.any;
@@ -342,6 +347,51 @@ public final class AbstractWagonTest {
         }
     }
 
+    @Test
+    public void getScheduledBySize() throws Exception {
+        TransferScheduler transferScheduler = new TransferScheduler(1, 1, 100, 1000);
+        this.wagon.setTransferScheduler(transferScheduler);
+        TransferScheduler.Ticket large = transferScheduler.acquire("foo/baz-1.0.jar", -1);
+        doReturn(10L).when(this.wagon).getResourceSize("foo/bar-1.0.jar");
+
+        // a small artifact does not wait for the large lane
+        this.wagon.get("foo/bar-1.0.jar", new File("bar"));
+        verify(this.wagon).getResource(eq("foo/bar-1.0.jar"), eq(new File("bar")), any(TransferProgress.class));
+        large.release();
+    }
+
+    @Test
+    public void getIfNewerScheduled() throws Exception {
+        TransferScheduler transferScheduler = new TransferScheduler(1, 1, 100, 1000);
+        this.wagon.setTransferScheduler(transferScheduler);
+        TransferScheduler.Ticket small = transferScheduler.acquire("foo/maven-metadata.xml", 0);
+        TransferScheduler.Ticket large = transferScheduler.acquire("foo/baz-1.0.jar", -1);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Boolean> newer = executor.submit(new Callable<Boolean>() {
+
+                @Override
+                public Boolean call() throws Exception {
+                    return AbstractWagonTest.this.wagon.getIfNewer("foo/maven-metadata.xml", new File("bar"), 0);
+                }
+            });
+            long deadline = System.currentTimeMillis() + 5000;
+            while (transferScheduler.getWaiting() != 1) {
+                assertTrue(System.currentTimeMillis() < deadline);
+                Thread.sleep(10);
+            }
+            verify(this.wagon, never()).isRemoteResourceNewer("foo/maven-metadata.xml", 0);
+
+            small.release();
+            assertFalse(newer.get(5, TimeUnit.SECONDS));
+            verify(this.wagon).isRemoteResourceNewer("foo/maven-metadata.xml", 0);
+        } finally {
+            large.release();
+            executor.shutdownNow();
+        }
+    }
+
     @Test
     public void getIfNewerOlder() throws TransferFailedException, ResourceDoesNotExistException,
             AuthorizationException {
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public final class BloomFilterTest {
+
+    @Test
+    public void noFalseNegatives() {
+        BloomFilter bloomFilter = BloomFilter.create(1000, 0.01);
+        for (int i = 0; i < 1000; i++) {
+            bloomFilter.add("foo/bar/" + i + ".jar");
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(bloomFilter.mightContain("foo/bar/" + i + ".jar"));
+        }
+    }
+
+    @Test
+    public void falsePositiveRate() {
+        BloomFilter bloomFilter = BloomFilter.create(1000, 0.01);
+        for (int i = 0; i < 1000; i++) {
+            bloomFilter.add("foo/bar/" + i + ".jar");
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (bloomFilter.mightContain("foo/baz/" + i + ".jar")) {
+                falsePositives++;
+            }
+        }
+        assertTrue(String.valueOf(falsePositives), falsePositives < 300);
+    }
+
+    @Test
+    public void empty() {
+        BloomFilter bloomFilter = BloomFilter.create(0, 0.01);
+        assertFalse(bloomFilter.mightContain("foo"));
+        bloomFilter.add("foo");
+        assertTrue(bloomFilter.mightContain("foo"));
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        BloomFilter bloomFilter = BloomFilter.create(100, 0.01);
+        bloomFilter.add("foo");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        bloomFilter.writeTo(out);
+
+        BloomFilter read = BloomFilter.readFrom(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(bloomFilter.getNumBits(), read.getNumBits());
+        assertEquals(bloomFilter.getNumHashes(), read.getNumHashes());
+        assertTrue(read.mightContain("foo"));
+        assertFalse(read.mightContain("bar"));
+    }
+
+    @Test(expected = IOException.class)
+    public void readFromInvalid() throws IOException {
+        BloomFilter.readFrom(new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12}));
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public final class BucketMirrorTest {
+
+    private final InMemoryTransport transport = new InMemoryTransport();
+
+    private final File destination = new File("target/bucket-mirror");
+
+    @Before
+    public void setUp() throws IOException {
+        delete(this.destination);
+        put("foo/", "");
+        put("foo/bar/robots.txt", "robots");
+        put("foo/baz.txt", "baz");
+        put("other.txt", "other");
+    }
+
+    @Test
+    public void mirror() throws IOException {
+        MirrorSummary summary = new BucketMirror(this.transport, 2).mirror("foo/", this.destination);
+
+        assertEquals(2, summary.getListed());
+        assertEquals(2, summary.getDownloaded());
+        assertEquals(9, summary.getBytesDownloaded());
+        assertEquals(0, summary.getSkipped());
+        assertEquals(0, summary.getFailed());
+        assertEquals(6, new File(this.destination, "bar/robots.txt").length());
+        assertFalse(new File(this.destination, "other.txt").exists());
+    }
+
+    @Test
+    public void outsideDestinationSkipped() throws IOException {
+        File outside = new File("target/bucket-mirror-outside");
+        delete(outside);
+        put("foo/../bucket-mirror-outside/", "");
+        put("foo/../bucket-mirror-outside/robots.txt", "robots");
+
+        MirrorSummary summary = new BucketMirror(this.transport, 2).mirror("foo/", this.destination);
+        assertEquals(2, summary.getListed());
+        assertFalse(outside.exists());
+    }
+
+    @Test
+    public void encodedDecoded() throws IOException {
+        byte[] content = "robots robots robots robots robots robots".getBytes();
+        byte[] encoded = ContentEncoding.gzip(content);
+        Map<String, String> metadata = new HashMap<String, String>();
+        metadata.put(ContentEncoding.DECODED_LENGTH, String.valueOf(content.length));
+        metadata.put(ContentEncoding.DECODED_MD5, IoUtils.md5Hex(new ByteArrayInputStream(content)));
+        this.transport.put(new ObjectInfo("foo/bar/robots.txt", encoded.length, null, null, null,
+                ContentEncoding.GZIP, metadata), new ByteArrayInputStream(encoded), false);
+
+        new BucketMirror(this.transport, 2).mirror("foo/", this.destination);
+        File file = new File(this.destination, "bar/robots.txt");
+        assertEquals(IoUtils.md5Hex(new ByteArrayInputStream(content)), IoUtils.md5Hex(new FileInputStream(file)));
+
+        MirrorSummary summary = new BucketMirror(this.transport, 2).mirror("foo/", this.destination);
+        assertEquals(0, summary.getDownloaded());
+        assertEquals(2, summary.getSkipped());
+    }
+
+    @Test
+    public void unchangedSkipped() throws IOException {
+        new BucketMirror(this.transport, 2).mirror("foo/", this.destination);
+        MirrorSummary summary = new BucketMirror(this.transport, 2).mirror("foo/", this.destination);
+
+        assertEquals(0, summary.getDownloaded());
+        assertEquals(2, summary.getSkipped());
+        assertEquals(9, summary.getBytesSkipped());
+    }
+
+    @Test
+    public void touchedSkippedByETag() throws IOException {
+        new BucketMirror(this.transport, 2).mirror("foo/", this.destination);
+        File file = new File(this.destination, "baz.txt");
+        assertTrue(file.setLastModified(0));
+
+        MirrorSummary summary = new BucketMirror(this.transport, 2).mirror("foo/", this.destination);
+
+        assertEquals(0, summary.getDownloaded());
+        assertEquals(2, summary.getSkipped());
+        assertEquals(this.transport.head("foo/baz.txt").getLastModified().getTime() / 1000,
+                file.lastModified() / 1000);
+    }
+
+    @Test
+    public void changedDownloaded() throws IOException {
+        new BucketMirror(this.transport, 2).mirror("foo/", this.destination);
+        put("foo/baz.txt", "bar");
+        assertTrue(new File(this.destination, "baz.txt").setLastModified(0));
+
+        MirrorSummary summary = new BucketMirror(this.transport, 2).mirror("foo/", this.destination);
+
+        assertEquals(1, summary.getDownloaded());
+        assertEquals(1, summary.getSkipped());
+    }
+
+    private void put(String key, String content) throws IOException {
+        byte[] bytes = content.getBytes();
+        this.transport.put(new ObjectInfo(key, bytes.length, null, null, null), new ByteArrayInputStream(bytes),
+                false);
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public final class BufferPoolTest {
+
+    private final BufferPool bufferPool = new BufferPool(16, 32);
+
+    @Test
+    public void buffersReused() throws IOException {
+        ByteBuffer buffer = this.bufferPool.acquire();
+        assertEquals(16, buffer.capacity());
+        assertEquals(16, this.bufferPool.getBytesInUse());
+
+        buffer.put((byte) 1);
+        this.bufferPool.release(buffer);
+        assertEquals(0, this.bufferPool.getBytesInUse());
+        assertEquals(1, this.bufferPool.getPooledBuffers());
+
+        ByteBuffer reused = this.bufferPool.acquire();
+        assertSame(buffer, reused);
+        assertEquals(0, reused.position());
+    }
+
+    @Test
+    public void acquireWaitsAtCap() throws Exception {
+        ByteBuffer first = this.bufferPool.acquire();
+        this.bufferPool.acquire();
+
+        final AtomicReference<ByteBuffer> third = new AtomicReference<ByteBuffer>();
+        final CountDownLatch acquired = new CountDownLatch(1);
+        Thread thread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    third.set(BufferPoolTest.this.bufferPool.acquire());
+                    acquired.countDown();
+                } catch (IOException e) {
+                    // the assertion below fails
+                }
+            }
+        });
+        thread.start();
+
+        assertFalse(acquired.await(100, TimeUnit.MILLISECONDS));
+        this.bufferPool.release(first);
+        assertTrue(acquired.await(10, TimeUnit.SECONDS));
+        assertSame(first, third.get());
+        assertEquals(32, this.bufferPool.getBytesInUse());
+    }
+
+    @Test
+    public void oversizedBufferHandedOutAlone() throws IOException {
+        BufferPool small = new BufferPool(64, 32);
+        assertNotNull(small.acquire());
+        assertEquals(64, small.getBytesInUse());
+    }
+
+    @Test
+    public void reconfigureDiscardsPooledBuffers() throws IOException {
+        this.bufferPool.release(this.bufferPool.acquire());
+        this.bufferPool.configure(8, 32);
+
+        assertEquals(0, this.bufferPool.getPooledBuffers());
+        ByteBuffer buffer = this.bufferPool.acquire();
+        assertEquals(8, buffer.capacity());
+    }
+}
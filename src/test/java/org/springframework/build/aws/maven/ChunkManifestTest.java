@@ -0,0 +1,170 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public final class ChunkManifestTest {
+
+    private static final int MIN = 1024;
+
+    private static final int BITS = 10;
+
+    private static final int MAX = 8 * 1024;
+
+    private final File file = new File("target/chunk-manifest.bin");
+
+    @Test
+    public void chunkSizes() throws IOException {
+        byte[] content = random(1, 256 * 1024);
+        ChunkManifest manifest = chunk(content);
+
+        long offset = 0;
+        List<ChunkManifest.Chunk> chunks = manifest.getChunks();
+        for (int i = 0; i < chunks.size(); i++) {
+            ChunkManifest.Chunk chunk = chunks.get(i);
+            assertEquals(offset, chunk.getOffset());
+            assertTrue(chunk.getLength() <= MAX);
+            if (i < chunks.size() - 1) {
+                assertTrue(chunk.getLength() >= MIN);
+            }
+            offset += chunk.getLength();
+        }
+        assertEquals(content.length, offset);
+        assertTrue(chunks.size() > 50);
+    }
+
+    @Test
+    public void unchanged() throws IOException {
+        byte[] content = random(1, 64 * 1024);
+        ChunkManifest previous = chunk(content).withETag("etag");
+
+        List<MultipartFileUpload.Part> parts = chunk(content).getParts(previous);
+        assertEquals(1, parts.size());
+        assertEquals("foo/bar.jar", parts.get(0).getSourceKey());
+        assertEquals(0, parts.get(0).getOffset());
+        assertEquals(content.length, parts.get(0).getLength());
+    }
+
+    @Test
+    public void noPrevious() throws IOException {
+        byte[] content = random(1, 64 * 1024);
+
+        List<MultipartFileUpload.Part> parts = chunk(content).getParts(null);
+        assertEquals(1, parts.size());
+        assertNull(parts.get(0).getSourceKey());
+        assertEquals(content.length, parts.get(0).getLength());
+    }
+
+    @Test
+    public void insertion() throws IOException {
+        byte[] content = random(1, 256 * 1024);
+        ChunkManifest previous = chunk(content);
+
+        byte[] changed = new byte[content.length + 100];
+        System.arraycopy(content, 0, changed, 0, 128 * 1024);
+        System.arraycopy(random(2, 100), 0, changed, 128 * 1024, 100);
+        System.arraycopy(content, 128 * 1024, changed, 128 * 1024 + 100, content.length - 128 * 1024);
+
+        List<MultipartFileUpload.Part> parts = chunk(changed).getParts(previous);
+        long copied = 0;
+        long uploaded = 0;
+        long offset = 0;
+        for (MultipartFileUpload.Part part : parts) {
+            if (part.getSourceKey() == null) {
+                assertEquals(offset, part.getOffset());
+                uploaded += part.getLength();
+            } else {
+                assertArrayEquals(Arrays.copyOfRange(changed, (int) offset, (int) (offset + part.getLength())),
+                        Arrays.copyOfRange(content, (int) part.getOffset(),
+                                (int) (part.getOffset() + part.getLength())));
+                copied += part.getLength();
+            }
+            offset += part.getLength();
+        }
+        assertEquals(changed.length, offset);
+        assertTrue(String.valueOf(uploaded), uploaded < 3 * MAX);
+        assertEquals(3, parts.size());
+        assertEquals(changed.length - uploaded, copied);
+    }
+
+    @Test
+    public void readWrite() throws IOException {
+        ChunkManifest manifest = chunk(random(1, 64 * 1024)).withETag("etag");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        manifest.write(out);
+        ChunkManifest read = ChunkManifest.read(new ByteArrayInputStream(out.toByteArray()));
+
+        assertEquals("foo/bar.jar", read.getKey());
+        assertEquals("etag", read.getETag());
+        assertEquals(manifest.getChunks().size(), read.getChunks().size());
+        assertEquals(1, read.getParts(manifest).size());
+        assertEquals("foo/bar.jar", read.getParts(manifest).get(0).getSourceKey());
+    }
+
+    @Test(expected = IOException.class)
+    public void readNotManifest() throws IOException {
+        ChunkManifest.read(new ByteArrayInputStream("not a manifest".getBytes()));
+    }
+
+    @Test
+    public void manifestName() {
+        assertEquals(".aws-maven/chunks/foo/bar/1.0-SNAPSHOT/bar-1.0-SNAPSHOT.jar",
+                ChunkManifest.getManifestName("foo/bar/1.0-SNAPSHOT/bar-1.0-SNAPSHOT.jar"));
+        assertEquals(".aws-maven/chunks/foo/bar/1.0-SNAPSHOT/bar-1.0-SNAPSHOT-sources.jar",
+                ChunkManifest.getManifestName("foo/bar/1.0-SNAPSHOT/bar-1.0-20141028.123456-12-sources.jar"));
+    }
+
+    @Test
+    public void isSnapshot() {
+        assertTrue(ChunkManifest.isSnapshot("foo/bar/1.0-SNAPSHOT/bar-1.0-20141028.123456-12.jar"));
+        assertFalse(ChunkManifest.isSnapshot("foo/bar/1.0/bar-1.0.jar"));
+    }
+
+    private ChunkManifest chunk(byte[] content) throws IOException {
+        OutputStream out = new FileOutputStream(this.file);
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+        return ChunkManifest.chunk("foo/bar.jar", this.file, MIN, BITS, MAX);
+    }
+
+    private static byte[] random(long seed, int length) {
+        byte[] bytes = new byte[length];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import org.junit.Test;
+
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public final class ClientSettingsTest {
+
+    private final ClientSettings clientSettings = new ClientSettings();
+
+    private final Properties properties = new Properties();
+
+    @Test
+    public void defaults() {
+        ClientSettings resolved = this.clientSettings.resolve(1000, 2000, this.properties, "foo");
+        assertEquals(1000, resolved.getConnectionTimeout());
+        assertEquals(2000, resolved.getSocketTimeout());
+        assertEquals(ClientSettings.DEFAULT_MAX_CONNECTIONS, resolved.getMaxConnections());
+        assertEquals(ClientSettings.DEFAULT_MAX_ERROR_RETRY, resolved.getMaxErrorRetry());
+        assertEquals(ClientSettings.DEFAULT_SOCKET_BUFFER_SIZE, resolved.getSocketSendBufferSize());
+        assertEquals(ClientSettings.DEFAULT_SOCKET_BUFFER_SIZE, resolved.getSocketReceiveBufferSize());
+        assertTrue(resolved.isKeepAlive());
+        assertEquals("https", resolved.getProtocol());
+        assertNull(resolved.getSigner());
+        assertEquals(ClientSettings.DEFAULT_FIRST_BYTE_TIMEOUT, resolved.getFirstByteTimeout());
+        assertEquals(ClientSettings.DEFAULT_IDLE_TIMEOUT, resolved.getIdleTimeout());
+        assertEquals(0, resolved.getTotalTimeout());
+    }
+
+    @Test
+    public void systemPropertiesOverrideConfiguration() {
+        this.clientSettings.setMaxConnections(10);
+        this.clientSettings.setProtocol("HTTP");
+        this.properties.setProperty("aws-maven.maxConnections", "20");
+        this.properties.setProperty("aws-maven.foo.maxConnections", "30");
+        this.properties.setProperty("aws-maven.bar.maxConnections", "40");
+        this.properties.setProperty("aws-maven.socketTimeout", "5000");
+        this.properties.setProperty("aws-maven.keepAlive", "false");
+        this.properties.setProperty("aws-maven.foo.signer", "AWSS3V4SignerType");
+
+        ClientSettings resolved = this.clientSettings.resolve(1000, 2000, this.properties, "foo");
+        assertEquals(30, resolved.getMaxConnections());
+        assertEquals(5000, resolved.getSocketTimeout());
+        assertFalse(resolved.isKeepAlive());
+        assertEquals("http", resolved.getProtocol());
+        assertEquals("AWSS3V4SignerType", resolved.getSigner());
+
+        assertEquals(20, this.clientSettings.resolve(1000, 2000, this.properties, null).getMaxConnections());
+        assertEquals(10, this.clientSettings.getMaxConnections());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidProperty() {
+        this.properties.setProperty("aws-maven.maxConnections", "many");
+        this.clientSettings.resolve(1000, 2000, this.properties, "foo");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidMaxConnections() {
+        this.clientSettings.setMaxConnections(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidSocketBufferSize() {
+        this.clientSettings.setSocketSendBufferSize(-1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidProtocol() {
+        this.clientSettings.setProtocol("ftp");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidSigner() {
+        this.clientSettings.setSigner("AWS3SignerType");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidIdleTimeout() {
+        this.clientSettings.setIdleTimeout(-1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidTimeout() {
+        this.clientSettings.resolve(-1, 2000, this.properties, "foo");
+    }
+}
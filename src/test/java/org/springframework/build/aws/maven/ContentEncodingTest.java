@@ -0,0 +1,60 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public final class ContentEncodingTest {
+
+    private static final byte[] CONTENT = "<project><modelVersion>4.0.0</modelVersion></project>".getBytes();
+
+    @Test
+    public void roundTrip() throws IOException {
+        byte[] compressed = ContentEncoding.gzip(CONTENT);
+        assertTrue(compressed.length > 0);
+        assertArrayEquals(CONTENT, read(ContentEncoding.decode("gzip", new ByteArrayInputStream(compressed))));
+        assertArrayEquals(CONTENT, read(ContentEncoding.decode("GZIP", new ByteArrayInputStream(compressed))));
+    }
+
+    @Test
+    public void identity() throws IOException {
+        InputStream in = new ByteArrayInputStream(CONTENT);
+        assertSame(in, ContentEncoding.decode(null, in));
+        assertSame(in, ContentEncoding.decode("", in));
+        assertSame(in, ContentEncoding.decode("identity", in));
+    }
+
+    @Test(expected = IOException.class)
+    public void unsupported() throws IOException {
+        ContentEncoding.decode("br", new ByteArrayInputStream(CONTENT));
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IoUtils.copy(in, out);
+        return out.toByteArray();
+    }
+}
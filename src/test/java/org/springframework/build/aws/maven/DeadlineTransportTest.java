@@ -0,0 +1,169 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public final class DeadlineTransportTest {
+
+    private final Transport delegate = mock(Transport.class);
+
+    private final ClientSettings clientSettings = new ClientSettings();
+
+    private final DeadlineTransport transport = new DeadlineTransport(this.delegate, this.clientSettings);
+
+    @After
+    public void clearInterrupt() {
+        Thread.interrupted();
+    }
+
+    @Test
+    public void firstByteTimeout() throws IOException {
+        this.clientSettings.setFirstByteTimeout(200);
+        when(this.delegate.head("foo")).thenAnswer(new BlockUntilCancelled());
+
+        try {
+            this.transport.head("foo");
+            fail();
+        } catch (InterruptedIOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("made no progress within 200 ms"));
+        }
+    }
+
+    @Test
+    public void interrupted() throws IOException {
+        this.clientSettings.setFirstByteTimeout(0);
+        when(this.delegate.head("foo")).thenAnswer(new BlockUntilCancelled());
+
+        final Thread thread = Thread.currentThread();
+        new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                thread.interrupt();
+            }
+        }).start();
+
+        try {
+            this.transport.head("foo");
+            fail();
+        } catch (InterruptedIOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("was interrupted"));
+        }
+    }
+
+    @Test(expected = InterruptedIOException.class)
+    public void interruptedBeforeStart() throws IOException {
+        Thread.currentThread().interrupt();
+        this.transport.head("foo");
+    }
+
+    @Test
+    public void idleTimeout() throws IOException {
+        this.clientSettings.setIdleTimeout(200);
+        final CountDownLatch aborted = new CountDownLatch(1);
+        InputStream stalled = new InputStream() {
+
+            @Override
+            public int read() throws IOException {
+                try {
+                    aborted.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new IOException("Socket closed");
+            }
+        };
+        when(this.delegate.get("foo")).thenReturn(new ObjectContent(new ObjectInfo("foo", 10, null, null, null),
+                stalled) {
+
+            @Override
+            void abort() {
+                aborted.countDown();
+            }
+        });
+
+        ObjectContent objectContent = this.transport.get("foo");
+        try {
+            objectContent.getInputStream().read();
+            fail();
+        } catch (InterruptedIOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("made no progress for 200 ms"));
+        } finally {
+            objectContent.release();
+        }
+    }
+
+    @Test
+    public void passesThrough() throws IOException {
+        InMemoryTransport memory = new InMemoryTransport();
+        DeadlineTransport deadlineTransport = new DeadlineTransport(memory, this.clientSettings);
+        deadlineTransport.put(new ObjectInfo("foo", 3, null, null, null), new ByteArrayInputStream(new byte[3]),
+                false);
+
+        ObjectContent objectContent = deadlineTransport.get("foo");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IoUtils.copy(objectContent.getInputStream(), out);
+        assertEquals(3, out.size());
+        assertEquals(ObjectContent.Release.RETURNED, objectContent.release());
+        assertEquals(3, deadlineTransport.head("foo").getContentLength());
+    }
+
+    private static final class BlockUntilCancelled implements Answer<Object> {
+
+        @Override
+        public Object answer(InvocationOnMock invocation) throws Throwable {
+            final CountDownLatch cancelled = new CountDownLatch(1);
+            Deadline.current().onCancel(new Runnable() {
+
+                @Override
+                public void run() {
+                    cancelled.countDown();
+                }
+            });
+            // like a socket read, waits without responding to interrupts
+            long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (cancelled.getCount() > 0 && System.nanoTime() < end) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+            }
+            throw new IOException("Socket closed");
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public final class DeltaSyncTest {
+
+    private final InMemoryTransport transport = new InMemoryTransport();
+
+    private final File source = new File("target/delta-sync");
+
+    private final List<String> put = new ArrayList<String>();
+
+    private final DeltaSync.Target target = new DeltaSync.Target() {
+
+        @Override
+        public boolean isCompressed(String resourceName, File file) {
+            return false;
+        }
+
+        @Override
+        public ObjectInfo head(String key) throws IOException {
+            return DeltaSyncTest.this.transport.head(key);
+        }
+
+        @Override
+        public void put(File file, String resourceName) {
+            DeltaSyncTest.this.put.add(resourceName);
+            InputStream in = null;
+            try {
+                in = new FileInputStream(file);
+                DeltaSyncTest.this.transport.put(new ObjectInfo("repo/" + resourceName, file.length(), null, null,
+                        null), in, false);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            } finally {
+                IoUtils.closeQuietly(in);
+            }
+        }
+    };
+
+    @Before
+    public void setUp() throws IOException {
+        delete(this.source);
+        new File(this.source, "bar").mkdirs();
+        write(new File(this.source, "bar/robots.txt"), "robots");
+        write(new File(this.source, "baz.txt"), "baz baz");
+    }
+
+    @Test
+    public void onlyChangedPut() throws Exception {
+        put("repo/foo/bar/robots.txt", "robots");
+        put("repo/foo/baz.txt", "baz");
+
+        assertEquals(1, new DeltaSync(this.transport, "repo/", null, false, this.target).sync(this.source, "foo"));
+        assertEquals(Arrays.asList("foo/baz.txt"), this.put);
+    }
+
+    @Test
+    public void smallestFirst() throws Exception {
+        assertEquals(2, new DeltaSync(this.transport, "repo/", null, false, this.target).sync(this.source, "./foo/"));
+        assertEquals(Arrays.asList("foo/bar/robots.txt", "foo/baz.txt"), this.put);
+    }
+
+    @Test
+    public void orphansDeletedExceptState() throws Exception {
+        put("repo/orphan.txt", "orphan");
+        put("repo/.aws-maven/key-index/root", "state");
+
+        new DeltaSync(this.transport, "repo/", null, true, this.target).sync(this.source, ".");
+        assertNull(this.transport.head("repo/orphan.txt"));
+        assertNotNull(this.transport.head("repo/.aws-maven/key-index/root"));
+        assertNotNull(this.transport.head("repo/baz.txt"));
+    }
+
+    private void put(String key, String content) throws IOException {
+        byte[] bytes = content.getBytes();
+        this.transport.put(new ObjectInfo(key, bytes.length, null, null, null), new ByteArrayInputStream(bytes),
+                false);
+    }
+
+    private static void write(File file, String content) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes());
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public final class DeployJournalTest {
+
+    private final File root = new File("target/deploy-journal");
+
+    @Before
+    public void clean() {
+        delete(this.root);
+    }
+
+    @Test
+    public void stageAndCommit() throws IOException {
+        DeployJournal journal = DeployJournal.create(this.root);
+        journal.stage("foo/robots.txt", new ByteArrayInputStream("robots".getBytes()));
+
+        File staged = journal.getStaged("foo/robots.txt");
+        assertEquals(6, staged.length());
+        assertEquals(1, journal.getPending().size());
+
+        journal.committed("foo/robots.txt");
+        assertNull(journal.getStaged("foo/robots.txt"));
+        assertFalse(staged.exists());
+
+        journal.delete();
+        assertEquals(0, this.root.listFiles().length);
+    }
+
+    @Test
+    public void restageReplaces() throws IOException {
+        DeployJournal journal = DeployJournal.create(this.root);
+        journal.stage("foo/robots.txt", new ByteArrayInputStream("robots".getBytes()));
+        File first = journal.getStaged("foo/robots.txt");
+        journal.stage("foo/robots.txt", new ByteArrayInputStream("robot".getBytes()));
+
+        assertFalse(first.exists());
+        assertEquals(5, journal.getStaged("foo/robots.txt").length());
+        journal.close();
+    }
+
+    @Test
+    public void recoverAbandoned() throws IOException {
+        DeployJournal abandoned = DeployJournal.create(this.root);
+        abandoned.stage("foo/robots.txt", new ByteArrayInputStream("robots".getBytes()));
+        abandoned.stage("foo/robots.txt.md5", new ByteArrayInputStream("md5".getBytes()));
+        abandoned.committed("foo/robots.txt");
+        abandoned.close();
+
+        List<DeployJournal> recovered = DeployJournal.recover(this.root);
+        assertEquals(1, recovered.size());
+        Map<String, File> pending = recovered.get(0).getPending();
+        assertEquals(1, pending.size());
+        assertTrue(pending.containsKey("foo/robots.txt.md5"));
+
+        recovered.get(0).stage("foo/bar.txt", new ByteArrayInputStream("bar".getBytes()));
+        assertEquals(2, recovered.get(0).getPending().size());
+        recovered.get(0).close();
+    }
+
+    @Test
+    public void recoverOldestFirst() throws IOException, InterruptedException {
+        for (int i = 0; i < 5; i++) {
+            DeployJournal abandoned = DeployJournal.create(this.root);
+            abandoned.stage("foo/maven-metadata.xml", new ByteArrayInputStream(new byte[i]));
+            abandoned.close();
+            Thread.sleep(5);
+        }
+
+        List<DeployJournal> recovered = DeployJournal.recover(this.root);
+        assertEquals(5, recovered.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i, recovered.get(i).getStaged("foo/maven-metadata.xml").length());
+            recovered.get(i).close();
+        }
+    }
+
+    @Test
+    public void recoverSkipsOpen() throws IOException {
+        DeployJournal open = DeployJournal.create(this.root);
+
+        assertTrue(DeployJournal.recover(this.root).isEmpty());
+        open.close();
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public final class DigestCacheTest {
+
+    private static final String ROBOTS_MD5 = "27f5e15b6af3223f1176293cd015771d";
+
+    private final File file = new File("target/digest-cache/robots.txt");
+
+    private final File directory = new File("target/digest-cache/cache");
+
+    private File entry;
+
+    @Before
+    public void write() throws IOException {
+        this.file.getParentFile().mkdirs();
+        write(this.file, "robots");
+        this.entry = DigestCache.getEntry(this.file, this.directory);
+        this.entry.delete();
+    }
+
+    @Test
+    public void entryKeyedByCanonicalPath() throws IOException {
+        assertEquals(this.entry, DigestCache.getEntry(new File("target/digest-cache/../digest-cache/robots.txt"),
+                this.directory));
+        assertFalse(this.entry.equals(DigestCache.getEntry(new File("target/digest-cache/other.txt"),
+                this.directory)));
+    }
+
+    @Test
+    public void computedAndCached() throws IOException {
+        assertEquals(ROBOTS_MD5, DigestCache.md5Hex(this.file, this.directory));
+
+        assertTrue(this.entry.isFile());
+        assertFalse(new File("target/digest-cache/.robots.txt.md5").exists());
+        assertEquals(String.format("%s %d %d %s", ROBOTS_MD5, this.file.length(), this.file.lastModified(),
+                this.file.getCanonicalPath()), new String(Files.readAllBytes(this.entry.toPath())).trim());
+    }
+
+    @Test
+    public void currentEntryUsed() throws IOException {
+        String cached = "0123456789abcdef0123456789abcdef";
+        writeEntry(String.format("%s %d %d %s", cached, this.file.length(), this.file.lastModified(),
+                this.file.getCanonicalPath()));
+
+        assertEquals(cached, DigestCache.md5Hex(this.file, this.directory));
+    }
+
+    @Test
+    public void staleEntryIgnored() throws IOException {
+        writeEntry(String.format("%s %d %d %s", "0123456789abcdef0123456789abcdef", this.file.length(),
+                this.file.lastModified() - 1000, this.file.getCanonicalPath()));
+
+        assertEquals(ROBOTS_MD5, DigestCache.md5Hex(this.file, this.directory));
+    }
+
+    @Test
+    public void otherPathIgnored() throws IOException {
+        writeEntry(String.format("%s %d %d %s", "0123456789abcdef0123456789abcdef", this.file.length(),
+                this.file.lastModified(), "/elsewhere/robots.txt"));
+
+        assertEquals(ROBOTS_MD5, DigestCache.md5Hex(this.file, this.directory));
+    }
+
+    @Test
+    public void malformedEntryIgnored() throws IOException {
+        writeEntry("not a digest");
+
+        assertEquals(ROBOTS_MD5, DigestCache.md5Hex(this.file, this.directory));
+    }
+
+    private void writeEntry(String content) throws IOException {
+        this.entry.getParentFile().mkdirs();
+        write(this.entry, content);
+    }
+
+    private static void write(File file, String content) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes());
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public final class DryRunTransportTest {
+
+    private final DryRunTransport transport = new DryRunTransport();
+
+    @Test
+    public void recordsRequests() throws IOException {
+        this.transport.put(new ObjectInfo("foo/", 0, null, null, null), new ByteArrayInputStream(new byte[0]), true);
+        this.transport.put(new ObjectInfo("foo/bar.jar", 10, null, null, null), new ByteArrayInputStream(new byte[0]),
+                false);
+        assertNull(this.transport.head("foo/bar.jar"));
+        try {
+            this.transport.get("foo/bar.jar");
+            fail();
+        } catch (TransportException e) {
+            assertEquals(404, e.getStatusCode());
+        }
+        assertTrue(this.transport.list("foo/", "/", null).getObjects().isEmpty());
+        this.transport.delete(Arrays.asList("foo/a", "foo/b"));
+
+        RequestPlan plan = this.transport.getPlan();
+        assertEquals(6, plan.getTotalRequests());
+        assertEquals(Long.valueOf(2), plan.getRequests().get("PUT"));
+        assertEquals(Long.valueOf(10), plan.getBytes().get("PUT"));
+        assertEquals(Long.valueOf(1), plan.getRequestsByPrefix().get("").get("PUT"));
+        assertEquals(Long.valueOf(1), plan.getRequestsByPrefix().get("foo/").get("PUT"));
+        assertEquals(Long.valueOf(1), plan.getRequestsByPrefix().get("foo/").get("DELETE MULTIPLE"));
+    }
+
+    @Test
+    public void multipartUploadCountedPerRequest() throws IOException {
+        String uploadId = this.transport.initiateMultipartUpload(new ObjectInfo("foo/bar.jar", 20, null, null, null),
+                false);
+        this.transport.uploadPart("foo/bar.jar", uploadId, 1, new ByteArrayInputStream(new byte[0]), 10);
+        this.transport.uploadPart("foo/bar.jar", uploadId, 2, new ByteArrayInputStream(new byte[0]), 10);
+        this.transport.completeMultipartUpload("foo/bar.jar", uploadId, Arrays.asList("a", "b"));
+
+        RequestPlan plan = this.transport.getPlan();
+        assertEquals(4, plan.getTotalRequests());
+        assertEquals(Long.valueOf(20), plan.getBytes().get("UPLOAD PART"));
+    }
+
+    @Test
+    public void prefix() {
+        assertEquals("", DryRunTransport.getPrefix(""));
+        assertEquals("", DryRunTransport.getPrefix("foo"));
+        assertEquals("", DryRunTransport.getPrefix("foo/"));
+        assertEquals("foo/", DryRunTransport.getPrefix("foo/bar/"));
+        assertEquals("foo/bar/", DryRunTransport.getPrefix("foo/bar/baz.jar"));
+    }
+}
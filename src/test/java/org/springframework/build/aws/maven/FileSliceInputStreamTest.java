@@ -0,0 +1,112 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public final class FileSliceInputStreamTest {
+
+    private final File file = new File("target/file-slice-input-stream.txt");
+
+    private final AtomicInteger notified = new AtomicInteger();
+
+    private final TransferProgress transferProgress = new TransferProgress() {
+
+        @Override
+        public void notify(byte[] buffer, int length) {
+            FileSliceInputStreamTest.this.notified.addAndGet(length);
+        }
+    };
+
+    private FileChannel channel;
+
+    @Before
+    public void setUp() throws IOException {
+        OutputStream out = new FileOutputStream(this.file);
+        try {
+            out.write("0123456789".getBytes());
+        } finally {
+            out.close();
+        }
+        this.channel = FileChannel.open(this.file.toPath(), StandardOpenOption.READ);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        this.channel.close();
+    }
+
+    @Test
+    public void readSlice() throws IOException {
+        assertEquals("3456", read(new FileSliceInputStream(this.channel, 3, 4, this.transferProgress)));
+        assertEquals(4, this.notified.get());
+        assertEquals(0, this.channel.position());
+    }
+
+    @Test
+    public void readLastSlice() throws IOException {
+        FileSliceInputStream in = new FileSliceInputStream(this.channel, 8, 2, this.transferProgress);
+        assertEquals('8', in.read());
+        assertEquals('9', in.read());
+        assertEquals(-1, in.read());
+    }
+
+    @Test
+    public void markAndReset() throws IOException {
+        FileSliceInputStream in = new FileSliceInputStream(this.channel, 2, 6, this.transferProgress);
+        assertTrue(in.markSupported());
+        assertEquals(1, in.skip(1));
+        in.mark(Integer.MAX_VALUE);
+        assertEquals("34567", read(in));
+        in.reset();
+        assertEquals("34567", read(in));
+    }
+
+    @Test
+    public void slicesShareChannel() throws IOException {
+        FileSliceInputStream first = new FileSliceInputStream(this.channel, 0, 5, this.transferProgress);
+        FileSliceInputStream second = new FileSliceInputStream(this.channel, 5, 5, this.transferProgress);
+        assertEquals('5', second.read());
+        assertEquals('0', first.read());
+        assertEquals("6789", read(second));
+        assertEquals("1234", read(first));
+    }
+
+    private static String read(FileSliceInputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[3];
+        int count;
+        while ((count = in.read(buffer, 0, buffer.length)) != -1) {
+            out.write(buffer, 0, count);
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public final class FileSystemTransportTest {
+
+    private static final byte[] CONTENT = "robots".getBytes();
+
+    private final File root = new File("target/file-system-transport");
+
+    private final FileSystemTransport transport = new FileSystemTransport(this.root);
+
+    @Before
+    public void clean() {
+        delete(this.root);
+    }
+
+    @Test
+    public void putGetHead() throws IOException {
+        put("foo/robots.txt");
+
+        assertTrue(new File(this.root, "foo/robots.txt").isFile());
+        ObjectInfo objectInfo = this.transport.head("foo/robots.txt");
+        assertEquals(CONTENT.length, objectInfo.getContentLength());
+        assertEquals("27f5e15b6af3223f1176293cd015771d", objectInfo.getETag());
+        assertEquals("robots", read("foo/robots.txt"));
+    }
+
+    @Test
+    public void putEncoded() throws IOException {
+        byte[] compressed = ContentEncoding.gzip(CONTENT);
+        this.transport.put(new ObjectInfo("foo/robots.txt", compressed.length, null, null, null,
+                ContentEncoding.GZIP), new ByteArrayInputStream(compressed), false);
+
+        assertEquals(CONTENT.length, new File(this.root, "foo/robots.txt").length());
+        assertEquals("robots", read("foo/robots.txt"));
+    }
+
+    @Test
+    public void directoryMarker() throws IOException {
+        put("foo/bar/");
+
+        assertTrue(new File(this.root, "foo/bar").isDirectory());
+        assertNotNull(this.transport.head("foo/bar/"));
+    }
+
+    @Test
+    public void headDoesNotExist() throws IOException {
+        assertNull(this.transport.head("foo/robots.txt"));
+    }
+
+    @Test
+    public void getRange() throws IOException {
+        put("foo/robots.txt");
+
+        assertEquals("bot", read("foo/robots.txt", 2, 4));
+        assertEquals("ots", read("foo/robots.txt", 3, 100));
+        try {
+            this.transport.get("foo/robots.txt", 6, 10);
+            fail();
+        } catch (TransportException e) {
+            assertEquals(416, e.getStatusCode());
+        }
+    }
+
+    @Test
+    public void getDoesNotExist() throws IOException {
+        try {
+            this.transport.get("foo/robots.txt");
+            fail();
+        } catch (TransportException e) {
+            assertTrue(e.isNotFound());
+        }
+    }
+
+    @Test(expected = TransportException.class)
+    public void outsideRoot() throws IOException {
+        this.transport.head("../robots.txt");
+    }
+
+    @Test
+    public void outsideRootInSiblingBucket() throws IOException {
+        new File(this.root.getParentFile(), this.root.getName() + "2").mkdirs();
+        try {
+            this.transport.head("../" + this.root.getName() + "2/robots.txt");
+            fail();
+        } catch (TransportException e) {
+            assertEquals(400, e.getStatusCode());
+        }
+    }
+
+    @Test
+    public void eTagRecordedAtPut() throws IOException {
+        put("foo/robots.txt");
+        File file = new File(this.root, "foo/robots.txt");
+        long lastModified = file.lastModified();
+
+        // same size and modification time, so the recorded MD5 is used rather than hashing the file again
+        Files.write(file.toPath(), "ROBOTS".getBytes());
+        assertTrue(file.setLastModified(lastModified));
+        assertEquals("27f5e15b6af3223f1176293cd015771d", this.transport.head("foo/robots.txt").getETag());
+        assertEquals("27f5e15b6af3223f1176293cd015771d",
+                this.transport.list("foo/", null, null).getObjects().get(0).getETag());
+
+        assertTrue(file.setLastModified(lastModified - 2000));
+        assertEquals(IoUtils.md5Hex(new ByteArrayInputStream("ROBOTS".getBytes())),
+                this.transport.head("foo/robots.txt").getETag());
+    }
+
+    @Test
+    public void eTagOfCopy() throws IOException {
+        put("foo/robots.txt");
+        this.transport.copy(null, "foo/robots.txt", "bar/robots.txt", false);
+        assertEquals("27f5e15b6af3223f1176293cd015771d", this.transport.head("bar/robots.txt").getETag());
+    }
+
+    @Test
+    public void list() throws IOException {
+        put("foo/robots.txt");
+        put("foo/bar/robots.txt");
+        put("foo/baz/robots.txt");
+
+        ListingPage delimited = this.transport.list("foo/", "/", null);
+        assertEquals(Arrays.asList("foo/bar/", "foo/baz/"), delimited.getCommonPrefixes());
+        assertEquals(1, delimited.getObjects().size());
+        assertEquals("foo/robots.txt", delimited.getObjects().get(0).getKey());
+
+        ListingPage undelimited = this.transport.list("foo/ba", null, null);
+        assertEquals(2, undelimited.getObjects().size());
+        assertEquals("foo/bar/robots.txt", undelimited.getObjects().get(0).getKey());
+    }
+
+    @Test
+    public void delete() throws IOException {
+        put("foo/robots.txt");
+        this.transport.delete("foo/robots.txt");
+        assertFalse(new File(this.root, "foo/robots.txt").exists());
+    }
+
+    @Test
+    public void copy() throws IOException {
+        put("foo/robots.txt");
+        this.transport.copy(null, "foo/robots.txt", "bar/robots.txt", false);
+        assertEquals("robots", read("bar/robots.txt"));
+    }
+
+    @Test
+    public void multipartCopy() throws IOException {
+        put("foo/robots.txt");
+        String uploadId = this.transport.initiateMultipartUpload(new ObjectInfo("bar/robots.txt", -1, null, null,
+                null), false);
+        String first = this.transport.copyPart("bar/robots.txt", uploadId, 1, null, "foo/robots.txt", 0, 3);
+        String second = this.transport.copyPart("bar/robots.txt", uploadId, 2, null, "foo/robots.txt", 4, 5);
+        assertNull(this.transport.head("bar/robots.txt"));
+
+        this.transport.completeMultipartUpload("bar/robots.txt", uploadId, Arrays.asList(first, second));
+        assertEquals("robots", read("bar/robots.txt"));
+        assertEquals(1, this.transport.list("bar/", "/", null).getObjects().size());
+    }
+
+    private void put(String key) throws IOException {
+        this.transport.put(new ObjectInfo(key, CONTENT.length, null, null, null), new ByteArrayInputStream(CONTENT),
+                false);
+    }
+
+    private String read(String key) throws IOException {
+        return read(this.transport.get(key));
+    }
+
+    private String read(String key, long firstByte, long lastByte) throws IOException {
+        ObjectContent objectContent = this.transport.get(key, firstByte, lastByte);
+        assertEquals(Math.min(lastByte, CONTENT.length - 1) - firstByte + 1,
+                objectContent.getObjectInfo().getContentLength());
+        return read(objectContent);
+    }
+
+    private static String read(ObjectContent objectContent) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            IoUtils.copy(objectContent.getInputStream(), out);
+            return out.toString();
+        } finally {
+            objectContent.close();
+        }
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
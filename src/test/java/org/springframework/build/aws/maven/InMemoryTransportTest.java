@@ -0,0 +1,185 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public final class InMemoryTransportTest {
+
+    private static final byte[] CONTENT = "robots".getBytes();
+
+    private final InMemoryTransport transport = new InMemoryTransport();
+
+    @Test
+    public void forBucket() {
+        assertSame(InMemoryTransport.forBucket("foo"), InMemoryTransport.forBucket("foo"));
+    }
+
+    @Test
+    public void putGetHead() throws IOException {
+        put("foo/robots.txt");
+
+        ObjectInfo objectInfo = this.transport.head("foo/robots.txt");
+        assertEquals(CONTENT.length, objectInfo.getContentLength());
+        assertEquals("27f5e15b6af3223f1176293cd015771d", objectInfo.getETag());
+        assertEquals("robots", read("foo/robots.txt"));
+    }
+
+    @Test
+    public void headDoesNotExist() {
+        assertNull(this.transport.head("foo/robots.txt"));
+    }
+
+    @Test
+    public void getRange() throws IOException {
+        put("foo/robots.txt");
+
+        assertEquals("bot", read("foo/robots.txt", 2, 4));
+        assertEquals("ots", read("foo/robots.txt", 3, 100));
+        try {
+            this.transport.get("foo/robots.txt", 6, 10);
+            fail();
+        } catch (TransportException e) {
+            assertEquals(416, e.getStatusCode());
+        }
+    }
+
+    @Test
+    public void getIfChanged() throws IOException {
+        put("foo/robots.txt");
+
+        assertNull(this.transport.getIfChanged("foo/robots.txt", "27f5e15b6af3223f1176293cd015771d"));
+        assertEquals("robots", read(this.transport.getIfChanged("foo/robots.txt",
+                "0123456789abcdef0123456789abcdef")));
+    }
+
+    @Test
+    public void getDoesNotExist() throws IOException {
+        try {
+            this.transport.get("foo/robots.txt");
+            fail();
+        } catch (TransportException e) {
+            assertEquals(404, e.getStatusCode());
+        }
+    }
+
+    @Test
+    public void list() throws IOException {
+        put("foo/robots.txt");
+        put("foo/bar/robots.txt");
+
+        ListingPage listingPage = this.transport.list("foo/", "/", null);
+        assertEquals(Arrays.asList("foo/bar/"), listingPage.getCommonPrefixes());
+        assertEquals("foo/robots.txt", listingPage.getObjects().get(0).getKey());
+    }
+
+    @Test
+    public void delete() throws IOException {
+        put("foo/robots.txt");
+        this.transport.delete("foo/robots.txt");
+        assertNull(this.transport.head("foo/robots.txt"));
+    }
+
+    @Test
+    public void deleteMultiple() throws IOException {
+        put("foo/robots.txt");
+        put("bar/robots.txt");
+        this.transport.delete(Arrays.asList("foo/robots.txt", "bar/robots.txt", "baz/robots.txt"));
+        assertNull(this.transport.head("foo/robots.txt"));
+        assertNull(this.transport.head("bar/robots.txt"));
+    }
+
+    @Test
+    public void copy() throws IOException {
+        put("foo/robots.txt");
+        this.transport.copy(null, "foo/robots.txt", "bar/robots.txt", false);
+        assertEquals("robots", read("bar/robots.txt"));
+    }
+
+    @Test
+    public void multipartCopyFromOtherBucket() throws IOException {
+        InMemoryTransport staging = InMemoryTransport.forBucket("in-memory-transport-test-staging");
+        staging.put(new ObjectInfo("foo/robots.txt", CONTENT.length, null, null, "text/plain"),
+                new ByteArrayInputStream(CONTENT), false);
+
+        String uploadId = this.transport.initiateMultipartUpload(new ObjectInfo("bar/robots.txt", -1, null, null,
+                "text/plain"), false);
+        String first = this.transport.copyPart("bar/robots.txt", uploadId, 1, "in-memory-transport-test-staging",
+                "foo/robots.txt", 0, 3);
+        String second = this.transport.copyPart("bar/robots.txt", uploadId, 2, "in-memory-transport-test-staging",
+                "foo/robots.txt", 4, 5);
+        this.transport.completeMultipartUpload("bar/robots.txt", uploadId, Arrays.asList(first, second));
+
+        assertEquals("robots", read("bar/robots.txt"));
+        assertEquals("text/plain", this.transport.head("bar/robots.txt").getContentType());
+        assertTrue(this.transport.head("bar/robots.txt").getETag().endsWith("-2"));
+    }
+
+    @Test
+    public void abortedMultipartCopy() throws IOException {
+        put("foo/robots.txt");
+        String uploadId = this.transport.initiateMultipartUpload(new ObjectInfo("bar/robots.txt", -1, null, null,
+                null), false);
+        this.transport.copyPart("bar/robots.txt", uploadId, 1, null, "foo/robots.txt", 0, 5);
+        this.transport.abortMultipartUpload("bar/robots.txt", uploadId);
+
+        assertNull(this.transport.head("bar/robots.txt"));
+        try {
+            this.transport.completeMultipartUpload("bar/robots.txt", uploadId, Arrays.asList("etag"));
+            fail();
+        } catch (TransportException e) {
+            assertEquals(404, e.getStatusCode());
+        }
+    }
+
+    private void put(String key) throws IOException {
+        this.transport.put(new ObjectInfo(key, CONTENT.length, null, null, null), new ByteArrayInputStream(CONTENT),
+                false);
+    }
+
+    private String read(String key) throws IOException {
+        return read(this.transport.get(key));
+    }
+
+    private String read(String key, long firstByte, long lastByte) throws IOException {
+        ObjectContent objectContent = this.transport.get(key, firstByte, lastByte);
+        assertEquals(Math.min(lastByte, CONTENT.length - 1) - firstByte + 1,
+                objectContent.getObjectInfo().getContentLength());
+        return read(objectContent);
+    }
+
+    private static String read(ObjectContent objectContent) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            IoUtils.copy(objectContent.getInputStream(), out);
+            return out.toString();
+        } finally {
+            objectContent.close();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public final class KeyFilterTest {
+
+    private static final long REFRESH = 60 * 1000;
+
+    private final InMemoryTransport transport = new InMemoryTransport();
+
+    private final File cacheFile = new File("target/key-filter/" + System.nanoTime() + "/keys.bloom");
+
+    @Test
+    public void buildsFromListing() throws IOException {
+        put("foo/bar.jar");
+
+        KeyFilter keyFilter = new KeyFilter(this.transport, "foo/", this.cacheFile, REFRESH);
+        assertFalse(keyFilter.isDefinitelyMissing("foo/bar.jar"));
+        assertTrue(keyFilter.isDefinitelyMissing("foo/baz.jar"));
+        assertTrue(this.cacheFile.isFile());
+    }
+
+    @Test
+    public void readsCache() throws IOException {
+        put("foo/bar.jar");
+        new KeyFilter(this.transport, "foo/", this.cacheFile, REFRESH).isDefinitelyMissing("foo/bar.jar");
+
+        put("foo/baz.jar");
+        KeyFilter keyFilter = new KeyFilter(this.transport, "foo/", this.cacheFile, REFRESH);
+        assertTrue(keyFilter.isDefinitelyMissing("foo/baz.jar"));
+    }
+
+    @Test
+    public void refreshesStaleCache() throws IOException {
+        put("foo/bar.jar");
+        new KeyFilter(this.transport, "foo/", this.cacheFile, REFRESH).isDefinitelyMissing("foo/bar.jar");
+        assertTrue(this.cacheFile.setLastModified(System.currentTimeMillis() - 2 * REFRESH));
+
+        put("foo/baz.jar");
+        KeyFilter keyFilter = new KeyFilter(this.transport, "foo/", this.cacheFile, REFRESH);
+        assertFalse(keyFilter.isDefinitelyMissing("foo/baz.jar"));
+    }
+
+    @Test
+    public void readsPublished() throws IOException {
+        put("foo/bar.jar");
+        assertEquals(1, new KeyFilter(this.transport, "foo/", this.cacheFile, REFRESH).publish());
+        assertNotNull(this.transport.head("foo/" + KeyFilter.PUBLISHED_KEY));
+        assertTrue(this.cacheFile.delete());
+
+        put("foo/baz.jar");
+        KeyFilter keyFilter = new KeyFilter(this.transport, "foo/", this.cacheFile, REFRESH);
+        assertFalse(keyFilter.isDefinitelyMissing("foo/bar.jar"));
+        assertTrue(keyFilter.isDefinitelyMissing("foo/baz.jar"));
+    }
+
+    @Test
+    public void add() throws IOException {
+        KeyFilter keyFilter = new KeyFilter(this.transport, "foo/", this.cacheFile, REFRESH);
+        assertTrue(keyFilter.isDefinitelyMissing("foo/bar.jar"));
+
+        keyFilter.add("foo/bar.jar");
+        assertFalse(keyFilter.isDefinitelyMissing("foo/bar.jar"));
+    }
+
+    @Test
+    public void flushWritesAddedKeys() throws IOException {
+        KeyFilter keyFilter = new KeyFilter(this.transport, "foo/", this.cacheFile, REFRESH);
+        assertTrue(keyFilter.isDefinitelyMissing("foo/bar.jar"));
+        assertTrue(this.cacheFile.setLastModified(System.currentTimeMillis() - REFRESH / 2));
+        long lastModified = this.cacheFile.lastModified();
+
+        keyFilter.add("foo/bar.jar");
+        keyFilter.flush();
+
+        assertEquals(lastModified, this.cacheFile.lastModified());
+        assertFalse(new KeyFilter(this.transport, "foo/", this.cacheFile, REFRESH).isDefinitelyMissing("foo/bar.jar"));
+    }
+
+    @Test
+    public void flushDeletesCacheWhenNotLoaded() throws IOException {
+        new KeyFilter(this.transport, "foo/", this.cacheFile, REFRESH).isDefinitelyMissing("foo/bar.jar");
+
+        KeyFilter keyFilter = new KeyFilter(this.transport, "foo/", this.cacheFile, REFRESH);
+        keyFilter.add("foo/bar.jar");
+        keyFilter.flush();
+
+        assertFalse(this.cacheFile.exists());
+    }
+
+    private void put(String key) throws IOException {
+        this.transport.put(new ObjectInfo(key, 1, null, null, null), new ByteArrayInputStream(new byte[1]), false);
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public final class KeyIndexTest {
+
+    private static final long MAX_AGE = 60 * 1000;
+
+    private final InMemoryTransport transport = new InMemoryTransport();
+
+    @Test
+    public void shardName() {
+        assertEquals(KeyIndex.ROOT_SHARD, KeyIndex.getShardName("foo.jar"));
+        assertEquals(KeyIndex.ROOT_SHARD, KeyIndex.getShardName("org/"));
+        assertEquals(KeyIndex.ROOT_SHARD, KeyIndex.getShardName("org/foo.jar"));
+        assertEquals("org/springframework", KeyIndex.getShardName("org/springframework/"));
+        assertEquals("org/springframework", KeyIndex.getShardName("org/springframework/build/1.0/build-1.0.jar"));
+    }
+
+    @Test
+    public void notPublished() throws IOException {
+        put("foo/org/example/bar/1.0/bar-1.0.jar");
+
+        KeyIndex keyIndex = new KeyIndex(this.transport, "foo/", MAX_AGE);
+        assertFalse(keyIndex.covers("foo/org/example/bar/1.0/bar-1.0.jar"));
+        assertNull(keyIndex.list("foo/org/example/bar/"));
+    }
+
+    @Test
+    public void published() throws IOException {
+        put("foo/org/example/bar/1.0/bar-1.0.jar");
+        put("foo/org/example/bar/1.0/bar-1.0.pom");
+        put("foo/org/example/bar/maven-metadata.xml");
+        assertEquals(3, new KeyIndex(this.transport, "foo/", MAX_AGE).publish());
+        assertNotNull(this.transport.head("foo/" + KeyIndex.INDEX_PREFIX + "org.example.idx"));
+
+        KeyIndex keyIndex = new KeyIndex(this.transport, "foo/", MAX_AGE);
+        assertTrue(keyIndex.covers("foo/org/example/bar/1.0/bar-1.0.jar"));
+        ObjectInfo objectInfo = keyIndex.find("foo/org/example/bar/1.0/bar-1.0.jar");
+        assertEquals(1, objectInfo.getContentLength());
+        assertEquals(this.transport.head("foo/org/example/bar/1.0/bar-1.0.jar").getETag(), objectInfo.getETag());
+        assertNotNull(objectInfo.getLastModified());
+        assertNull(keyIndex.find("foo/org/example/bar/1.0/bar-1.0-sources.jar"));
+
+        assertTrue(keyIndex.covers("foo/com/example/baz/1.0/baz-1.0.jar"));
+        assertNull(keyIndex.find("foo/com/example/baz/1.0/baz-1.0.jar"));
+
+        assertEquals(Arrays.asList("1.0/", "maven-metadata.xml"), keyIndex.list("foo/org/example/bar/"));
+        assertNull(keyIndex.list("foo/org/"));
+    }
+
+    @Test
+    public void stale() throws IOException {
+        put("foo/org/example/bar/1.0/bar-1.0.jar");
+        new KeyIndex(this.transport, "foo/", MAX_AGE).publish();
+
+        KeyIndex keyIndex = new KeyIndex(this.transport, "foo/", 0);
+        assertFalse(keyIndex.covers("foo/org/example/bar/1.0/bar-1.0.jar"));
+    }
+
+    @Test
+    public void flushKeepsPublishTime() throws IOException, InterruptedException {
+        put("foo/org/example/bar/1.0/bar-1.0.jar");
+        new KeyIndex(this.transport, "foo/", MAX_AGE).publish();
+        Thread.sleep(200);
+
+        // a shard written by a flush is as old as the publish, so keys put by other means are not hidden for ever
+        KeyIndex writer = new KeyIndex(this.transport, "foo/", MAX_AGE);
+        writer.add(new ObjectInfo("foo/org/example/bar/2.0/bar-2.0.jar", 2, null, new Date(), null));
+        assertEquals(1, writer.flush());
+        assertFalse(new KeyIndex(this.transport, "foo/", 100).covers("foo/org/example/bar/2.0/bar-2.0.jar"));
+        assertTrue(new KeyIndex(this.transport, "foo/", MAX_AGE).covers("foo/org/example/bar/2.0/bar-2.0.jar"));
+    }
+
+    @Test
+    public void addAndFlush() throws IOException {
+        put("foo/org/example/bar/1.0/bar-1.0.jar");
+        new KeyIndex(this.transport, "foo/", MAX_AGE).publish();
+
+        KeyIndex keyIndex = new KeyIndex(this.transport, "foo/", MAX_AGE);
+        assertNull(keyIndex.find("foo/org/example/bar/2.0/bar-2.0.jar"));
+        keyIndex.add(new ObjectInfo("foo/org/example/bar/2.0/bar-2.0.jar", 2, "abc", new Date(), null));
+        keyIndex.add(new ObjectInfo("foo/com/example/baz/1.0/baz-1.0.jar", 3, null, new Date(), null));
+        assertNotNull(keyIndex.find("foo/org/example/bar/2.0/bar-2.0.jar"));
+        assertEquals(2, keyIndex.flush());
+        assertEquals(0, keyIndex.flush());
+
+        KeyIndex reader = new KeyIndex(this.transport, "foo/", MAX_AGE);
+        assertNotNull(reader.find("foo/org/example/bar/1.0/bar-1.0.jar"));
+        assertEquals("abc", reader.find("foo/org/example/bar/2.0/bar-2.0.jar").getETag());
+        assertEquals(3, reader.find("foo/com/example/baz/1.0/baz-1.0.jar").getContentLength());
+    }
+
+    @Test
+    public void removeAndFlush() throws IOException {
+        put("foo/org/example/bar/1.0/bar-1.0.jar");
+        put("foo/org/example/bar/1.0/bar-1.0.pom");
+        new KeyIndex(this.transport, "foo/", MAX_AGE).publish();
+
+        KeyIndex keyIndex = new KeyIndex(this.transport, "foo/", MAX_AGE);
+        assertNotNull(keyIndex.find("foo/org/example/bar/1.0/bar-1.0.jar"));
+        keyIndex.remove("foo/org/example/bar/1.0/bar-1.0.jar");
+        assertNull(keyIndex.find("foo/org/example/bar/1.0/bar-1.0.jar"));
+        assertEquals(1, keyIndex.flush());
+
+        KeyIndex reader = new KeyIndex(this.transport, "foo/", MAX_AGE);
+        assertTrue(reader.covers("foo/org/example/bar/1.0/bar-1.0.jar"));
+        assertNull(reader.find("foo/org/example/bar/1.0/bar-1.0.jar"));
+        assertNotNull(reader.find("foo/org/example/bar/1.0/bar-1.0.pom"));
+    }
+
+    @Test
+    public void flushWithoutPublishedIndex() throws IOException {
+        KeyIndex keyIndex = new KeyIndex(this.transport, "foo/", MAX_AGE);
+        keyIndex.add(new ObjectInfo("foo/org/example/bar/1.0/bar-1.0.jar", 2, null, new Date(), null));
+        assertEquals(0, keyIndex.flush());
+        assertNull(this.transport.head("foo/" + KeyIndex.INDEX_PREFIX + "org.example.idx"));
+    }
+
+    @Test
+    public void republishDeletesEmptyShards() throws IOException {
+        put("foo/org/example/bar/1.0/bar-1.0.jar");
+        new KeyIndex(this.transport, "foo/", MAX_AGE).publish();
+        this.transport.delete("foo/org/example/bar/1.0/bar-1.0.jar");
+
+        assertEquals(0, new KeyIndex(this.transport, "foo/", MAX_AGE).publish());
+        assertNull(this.transport.head("foo/" + KeyIndex.INDEX_PREFIX + "org.example.idx"));
+        assertNotNull(this.transport.head("foo/" + KeyIndex.INDEX_PREFIX + KeyIndex.ROOT_SHARD + ".idx"));
+    }
+
+    private void put(String key) throws IOException {
+        this.transport.put(new ObjectInfo(key, 1, null, null, null), new ByteArrayInputStream(new byte[1]), false);
+    }
+}
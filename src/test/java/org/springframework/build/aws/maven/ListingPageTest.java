@@ -0,0 +1,88 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public final class ListingPageTest {
+
+    private final NavigableMap<String, ObjectInfo> objects = new TreeMap<String, ObjectInfo>();
+
+    @Test
+    public void delimited() {
+        add("foo/a.txt", "foo/b/c.txt", "foo/b/d.txt", "foo/e/f.txt", "foo/g.txt", "goo/h.txt");
+
+        ListingPage listingPage = ListingPage.of(this.objects, "foo/", "/", null);
+
+        assertEquals(Arrays.asList("foo/b/", "foo/e/"), listingPage.getCommonPrefixes());
+        assertEquals(2, listingPage.getObjects().size());
+        assertEquals("foo/a.txt", listingPage.getObjects().get(0).getKey());
+        assertEquals("foo/g.txt", listingPage.getObjects().get(1).getKey());
+        assertFalse(listingPage.isTruncated());
+    }
+
+    @Test
+    public void undelimited() {
+        add("foo/a.txt", "foo/b/c.txt", "goo/h.txt");
+
+        ListingPage listingPage = ListingPage.of(this.objects, "foo/", null, null);
+
+        assertEquals(Collections.<String>emptyList(), listingPage.getCommonPrefixes());
+        assertEquals(2, listingPage.getObjects().size());
+    }
+
+    @Test
+    public void marker() {
+        add("foo/a.txt", "foo/b/c.txt", "foo/b/d.txt", "foo/g.txt");
+
+        ListingPage listingPage = ListingPage.of(this.objects, "foo/", "/", "foo/b/");
+
+        assertEquals(Collections.<String>emptyList(), listingPage.getCommonPrefixes());
+        assertEquals(1, listingPage.getObjects().size());
+        assertEquals("foo/g.txt", listingPage.getObjects().get(0).getKey());
+    }
+
+    @Test
+    public void truncated() {
+        for (int i = 0; i < ListingPage.MAX_KEYS + 1; i++) {
+            add(String.format("foo/%05d", i));
+        }
+
+        ListingPage first = ListingPage.of(this.objects, "foo/", "/", null);
+        assertTrue(first.isTruncated());
+        assertEquals(ListingPage.MAX_KEYS, first.getObjects().size());
+
+        ListingPage second = ListingPage.of(this.objects, "foo/", "/", first.getNextMarker());
+        assertFalse(second.isTruncated());
+        assertEquals(1, second.getObjects().size());
+    }
+
+    private void add(String... keys) {
+        for (String key : keys) {
+            this.objects.put(key, new ObjectInfo(key, 0, null, null, null));
+        }
+    }
+}
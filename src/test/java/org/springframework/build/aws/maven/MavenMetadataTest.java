@@ -0,0 +1,74 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public final class MavenMetadataTest {
+
+    @Test
+    public void versionsMerged() throws IOException {
+        String merged = merge("<metadata><versioning><latest>1.1</latest><release>1.1</release><versions>"
+                + "<version>1.0</version><version>1.1</version></versions><lastUpdated>20140101000000</lastUpdated>"
+                + "</versioning></metadata>", "<metadata><versioning><latest>2.0</latest><release>2.0</release>"
+                + "<versions><version>1.1</version><version>2.0</version></versions>"
+                + "<lastUpdated>20141001000000</lastUpdated></versioning></metadata>");
+
+        assertTrue(merged.contains("<latest>2.0</latest>"));
+        assertTrue(merged.contains("<release>2.0</release>"));
+        assertTrue(merged.contains("<lastUpdated>20141001000000</lastUpdated>"));
+        assertEquals(3, merged.split("<version>").length - 1);
+        assertTrue(merged.indexOf("<version>1.0</version>") < merged.indexOf("<version>2.0</version>"));
+    }
+
+    @Test
+    public void olderPromotionKeepsLatest() throws IOException {
+        String merged = merge("<metadata><versioning><latest>2.0</latest><release>2.0</release><versions>"
+                + "<version>2.0</version></versions><lastUpdated>20141001000000</lastUpdated></versioning></metadata>",
+                "<metadata><versioning><latest>1.0.1</latest><release>1.0.1</release><versions>"
+                        + "<version>1.0.1</version></versions><lastUpdated>20140101000000</lastUpdated>"
+                        + "</versioning></metadata>");
+
+        assertTrue(merged.contains("<release>2.0</release>"));
+        assertTrue(merged.contains("<version>1.0.1</version>"));
+    }
+
+    @Test
+    public void pluginsMerged() throws IOException {
+        String merged = merge("<metadata><plugins><plugin><prefix>foo</prefix><artifactId>foo-maven-plugin"
+                + "</artifactId></plugin></plugins></metadata>", "<metadata><plugins><plugin><prefix>foo</prefix>"
+                + "<artifactId>foo-maven-plugin</artifactId></plugin><plugin><prefix>bar</prefix>"
+                + "<artifactId>bar-maven-plugin</artifactId></plugin></plugins></metadata>");
+
+        assertEquals(2, merged.split("<plugin>").length - 1);
+        assertTrue(merged.contains("<prefix>bar</prefix>"));
+    }
+
+    @Test(expected = IOException.class)
+    public void malformed() throws IOException {
+        merge("<metadata>", "<metadata/>");
+    }
+
+    private static String merge(String existing, String merged) throws IOException {
+        return new String(MavenMetadata.merge(existing.getBytes("UTF-8"), merged.getBytes("UTF-8")), "UTF-8");
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public final class MultipartFileUploadTest {
+
+    private static final String CONTENT = "0123456789abcdefghij";
+
+    private final InMemoryTransport transport = new InMemoryTransport();
+
+    private final File file = new File("target/multipart-file-upload.txt");
+
+    private final AtomicInteger notified = new AtomicInteger();
+
+    private final TransferProgress transferProgress = new TransferProgress() {
+
+        @Override
+        public void notify(byte[] buffer, int length) {
+            MultipartFileUploadTest.this.notified.addAndGet(length);
+        }
+    };
+
+    @Test
+    public void upload() throws IOException {
+        write(CONTENT);
+
+        new MultipartFileUpload(this.transport, 3, 6).upload(new ObjectInfo("foo/bar.txt", CONTENT.length(), null,
+                null, null), this.file, this.transferProgress, false);
+
+        ObjectContent objectContent = this.transport.get("foo/bar.txt");
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            IoUtils.copy(objectContent.getInputStream(), out);
+            assertEquals(CONTENT, out.toString());
+            assertEquals("4", objectContent.getObjectInfo().getETag().split("-")[1]);
+        } finally {
+            objectContent.close();
+        }
+        assertEquals(CONTENT.length(), this.notified.get());
+    }
+
+    @Test
+    public void uploadParts() throws IOException {
+        write(CONTENT);
+        this.transport.put(new ObjectInfo("foo/previous.txt", 10, null, null, null),
+                new ByteArrayInputStream("ABCDEFGHIJ".getBytes()), false);
+
+        new MultipartFileUpload(this.transport, 3, 6).upload(new ObjectInfo("foo/bar.txt", 12, null, null, null),
+                this.file, Arrays.asList(new MultipartFileUpload.Part("foo/previous.txt", 2, 5),
+                        new MultipartFileUpload.Part(null, 5, 4), new MultipartFileUpload.Part("foo/previous.txt",
+                                8, 2), new MultipartFileUpload.Part(null, 19, 1)), this.transferProgress, false);
+
+        ObjectContent objectContent = this.transport.get("foo/bar.txt");
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            IoUtils.copy(objectContent.getInputStream(), out);
+            assertEquals("CDEFG5678IJj", out.toString());
+        } finally {
+            objectContent.close();
+        }
+        assertEquals(5, this.notified.get());
+    }
+
+    @Test
+    public void failedPartAbortsUpload() throws IOException {
+        write(CONTENT);
+        Transport failing = mock(Transport.class);
+        when(failing.initiateMultipartUpload(any(ObjectInfo.class), eq(false))).thenReturn("upload");
+        when(failing.uploadPart(eq("foo/bar.txt"), eq("upload"), eq(1), any(InputStream.class), eq(10L)))
+                .thenReturn("etag");
+        when(failing.uploadPart(eq("foo/bar.txt"), eq("upload"), eq(2), any(InputStream.class), eq(10L)))
+                .thenThrow(new IOException("test"));
+
+        try {
+            new MultipartFileUpload(failing, 2, 10).upload(new ObjectInfo("foo/bar.txt", CONTENT.length(), null,
+                    null, null), this.file, this.transferProgress, false);
+            fail();
+        } catch (IOException e) {
+            assertEquals("test", e.getMessage());
+        }
+
+        verify(failing).abortMultipartUpload("foo/bar.txt", "upload");
+        verify(failing, never()).completeMultipartUpload(eq("foo/bar.txt"), eq("upload"), anyListOf(String.class));
+    }
+
+    @Test
+    public void partSize() {
+        assertEquals(16, MultipartFileUpload.getPartSize(100, 16));
+        assertEquals(20, MultipartFileUpload.getPartSize(200000, 16));
+        assertEquals(21, MultipartFileUpload.getPartSize(200001, 16));
+    }
+
+    private void write(String content) throws IOException {
+        OutputStream out = new FileOutputStream(this.file);
+        try {
+            out.write(content.getBytes());
+        } finally {
+            out.close();
+        }
+    }
+}
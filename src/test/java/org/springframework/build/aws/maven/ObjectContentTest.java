@@ -0,0 +1,95 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public final class ObjectContentTest {
+
+    @Test
+    public void readToEndReturned() throws IOException {
+        StubObjectContent objectContent = new StubObjectContent(10, 10);
+        IoUtils.copy(objectContent.getInputStream(), new ByteArrayOutputStream());
+
+        assertEquals(ObjectContent.Release.RETURNED, objectContent.release());
+        assertFalse(objectContent.aborted);
+    }
+
+    @Test
+    public void smallRemainderDrained() throws IOException {
+        StubObjectContent objectContent = new StubObjectContent(100, 100);
+        assertEquals(10, objectContent.getInputStream().read(new byte[10]));
+
+        assertEquals(ObjectContent.Release.DRAINED, objectContent.release());
+        assertFalse(objectContent.aborted);
+        assertEquals(0, objectContent.in.available());
+    }
+
+    @Test
+    public void largeRemainderAborted() {
+        int length = (int) ObjectContent.DRAIN_LIMIT + 1;
+        StubObjectContent objectContent = new StubObjectContent(length, length);
+
+        assertEquals(ObjectContent.Release.ABORTED, objectContent.release());
+        assertTrue(objectContent.aborted);
+    }
+
+    @Test
+    public void unknownLengthAborted() {
+        StubObjectContent objectContent = new StubObjectContent(-1, 10);
+
+        assertEquals(ObjectContent.Release.ABORTED, objectContent.release());
+        assertTrue(objectContent.aborted);
+    }
+
+    @Test
+    public void longerThanExpectedAborted() {
+        StubObjectContent objectContent = new StubObjectContent(10, (int) ObjectContent.DRAIN_LIMIT * 3);
+
+        assertEquals(ObjectContent.Release.ABORTED, objectContent.release());
+        assertTrue(objectContent.aborted);
+    }
+
+    private static final class StubObjectContent extends ObjectContent {
+
+        private final ByteArrayInputStream in;
+
+        private boolean aborted;
+
+        private StubObjectContent(long contentLength, int actualLength) {
+            this(contentLength, new ByteArrayInputStream(new byte[actualLength]));
+        }
+
+        private StubObjectContent(long contentLength, ByteArrayInputStream in) {
+            super(new ObjectInfo("foo", contentLength, null, null, null), in);
+            this.in = in;
+        }
+
+        @Override
+        void abort() {
+            this.aborted = true;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public final class PublicReadTransportTest {
+
+    private static final byte[] CONTENT = "robots".getBytes();
+
+    private static final String ETAG = "27f5e15b6af3223f1176293cd015771d";
+
+    private final List<String> requests = Collections.synchronizedList(new ArrayList<String>());
+
+    private final InMemoryTransport signed = new InMemoryTransport();
+
+    private HttpServer server;
+
+    private PublicReadTransport transport;
+
+    @Before
+    public void start() throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/bucket/", new Handler());
+        this.server.start();
+
+        this.transport = new PublicReadTransport(String.format("http://127.0.0.1:%d/bucket",
+                this.server.getAddress().getPort()), Proxy.NO_PROXY, new ClientSettings(),
+                new Callable<Transport>() {
+
+                    @Override
+                    public Transport call() {
+                        return PublicReadTransportTest.this.signed;
+                    }
+                });
+    }
+
+    @After
+    public void stop() {
+        this.server.stop(0);
+    }
+
+    @Test
+    public void defaultUrl() {
+        ClientSettings clientSettings = new ClientSettings();
+        assertEquals("https://foo.s3.amazonaws.com/", PublicReadTransport.getDefaultUrl("foo", clientSettings));
+        assertEquals("https://s3.amazonaws.com/maven.example.com/",
+                PublicReadTransport.getDefaultUrl("maven.example.com", clientSettings));
+    }
+
+    @Test
+    public void regionalUrl() throws IOException {
+        ClientSettings clientSettings = new ClientSettings();
+        assertEquals("https://foo.s3-eu-west-1.amazonaws.com/",
+                PublicReadTransport.getRegionalUrl("https://foo.s3.amazonaws.com/", "eu-west-1", clientSettings));
+        assertEquals("https://foo.s3-eu-west-1.amazonaws.com/releases/",
+                PublicReadTransport.getRegionalUrl("https://foo.s3.amazonaws.com/releases/", "eu-west-1",
+                        clientSettings));
+        assertEquals("https://s3-eu-west-1.amazonaws.com/maven.example.com/",
+                PublicReadTransport.getRegionalUrl("https://s3.amazonaws.com/maven.example.com/", "eu-west-1",
+                        clientSettings));
+        assertEquals("https://s3-eu-west-1.amazonaws.com/maven.example.com/",
+                PublicReadTransport.getRegionalUrl("http://maven.example.com/", "eu-west-1", clientSettings));
+        assertEquals("https://foo.s3.eu-central-1.amazonaws.com/",
+                PublicReadTransport.getRegionalUrl("https://foo.s3.amazonaws.com/", "eu-central-1",
+                        clientSettings));
+    }
+
+    @Test
+    public void head() throws IOException {
+        ObjectInfo objectInfo = this.transport.head("foo/robots.txt");
+
+        assertEquals(CONTENT.length, objectInfo.getContentLength());
+        assertEquals(ETAG, objectInfo.getETag());
+        assertEquals("HEAD /bucket/foo/robots.txt authorization=null", this.requests.get(0));
+    }
+
+    @Test
+    public void headNotPublic() throws IOException {
+        assertNull(this.transport.head("foo/private.txt"));
+    }
+
+    @Test
+    public void get() throws IOException {
+        assertEquals("robots", read(this.transport.get("foo/robots.txt")));
+    }
+
+    @Test
+    public void getNotPublic() throws IOException {
+        try {
+            this.transport.get("foo/private.txt");
+            fail();
+        } catch (TransportException e) {
+            assertTrue(e.isNotFound());
+        }
+    }
+
+    @Test
+    public void getRange() throws IOException {
+        assertEquals("bot", read(this.transport.get("foo/robots.txt", 2, 4)));
+    }
+
+    @Test
+    public void getIfChanged() throws IOException {
+        assertNull(this.transport.getIfChanged("foo/robots.txt", ETAG));
+        assertEquals("robots", read(this.transport.getIfChanged("foo/robots.txt",
+                "0123456789abcdef0123456789abcdef")));
+    }
+
+    @Test
+    public void writesSigned() throws IOException {
+        this.transport.head("foo/robots.txt");
+        assertFalse(this.transport.isSignedTransportCreated());
+
+        this.transport.put(new ObjectInfo("foo/bar.txt", CONTENT.length, null, null, null),
+                new ByteArrayInputStream(CONTENT), false);
+
+        assertTrue(this.transport.isSignedTransportCreated());
+        assertEquals(CONTENT.length, this.signed.head("foo/bar.txt").getContentLength());
+        assertEquals(1, this.requests.size());
+    }
+
+    private static String read(ObjectContent objectContent) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            IoUtils.copy(objectContent.getInputStream(), out);
+            return out.toString();
+        } finally {
+            objectContent.close();
+        }
+    }
+
+    private final class Handler implements HttpHandler {
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            String path = exchange.getRequestURI().getPath();
+            PublicReadTransportTest.this.requests.add(String.format("%s %s authorization=%s",
+                    exchange.getRequestMethod(), path, exchange.getRequestHeaders().getFirst("Authorization")));
+
+            boolean head = "HEAD".equals(exchange.getRequestMethod());
+            if (!"/bucket/foo/robots.txt".equals(path)) {
+                exchange.sendResponseHeaders(403, -1);
+            } else if (String.format("\"%s\"", ETAG).equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+            } else {
+                byte[] body = CONTENT;
+                String range = exchange.getRequestHeaders().getFirst("Range");
+                if (range != null) {
+                    String[] bytes = range.substring("bytes=".length()).split("-");
+                    body = new String(CONTENT).substring(Integer.parseInt(bytes[0]),
+                            Integer.parseInt(bytes[1]) + 1).getBytes();
+                }
+                exchange.getResponseHeaders().add("ETag", String.format("\"%s\"", ETAG));
+                exchange.getResponseHeaders().add("Content-Type", "text/plain");
+                if (head) {
+                    exchange.getResponseHeaders().add("Content-Length", String.valueOf(body.length));
+                    exchange.sendResponseHeaders(200, -1);
+                } else {
+                    exchange.sendResponseHeaders(range == null ? 200 : 206, body.length);
+                    OutputStream out = exchange.getResponseBody();
+                    out.write(body);
+                }
+            }
+            exchange.close();
+        }
+    }
+}
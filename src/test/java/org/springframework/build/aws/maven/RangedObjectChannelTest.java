@@ -0,0 +1,186 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public final class RangedObjectChannelTest {
+
+    private static final int BLOCK_SIZE = 1024;
+
+    private final byte[] content = new byte[100 * BLOCK_SIZE + 100];
+
+    private final InMemoryTransport delegate = new InMemoryTransport();
+
+    private final Transport transport = mock(Transport.class);
+
+    public RangedObjectChannelTest() throws IOException {
+        new Random(1).nextBytes(this.content);
+        this.delegate.put(new ObjectInfo("foo/bar.jar", this.content.length, null, null, null),
+                new ByteArrayInputStream(this.content), false);
+        when(this.transport.get(eq("foo/bar.jar"), anyLong(), anyLong())).thenAnswer(new Answer<ObjectContent>() {
+
+            @Override
+            public ObjectContent answer(InvocationOnMock invocation) throws IOException {
+                Object[] arguments = invocation.getArguments();
+                return RangedObjectChannelTest.this.delegate.get((String) arguments[0], (Long) arguments[1],
+                        (Long) arguments[2]);
+            }
+        });
+    }
+
+    @Test
+    public void sequentialReadsAhead() throws IOException {
+        RangedObjectChannel channel = open();
+
+        ByteBuffer buffer = ByteBuffer.allocate(this.content.length);
+        ByteBuffer chunk = ByteBuffer.allocate(100);
+        while (channel.read(chunk) != -1) {
+            chunk.flip();
+            buffer.put(chunk);
+            chunk.clear();
+        }
+
+        assertArrayEquals(this.content, buffer.array());
+        // 1 + 2 + 4 + 8 + 16 + 16 + ... blocks
+        verify(this.transport, times(10)).get(eq("foo/bar.jar"), anyLong(), anyLong());
+    }
+
+    @Test
+    public void randomReadsFetchSingleBlocks() throws IOException {
+        RangedObjectChannel channel = open();
+
+        assertArrayEquals(read(channel, this.content.length - 22, 22), tail(22));
+        assertArrayEquals(read(channel, 10 * BLOCK_SIZE + 10, 10), range(10 * BLOCK_SIZE + 10, 10));
+        assertArrayEquals(read(channel, this.content.length - 50, 50), tail(50));
+
+        verify(this.transport).get("foo/bar.jar", 100 * BLOCK_SIZE, this.content.length - 1);
+        verify(this.transport).get("foo/bar.jar", 10 * BLOCK_SIZE, 11 * BLOCK_SIZE - 1);
+        verify(this.transport, times(2)).get(eq("foo/bar.jar"), anyLong(), anyLong());
+    }
+
+    @Test
+    public void readAcrossBlocks() throws IOException {
+        RangedObjectChannel channel = open();
+
+        assertArrayEquals(read(channel, BLOCK_SIZE - 10, 3 * BLOCK_SIZE), range(BLOCK_SIZE - 10, 3 * BLOCK_SIZE));
+    }
+
+    @Test
+    public void cacheEvictsLeastRecentlyUsed() throws IOException {
+        RangedObjectChannel channel = new RangedObjectChannel(this.transport, this.delegate.head("foo/bar.jar"),
+                BLOCK_SIZE, 1, 2);
+
+        read(channel, 0, 1);
+        read(channel, 10 * BLOCK_SIZE, 1);
+        read(channel, 0, 1);
+        read(channel, 20 * BLOCK_SIZE, 1);
+        read(channel, 0, 1);
+        read(channel, 10 * BLOCK_SIZE, 1);
+
+        verify(this.transport).get("foo/bar.jar", 0, BLOCK_SIZE - 1);
+        verify(this.transport, times(2)).get("foo/bar.jar", 10 * BLOCK_SIZE, 11 * BLOCK_SIZE - 1);
+    }
+
+    @Test
+    public void endOfObject() throws IOException {
+        RangedObjectChannel channel = open();
+
+        channel.position(this.content.length);
+        assertEquals(-1, channel.read(ByteBuffer.allocate(1)));
+        channel.position(this.content.length + 1000);
+        assertEquals(-1, channel.read(ByteBuffer.allocate(1)));
+        assertEquals(this.content.length, channel.size());
+        verify(this.transport, never()).get(eq("foo/bar.jar"), anyLong(), anyLong());
+    }
+
+    @Test
+    public void changedObject() throws IOException {
+        RangedObjectChannel channel = new RangedObjectChannel(this.transport, new ObjectInfo("foo/bar.jar",
+                this.content.length, "0123456789abcdef0123456789abcdef", null, null));
+
+        try {
+            channel.read(ByteBuffer.allocate(1));
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("changed while being read"));
+        }
+    }
+
+    @Test(expected = NonWritableChannelException.class)
+    public void write() {
+        open().write(ByteBuffer.allocate(1));
+    }
+
+    @Test
+    public void close() throws IOException {
+        RangedObjectChannel channel = open();
+        channel.close();
+
+        assertFalse(channel.isOpen());
+        try {
+            channel.read(ByteBuffer.allocate(1));
+            fail();
+        } catch (ClosedChannelException e) {
+            // expected
+        }
+    }
+
+    private RangedObjectChannel open() {
+        return new RangedObjectChannel(this.transport, this.delegate.head("foo/bar.jar"), BLOCK_SIZE, 16, 32);
+    }
+
+    private static byte[] read(RangedObjectChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        channel.position(position);
+        while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+            // keep reading
+        }
+        return buffer.array();
+    }
+
+    private byte[] range(int offset, int length) {
+        return Arrays.copyOfRange(this.content, offset, offset + length);
+    }
+
+    private byte[] tail(int length) {
+        return range(this.content.length - length, length);
+    }
+}
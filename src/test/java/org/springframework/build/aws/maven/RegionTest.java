@@ -34,6 +34,14 @@ public final class RegionTest {
         assertEndpoint("sa-east-1", "s3-sa-east-1.amazonaws.com");
     }
 
+    @Test
+    public void signingRegion() {
+        assertEquals("us-east-1", Region.fromLocationConstraint("US").getSigningRegion());
+        assertEquals("eu-west-1", Region.fromLocationConstraint("EU").getSigningRegion());
+        assertEquals("eu-west-1", Region.fromLocationConstraint("eu-west-1").getSigningRegion());
+        assertEquals("ap-southeast-2", Region.fromLocationConstraint("ap-southeast-2").getSigningRegion());
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void invalidLocationConstraint() {
         Region.fromLocationConstraint("foo");
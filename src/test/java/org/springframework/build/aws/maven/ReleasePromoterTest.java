@@ -0,0 +1,133 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public final class ReleasePromoterTest {
+
+    private final InMemoryTransport release = new InMemoryTransport();
+
+    @Test
+    public void promote() throws IOException {
+        InMemoryTransport staging = InMemoryTransport.forBucket("release-promoter-test-staging");
+        put(staging, "staging/", "");
+        put(staging, "staging/foo/1.0/foo-1.0.jar", "0123456789");
+        put(staging, "staging/foo/1.0/foo-1.0.pom", "pom");
+        put(staging, "staging/foo/maven-metadata.xml", "metadata");
+        put(staging, "other/bar.jar", "bar");
+
+        PromotionSummary summary = new ReleasePromoter(staging, "release-promoter-test-staging", this.release, 2,
+                true, 4, 4).promote("staging/", "release/");
+
+        assertEquals(3, summary.getListed());
+        assertEquals(3, summary.getCopied());
+        assertEquals(21, summary.getBytesCopied());
+        assertEquals(2, summary.getMultipart());
+        assertEquals(0, summary.getFailed());
+        assertEquals("0123456789", read("release/foo/1.0/foo-1.0.jar"));
+        assertEquals("text/plain", this.release.head("release/foo/1.0/foo-1.0.jar").getContentType());
+        assertEquals("pom", read("release/foo/1.0/foo-1.0.pom"));
+        assertEquals("metadata", read("release/foo/maven-metadata.xml"));
+        assertNotNull(this.release.head("release/"));
+        assertNull(this.release.head("release/bar.jar"));
+    }
+
+    @Test
+    public void metadataHeldBackWhenCopyFails() throws IOException {
+        InMemoryTransport listed = new InMemoryTransport();
+        put(listed, "staging/foo/1.0/foo-1.0.jar", "jar");
+        put(listed, "staging/foo/maven-metadata.xml", "metadata");
+
+        PromotionSummary summary = new ReleasePromoter(listed, "release-promoter-test-empty", this.release, 2, true)
+                .promote("staging/", "release/");
+
+        assertEquals(2, summary.getListed());
+        assertEquals(0, summary.getCopied());
+        assertEquals(2, summary.getFailed());
+        assertNull(this.release.head("release/foo/maven-metadata.xml"));
+    }
+
+    @Test
+    public void metadataMerged() throws IOException, NoSuchAlgorithmException {
+        InMemoryTransport staging = InMemoryTransport.forBucket("release-promoter-test-merge");
+        put(staging, "staging/foo/2.0/foo-2.0.jar", "jar");
+        put(staging, "staging/foo/maven-metadata.xml", metadata("2.0", "20141001000000"));
+        put(staging, "staging/foo/maven-metadata.xml.sha1", "stale");
+        put(this.release, "release/foo/maven-metadata.xml", metadata("1.0", "20140101000000"));
+
+        PromotionSummary summary = new ReleasePromoter(staging, "release-promoter-test-merge", this.release, 2,
+                true).promote("staging/", "release/");
+
+        assertEquals(0, summary.getFailed());
+        assertEquals(3, summary.getCopied());
+        String merged = read("release/foo/maven-metadata.xml");
+        assertTrue(merged.contains("<version>1.0</version>"));
+        assertTrue(merged.contains("<version>2.0</version>"));
+        assertTrue(merged.contains("<release>2.0</release>"));
+        assertEquals(IoUtils.hex(MessageDigest.getInstance("SHA-1").digest(merged.getBytes("UTF-8"))),
+                read("release/foo/maven-metadata.xml.sha1"));
+    }
+
+    @Test
+    public void partSizeRaisedForLargeObjects() throws IOException {
+        InMemoryTransport staging = InMemoryTransport.forBucket("release-promoter-test-parts");
+        put(staging, "staging/foo-1.0.jar", new String(new char[MultipartFileUpload.MAX_PARTS * 2 + 1]));
+
+        PromotionSummary summary = new ReleasePromoter(staging, "release-promoter-test-parts", this.release, 2,
+                true, 1, 1).promote("staging/", "release/");
+
+        assertEquals(0, summary.getFailed());
+        assertEquals(1, summary.getMultipart());
+        assertEquals(MultipartFileUpload.MAX_PARTS * 2 + 1, this.release.head("release/foo-1.0.jar")
+                .getContentLength());
+    }
+
+    private static String metadata(String version, String lastUpdated) {
+        return String.format("<metadata><groupId>org.example</groupId><artifactId>foo</artifactId><versioning>"
+                + "<latest>%1$s</latest><release>%1$s</release><versions><version>%1$s</version></versions>"
+                + "<lastUpdated>%2$s</lastUpdated></versioning></metadata>", version, lastUpdated);
+    }
+
+    private static void put(Transport transport, String key, String content) throws IOException {
+        byte[] bytes = content.getBytes();
+        transport.put(new ObjectInfo(key, bytes.length, null, null, "text/plain"), new ByteArrayInputStream(bytes),
+                false);
+    }
+
+    private String read(String key) throws IOException {
+        ObjectContent objectContent = this.release.get(key);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            IoUtils.copy(objectContent.getInputStream(), out);
+            return out.toString();
+        } finally {
+            objectContent.close();
+        }
+    }
+}
@@ -17,6 +17,7 @@
 package org.springframework.build.aws.maven;
 
 import com.amazonaws.ClientConfiguration;
+import com.amazonaws.Protocol;
 import org.apache.maven.wagon.proxy.ProxyInfo;
 import org.apache.maven.wagon.proxy.ProxyInfoProvider;
 import org.apache.maven.wagon.repository.Repository;
@@ -75,6 +76,29 @@ public final class S3UtilsTest {
         assertEquals(-1, clientConfiguration.getProxyPort());
     }
 
+    @Test
+    public void getClientConfigurationClientSettings() {
+        ClientSettings clientSettings = new ClientSettings();
+        clientSettings.setConnectionTimeout(1000);
+        clientSettings.setSocketTimeout(2000);
+        clientSettings.setMaxConnections(10);
+        clientSettings.setMaxErrorRetry(5);
+        clientSettings.setSocketSendBufferSize(100);
+        clientSettings.setSocketReceiveBufferSize(200);
+        clientSettings.setProtocol("http");
+        clientSettings.setSigner("S3SignerType");
+
+        ClientConfiguration clientConfiguration = S3Utils.getClientConfiguration(null, clientSettings);
+        assertEquals(1000, clientConfiguration.getConnectionTimeout());
+        assertEquals(2000, clientConfiguration.getSocketTimeout());
+        assertEquals(10, clientConfiguration.getMaxConnections());
+        assertEquals(5, clientConfiguration.getMaxErrorRetry());
+        assertEquals(100, clientConfiguration.getSocketBufferSizeHints()[0]);
+        assertEquals(200, clientConfiguration.getSocketBufferSizeHints()[1]);
+        assertEquals(Protocol.HTTP, clientConfiguration.getProtocol());
+        assertEquals("S3SignerType", clientConfiguration.getSignerOverride());
+    }
+
     private Repository createRepository(String path) {
         return new Repository("foo", String.format("s3://dist.springsource.com%s", path));
     }
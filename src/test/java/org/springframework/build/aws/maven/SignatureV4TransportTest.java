@@ -0,0 +1,120 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public final class SignatureV4TransportTest {
+
+    @Test
+    public void parseListing() throws IOException {
+        ListingPage listingPage = SignatureV4Transport.parseListing(stream("<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<ListBucketResult xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\">"
+                + "<Name>bucket</Name><Prefix>foo/</Prefix><Marker></Marker><MaxKeys>1000</MaxKeys>"
+                + "<Delimiter>/</Delimiter><IsTruncated>false</IsTruncated>"
+                + "<Contents><Key>foo/robots.txt</Key><LastModified>2014-01-02T03:04:05.000Z</LastModified>"
+                + "<ETag>&quot;fba9dede5f27731c9771645a39863328&quot;</ETag><Size>434234</Size>"
+                + "<Owner><ID>id</ID><DisplayName>name</DisplayName></Owner>"
+                + "<StorageClass>STANDARD</StorageClass></Contents>"
+                + "<CommonPrefixes><Prefix>foo/bar/</Prefix></CommonPrefixes>"
+                + "</ListBucketResult>"));
+
+        assertEquals(Arrays.asList("foo/bar/"), listingPage.getCommonPrefixes());
+        assertEquals(1, listingPage.getObjects().size());
+
+        ObjectInfo objectInfo = listingPage.getObjects().get(0);
+        assertEquals("foo/robots.txt", objectInfo.getKey());
+        assertEquals(434234, objectInfo.getContentLength());
+        assertEquals("fba9dede5f27731c9771645a39863328", objectInfo.getETag());
+        assertEquals(1388631845000L, objectInfo.getLastModified().getTime());
+        assertFalse(listingPage.isTruncated());
+        assertNull(listingPage.getNextMarker());
+    }
+
+    @Test
+    public void parseListingTruncatedWithoutNextMarker() throws IOException {
+        ListingPage listingPage = SignatureV4Transport.parseListing(stream("<ListBucketResult>"
+                + "<IsTruncated>true</IsTruncated>"
+                + "<Contents><Key>a</Key><Size>1</Size></Contents>"
+                + "<Contents><Key>b</Key><Size>1</Size></Contents>"
+                + "</ListBucketResult>"));
+
+        assertTrue(listingPage.isTruncated());
+        assertEquals("b", listingPage.getNextMarker());
+    }
+
+    @Test
+    public void parseListingTruncatedWithNextMarker() throws IOException {
+        ListingPage listingPage = SignatureV4Transport.parseListing(stream("<ListBucketResult>"
+                + "<IsTruncated>true</IsTruncated><NextMarker>c/</NextMarker>"
+                + "<CommonPrefixes><Prefix>c/</Prefix></CommonPrefixes>"
+                + "</ListBucketResult>"));
+
+        assertEquals("c/", listingPage.getNextMarker());
+    }
+
+    @Test
+    public void deleteRequest() throws IOException {
+        assertEquals("<Delete><Quiet>true</Quiet><Object><Key>a/b&amp;c</Key></Object>"
+                + "<Object><Key>&lt;d&gt;</Key></Object></Delete>",
+                new String(SignatureV4Transport.deleteRequest(Arrays.asList("a/b&c", "<d>")), "UTF-8"));
+    }
+
+    @Test
+    public void completeMultipartUploadRequest() throws IOException {
+        assertEquals("<CompleteMultipartUpload><Part><PartNumber>1</PartNumber><ETag>\"a\"</ETag></Part>"
+                + "<Part><PartNumber>2</PartNumber><ETag>\"b\"</ETag></Part></CompleteMultipartUpload>",
+                new String(SignatureV4Transport.completeMultipartUploadRequest(Arrays.asList("a", "b")), "UTF-8"));
+    }
+
+    @Test
+    public void getElement() {
+        String body = "<CopyPartResult><LastModified>2014-01-01T00:00:00.000Z</LastModified>"
+                + "<ETag>&quot;27f5e15b6af3223f1176293cd015771d&quot;</ETag></CopyPartResult>";
+        assertEquals("\"27f5e15b6af3223f1176293cd015771d\"", SignatureV4Transport.getElement(body, "ETag"));
+        assertNull(SignatureV4Transport.getElement(body, "UploadId"));
+    }
+
+    @Test
+    public void contentMd5() {
+        assertEquals("1B2M2Y8AsgTpgAmY7PhCfg==", IoUtils.base64(IoUtils.newMd5().digest()));
+        assertEquals("Zg==", IoUtils.base64("f".getBytes()));
+        assertEquals("Zm8=", IoUtils.base64("fo".getBytes()));
+        assertEquals("Zm9v", IoUtils.base64("foo".getBytes()));
+    }
+
+    @Test
+    public void parseLocationConstraint() throws IOException {
+        assertEquals("eu-west-1", SignatureV4Transport.parseLocationConstraint(stream(
+                "<LocationConstraint xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\">eu-west-1</LocationConstraint>")));
+        assertEquals("", SignatureV4Transport.parseLocationConstraint(stream(
+                "<LocationConstraint xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\"/>")));
+    }
+
+    private static ByteArrayInputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes());
+    }
+}
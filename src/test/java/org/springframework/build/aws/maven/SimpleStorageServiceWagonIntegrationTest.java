@@ -23,17 +23,27 @@ import org.apache.maven.wagon.ResourceDoesNotExistException;
 import org.apache.maven.wagon.TransferFailedException;
 import org.apache.maven.wagon.WagonException;
 import org.apache.maven.wagon.authentication.AuthenticationInfo;
+import org.apache.maven.wagon.events.TransferEvent;
+import org.apache.maven.wagon.events.TransferListener;
 import org.apache.maven.wagon.repository.Repository;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
+import java.util.Random;
 
 import static org.junit.Assert.*;
 import static org.mockito.Matchers.any;
@@ -61,7 +71,7 @@ public final class SimpleStorageServiceWagonIntegrationTest {
     private final TransferProgress transferProgress = mock(TransferProgress.class);
 
     private final SimpleStorageServiceWagon wagon =
-            new SimpleStorageServiceWagon(this.amazonS3, BUCKET_NAME, BASE_DIRECTORY);
+            new SimpleStorageServiceWagon(new AmazonS3Transport(this.amazonS3, BUCKET_NAME), BASE_DIRECTORY);
 
 
     @Test
@@ -80,6 +90,500 @@ public final class SimpleStorageServiceWagonIntegrationTest {
         }
     }
 
+    @Test
+    public void lazyConnect() throws WagonException {
+        SimpleStorageServiceWagon lazyWagon = memoryWagon();
+        lazyWagon.setLazyConnect(true);
+        connect(lazyWagon, "lazy.aws-maven");
+        assertFalse(lazyWagon.isTransportCreated());
+
+        assertFalse(lazyWagon.resourceExists("bar/robots.txt"));
+        assertTrue(lazyWagon.isTransportCreated());
+        lazyWagon.disconnect();
+        assertFalse(lazyWagon.isTransportCreated());
+    }
+
+    @Test
+    public void eagerConnect() throws WagonException {
+        SimpleStorageServiceWagon eagerWagon = connectedMemoryWagon("eager.aws-maven");
+        assertTrue(eagerWagon.isTransportCreated());
+        eagerWagon.disconnect();
+    }
+
+    @Test
+    public void memoryTransport() throws WagonException, IOException {
+        SimpleStorageServiceWagon memoryWagon = connectedMemoryWagon("memory.aws-maven");
+
+        File target = new File("target/robots.txt");
+        target.delete();
+
+        memoryWagon.put(new File("src/test/resources/test.txt"), "bar/robots.txt");
+        assertTrue(memoryWagon.resourceExists("bar/robots.txt"));
+        assertEquals(Arrays.asList("robots.txt"), memoryWagon.getFileList("bar/"));
+        memoryWagon.get("bar/robots.txt", target);
+        assertEquals(new File("src/test/resources/test.txt").length(), target.length());
+        assertEquals(1, memoryWagon.getConnectionStatistics().getReturned());
+        assertEquals(0, memoryWagon.getConnectionStatistics().getLeased());
+
+        memoryWagon.disconnect();
+    }
+
+    @Test
+    public void listingWithRegexCharactersInPrefix() throws WagonException {
+        SimpleStorageServiceWagon prefixedWagon = memoryWagon();
+        connect(prefixedWagon, "memory.aws-maven", "foo+bar(1)");
+
+        prefixedWagon.put(new File("src/test/resources/test.txt"), "baz/robots.txt");
+        assertEquals(Arrays.asList("baz/"), prefixedWagon.getFileList(""));
+        assertEquals(Arrays.asList("robots.txt"), prefixedWagon.getFileList("baz/"));
+
+        prefixedWagon.disconnect();
+    }
+
+    @Test
+    public void promote() throws WagonException, IOException {
+        InMemoryTransport.forBucket("staging.aws-maven").put(new ObjectInfo("foo/bar/robots.txt", 6, null, null,
+                null), new ByteArrayInputStream("robots".getBytes()), false);
+
+        SimpleStorageServiceWagon releaseWagon = memoryWagon();
+        connect(releaseWagon, "release.aws-maven", "baz");
+        PromotionSummary summary = releaseWagon.promote("s3://staging.aws-maven/foo", "bar", 2, true);
+        releaseWagon.disconnect();
+
+        assertEquals(1, summary.getCopied());
+        assertNotNull(InMemoryTransport.forBucket("release.aws-maven").head("baz/bar/robots.txt"));
+    }
+
+    @Test
+    public void promoteUpdatesKeyIndex() throws WagonException, IOException {
+        InMemoryTransport.forBucket("promote-staging.aws-maven").put(new ObjectInfo(
+                "foo/org/example/bar/1.0/bar-1.0.jar", 6, null, null, null),
+                new ByteArrayInputStream("robots".getBytes()), false);
+
+        SimpleStorageServiceWagon releaseWagon = memoryWagon();
+        releaseWagon.setKeyIndex(true);
+        connect(releaseWagon, "promote-index.aws-maven");
+        releaseWagon.publishKeyIndex();
+        assertFalse(releaseWagon.resourceExists("org/example/bar/1.0/bar-1.0.jar"));
+        releaseWagon.promote("s3://promote-staging.aws-maven/foo", "org", 2, false);
+        assertTrue(releaseWagon.resourceExists("org/example/bar/1.0/bar-1.0.jar"));
+        releaseWagon.disconnect();
+
+        SimpleStorageServiceWagon reader = memoryWagon();
+        reader.setKeyIndex(true);
+        connect(reader, "promote-index.aws-maven");
+        assertTrue(reader.resourceExists("org/example/bar/1.0/bar-1.0.jar"));
+        reader.disconnect();
+    }
+
+    @Test
+    public void multipartPut() throws WagonException, IOException {
+        SimpleStorageServiceWagon multipartWagon = memoryWagon();
+        multipartWagon.setMultipartThreshold(1);
+        connect(multipartWagon, "multipart.aws-maven");
+        multipartWagon.put(new File("src/test/resources/test.txt"), "bar/robots.txt");
+        multipartWagon.disconnect();
+
+        ObjectInfo objectInfo = InMemoryTransport.forBucket("multipart.aws-maven").head("foo/bar/robots.txt");
+        assertEquals(new File("src/test/resources/test.txt").length(), objectInfo.getContentLength());
+        assertTrue(objectInfo.getETag().endsWith("-1"));
+    }
+
+    @Test
+    public void keyIndex() throws WagonException, IOException {
+        SimpleStorageServiceWagon writer = memoryWagon();
+        writer.setKeyIndex(true);
+        connect(writer, "key-index.aws-maven");
+        writer.put(new File("src/test/resources/test.txt"), "org/example/bar/1.0/bar-1.0.txt");
+        assertTrue(writer.publishKeyIndex() > 0);
+        writer.put(new File("src/test/resources/test.txt"), "org/example/bar/2.0/bar-2.0.txt");
+        writer.disconnect();
+
+        // answered from the index even though the object is gone
+        InMemoryTransport.forBucket("key-index.aws-maven").delete("foo/org/example/bar/2.0/bar-2.0.txt");
+
+        SimpleStorageServiceWagon reader = memoryWagon();
+        reader.setKeyIndex(true);
+        connect(reader, "key-index.aws-maven");
+        assertTrue(reader.resourceExists("org/example/bar/2.0/bar-2.0.txt"));
+        assertFalse(reader.resourceExists("org/example/bar/3.0/bar-3.0.txt"));
+        assertTrue(reader.getIfNewer("org/example/bar/1.0/bar-1.0.txt", new File("target/bar-1.0.txt"), 0));
+        assertEquals(Arrays.asList("1.0/", "2.0/"), reader.getFileList("org/example/bar/"));
+        reader.disconnect();
+    }
+
+    @Test
+    public void compression() throws WagonException, IOException {
+        File source = new File("target/compressed/pom.xml");
+        source.getParentFile().mkdirs();
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            content.append("<dependency><groupId>org.example</groupId></dependency>\n");
+        }
+        write(source, content.toString());
+
+        SimpleStorageServiceWagon compressingWagon = memoryWagon();
+        compressingWagon.setCompression(true);
+        connect(compressingWagon, "compressed.aws-maven");
+        compressingWagon.put(source, "bar/bar-1.0.pom");
+        compressingWagon.put(new File("src/test/resources/test.txt"), "bar/robots.txt");
+
+        InMemoryTransport transport = InMemoryTransport.forBucket("compressed.aws-maven");
+        ObjectInfo objectInfo = transport.head("foo/bar/bar-1.0.pom");
+        assertEquals("gzip", objectInfo.getContentEncoding());
+        assertTrue(objectInfo.getContentLength() < source.length());
+        assertNull(transport.head("foo/bar/robots.txt").getContentEncoding());
+
+        File destination = new File("target/compressed/bar-1.0.pom");
+        compressingWagon.get("bar/bar-1.0.pom", destination);
+        compressingWagon.disconnect();
+        assertEquals(source.length(), destination.length());
+        assertEquals(IoUtils.md5Hex(new FileInputStream(source)), IoUtils.md5Hex(new FileInputStream(destination)));
+    }
+
+    @Test
+    public void keyFilterFindsKeysPutByEarlierSession() throws WagonException {
+        String bucketName = String.format("key-filter-%d.aws-maven", System.nanoTime());
+
+        SimpleStorageServiceWagon reader = memoryWagon();
+        reader.setKeyFilter(true);
+        connect(reader, bucketName);
+        assertFalse(reader.resourceExists("bar/robots.txt"));
+        reader.put(new File("src/test/resources/test.txt"), "bar/robots.txt");
+        reader.disconnect();
+
+        SimpleStorageServiceWagon nextReader = memoryWagon();
+        nextReader.setKeyFilter(true);
+        connect(nextReader, bucketName);
+        assertTrue(nextReader.resourceExists("bar/robots.txt"));
+        nextReader.disconnect();
+    }
+
+    @Test
+    public void deltaUpload() throws WagonException, IOException {
+        byte[] content = new byte[24 * 1024 * 1024];
+        new Random(1).nextBytes(content);
+        File source = new File("target/delta-upload.jar");
+        write(source, content);
+
+        SimpleStorageServiceWagon deltaWagon = memoryWagon();
+        deltaWagon.setDeltaUpload(true);
+        connect(deltaWagon, "delta-upload.aws-maven");
+        deltaWagon.put(source, "bar/1.0-SNAPSHOT/bar-1.0-20141028.123456-1.jar");
+
+        content[content.length - 1000]++;
+        write(source, content);
+        TransferListener transferListener = mock(TransferListener.class);
+        deltaWagon.addTransferListener(transferListener);
+        deltaWagon.put(source, "bar/1.0-SNAPSHOT/bar-1.0-20141028.123456-2.jar");
+        deltaWagon.disconnect();
+
+        ArgumentCaptor<Integer> lengths = ArgumentCaptor.forClass(Integer.class);
+        verify(transferListener, atLeastOnce()).transferProgress(any(TransferEvent.class), any(byte[].class),
+                lengths.capture());
+        long uploaded = 0;
+        for (Integer length : lengths.getAllValues()) {
+            uploaded += length;
+        }
+        assertTrue(String.valueOf(uploaded), uploaded < content.length / 2);
+
+        InMemoryTransport transport = InMemoryTransport.forBucket("delta-upload.aws-maven");
+        ObjectContent objectContent = transport.get("foo/bar/1.0-SNAPSHOT/bar-1.0-20141028.123456-2.jar");
+        try {
+            assertEquals(IoUtils.md5Hex(new ByteArrayInputStream(content)),
+                    IoUtils.md5Hex(objectContent.getInputStream()));
+        } finally {
+            objectContent.close();
+        }
+        assertNotNull(transport.head("foo/.aws-maven/chunks/bar/1.0-SNAPSHOT/bar-1.0-SNAPSHOT.jar"));
+    }
+
+    @Test
+    public void openChannel() throws WagonException, IOException {
+        SimpleStorageServiceWagon channelWagon = connectedMemoryWagon("channel.aws-maven");
+        channelWagon.put(new File("src/test/resources/test.txt"), "bar/robots.txt");
+
+        SeekableByteChannel channel = channelWagon.openChannel("bar/robots.txt");
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(4);
+            channel.position(channel.size() - 4);
+            assertEquals(4, channel.read(buffer));
+            byte[] content = Files.readAllBytes(new File("src/test/resources/test.txt").toPath());
+            assertArrayEquals(Arrays.copyOfRange(content, content.length - 4, content.length), buffer.array());
+        } finally {
+            channel.close();
+        }
+
+        try {
+            channelWagon.openChannel("bar/missing.txt");
+            fail();
+        } catch (ResourceDoesNotExistException e) {
+            // expected
+        } finally {
+            channelWagon.disconnect();
+        }
+    }
+
+    @Test
+    public void skipUnchanged() throws WagonException, IOException {
+        SimpleStorageServiceWagon skippingWagon = memoryWagon();
+        skippingWagon.setSkipUnchanged(true);
+        connect(skippingWagon, "skip-unchanged.aws-maven");
+        skippingWagon.put(new File("src/test/resources/test.txt"), "bar/robots.txt");
+
+        File destination = new File("target/skip-unchanged/robots.txt");
+        destination.getParentFile().mkdirs();
+        write(destination, "stale");
+        skippingWagon.get("bar/robots.txt", destination);
+        assertEquals(new File("src/test/resources/test.txt").length(), destination.length());
+
+        TransferListener transferListener = mock(TransferListener.class);
+        skippingWagon.addTransferListener(transferListener);
+        skippingWagon.get("bar/robots.txt", destination);
+        skippingWagon.disconnect();
+
+        verify(transferListener).transferCompleted(any(TransferEvent.class));
+        verify(transferListener, never()).transferProgress(any(TransferEvent.class), any(byte[].class), anyInt());
+        assertTrue(DigestCache.getEntry(destination).isFile());
+        assertFalse(new File(destination.getParentFile(), ".robots.txt.md5").exists());
+    }
+
+    @Test
+    public void dryRun() throws WagonException {
+        SimpleStorageServiceWagon dryRunWagon = new SimpleStorageServiceWagon();
+        dryRunWagon.setDryRun(true);
+        dryRunWagon.connect(new Repository("test", "s3://dry-run.aws-maven/foo"));
+        dryRunWagon.put(new File("src/test/resources/test.txt"), "bar/robots.txt");
+        assertFalse(dryRunWagon.resourceExists("bar/robots.txt"));
+        dryRunWagon.disconnect();
+
+        RequestPlan plan = dryRunWagon.getRequestPlan();
+        assertEquals(Long.valueOf(3), plan.getRequests().get("PUT"));
+        assertEquals(Long.valueOf(1), plan.getRequests().get("HEAD"));
+        assertEquals(new File("src/test/resources/test.txt").length(), plan.getBytes().get("PUT").longValue());
+    }
+
+    @Test
+    public void traceFile() throws WagonException, IOException {
+        File traceFile = new File("target/trace/wagon.json");
+        traceFile.delete();
+
+        SimpleStorageServiceWagon tracedWagon = memoryWagon();
+        tracedWagon.setTraceFile(traceFile);
+        connect(tracedWagon, "traced.aws-maven");
+        tracedWagon.put(new File("src/test/resources/test.txt"), "bar/robots.txt");
+        assertFalse(traceFile.exists());
+        tracedWagon.disconnect();
+
+        assertTrue(traceFile.isFile());
+    }
+
+    @Test
+    public void stagedDeploy() throws WagonException, IOException {
+        SimpleStorageServiceWagon stagedWagon = memoryWagon();
+        stagedWagon.setStagedDeploy(true);
+        stagedWagon.setStagingDirectory(new File("target/staging"));
+        connect(stagedWagon, "staged.aws-maven");
+
+        stagedWagon.put(new File("src/test/resources/test.txt"), "bar/robots.txt");
+        assertTrue(stagedWagon.resourceExists("bar/robots.txt"));
+        assertNull(InMemoryTransport.forBucket("staged.aws-maven").head("foo/bar/robots.txt"));
+
+        stagedWagon.disconnect();
+        assertNotNull(InMemoryTransport.forBucket("staged.aws-maven").head("foo/bar/robots.txt"));
+        assertNotNull(InMemoryTransport.forBucket("staged.aws-maven").head("foo/bar/"));
+    }
+
+    @Test
+    public void stagedDeployCompressed() throws WagonException, IOException {
+        File source = new File("target/staged-compressed/bar-1.0.pom");
+        source.getParentFile().mkdirs();
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            content.append("<dependency/>\n");
+        }
+        write(source, content.toString());
+
+        SimpleStorageServiceWagon stagedWagon = memoryWagon();
+        stagedWagon.setStagedDeploy(true);
+        stagedWagon.setStagingDirectory(new File("target/staging-compressed"));
+        stagedWagon.setCompression(true);
+        connect(stagedWagon, "staged-compressed.aws-maven");
+        stagedWagon.put(source, "bar/bar-1.0.pom");
+        stagedWagon.disconnect();
+
+        assertEquals("gzip", InMemoryTransport.forBucket("staged-compressed.aws-maven").head("foo/bar/bar-1.0.pom")
+                .getContentEncoding());
+    }
+
+    @Test
+    public void commitStagedDeploy() throws WagonException, IOException {
+        SimpleStorageServiceWagon stagedWagon = memoryWagon();
+        stagedWagon.setStagedDeploy(true);
+        stagedWagon.setStagingDirectory(new File("target/staging-commit"));
+        connect(stagedWagon, "staged-commit.aws-maven");
+        InMemoryTransport memory = InMemoryTransport.forBucket("staged-commit.aws-maven");
+
+        stagedWagon.put(new File("src/test/resources/test.txt"), "bar/robots.txt");
+        stagedWagon.commitStagedDeploy();
+        assertNotNull(memory.head("foo/bar/robots.txt"));
+
+        stagedWagon.put(new File("src/test/resources/test.txt"), "bar/baz.txt");
+        assertNull(memory.head("foo/bar/baz.txt"));
+        stagedWagon.disconnect();
+        assertNotNull(memory.head("foo/bar/baz.txt"));
+    }
+
+    @Test
+    public void commitStagedDeployFailure() throws WagonException, IOException {
+        Transport transport = mock(Transport.class);
+        doThrow(new IOException("denied")).when(transport).put(any(ObjectInfo.class), any(InputStream.class),
+                anyBoolean());
+        SimpleStorageServiceWagon stagedWagon = new SimpleStorageServiceWagon(transport, BASE_DIRECTORY);
+        stagedWagon.setStagedDeploy(true);
+        File root = new File("target/staging-failure");
+        stagedWagon.setStagingDirectory(root);
+        stagedWagon.connect(new Repository("test", "s3://staged-failure.aws-maven/foo"));
+
+        stagedWagon.put(new File("src/test/resources/test.txt"), "bar/robots.txt");
+        try {
+            stagedWagon.commitStagedDeploy();
+            fail();
+        } catch (TransferFailedException e) {
+            assertTrue(e.getMessage().contains("remain staged"));
+        }
+
+        reset(transport);
+        stagedWagon.disconnect();
+        ArgumentCaptor<ObjectInfo> objectInfo = ArgumentCaptor.forClass(ObjectInfo.class);
+        verify(transport, atLeastOnce()).put(objectInfo.capture(), any(InputStream.class), anyBoolean());
+        assertEquals(BASE_DIRECTORY + "bar/robots.txt",
+                objectInfo.getAllValues().get(objectInfo.getAllValues().size() - 1).getKey());
+    }
+
+    @Test
+    public void deltaSync() throws WagonException, IOException, InterruptedException {
+        InMemoryTransport memory = InMemoryTransport.forBucket("delta.aws-maven");
+        File source = new File("target/delta-sync");
+        new File(source, "css").mkdirs();
+        write(new File(source, "index.html"), "index");
+        write(new File(source, "css/site.css"), "site");
+        memory.put(new ObjectInfo("foo/site/index.html", 5, null, null, null),
+                new ByteArrayInputStream("index".getBytes()), false);
+        memory.put(new ObjectInfo("foo/site/css/site.css", 3, null, null, null),
+                new ByteArrayInputStream("old".getBytes()), false);
+        memory.put(new ObjectInfo("foo/site/orphan.html", 6, null, null, null),
+                new ByteArrayInputStream("orphan".getBytes()), false);
+        Date unchanged = memory.head("foo/site/index.html").getLastModified();
+        Thread.sleep(10);
+
+        SimpleStorageServiceWagon deltaWagon = memoryWagon();
+        deltaWagon.setDeltaSync(true);
+        deltaWagon.setDeleteOrphans(true);
+        connect(deltaWagon, "delta.aws-maven");
+        deltaWagon.putDirectory(source, "site");
+        deltaWagon.disconnect();
+
+        assertEquals(unchanged, memory.head("foo/site/index.html").getLastModified());
+        assertEquals(4, memory.head("foo/site/css/site.css").getContentLength());
+        assertNull(memory.head("foo/site/orphan.html"));
+    }
+
+    @Test
+    public void deltaSyncToRootKeepsWagonState() throws WagonException, IOException {
+        InMemoryTransport memory = InMemoryTransport.forBucket("delta-root.aws-maven");
+        File source = new File("target/delta-sync-root");
+        source.mkdirs();
+        write(new File(source, "index.html"), "index");
+        memory.put(new ObjectInfo("foo/org/example/bar/1.0/bar-1.0.jar", 6, null, null, null),
+                new ByteArrayInputStream("orphan".getBytes()), false);
+        memory.put(new ObjectInfo("foo/" + KeyFilter.PUBLISHED_KEY, 5, null, null, null),
+                new ByteArrayInputStream("bloom".getBytes()), false);
+
+        SimpleStorageServiceWagon deltaWagon = memoryWagon();
+        deltaWagon.setKeyIndex(true);
+        deltaWagon.setDeltaSync(true);
+        deltaWagon.setDeleteOrphans(true);
+        connect(deltaWagon, "delta-root.aws-maven");
+        deltaWagon.publishKeyIndex();
+        deltaWagon.putDirectory(source, ".");
+        deltaWagon.disconnect();
+
+        assertNull(memory.head("foo/org/example/bar/1.0/bar-1.0.jar"));
+        assertNotNull(memory.head("foo/" + KeyFilter.PUBLISHED_KEY));
+        assertNotNull(memory.head("foo/" + KeyIndex.INDEX_PREFIX + "org.example.idx"));
+
+        SimpleStorageServiceWagon reader = memoryWagon();
+        reader.setKeyIndex(true);
+        connect(reader, "delta-root.aws-maven");
+        assertFalse(reader.resourceExists("org/example/bar/1.0/bar-1.0.jar"));
+        assertTrue(reader.resourceExists("index.html"));
+        reader.disconnect();
+    }
+
+    @Test
+    public void deltaSyncCompressed() throws WagonException, IOException, InterruptedException {
+        InMemoryTransport memory = InMemoryTransport.forBucket("delta-compressed.aws-maven");
+        File source = new File("target/delta-sync-compressed");
+        source.mkdirs();
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            content.append("<p>index</p>\n");
+        }
+        write(new File(source, "index.html"), content.toString());
+
+        SimpleStorageServiceWagon deltaWagon = memoryWagon();
+        deltaWagon.setDeltaSync(true);
+        deltaWagon.setCompression(true);
+        connect(deltaWagon, "delta-compressed.aws-maven");
+        deltaWagon.putDirectory(source, "site");
+        ObjectInfo put = memory.head("foo/site/index.html");
+        assertEquals("gzip", put.getContentEncoding());
+        Thread.sleep(10);
+
+        deltaWagon.putDirectory(source, "site");
+        assertEquals(put.getLastModified(), memory.head("foo/site/index.html").getLastModified());
+
+        write(new File(source, "index.html"), content.append("<p>changed</p>\n").toString());
+        deltaWagon.putDirectory(source, "site");
+        deltaWagon.disconnect();
+        assertTrue(put.getLastModified().before(memory.head("foo/site/index.html").getLastModified()));
+    }
+
+    private static SimpleStorageServiceWagon connectedMemoryWagon(String bucketName) throws WagonException {
+        return connect(memoryWagon(), bucketName);
+    }
+
+    private static SimpleStorageServiceWagon memoryWagon() {
+        SimpleStorageServiceWagon wagon = new SimpleStorageServiceWagon();
+        wagon.setTransport("memory");
+        return wagon;
+    }
+
+    private static SimpleStorageServiceWagon connect(SimpleStorageServiceWagon wagon, String bucketName)
+            throws WagonException {
+        return connect(wagon, bucketName, "foo");
+    }
+
+    private static SimpleStorageServiceWagon connect(SimpleStorageServiceWagon wagon, String bucketName,
+                                                     String baseDirectory) throws WagonException {
+        wagon.connect(new Repository("test", String.format("s3://%s/%s", bucketName, baseDirectory)));
+        return wagon;
+    }
+
+    private static void write(File file, String content) throws IOException {
+        write(file, content.getBytes());
+    }
+
+    private static void write(File file, byte[] content) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+    }
+
     private List<String> getBuckets() {
         List<String> buckets = new ArrayList<String>();
 
@@ -104,21 +608,21 @@ public final class SimpleStorageServiceWagonIntegrationTest {
     }
 
     @Test
-    public void doesRemoteResourceExistExists() {
+    public void doesRemoteResourceExistExists() throws TransferFailedException {
         when(this.amazonS3.getObjectMetadata(SimpleStorageServiceWagonIntegrationTest.BUCKET_NAME,
                 BASE_DIRECTORY + FILE_NAME)).thenReturn(this.objectMetadata);
         assertTrue(this.wagon.doesRemoteResourceExist(FILE_NAME));
     }
 
     @Test
-    public void doesRemoteResourceExistDoesNotExist() {
+    public void doesRemoteResourceExistDoesNotExist() throws TransferFailedException {
         when(this.amazonS3.getObjectMetadata(SimpleStorageServiceWagonIntegrationTest.BUCKET_NAME,
                 BASE_DIRECTORY + FILE_NAME)).thenThrow(new AmazonServiceException(""));
         assertFalse(this.wagon.doesRemoteResourceExist(FILE_NAME));
     }
 
     @Test
-    public void isRemoteResourceNewerNewer() throws ResourceDoesNotExistException {
+    public void isRemoteResourceNewerNewer() throws TransferFailedException, ResourceDoesNotExistException {
         when(this.objectMetadata.getLastModified()).thenReturn(new Date());
         when(this.amazonS3.getObjectMetadata(SimpleStorageServiceWagonIntegrationTest.BUCKET_NAME,
                 BASE_DIRECTORY + FILE_NAME)).thenReturn(this.objectMetadata);
@@ -127,7 +631,7 @@ public final class SimpleStorageServiceWagonIntegrationTest {
     }
 
     @Test
-    public void isRemoteResourceNewerOlder() throws ResourceDoesNotExistException {
+    public void isRemoteResourceNewerOlder() throws TransferFailedException, ResourceDoesNotExistException {
         when(this.objectMetadata.getLastModified()).thenReturn(new Date());
         when(this.amazonS3.getObjectMetadata(SimpleStorageServiceWagonIntegrationTest.BUCKET_NAME,
                 BASE_DIRECTORY + FILE_NAME)).thenReturn(this.objectMetadata);
@@ -136,7 +640,7 @@ public final class SimpleStorageServiceWagonIntegrationTest {
     }
 
     @Test
-    public void isRemoteResourceNewerNoLastModified() throws ResourceDoesNotExistException {
+    public void isRemoteResourceNewerNoLastModified() throws TransferFailedException, ResourceDoesNotExistException {
         when(this.amazonS3.getObjectMetadata(SimpleStorageServiceWagonIntegrationTest.BUCKET_NAME,
                 BASE_DIRECTORY + FILE_NAME)).thenReturn(this.objectMetadata);
 
@@ -144,20 +648,27 @@ public final class SimpleStorageServiceWagonIntegrationTest {
     }
 
     @Test(expected = ResourceDoesNotExistException.class)
-    public void isRemoteResourceNewerDoesNotExist() throws ResourceDoesNotExistException {
+    public void isRemoteResourceNewerDoesNotExist() throws TransferFailedException, ResourceDoesNotExistException {
         when(this.amazonS3.getObjectMetadata(SimpleStorageServiceWagonIntegrationTest.BUCKET_NAME,
                 BASE_DIRECTORY + FILE_NAME)).thenThrow(new AmazonServiceException(""));
         this.wagon.isRemoteResourceNewer(FILE_NAME, 0);
     }
 
     @Test
-    public void listDirectoryTopLevel() throws ResourceDoesNotExistException {
+    public void listDirectoryTopLevel() throws TransferFailedException, ResourceDoesNotExistException {
         ListObjectsRequest listObjectsRequest = new ListObjectsRequest() //
                 .withBucketName(BUCKET_NAME) //
                 .withPrefix(BASE_DIRECTORY) //
                 .withDelimiter("/");
 
         when(this.amazonS3.listObjects(eq(listObjectsRequest))).thenReturn(this.objectListing);
+        ListObjectsRequest nextListObjectsRequest = new ListObjectsRequest() //
+                .withBucketName(BUCKET_NAME) //
+                .withPrefix(BASE_DIRECTORY) //
+                .withDelimiter("/") //
+                .withMarker(BASE_DIRECTORY + FILE_NAME);
+
+        when(this.amazonS3.listObjects(eq(nextListObjectsRequest))).thenReturn(this.objectListing);
         when(this.objectListing.isTruncated()).thenReturn(true, false);
         when(this.objectListing.getCommonPrefixes()).thenReturn(Arrays.asList("foo/"));
         when(this.objectListing.getObjectSummaries()).thenReturn(Arrays.asList(this.s3ObjectSummary));
@@ -169,13 +680,20 @@ public final class SimpleStorageServiceWagonIntegrationTest {
     }
 
     @Test
-    public void listDirectoryTopNested() throws ResourceDoesNotExistException {
+    public void listDirectoryTopNested() throws TransferFailedException, ResourceDoesNotExistException {
         ListObjectsRequest listObjectsRequest = new ListObjectsRequest() //
                 .withBucketName(BUCKET_NAME) //
                 .withPrefix(BASE_DIRECTORY + "release/") //
                 .withDelimiter("/");
 
         when(this.amazonS3.listObjects(eq(listObjectsRequest))).thenReturn(this.objectListing);
+        ListObjectsRequest nextListObjectsRequest = new ListObjectsRequest() //
+                .withBucketName(BUCKET_NAME) //
+                .withPrefix(BASE_DIRECTORY + "release/") //
+                .withDelimiter("/") //
+                .withMarker(BASE_DIRECTORY + "release/robots.txt");
+
+        when(this.amazonS3.listObjects(eq(nextListObjectsRequest))).thenReturn(this.objectListing);
         when(this.objectListing.isTruncated()).thenReturn(true, false);
         when(this.objectListing.getCommonPrefixes()).thenReturn(Arrays.asList("foo/"));
         when(this.objectListing.getObjectSummaries()).thenReturn(Arrays.asList(this.s3ObjectSummary));
@@ -187,7 +705,7 @@ public final class SimpleStorageServiceWagonIntegrationTest {
     }
 
     @Test(expected = ResourceDoesNotExistException.class)
-    public void listDirectoryDoesNotExist() throws ResourceDoesNotExistException {
+    public void listDirectoryDoesNotExist() throws TransferFailedException, ResourceDoesNotExistException {
         ListObjectsRequest listObjectsRequest = new ListObjectsRequest() //
                 .withBucketName(BUCKET_NAME) //
                 .withPrefix(BASE_DIRECTORY + "frogs") //
@@ -0,0 +1,244 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public final class SingleFlightTest {
+
+    private static final int CALLERS = 8;
+
+    private final SingleFlight singleFlight = new SingleFlight();
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private final AtomicInteger shares = new AtomicInteger();
+
+    @Test
+    public void forBucket() {
+        assertSame(SingleFlight.forBucket("sdk", "foo"), SingleFlight.forBucket("sdk", "foo"));
+        assertTrue(SingleFlight.forBucket("sdk", "foo") != SingleFlight.forBucket("sdk", "bar"));
+        assertTrue(SingleFlight.forBucket("sdk", "foo") != SingleFlight.forBucket("http", "foo"));
+    }
+
+    @Test
+    public void sequential() throws IOException {
+        assertEquals("result-1", this.singleFlight.execute("foo", new BlockingCall(null, null)));
+        assertEquals("result-2", this.singleFlight.execute("foo", new BlockingCall(null, null)));
+        assertEquals(0, this.singleFlight.getInFlight());
+    }
+
+    @Test
+    public void concurrent() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Future<String>> results = submit("foo", new BlockingCall(started, release));
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Thread.sleep(200);
+        release.countDown();
+
+        for (Future<String> result : results) {
+            assertEquals("result-1", result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, this.calls.get());
+        assertEquals(CALLERS - 1, this.shares.get());
+        assertEquals(0, this.singleFlight.getInFlight());
+    }
+
+    @Test
+    public void differentKeys() throws Exception {
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        BlockingCall call = new BlockingCall(started, release);
+        List<Future<String>> results = submit("foo", call);
+        results.addAll(submit("bar", call));
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Thread.sleep(200);
+        release.countDown();
+
+        for (Future<String> result : results) {
+            result.get(5, TimeUnit.SECONDS);
+        }
+        assertEquals(2, this.calls.get());
+    }
+
+    @Test
+    public void exception() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Future<String>> results = submit("foo", new FailingCall(started, release));
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Thread.sleep(200);
+        release.countDown();
+
+        for (Future<String> result : results) {
+            try {
+                result.get(5, TimeUnit.SECONDS);
+                fail();
+            } catch (ExecutionException e) {
+                assertEquals(IOException.class, e.getCause().getClass());
+                assertEquals("failure-1", e.getCause().getMessage());
+            }
+        }
+        assertEquals(1, this.calls.get());
+        assertEquals(0, this.shares.get());
+        assertEquals(0, this.singleFlight.getInFlight());
+    }
+
+    @Test
+    public void leaderWaitsForShares() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch sharing = new CountDownLatch(1);
+        final CountDownLatch shared = new CountDownLatch(1);
+        final SingleFlight.Share<String, IOException> share = new SingleFlight.Share<String, IOException>() {
+
+            @Override
+            public void share(String result) {
+                sharing.countDown();
+                await(shared);
+            }
+
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> leader = executor.submit(new Callable<String>() {
+
+                @Override
+                public String call() throws IOException {
+                    return singleFlight.execute("foo", new BlockingCall(started, release));
+                }
+
+            });
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            Future<String> follower = executor.submit(new Callable<String>() {
+
+                @Override
+                public String call() throws IOException {
+                    return singleFlight.execute("foo", new BlockingCall(null, null), share);
+                }
+
+            });
+            Thread.sleep(200);
+            release.countDown();
+
+            assertTrue(sharing.await(5, TimeUnit.SECONDS));
+            Thread.sleep(200);
+            assertTrue(!leader.isDone());
+
+            shared.countDown();
+            assertEquals("result-1", leader.get(5, TimeUnit.SECONDS));
+            assertEquals("result-1", follower.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private List<Future<String>> submit(final String key, final SingleFlight.Call<String, IOException> call)
+            throws InterruptedException {
+        final SingleFlight.Share<String, IOException> share = new SingleFlight.Share<String, IOException>() {
+
+            @Override
+            public void share(String result) {
+                shares.incrementAndGet();
+            }
+
+        };
+
+        final ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        List<Future<String>> results = new ArrayList<Future<String>>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(executor.submit(new Callable<String>() {
+
+                @Override
+                public String call() throws IOException {
+                    return singleFlight.execute(key, call, share);
+                }
+
+            }));
+        }
+        executor.shutdown();
+        return results;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private class BlockingCall implements SingleFlight.Call<String, IOException> {
+
+        private final CountDownLatch started;
+
+        private final CountDownLatch release;
+
+        private BlockingCall(CountDownLatch started, CountDownLatch release) {
+            this.started = started;
+            this.release = release;
+        }
+
+        @Override
+        public String call() throws IOException {
+            int call = calls.incrementAndGet();
+            if (this.started != null) {
+                this.started.countDown();
+                await(this.release);
+            }
+            return result(call);
+        }
+
+        String result(int call) throws IOException {
+            return "result-" + call;
+        }
+    }
+
+    private final class FailingCall extends BlockingCall {
+
+        private FailingCall(CountDownLatch started, CountDownLatch release) {
+            super(started, release);
+        }
+
+        @Override
+        String result(int call) throws IOException {
+            throw new IOException("failure-" + call);
+        }
+    }
+}
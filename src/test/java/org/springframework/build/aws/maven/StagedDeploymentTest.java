@@ -0,0 +1,134 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public final class StagedDeploymentTest {
+
+    private final File root = new File("target/staged-deployment");
+
+    @Before
+    public void clean() {
+        delete(this.root);
+    }
+
+    @Test
+    public void metadataLast() throws IOException {
+        StagedDeployment stagedDeployment = open("foo/maven-metadata.xml", "foo/maven-metadata.xml.sha1",
+                "foo/bar.jar.sha1", "foo/bar.jar", "foo/bar.pom");
+
+        RecordingUploader uploader = new RecordingUploader(null);
+        stagedDeployment.commit(uploader);
+
+        assertEquals(5, uploader.keys.size());
+        assertTrue(uploader.keys.indexOf("foo/bar.jar.sha1") > uploader.keys.indexOf("foo/bar.jar"));
+        assertTrue(uploader.keys.indexOf("foo/bar.jar.sha1") > uploader.keys.indexOf("foo/bar.pom"));
+        assertEquals(Arrays.asList("foo/maven-metadata.xml", "foo/maven-metadata.xml.sha1"),
+                sorted(uploader.keys.subList(3, 5)));
+        assertEquals(0, this.root.listFiles().length);
+    }
+
+    @Test
+    public void failureKeepsStaged() throws IOException {
+        StagedDeployment stagedDeployment = open("foo/maven-metadata.xml", "foo/bar.jar.sha1", "foo/bar.jar",
+                "foo/bar.pom");
+
+        RecordingUploader uploader = new RecordingUploader("foo/bar.jar");
+        try {
+            stagedDeployment.commit(uploader);
+            fail();
+        } catch (IOException e) {
+            assertEquals(Arrays.asList("foo/bar.pom"), uploader.keys);
+        }
+
+        StagedDeployment resumed = new StagedDeployment(this.root, 2);
+        resumed.open();
+        RecordingUploader resumedUploader = new RecordingUploader(null);
+        resumed.commit(resumedUploader);
+
+        assertEquals(Arrays.asList("foo/bar.jar", "foo/bar.jar.sha1", "foo/maven-metadata.xml"),
+                resumedUploader.keys);
+        assertEquals(0, this.root.listFiles().length);
+    }
+
+    @Test
+    public void classification() {
+        assertTrue(StagedDeployment.isMetadata("foo/maven-metadata-local.xml.md5"));
+        assertFalse(StagedDeployment.isMetadata("foo/bar.jar"));
+        assertTrue(StagedDeployment.isChecksum("foo/bar.jar.sha512"));
+        assertFalse(StagedDeployment.isChecksum("foo/bar.jar"));
+    }
+
+    private StagedDeployment open(String... keys) throws IOException {
+        StagedDeployment stagedDeployment = new StagedDeployment(this.root, 2);
+        stagedDeployment.open();
+        for (String key : keys) {
+            stagedDeployment.getJournal().stage(key, new ByteArrayInputStream(key.getBytes()));
+        }
+        return stagedDeployment;
+    }
+
+    private static List<String> sorted(List<String> keys) {
+        List<String> sorted = new ArrayList<String>(keys);
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static final class RecordingUploader implements StagedDeployment.Uploader {
+
+        private final List<String> keys = Collections.synchronizedList(new ArrayList<String>());
+
+        private final String failing;
+
+        private RecordingUploader(String failing) {
+            this.failing = failing;
+        }
+
+        @Override
+        public void upload(String key, File file) throws IOException {
+            if (key.equals(this.failing)) {
+                throw new IOException("failed");
+            }
+            this.keys.add(key);
+        }
+    }
+}
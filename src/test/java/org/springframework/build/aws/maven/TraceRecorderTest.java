@@ -0,0 +1,89 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public final class TraceRecorderTest {
+
+    private final TraceRecorder traceRecorder = new TraceRecorder("test");
+
+    @Test
+    public void disabled() {
+        TraceRecorder.Span span = TraceRecorder.DISABLED.begin("wagon", "get", "foo");
+        assertSame(span, TraceRecorder.DISABLED.begin("s3", "GET", "bar"));
+        span.arg("bytes", 1).end();
+
+        assertFalse(TraceRecorder.DISABLED.isEnabled());
+        assertEquals(0, TraceRecorder.DISABLED.size());
+    }
+
+    @Test
+    public void spansRecordedWhenEnded() {
+        TraceRecorder.Span span = this.traceRecorder.begin("wagon", "get", "foo");
+        assertEquals(0, this.traceRecorder.size());
+
+        span.end();
+        span.end();
+        assertEquals(1, this.traceRecorder.size());
+    }
+
+    @Test
+    public void export() throws IOException {
+        TraceRecorder.Span outer = this.traceRecorder.begin("wagon", "put", "foo/\"bar\".jar");
+        TraceRecorder.Span inner = this.traceRecorder.begin("s3", "PUT", "foo/\"bar\".jar");
+        this.traceRecorder.addRetries(2);
+        inner.arg("bytes", 42).arg("error", "SocketException").end();
+        this.traceRecorder.addRetries(1);
+        outer.end();
+
+        File file = new File("target/trace/trace.json");
+        this.traceRecorder.export(file);
+        String trace = read(file);
+
+        assertTrue(trace.startsWith("{\"displayTimeUnit\":\"ms\",\"traceEvents\":["));
+        assertTrue(trace.contains("{\"name\":\"process_name\",\"ph\":\"M\",\"pid\":1,\"args\":{\"name\":\"test\"}}"));
+        assertTrue(trace.contains("\"name\":\"PUT foo/\\\"bar\\\".jar\",\"cat\":\"s3\",\"ph\":\"X\""));
+        assertTrue(trace.contains("\"args\":{\"retries\":2,\"bytes\":42,\"error\":\"SocketException\"}"));
+        assertTrue(trace.contains("\"cat\":\"wagon\""));
+        assertTrue(trace.contains("\"args\":{\"retries\":1}"));
+        assertTrue(trace.contains("\"name\":\"thread_name\""));
+        assertTrue(trace.endsWith("]}\n"));
+    }
+
+    private static String read(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            IoUtils.copy(in, out);
+            return out.toString("UTF-8");
+        } finally {
+            IoUtils.closeQuietly(in);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public final class TracingTransportTest {
+
+    private static final byte[] CONTENT = "robots".getBytes();
+
+    private final TraceRecorder traceRecorder = new TraceRecorder("test");
+
+    private final TracingTransport transport = new TracingTransport(new InMemoryTransport(), this.traceRecorder);
+
+    @Test
+    public void requestsRecorded() throws IOException {
+        this.transport.put(new ObjectInfo("foo/robots.txt", CONTENT.length, null, null, null),
+                new ByteArrayInputStream(CONTENT), false);
+        assertEquals(CONTENT.length, this.transport.head("foo/robots.txt").getContentLength());
+        assertNull(this.transport.head("foo/bar.txt"));
+        this.transport.list("foo/", "/", null);
+        this.transport.copy(null, "foo/robots.txt", "bar/robots.txt", false);
+        this.transport.delete("bar/robots.txt");
+        this.transport.delete(Arrays.asList("foo/robots.txt"));
+
+        assertEquals(7, this.traceRecorder.size());
+    }
+
+    @Test
+    public void getRecordedWhenClosed() throws IOException {
+        this.transport.put(new ObjectInfo("foo/robots.txt", CONTENT.length, null, null, null),
+                new ByteArrayInputStream(CONTENT), false);
+
+        ObjectContent objectContent = this.transport.get("foo/robots.txt");
+        assertEquals(1, this.traceRecorder.size());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IoUtils.copy(objectContent.getInputStream(), out);
+        objectContent.getInputStream().close();
+        assertEquals("robots", out.toString());
+        assertEquals(2, this.traceRecorder.size());
+    }
+
+    @Test
+    public void failureRecorded() throws IOException {
+        try {
+            this.transport.get("foo/robots.txt");
+            fail();
+        } catch (TransportException e) {
+            assertEquals(1, this.traceRecorder.size());
+        }
+    }
+}
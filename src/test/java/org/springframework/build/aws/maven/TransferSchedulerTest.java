@@ -0,0 +1,213 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public final class TransferSchedulerTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private final List<String> admitted = Collections.synchronizedList(new ArrayList<String>());
+
+    @After
+    public void shutdown() {
+        this.executor.shutdownNow();
+    }
+
+    @Test
+    public void forBucket() {
+        assertSame(TransferScheduler.forBucket("sdk", "foo", 8, 4, 100), TransferScheduler.forBucket("sdk", "foo", 8,
+                4, 100));
+        assertTrue(TransferScheduler.forBucket("sdk", "foo", 8, 4, 100) != TransferScheduler.forBucket("sdk", "bar",
+                8, 4, 100));
+    }
+
+    @Test
+    public void priority() {
+        assertEquals(TransferScheduler.PRIORITY_METADATA, TransferScheduler.getPriority("foo/maven-metadata.xml"));
+        assertEquals(TransferScheduler.PRIORITY_METADATA, TransferScheduler.getPriority("foo/bar-1.0.jar.sha1"));
+        assertEquals(TransferScheduler.PRIORITY_METADATA, TransferScheduler.getPriority("foo/bar-1.0.pom.asc"));
+        assertEquals(TransferScheduler.PRIORITY_DESCRIPTOR, TransferScheduler.getPriority("foo/bar-1.0.pom"));
+        assertEquals(TransferScheduler.PRIORITY_ARTIFACT, TransferScheduler.getPriority("foo/bar-1.0.jar"));
+    }
+
+    @Test
+    public void smallNotBehindLarge() throws Exception {
+        TransferScheduler transferScheduler = new TransferScheduler(1, 1, 100, 1000);
+        TransferScheduler.Ticket large = transferScheduler.acquire("foo/bar-1.0.jar", -1);
+
+        Future<?> waiting = acquire(transferScheduler, "foo/baz-1.0.jar", 1000);
+        awaitWaiting(transferScheduler, 1);
+
+        transferScheduler.acquire("foo/maven-metadata.xml", -1).release();
+        assertFalse(waiting.isDone());
+
+        large.release();
+        waiting.get(5, TimeUnit.SECONDS);
+        assertEquals(Arrays.asList("foo/baz-1.0.jar"), this.admitted);
+    }
+
+    @Test
+    public void smallBorrowsIdleLargeLane() throws Exception {
+        TransferScheduler transferScheduler = new TransferScheduler(1, 1, 100, 1000);
+        TransferScheduler.Ticket first = transferScheduler.acquire("foo/bar-1.0.pom", 10);
+        TransferScheduler.Ticket second = transferScheduler.acquire("foo/baz-1.0.pom", 10);
+
+        Future<?> waiting = acquire(transferScheduler, "foo/bar-1.0.jar", 1000);
+        awaitWaiting(transferScheduler, 1);
+
+        first.release();
+        Thread.sleep(100);
+        assertFalse(waiting.isDone());
+
+        second.release();
+        waiting.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void mostUrgentFirst() throws Exception {
+        TransferScheduler transferScheduler = new TransferScheduler(1, 1, 100, 1000);
+        TransferScheduler.Ticket large = transferScheduler.acquire("foo/bar-1.0.jar", -1);
+        TransferScheduler.Ticket small = transferScheduler.acquire("foo/bar-1.0.pom", -1);
+
+        Future<?> artifact = acquire(transferScheduler, "foo/baz-1.0.jar", 10);
+        awaitWaiting(transferScheduler, 1);
+        Future<?> metadata = acquire(transferScheduler, "foo/maven-metadata.xml", -1);
+        awaitWaiting(transferScheduler, 2);
+
+        small.release();
+        artifact.get(5, TimeUnit.SECONDS);
+        metadata.get(5, TimeUnit.SECONDS);
+        large.release();
+
+        assertEquals(Arrays.asList("foo/maven-metadata.xml", "foo/baz-1.0.jar"), this.admitted);
+    }
+
+    @Test
+    public void aging() throws Exception {
+        TransferScheduler transferScheduler = new TransferScheduler(1, 1, 100, 50);
+        TransferScheduler.Ticket large = transferScheduler.acquire("foo/bar-1.0.jar", -1);
+        TransferScheduler.Ticket small = transferScheduler.acquire("foo/bar-1.0.pom", -1);
+
+        Future<?> artifact = acquire(transferScheduler, "foo/baz-1.0.jar", 10);
+        awaitWaiting(transferScheduler, 1);
+        Thread.sleep(200);
+        Future<?> metadata = acquire(transferScheduler, "foo/maven-metadata.xml", -1);
+        awaitWaiting(transferScheduler, 2);
+
+        small.release();
+        artifact.get(5, TimeUnit.SECONDS);
+        metadata.get(5, TimeUnit.SECONDS);
+        large.release();
+
+        assertEquals(Arrays.asList("foo/baz-1.0.jar", "foo/maven-metadata.xml"), this.admitted);
+    }
+
+    @Test
+    public void forBucketKeepsFirstLimits() throws Exception {
+        TransferScheduler transferScheduler = TransferScheduler.forBucket("sdk", "limits", 1, 1, 100);
+        TransferScheduler.Ticket large = transferScheduler.acquire("foo/bar-1.0.jar", -1);
+
+        assertSame(transferScheduler, TransferScheduler.forBucket("sdk", "limits", 8, 4, 100));
+        Future<?> waiting = acquire(transferScheduler, "foo/baz-1.0.jar", -1);
+        awaitWaiting(transferScheduler, 1);
+
+        large.release();
+        waiting.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void interrupted() throws Exception {
+        final TransferScheduler transferScheduler = new TransferScheduler(1, 1, 100, 1000);
+        TransferScheduler.Ticket large = transferScheduler.acquire("foo/bar-1.0.jar", -1);
+
+        Future<Boolean> waiting = this.executor.submit(new Callable<Boolean>() {
+
+            @Override
+            public Boolean call() {
+                try {
+                    transferScheduler.acquire("foo/baz-1.0.jar", -1);
+                    return false;
+                } catch (InterruptedIOException e) {
+                    return Thread.currentThread().isInterrupted();
+                }
+            }
+        });
+        awaitWaiting(transferScheduler, 1);
+
+        this.executor.shutdownNow();
+        assertTrue(waiting.get(5, TimeUnit.SECONDS));
+        assertEquals(0, transferScheduler.getWaiting());
+
+        large.release();
+        large.release();
+        transferScheduler.acquire("foo/baz-1.0.jar", -1).release();
+    }
+
+    @Test
+    public void unbounded() throws InterruptedIOException {
+        List<TransferScheduler.Ticket> tickets = new ArrayList<TransferScheduler.Ticket>();
+        for (int i = 0; i < 100; i++) {
+            tickets.add(TransferScheduler.unbounded().acquire("foo/bar-1.0.jar", -1));
+        }
+        for (TransferScheduler.Ticket ticket : tickets) {
+            ticket.release();
+        }
+    }
+
+    private Future<?> acquire(final TransferScheduler transferScheduler, final String resourceName, final long size) {
+        return this.executor.submit(new Callable<Void>() {
+
+            @Override
+            public Void call() throws InterruptedIOException {
+                TransferScheduler.Ticket ticket = transferScheduler.acquire(resourceName, size);
+                TransferSchedulerTest.this.admitted.add(resourceName);
+                ticket.release();
+                return null;
+            }
+        });
+    }
+
+    private static void awaitWaiting(TransferScheduler transferScheduler, int waiting) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (transferScheduler.getWaiting() != waiting) {
+            if (System.currentTimeMillis() > deadline) {
+                fail(String.format("Expected %d waiting transfers", waiting));
+            }
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public final class TransportFactoryTest {
+
+    @Test
+    public void isSupported() {
+        assertTrue(TransportFactory.isSupported("sdk"));
+        assertTrue(TransportFactory.isSupported("http"));
+        assertTrue(TransportFactory.isSupported("memory"));
+        assertTrue(TransportFactory.isSupported("file:///tmp/s3"));
+        assertTrue(TransportFactory.isSupported("public"));
+        assertTrue(TransportFactory.isSupported("https://cdn.example.com/maven/"));
+        assertFalse(TransportFactory.isSupported("ftp"));
+        assertFalse(TransportFactory.isSupported(null));
+    }
+
+    @Test
+    public void createMemory() throws IOException {
+        assertSame(InMemoryTransport.forBucket("foo"),
+                TransportFactory.create("memory", "foo", null, null, new ClientSettings(), TraceRecorder.DISABLED));
+    }
+
+    @Test
+    public void createFile() throws IOException {
+        assertTrue(TransportFactory.create("file:///tmp/s3", "foo", null, null, new ClientSettings(),
+                TraceRecorder.DISABLED) instanceof FileSystemTransport);
+    }
+
+    @Test
+    public void createPublicWithoutCredentials() throws IOException {
+        assertTrue(TransportFactory.create("public", "foo", null, null, new ClientSettings(),
+                TraceRecorder.DISABLED) instanceof DeadlineTransport);
+    }
+
+    @Test(expected = IOException.class)
+    public void createInvalidFile() throws IOException {
+        TransportFactory.create("file:relative", "foo", null, null, new ClientSettings(), TraceRecorder.DISABLED);
+    }
+}
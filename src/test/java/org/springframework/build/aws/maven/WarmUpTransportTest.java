@@ -0,0 +1,63 @@
+/*
+ * Copyright 2010-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.build.aws.maven;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public final class WarmUpTransportTest {
+
+    private final WarmUpTransport transport = new WarmUpTransport(new InMemoryTransport());
+
+    @Test
+    public void noWarmUp() {
+        this.transport.warmUp(0, "foo/");
+
+        assertEquals(0, this.transport.getWarmUpConnections());
+        assertEquals(-1, this.transport.getWarmUpNanos());
+    }
+
+    @Test
+    public void warmUp() throws InterruptedException {
+        this.transport.warmUp(3, "foo/");
+        assertEquals(3, this.transport.getWarmUpConnections());
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (this.transport.getWarmUpNanos() == -1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertTrue(this.transport.getWarmUpNanos() >= 0);
+        assertEquals("warm-up requests are not the first request", -1, this.transport.getFirstRequestNanos());
+    }
+
+    @Test
+    public void firstRequest() throws IOException {
+        assertEquals(-1, this.transport.getFirstRequestNanos());
+
+        this.transport.head("foo/robots.txt");
+        long firstRequestNanos = this.transport.getFirstRequestNanos();
+        assertTrue(firstRequestNanos >= 0);
+
+        this.transport.list("foo/", "/", null);
+        assertEquals(firstRequestNanos, this.transport.getFirstRequestNanos());
+    }
+}